@@ -3,9 +3,11 @@ package br.com.fiap.tech.facility;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.openfeign.EnableFeignClients;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableFeignClients(basePackages = "br.com.fiap.tech.facility.client")
+@EnableScheduling
 public class FacilityServiceApplication {
     public static void main(String[] args) {
         SpringApplication.run(FacilityServiceApplication.class, args);
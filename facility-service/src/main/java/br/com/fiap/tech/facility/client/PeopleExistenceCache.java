@@ -0,0 +1,51 @@
+package br.com.fiap.tech.facility.client;
+
+import br.com.fiap.tech.people.existence.ExistenceCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Validação dos médicos das escalas e dos administradores vinculados às unidades.
+ * O UserEventConsumer invalida as entradas do usuário excluído, então uma escala não é gravada
+ * para um médico removido enquanto a resposta anterior ainda estaria válida.
+ */
+@Component
+public class PeopleExistenceCache {
+
+    enum PersonType {
+        DOCTOR,
+        ADMINISTRATOR
+    }
+
+    private final PeopleClient peopleClient;
+    private final ExistenceCache<PersonType> cache;
+
+    public PeopleExistenceCache(
+            PeopleClient peopleClient,
+            MeterRegistry meterRegistry,
+            @Value("${people.existence-cache.maximum-size:10000}") long maximumSize,
+            @Value("${people.existence-cache.ttl:10m}") Duration ttl,
+            @Value("${people.existence-cache.negative-ttl:30s}") Duration negativeTtl) {
+        this.peopleClient = peopleClient;
+        this.cache = new ExistenceCache<>("people.existence", meterRegistry, maximumSize, ttl, negativeTtl);
+    }
+
+    public boolean doctorExists(Long id) {
+        return cache.exists(PersonType.DOCTOR, id,
+                () -> peopleClient.getDoctor(id).getUserId(),
+                "Médico com ID " + id + " não encontrado");
+    }
+
+    public boolean administratorExists(Long id) {
+        return cache.exists(PersonType.ADMINISTRATOR, id,
+                () -> peopleClient.getAdministrator(id).getUserId(),
+                "Administrador com ID " + id + " não encontrado");
+    }
+
+    public void evictUser(Long userId) {
+        cache.evictUser(userId);
+    }
+}
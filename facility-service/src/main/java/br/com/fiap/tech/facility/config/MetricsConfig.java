@@ -35,4 +35,11 @@ public class MetricsConfig {
                 .description("Número de erros internos do servidor")
                 .register(registry);
     }
-} 
\ No newline at end of file
+    
+    @Bean
+    public Counter overbookedAppointmentCounter(MeterRegistry registry) {
+        return Counter.builder("facility.capacity.overbooked")
+                .description("Número de agendamentos gravados cuja vaga foi recusada por falta de capacidade no dia")
+                .register(registry);
+    }
+}
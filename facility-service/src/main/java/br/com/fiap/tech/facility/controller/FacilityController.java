@@ -3,6 +3,7 @@ package br.com.fiap.tech.facility.controller;
 import br.com.fiap.tech.facility.domain.*;
 import br.com.fiap.tech.facility.dto.*;
 import br.com.fiap.tech.facility.exception.ApiErrorSchema;
+import br.com.fiap.tech.facility.service.FacilityCapacityService;
 import br.com.fiap.tech.facility.service.FacilityService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -17,6 +18,7 @@ import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.Positive;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
@@ -33,6 +35,7 @@ import java.util.List;
 public class FacilityController {
 
     private final FacilityService facilityService;
+    private final FacilityCapacityService capacityService;
 
     @Operation(
         summary = "Create healthcare facility",
@@ -110,6 +113,87 @@ public class FacilityController {
                 .body(schedule);
     }
 
+    @Operation(
+        summary = "Update doctor schedule",
+        description = "Updates an existing doctor schedule and notifies the services that replicate it"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200", 
+            description = "Schedule updated successfully"
+        ),
+        @ApiResponse(
+            responseCode = "400", 
+            description = "Invalid input data",
+            content = @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ApiErrorSchema.class)
+            )
+        ),
+        @ApiResponse(
+            responseCode = "404", 
+            description = "Schedule, doctor or facility not found",
+            content = @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ApiErrorSchema.class)
+            )
+        ),
+        @ApiResponse(
+            responseCode = "409", 
+            description = "Schedule conflict",
+            content = @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ApiErrorSchema.class)
+            )
+        )
+    })
+    @PutMapping("/schedules/{scheduleId}")
+    public ResponseEntity<DoctorSchedule> updateDoctorSchedule(
+            @PathVariable @Positive(message = "O ID da agenda deve ser positivo") Long scheduleId,
+            @Valid @RequestBody DoctorScheduleRequest request
+    ) {
+        return ResponseEntity.ok(facilityService.updateDoctorSchedule(scheduleId, request));
+    }
+
+    @Operation(
+        summary = "Delete doctor schedule",
+        description = "Removes a doctor schedule and notifies the services that replicate it"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "204", 
+            description = "Schedule deleted successfully"
+        ),
+        @ApiResponse(
+            responseCode = "404", 
+            description = "Schedule not found",
+            content = @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ApiErrorSchema.class)
+            )
+        )
+    })
+    @DeleteMapping("/schedules/{scheduleId}")
+    public ResponseEntity<Void> deleteDoctorSchedule(
+            @PathVariable @Positive(message = "O ID da agenda deve ser positivo") Long scheduleId
+    ) {
+        facilityService.deleteDoctorSchedule(scheduleId);
+        return ResponseEntity.noContent().build();
+    }
+
+    @Operation(
+        summary = "Get all doctor schedules",
+        description = "Retrieves every doctor schedule; used by other services to rebuild their local copy"
+    )
+    @ApiResponse(
+        responseCode = "200", 
+        description = "List of schedules retrieved successfully"
+    )
+    @GetMapping("/schedules")
+    public ResponseEntity<List<DoctorSchedule>> getAllDoctorSchedules() {
+        return ResponseEntity.ok(facilityService.getAllDoctorSchedules());
+    }
+
     @Operation(
         summary = "Assign administrator to facility",
         description = "Associates an administrator with a healthcare facility"
@@ -308,7 +392,10 @@ public class FacilityController {
 
     @Operation(
         summary = "Find nearby facilities",
-        description = "Finds healthcare facilities within a specified radius from given coordinates"
+        description = "Finds healthcare facilities within a specified radius from given coordinates. " +
+                    "Optionally keeps only facilities of a type, with at least minRemaining slots on some day " +
+                    "between from and to (returning the daily availability), and with doctors scheduled on " +
+                    "scheduleDay (returning their IDs)"
     )
     @ApiResponses(value = {
         @ApiResponse(
@@ -317,7 +404,7 @@ public class FacilityController {
         ),
         @ApiResponse(
             responseCode = "400", 
-            description = "Invalid input parameters",
+            description = "Invalid input parameters or date range",
             content = @Content(
                 mediaType = "application/json",
                 schema = @Schema(implementation = ApiErrorSchema.class)
@@ -331,8 +418,20 @@ public class FacilityController {
             @RequestParam @DecimalMin(value = "-180.0", message = "Longitude mínima: -180.0") 
                         @DecimalMax(value = "180.0", message = "Longitude máxima: 180.0") Double longitude,
             @RequestParam(defaultValue = "10.0") @Positive(message = "O raio deve ser positivo") Double radiusInKm,
-            @RequestParam(defaultValue = "10") @Positive(message = "O limite deve ser positivo") Integer limit) {
-        return ResponseEntity.ok(facilityService.findNearbyFacilities(latitude, longitude, radiusInKm, limit));
+            @RequestParam(defaultValue = "10") @Positive(message = "O limite deve ser positivo") Integer limit,
+            @RequestParam(required = false) FacilityType facilityType,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "1") @Positive(message = "O mínimo de vagas deve ser positivo") Integer minRemaining,
+            @RequestParam(required = false) DayOfWeek scheduleDay) {
+        NearbyFacilitiesFilter filter = NearbyFacilitiesFilter.builder()
+                .facilityType(facilityType)
+                .from(from)
+                .to(to)
+                .minRemaining(minRemaining)
+                .scheduleDay(scheduleDay)
+                .build();
+        return ResponseEntity.ok(facilityService.findNearbyFacilities(latitude, longitude, radiusInKm, limit, filter));
     }
 
     @Operation(
@@ -362,13 +461,59 @@ public class FacilityController {
     }
 
     @Operation(
-        summary = "Get current load",
-        description = "Gets the current load of a healthcare facility"
+        summary = "Get an availability calendar for several facilities",
+        description = "Returns the remaining daily capacity of up to 200 facilities for each day of a date range " +
+                    "(at most 92 days) in a single columnar response. Each facility's days are run-length encoded " +
+                    "as consecutive [remaining, days] pairs starting at from"
     )
     @ApiResponses(value = {
         @ApiResponse(
             responseCode = "200", 
-            description = "Current load retrieved successfully"
+            description = "Availability calendar retrieved successfully"
+        ),
+        @ApiResponse(
+            responseCode = "400", 
+            description = "Invalid date range or facility list",
+            content = @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ApiErrorSchema.class)
+            )
+        ),
+        @ApiResponse(
+            responseCode = "404", 
+            description = "One or more facilities not found",
+            content = @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ApiErrorSchema.class)
+            )
+        )
+    })
+    @GetMapping("/availability")
+    public ResponseEntity<AvailabilityCalendarResponse> getAvailabilityCalendar(
+            @RequestParam List<@Positive(message = "O ID da unidade deve ser positivo") Long> ids,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
+        return ResponseEntity.ok(capacityService.getAvailabilityCalendar(ids, from, to));
+    }
+
+    @Operation(
+        summary = "Get availability for a date range",
+        description = "Returns the reserved and remaining daily capacity of a healthcare facility for each day " +
+                    "of a date range (at most 92 days)"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200", 
+            description = "Availability retrieved successfully"
+        ),
+        @ApiResponse(
+            responseCode = "400", 
+            description = "Invalid date range",
+            content = @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ApiErrorSchema.class)
+            )
         ),
         @ApiResponse(
             responseCode = "404", 
@@ -379,22 +524,85 @@ public class FacilityController {
             )
         )
     })
-    @GetMapping("/{facilityId}/current-load")
-    public ResponseEntity<Integer> getCurrentLoad(
-            @PathVariable @Positive(message = "O ID da unidade deve ser positivo") Long facilityId
+    @GetMapping("/{facilityId}/availability")
+    public ResponseEntity<List<DailyCapacityResponse>> getAvailability(
+            @PathVariable @Positive(message = "O ID da unidade deve ser positivo") Long facilityId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
     ) {
-        return ResponseEntity.ok(facilityService.getCurrentLoad(facilityId));
+        return ResponseEntity.ok(capacityService.getAvailability(facilityId, from, to));
     }
 
+    @Operation(
+        summary = "Reserve capacity for an appointment",
+        description = "Reserves one slot of the facility daily capacity for the appointment. " +
+                    "Idempotent: repeating the call for the same appointment, or calling it after the appointment " +
+                    "was released, does not reserve another slot."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "201", 
+            description = "Capacity reserved"
+        ),
+        @ApiResponse(
+            responseCode = "200", 
+            description = "The appointment already had a reservation"
+        ),
+        @ApiResponse(
+            responseCode = "404", 
+            description = "Facility not found",
+            content = @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ApiErrorSchema.class)
+            )
+        ),
+        @ApiResponse(
+            responseCode = "409", 
+            description = "Facility is fully booked for the date",
+            content = @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ApiErrorSchema.class)
+            )
+        )
+    })
     @Hidden
+    @PutMapping("/{facilityId}/capacity/reservations/{appointmentId}")
+    public ResponseEntity<Void> reserveCapacity(
+            @PathVariable @Positive(message = "O ID da unidade deve ser positivo") Long facilityId,
+            @PathVariable @Positive(message = "O ID do agendamento deve ser positivo") Long appointmentId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date
+    ) {
+        boolean reserved = capacityService.reserve(appointmentId, facilityId, date);
+        return ResponseEntity.status(reserved ? HttpStatus.CREATED : HttpStatus.OK).build();
+    }
+
     @Operation(
-        summary = "Get max daily capacity",
-        description = "Gets the maximum daily capacity of a healthcare facility"
+        summary = "Release the capacity of an appointment",
+        description = "Releases the slot reserved for the appointment. " +
+                    "Idempotent: repeated releases do nothing, and releasing an appointment before its reservation " +
+                    "makes the later reservation a no-op."
+    )
+    @ApiResponse(
+        responseCode = "204", 
+        description = "Capacity released"
+    )
+    @Hidden
+    @DeleteMapping("/capacity/reservations/{appointmentId}")
+    public ResponseEntity<Void> releaseCapacity(
+            @PathVariable @Positive(message = "O ID do agendamento deve ser positivo") Long appointmentId
+    ) {
+        capacityService.release(appointmentId);
+        return ResponseEntity.noContent().build();
+    }
+
+    @Operation(
+        summary = "Get current load",
+        description = "Gets the current load of a healthcare facility"
     )
     @ApiResponses(value = {
         @ApiResponse(
             responseCode = "200", 
-            description = "Max capacity retrieved successfully"
+            description = "Current load retrieved successfully"
         ),
         @ApiResponse(
             responseCode = "404", 
@@ -405,21 +613,22 @@ public class FacilityController {
             )
         )
     })
-    @GetMapping("/{facilityId}/max-capacity")
-    public ResponseEntity<Integer> getMaxDailyCapacity(
+    @GetMapping("/{facilityId}/current-load")
+    public ResponseEntity<Integer> getCurrentLoad(
             @PathVariable @Positive(message = "O ID da unidade deve ser positivo") Long facilityId
     ) {
-        return ResponseEntity.ok(facilityService.getMaxDailyCapacity(facilityId));
+        return ResponseEntity.ok(facilityService.getCurrentLoad(facilityId));
     }
 
+    @Hidden
     @Operation(
-        summary = "Update current load",
-        description = "Increments or decrements the current load of a healthcare facility"
+        summary = "Get max daily capacity",
+        description = "Gets the maximum daily capacity of a healthcare facility"
     )
     @ApiResponses(value = {
         @ApiResponse(
             responseCode = "200", 
-            description = "Current load updated successfully"
+            description = "Max capacity retrieved successfully"
         ),
         @ApiResponse(
             responseCode = "404", 
@@ -430,13 +639,10 @@ public class FacilityController {
             )
         )
     })
-    @Hidden
-    @PutMapping("/{facilityId}/current-load")
-    public ResponseEntity<Void> updateCurrentLoad(
-            @PathVariable @Positive(message = "O ID da unidade deve ser positivo") Long facilityId,
-            @RequestParam Boolean increment
+    @GetMapping("/{facilityId}/max-capacity")
+    public ResponseEntity<Integer> getMaxDailyCapacity(
+            @PathVariable @Positive(message = "O ID da unidade deve ser positivo") Long facilityId
     ) {
-        facilityService.updateCurrentLoad(facilityId, increment);
-        return ResponseEntity.ok().build();
+        return ResponseEntity.ok(facilityService.getMaxDailyCapacity(facilityId));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,34 @@
+package br.com.fiap.tech.facility.domain;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Vaga reservada para um agendamento; existe no máximo uma por agendamento.
+ * Depois de liberada a reserva fica marcada com releasedAt, e o agendamento não reserva vaga de novo.
+ */
+@Data
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "facility_capacity_reservations")
+public class FacilityCapacityReservation {
+
+    @Id
+    private Long appointmentId;
+
+    private Long facilityId;
+
+    private LocalDate capacityDate;
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime releasedAt;
+}
@@ -0,0 +1,44 @@
+package br.com.fiap.tech.facility.domain;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Vagas já reservadas em uma unidade de saúde em uma data.
+ * Só é alterada pelas consultas atômicas do FacilityDailyCapacityRepository.
+ */
+@Data
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@IdClass(FacilityDailyCapacity.Key.class)
+@Table(name = "facility_daily_capacity")
+public class FacilityDailyCapacity {
+
+    @Id
+    private Long facilityId;
+
+    @Id
+    private LocalDate capacityDate;
+
+    @Column(nullable = false)
+    private Integer reserved;
+
+    private LocalDateTime updatedAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long facilityId;
+        private LocalDate capacityDate;
+    }
+}
@@ -0,0 +1,34 @@
+package br.com.fiap.tech.facility.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Vagas restantes de várias unidades em um intervalo de datas, em colunas: a posição i de cada lista
+ * corresponde à unidade facilityIds[i]. As vagas de cada unidade vêm codificadas por repetição, como pares
+ * [vagas, dias] em sequência a partir de from; dias seguidos com a mesma quantidade ocupam um único par.
+ */
+@Data
+@AllArgsConstructor
+@Schema(description = "Calendário de vagas restantes de várias unidades, em colunas e codificado por repetição")
+public class AvailabilityCalendarResponse {
+    @Schema(description = "Primeiro dia do calendário", example = "2026-11-01")
+    private LocalDate from;
+
+    @Schema(description = "Último dia do calendário", example = "2026-11-30")
+    private LocalDate to;
+
+    @Schema(description = "IDs das unidades, na ordem pedida", example = "[1, 2]")
+    private List<Long> facilityIds;
+
+    @Schema(description = "Capacidade máxima diária de cada unidade", example = "[40, 25]")
+    private List<Integer> maxDailyCapacity;
+
+    @Schema(description = "Vagas restantes de cada unidade como pares [vagas, dias] em sequência",
+            example = "[[40, 12, 0, 1, 40, 17], [25, 30]]")
+    private List<List<Integer>> remaining;
+}
@@ -0,0 +1,15 @@
+package br.com.fiap.tech.facility.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+public class DailyCapacityResponse {
+    private LocalDate date;
+    private Integer maxDailyCapacity;
+    private Integer reserved;
+    private Integer remaining;
+}
@@ -0,0 +1,38 @@
+package br.com.fiap.tech.facility.dto;
+
+import br.com.fiap.tech.facility.domain.DayOfWeek;
+import br.com.fiap.tech.facility.domain.FacilityType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Filtros opcionais da busca de unidades próximas. Campos nulos não filtram.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NearbyFacilitiesFilter {
+    private FacilityType facilityType;
+
+    /**
+     * Período em que a unidade deve ter vagas; sem data final, vale só a data inicial
+     */
+    private LocalDate from;
+    private LocalDate to;
+
+    /**
+     * Vagas restantes exigidas em pelo menos um dia do período
+     */
+    @Builder.Default
+    private Integer minRemaining = 1;
+
+    /**
+     * Dia em que a unidade deve ter médicos com agenda
+     */
+    private DayOfWeek scheduleDay;
+}
@@ -4,9 +4,25 @@ import br.com.fiap.tech.facility.domain.HealthcareFacility;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
+import java.util.List;
+
 @Data
 @AllArgsConstructor
 public class NearbyFacilitiesResponse {
     private HealthcareFacility facility;
     private Double distanceInKm;
+
+    /**
+     * Vagas de cada dia do período pedido; nulo quando a busca não filtra por capacidade
+     */
+    private List<DailyCapacityResponse> availability;
+
+    /**
+     * Médicos com agenda na unidade no dia pedido; nulo quando a busca não filtra por agenda
+     */
+    private List<Long> doctorIds;
+
+    public NearbyFacilitiesResponse(HealthcareFacility facility, Double distanceInKm) {
+        this(facility, distanceInKm, null, null);
+    }
 }
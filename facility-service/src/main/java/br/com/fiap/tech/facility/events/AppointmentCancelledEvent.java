@@ -0,0 +1,16 @@
+package br.com.fiap.tech.facility.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AppointmentCancelledEvent {
+    private Long appointmentId;
+    private LocalDate appointmentDate;
+    private Long healthcareFacilityId;
+}
@@ -22,4 +22,12 @@ public class AppointmentEventConsumer {
             facilityService.handleAppointmentCreated(event);
         };
     }
+
+    @Bean
+    public Consumer<AppointmentCancelledEvent> appointmentCancelledInput() {
+        return event -> {
+            log.info("Received AppointmentCancelledEvent for appointment: {}", event.getAppointmentId());
+            facilityService.handleAppointmentCancelled(event);
+        };
+    }
 }
@@ -0,0 +1,47 @@
+package br.com.fiap.tech.facility.events;
+
+import br.com.fiap.tech.facility.domain.DoctorSchedule;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DoctorScheduleChangedEvent {
+
+    public enum ChangeType {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    private ChangeType changeType;
+    private Long scheduleId;
+    private Long doctorId;
+    private Long facilityId;
+    private String dayOfWeek;
+    private LocalTime startTime;
+    private LocalTime endTime;
+    private LocalTime secondPeriodStart;
+    private LocalTime secondPeriodEnd;
+    private LocalDateTime updatedAt;
+
+    public static DoctorScheduleChangedEvent of(ChangeType changeType, DoctorSchedule schedule) {
+        return new DoctorScheduleChangedEvent(
+                changeType,
+                schedule.getId(),
+                schedule.getDoctorId(),
+                schedule.getFacilityId(),
+                schedule.getDayOfWeek().name(),
+                schedule.getStartTime(),
+                schedule.getEndTime(),
+                schedule.getSecondPeriodStart(),
+                schedule.getSecondPeriodEnd(),
+                schedule.getUpdatedAt()
+        );
+    }
+}
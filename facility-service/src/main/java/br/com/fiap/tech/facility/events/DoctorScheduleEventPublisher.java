@@ -0,0 +1,46 @@
+package br.com.fiap.tech.facility.events;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Publica as alterações de agenda dos médicos para os serviços que mantêm cópia local delas.
+ * Dentro de uma transação o evento só é enviado após o commit.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DoctorScheduleEventPublisher {
+
+    static final String BINDING = "doctorScheduleChangedOutput-out-0";
+
+    private final StreamBridge streamBridge;
+
+    public void publish(DoctorScheduleChangedEvent event) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    send(event);
+                }
+            });
+        } else {
+            send(event);
+        }
+    }
+
+    private void send(DoctorScheduleChangedEvent event) {
+        try {
+            streamBridge.send(BINDING, event);
+            log.info("Evento de agenda {} enviado para a agenda {} do médico {}",
+                    event.getChangeType(), event.getScheduleId(), event.getDoctorId());
+        } catch (Exception e) {
+            // A agenda já foi gravada; os consumidores se recuperam pela ressincronização
+            log.error("Erro ao enviar evento de agenda {}: {}", event.getScheduleId(), e.getMessage());
+        }
+    }
+}
@@ -4,6 +4,7 @@ import br.com.fiap.tech.facility.domain.DayOfWeek;
 import br.com.fiap.tech.facility.domain.DoctorSchedule;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface DoctorScheduleRepository extends JpaRepository<DoctorSchedule, Long> {
@@ -14,4 +15,6 @@ public interface DoctorScheduleRepository extends JpaRepository<DoctorSchedule,
     List<DoctorSchedule> findByDoctorIdAndDayOfWeek(Long doctorId, DayOfWeek dayOfWeek);
     
     List<DoctorSchedule> findByFacilityIdAndDayOfWeek(Long facilityId, DayOfWeek dayOfWeek);
+
+    List<DoctorSchedule> findByFacilityIdInAndDayOfWeek(Collection<Long> facilityIds, DayOfWeek dayOfWeek);
 }
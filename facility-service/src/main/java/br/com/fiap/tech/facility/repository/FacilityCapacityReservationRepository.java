@@ -0,0 +1,56 @@
+package br.com.fiap.tech.facility.repository;
+
+import br.com.fiap.tech.facility.domain.FacilityCapacityReservation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+
+public interface FacilityCapacityReservationRepository extends JpaRepository<FacilityCapacityReservation, Long> {
+
+    /**
+     * Registra a reserva do agendamento; a chave primária descarta repetições sem consulta prévia,
+     * inclusive depois de a reserva ter sido liberada
+     *
+     * @return 1 se a reserva foi registrada, 0 se o agendamento já tinha reserva, ativa ou liberada
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO facility_capacity_reservations (appointment_id, facility_id, capacity_date, created_at) " +
+                   "VALUES (:appointmentId, :facilityId, :date, now()) " +
+                   "ON CONFLICT (appointment_id) DO NOTHING", nativeQuery = true)
+    int claim(Long appointmentId, Long facilityId, LocalDate date);
+
+    /**
+     * Registra a reserva já liberada de um agendamento cancelado antes de reservar vaga,
+     * para que a reserva que chegar depois seja descartada
+     *
+     * @return 1 se o registro foi criado, 0 se o agendamento já tinha reserva
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO facility_capacity_reservations " +
+                   "(appointment_id, facility_id, capacity_date, created_at, released_at) " +
+                   "VALUES (:appointmentId, :facilityId, :date, now(), now()) " +
+                   "ON CONFLICT (appointment_id) DO NOTHING", nativeQuery = true)
+    int claimReleased(Long appointmentId, Long facilityId, LocalDate date);
+
+    /**
+     * Marca a reserva ativa do agendamento como liberada e devolve a vaga ao dia, na mesma instrução
+     *
+     * @return a unidade da reserva liberada, ou null se o agendamento não tinha reserva ativa
+     */
+    @Transactional
+    @Query(value = "WITH released AS (" +
+                   "UPDATE facility_capacity_reservations SET released_at = now() " +
+                   "WHERE appointment_id = :appointmentId AND released_at IS NULL " +
+                   "RETURNING facility_id, capacity_date), " +
+                   "returned AS (" +
+                   "UPDATE facility_daily_capacity c SET reserved = c.reserved - 1, updated_at = now() " +
+                   "FROM released r WHERE c.facility_id = r.facility_id AND c.capacity_date = r.capacity_date " +
+                   "AND c.reserved > 0) " +
+                   "SELECT facility_id FROM released", nativeQuery = true)
+    Long release(Long appointmentId);
+}
@@ -0,0 +1,35 @@
+package br.com.fiap.tech.facility.repository;
+
+import br.com.fiap.tech.facility.domain.FacilityDailyCapacity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+public interface FacilityDailyCapacityRepository extends JpaRepository<FacilityDailyCapacity, FacilityDailyCapacity.Key> {
+
+    /**
+     * Reserva uma vaga na data, criando a linha do dia se preciso, somente se ainda houver capacidade.
+     * A linha fica bloqueada pelo ON CONFLICT e a condição é avaliada sobre a versão mais recente,
+     * então reservas simultâneas nunca passam da capacidade máxima.
+     *
+     * @return vagas reservadas na data após a reserva, ou null se a unidade não existe ou já está lotada
+     */
+    @Transactional
+    @Query(value = "WITH reservation AS (" +
+                   "INSERT INTO facility_daily_capacity (facility_id, capacity_date, reserved, updated_at) " +
+                   "SELECT f.id, :date, 1, now() FROM healthcare_facilities f " +
+                   "WHERE f.id = :facilityId AND f.max_daily_capacity > 0 " +
+                   "ON CONFLICT (facility_id, capacity_date) DO UPDATE " +
+                   "SET reserved = facility_daily_capacity.reserved + 1, updated_at = now() " +
+                   "WHERE facility_daily_capacity.reserved < " +
+                   "(SELECT f.max_daily_capacity FROM healthcare_facilities f WHERE f.id = EXCLUDED.facility_id) " +
+                   "RETURNING reserved) " +
+                   "SELECT reserved FROM reservation", nativeQuery = true)
+    Integer reserve(Long facilityId, LocalDate date);
+
+    List<FacilityDailyCapacity> findByFacilityIdInAndCapacityDateBetween(Collection<Long> facilityIds, LocalDate from, LocalDate to);
+}
@@ -1,17 +1,45 @@
 package br.com.fiap.tech.facility.repository;
 
+import br.com.fiap.tech.facility.domain.FacilityType;
 import br.com.fiap.tech.facility.domain.HealthcareFacility;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 
 import java.util.List;
 import java.util.Optional;
 
 public interface HealthcareFacilityRepository extends JpaRepository<HealthcareFacility, Long> {
+
+    interface FacilityLocation {
+        Long getId();
+
+        Double getLatitude();
+
+        Double getLongitude();
+
+        FacilityType getFacilityType();
+    }
+
     Optional<HealthcareFacility> findByCnpj(String cnpj);
     
     List<HealthcareFacility> findByCity(String city);
     
     @Query("SELECT h FROM HealthcareFacility h WHERE h.currentLoad < h.maxDailyCapacity")
     List<HealthcareFacility> findAvailableFacilities();
+    
+    @Modifying
+    @Query("UPDATE HealthcareFacility h SET h.currentLoad = GREATEST(COALESCE(h.currentLoad, 0) + :delta, 0) " +
+           "WHERE h.id = :facilityId")
+    int addToCurrentLoad(Long facilityId, int delta);
+
+    @Query("SELECT h.id AS id, h.latitude AS latitude, h.longitude AS longitude, h.facilityType AS facilityType " +
+           "FROM HealthcareFacility h")
+    List<FacilityLocation> findAllLocations();
+
+    /**
+     * Unidades dentro do retângulo de latitude/longitude; usa o índice (latitude, longitude)
+     */
+    List<HealthcareFacility> findByLatitudeBetweenAndLongitudeBetween(
+            Double minLatitude, Double maxLatitude, Double minLongitude, Double maxLongitude);
 }
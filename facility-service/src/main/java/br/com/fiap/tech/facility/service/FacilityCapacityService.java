@@ -0,0 +1,211 @@
+package br.com.fiap.tech.facility.service;
+
+import br.com.fiap.tech.facility.domain.FacilityDailyCapacity;
+import br.com.fiap.tech.facility.domain.HealthcareFacility;
+import br.com.fiap.tech.facility.dto.AvailabilityCalendarResponse;
+import br.com.fiap.tech.facility.dto.DailyCapacityResponse;
+import br.com.fiap.tech.facility.repository.FacilityCapacityReservationRepository;
+import br.com.fiap.tech.facility.repository.FacilityDailyCapacityRepository;
+import br.com.fiap.tech.facility.repository.HealthcareFacilityRepository;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Capacidade diária das unidades de saúde, controlada por data na tabela facility_daily_capacity.
+ * Cada agendamento reserva no máximo uma vaga (facility_capacity_reservations), e a reserva liberada continua
+ * registrada, então reentregas de eventos, novas tentativas e cancelamentos que chegam antes da criação
+ * não contam a mesma vaga duas vezes. A contagem do dia é um único UPDATE condicional
+ * no banco, sem carregar a entidade, o que a mantém correta com agendamentos simultâneos em várias instâncias.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FacilityCapacityService {
+
+    static final int MAX_RANGE_DAYS = 92;
+    static final int MAX_CALENDAR_FACILITIES = 200;
+
+    private final FacilityDailyCapacityRepository capacityRepository;
+    private final FacilityCapacityReservationRepository reservationRepository;
+    private final HealthcareFacilityRepository facilityRepository;
+
+    /**
+     * Reserva uma vaga da unidade na data para o agendamento. Repetições para o mesmo agendamento não fazem nada.
+     *
+     * @return true se a vaga foi reservada agora, false se o agendamento já tinha reserva
+     */
+    @Transactional
+    public boolean reserve(Long appointmentId, Long facilityId, LocalDate date) {
+        if (reservationRepository.claim(appointmentId, facilityId, date) == 0) {
+            log.info("Agendamento {} já possui vaga reservada ou foi cancelado; nada a fazer", appointmentId);
+            return false;
+        }
+        // Sem vaga, a exceção desfaz também o registro da reserva
+        Integer reserved = capacityRepository.reserve(facilityId, date);
+        if (reserved == null) {
+            if (!facilityRepository.existsById(facilityId)) {
+                throw new EntityNotFoundException("Unidade de saúde com ID " + facilityId + " não encontrada");
+            }
+            throw new DataIntegrityViolationException("Unidade de saúde " + facilityId + " sem vagas em " + date);
+        }
+        facilityRepository.addToCurrentLoad(facilityId, 1);
+        log.info("Vaga reservada na unidade {} em {} para o agendamento {}: {} reservadas",
+                facilityId, date, appointmentId, reserved);
+        return true;
+    }
+
+    /**
+     * Libera a vaga reservada para o agendamento. Repetições, ou agendamentos sem reserva, não fazem nada.
+     *
+     * @return true se a vaga foi liberada agora
+     */
+    @Transactional
+    public boolean release(Long appointmentId) {
+        return release(appointmentId, null, null);
+    }
+
+    /**
+     * Libera a vaga reservada para o agendamento. Se o cancelamento chega antes da reserva,
+     * grava a reserva já liberada, e a reserva que chegar depois não faz nada.
+     *
+     * @return true se a vaga foi liberada agora
+     */
+    @Transactional
+    public boolean release(Long appointmentId, Long facilityId, LocalDate date) {
+        // Registrar primeiro: uma reserva simultânea espera por este registro e depois é descartada
+        if (reservationRepository.claimReleased(appointmentId, facilityId, date) == 1) {
+            log.info("Agendamento {} cancelado antes da reserva da vaga; a reserva será ignorada", appointmentId);
+            return false;
+        }
+        Long releasedFacilityId = reservationRepository.release(appointmentId);
+        if (releasedFacilityId == null) {
+            log.info("Vaga do agendamento {} já liberada; nada a fazer", appointmentId);
+            return false;
+        }
+        facilityRepository.addToCurrentLoad(releasedFacilityId, -1);
+        log.info("Vaga do agendamento {} liberada na unidade {}", appointmentId, releasedFacilityId);
+        return true;
+    }
+
+    /**
+     * Verifica se ainda há vagas na unidade na data
+     */
+    public boolean hasCapacity(Long facilityId, LocalDate date) {
+        return getAvailability(facilityId, date, date).get(0).getRemaining() > 0;
+    }
+
+    /**
+     * Vagas reservadas e restantes da unidade em cada dia do intervalo, inclusive os dias sem reservas
+     */
+    public List<DailyCapacityResponse> getAvailability(Long facilityId, LocalDate from, LocalDate to) {
+        validateRange(from, to);
+        HealthcareFacility facility = facilityRepository.findById(facilityId)
+                .orElseThrow(() -> new EntityNotFoundException("Unidade de saúde com ID " + facilityId + " não encontrada"));
+        if (facility.getMaxDailyCapacity() == null) {
+            throw new IllegalStateException("Unidade de saúde não possui capacidade máxima configurada");
+        }
+        return getAvailability(List.of(facility), from, to).get(facilityId);
+    }
+
+    /**
+     * Vagas de cada dia do intervalo para várias unidades, com uma única consulta ao controle diário.
+     * Unidades sem capacidade máxima configurada aparecem sem vagas.
+     */
+    public Map<Long, List<DailyCapacityResponse>> getAvailability(Collection<HealthcareFacility> facilities,
+                                                                  LocalDate from, LocalDate to) {
+        validateRange(from, to);
+        if (facilities.isEmpty()) {
+            return Map.of();
+        }
+        Map<Long, Map<LocalDate, Integer>> reservedByFacility = capacityRepository
+                .findByFacilityIdInAndCapacityDateBetween(
+                        facilities.stream().map(HealthcareFacility::getId).toList(), from, to).stream()
+                .collect(Collectors.groupingBy(FacilityDailyCapacity::getFacilityId,
+                        Collectors.toMap(FacilityDailyCapacity::getCapacityDate, FacilityDailyCapacity::getReserved)));
+
+        Map<Long, List<DailyCapacityResponse>> availability = new HashMap<>();
+        for (HealthcareFacility facility : facilities) {
+            Map<LocalDate, Integer> reservedByDate = reservedByFacility.getOrDefault(facility.getId(), Map.of());
+            int max = facility.getMaxDailyCapacity() != null ? facility.getMaxDailyCapacity() : 0;
+            List<DailyCapacityResponse> days = new ArrayList<>();
+            for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+                int reserved = reservedByDate.getOrDefault(date, 0);
+                days.add(new DailyCapacityResponse(date, max, reserved, Math.max(max - reserved, 0)));
+            }
+            availability.put(facility.getId(), days);
+        }
+        return availability;
+    }
+
+    /**
+     * Calendário de vagas restantes de várias unidades no intervalo, com uma consulta às unidades
+     * e uma ao controle diário
+     */
+    public AvailabilityCalendarResponse getAvailabilityCalendar(List<Long> facilityIds, LocalDate from, LocalDate to) {
+        validateRange(from, to);
+        List<Long> ids = facilityIds.stream().distinct().toList();
+        if (ids.isEmpty() || ids.size() > MAX_CALENDAR_FACILITIES) {
+            throw new IllegalArgumentException("Informe de 1 a " + MAX_CALENDAR_FACILITIES + " unidades");
+        }
+        List<HealthcareFacility> facilities = facilityRepository.findAllById(ids);
+        if (facilities.size() < ids.size()) {
+            Set<Long> found = facilities.stream().map(HealthcareFacility::getId).collect(Collectors.toSet());
+            List<Long> missing = ids.stream().filter(id -> !found.contains(id)).toList();
+            throw new EntityNotFoundException("Unidades de saúde não encontradas: " + missing);
+        }
+
+        Map<Long, List<DailyCapacityResponse>> availability = getAvailability(facilities, from, to);
+        Map<Long, HealthcareFacility> byId = facilities.stream()
+                .collect(Collectors.toMap(HealthcareFacility::getId, Function.identity()));
+        List<Integer> maxDailyCapacity = new ArrayList<>();
+        List<List<Integer>> remaining = new ArrayList<>();
+        for (Long id : ids) {
+            maxDailyCapacity.add(byId.get(id).getMaxDailyCapacity());
+            remaining.add(runLengths(availability.get(id)));
+        }
+        return new AvailabilityCalendarResponse(from, to, ids, maxDailyCapacity, remaining);
+    }
+
+    /**
+     * Vagas restantes dos dias como pares [vagas, dias seguidos com essas vagas]
+     */
+    private static List<Integer> runLengths(List<DailyCapacityResponse> days) {
+        List<Integer> runs = new ArrayList<>();
+        int i = 0;
+        while (i < days.size()) {
+            int value = days.get(i).getRemaining();
+            int length = 1;
+            while (i + length < days.size() && days.get(i + length).getRemaining() == value) {
+                length++;
+            }
+            runs.add(value);
+            runs.add(length);
+            i += length;
+        }
+        return runs;
+    }
+
+    static void validateRange(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("A data final não pode ser anterior à data inicial");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_RANGE_DAYS) {
+            throw new IllegalArgumentException("O intervalo deve ter no máximo " + MAX_RANGE_DAYS + " dias");
+        }
+    }
+}
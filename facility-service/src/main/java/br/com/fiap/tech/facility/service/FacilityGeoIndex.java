@@ -0,0 +1,225 @@
+package br.com.fiap.tech.facility.service;
+
+import br.com.fiap.tech.facility.domain.FacilityType;
+import br.com.fiap.tech.facility.domain.HealthcareFacility;
+import br.com.fiap.tech.facility.repository.HealthcareFacilityRepository;
+import br.com.fiap.tech.facility.util.GeoUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Índice espacial em memória das unidades de saúde: uma grade de células de latitude/longitude
+ * (tamanho configurável em graus) com os pontos de cada célula.
+ * A busca por proximidade só calcula a distância das unidades nas células que cobrem o raio
+ * e mantém as mais próximas em um heap limitado ao tamanho pedido, em vez de ordenar todas.
+ * O índice é carregado ao iniciar, atualizado a cada unidade criada e ressincronizado periodicamente
+ * com o banco, para incluir as unidades criadas por outras instâncias.
+ */
+@Component
+@Slf4j
+public class FacilityGeoIndex {
+
+    public record Match(long facilityId, double distanceKm) {
+    }
+
+    record Point(long id, double latitude, double longitude, FacilityType type) {
+    }
+
+    /**
+     * Pontos indexados por ID e por célula; as listas das células são imutáveis e trocadas a cada alteração
+     */
+    private record Grid(Map<Long, Point> points, Map<Long, List<Point>> cells) {
+        Grid() {
+            this(new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+        }
+    }
+
+    private static final Comparator<Match> FARTHEST_FIRST = Comparator.comparingDouble(Match::distanceKm).reversed();
+
+    private final HealthcareFacilityRepository facilityRepository;
+    private final double cellSize;
+    private final int rows;
+    private final int columns;
+    private volatile Grid grid = new Grid();
+    private volatile boolean loaded;
+
+    public FacilityGeoIndex(
+            HealthcareFacilityRepository facilityRepository,
+            @Value("${facility.geo-index.cell-size-degrees:0.25}") double cellSize) {
+        this.facilityRepository = facilityRepository;
+        this.cellSize = cellSize;
+        this.rows = (int) Math.ceil(180.0 / cellSize);
+        this.columns = (int) Math.ceil(360.0 / cellSize);
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        try {
+            resync();
+        } catch (Exception e) {
+            log.warn("Não foi possível carregar o índice espacial das unidades: {}. " +
+                    "A busca por proximidade usará o banco até a próxima ressincronização", e.getMessage());
+        }
+    }
+
+    /**
+     * Recria o índice com todas as unidades do banco
+     */
+    @Scheduled(fixedDelayString = "${facility.geo-index.resync-interval:300000}",
+               initialDelayString = "${facility.geo-index.resync-interval:300000}")
+    public synchronized void resync() {
+        Grid rebuilt = new Grid();
+        List<HealthcareFacilityRepository.FacilityLocation> locations = facilityRepository.findAllLocations();
+        for (HealthcareFacilityRepository.FacilityLocation location : locations) {
+            if (location.getLatitude() != null && location.getLongitude() != null) {
+                add(rebuilt, new Point(location.getId(), location.getLatitude(), location.getLongitude(),
+                        location.getFacilityType()));
+            }
+        }
+        grid = rebuilt;
+        loaded = true;
+        log.info("Índice espacial carregado com {} unidades em {} células", rebuilt.points().size(), rebuilt.cells().size());
+    }
+
+    /**
+     * Inclui a unidade no índice ou move-a para a célula da nova localização
+     */
+    public synchronized void upsert(HealthcareFacility facility) {
+        if (facility.getId() == null || facility.getLatitude() == null || facility.getLongitude() == null) {
+            return;
+        }
+        Grid current = grid;
+        Point old = current.points().get(facility.getId());
+        if (old != null) {
+            remove(current, old);
+        }
+        add(current, new Point(facility.getId(), facility.getLatitude(), facility.getLongitude(), facility.getFacilityType()));
+    }
+
+    /**
+     * As unidades mais próximas do ponto dentro do raio, da mais próxima para a mais distante
+     */
+    public List<Match> nearest(double latitude, double longitude, double radiusKm, int limit) {
+        return nearest(latitude, longitude, radiusKm, limit, null);
+    }
+
+    /**
+     * As unidades do tipo informado (qualquer tipo quando null) mais próximas do ponto dentro do raio.
+     * O tipo é filtrado antes do heap, então o limite vale só para as unidades do tipo.
+     */
+    public List<Match> nearest(double latitude, double longitude, double radiusKm, int limit, FacilityType type) {
+        Grid current = grid;
+        PriorityQueue<Match> heap = new PriorityQueue<>(Math.min(limit, 64) + 1, FARTHEST_FIRST);
+
+        double latDelta = radiusKm / GeoUtil.KM_PER_DEGREE;
+        double lonDelta = GeoUtil.longitudeDelta(latitude, radiusKm);
+        int rowFrom = row(latitude - latDelta);
+        int rowTo = row(latitude + latDelta);
+        int columnFrom = (int) Math.floor((longitude - lonDelta + 180.0) / cellSize);
+        int columnTo = (int) Math.floor((longitude + lonDelta + 180.0) / cellSize);
+        if (columnTo - columnFrom + 1 >= columns) {
+            columnFrom = 0;
+            columnTo = columns - 1;
+        }
+
+        long cellsToVisit = (long) (rowTo - rowFrom + 1) * (columnTo - columnFrom + 1);
+        if (cellsToVisit > current.cells().size()) {
+            // Raio grande: percorrer as células ocupadas sai mais barato que visitar as do retângulo
+            current.cells().values().forEach(points -> offer(heap, points, latitude, longitude, radiusKm, limit, type));
+        } else {
+            for (int r = rowFrom; r <= rowTo; r++) {
+                for (int c = columnFrom; c <= columnTo; c++) {
+                    List<Point> points = current.cells().get(cellKey(r, Math.floorMod(c, columns)));
+                    if (points != null) {
+                        offer(heap, points, latitude, longitude, radiusKm, limit, type);
+                    }
+                }
+            }
+        }
+
+        List<Match> matches = new ArrayList<>(heap);
+        matches.sort(Comparator.comparingDouble(Match::distanceKm));
+        return matches;
+    }
+
+    /**
+     * Seleciona, entre as unidades informadas, as mais próximas dentro do raio; usado quando o índice não está carregado
+     */
+    public static List<Match> nearest(List<HealthcareFacility> facilities, double latitude, double longitude,
+                                      double radiusKm, int limit) {
+        PriorityQueue<Match> heap = new PriorityQueue<>(Math.min(limit, 64) + 1, FARTHEST_FIRST);
+        List<Point> points = facilities.stream()
+                .filter(facility -> facility.getLatitude() != null && facility.getLongitude() != null)
+                .map(facility -> new Point(facility.getId(), facility.getLatitude(), facility.getLongitude(), facility.getFacilityType()))
+                .toList();
+        offer(heap, points, latitude, longitude, radiusKm, limit, null);
+        List<Match> matches = new ArrayList<>(heap);
+        matches.sort(Comparator.comparingDouble(Match::distanceKm));
+        return matches;
+    }
+
+    private static void offer(PriorityQueue<Match> heap, List<Point> points, double latitude, double longitude,
+                              double radiusKm, int limit, FacilityType type) {
+        for (Point point : points) {
+            if (type != null && point.type() != type) {
+                continue;
+            }
+            double distance = GeoUtil.distanceKm(latitude, longitude, point.latitude(), point.longitude());
+            if (distance > radiusKm) {
+                continue;
+            }
+            if (heap.size() < limit) {
+                heap.add(new Match(point.id(), distance));
+            } else if (distance < heap.peek().distanceKm()) {
+                heap.poll();
+                heap.add(new Match(point.id(), distance));
+            }
+        }
+    }
+
+    private void add(Grid target, Point point) {
+        target.points().put(point.id(), point);
+        target.cells().compute(cellOf(point), (key, points) -> {
+            List<Point> updated = points != null ? new ArrayList<>(points) : new ArrayList<>();
+            updated.add(point);
+            return List.copyOf(updated);
+        });
+    }
+
+    private void remove(Grid target, Point point) {
+        target.points().remove(point.id());
+        target.cells().computeIfPresent(cellOf(point), (key, points) -> {
+            List<Point> updated = points.stream().filter(p -> p.id() != point.id()).toList();
+            return updated.isEmpty() ? null : updated;
+        });
+    }
+
+    private long cellOf(Point point) {
+        int column = Math.floorMod((int) Math.floor((point.longitude() + 180.0) / cellSize), columns);
+        return cellKey(row(point.latitude()), column);
+    }
+
+    private int row(double latitude) {
+        int row = (int) Math.floor((latitude + 90.0) / cellSize);
+        return Math.max(0, Math.min(rows - 1, row));
+    }
+
+    private long cellKey(int row, int column) {
+        return (long) row * columns + column;
+    }
+}
@@ -2,33 +2,54 @@ package br.com.fiap.tech.facility.service;
 
 import br.com.fiap.tech.facility.domain.*;
 import br.com.fiap.tech.facility.dto.*;
+import br.com.fiap.tech.facility.events.AppointmentCancelledEvent;
 import br.com.fiap.tech.facility.events.AppointmentCreatedEvent;
+import br.com.fiap.tech.facility.events.DoctorScheduleChangedEvent;
+import br.com.fiap.tech.facility.events.DoctorScheduleEventPublisher;
 import br.com.fiap.tech.facility.repository.*;
-import br.com.fiap.tech.facility.client.PeopleClient;
+import br.com.fiap.tech.facility.client.PeopleExistenceCache;
 import br.com.fiap.tech.facility.client.IdentityClient;
+import br.com.fiap.tech.facility.util.GeoUtil;
 import br.com.fiap.tech.facility.util.ScheduleTimeUtil;
 import br.com.fiap.tech.facility.util.StringSanitizer;
+import io.micrometer.core.instrument.Counter;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class FacilityService {
 
+    /**
+     * Máximo de unidades candidatas analisadas quando a busca filtra por vagas ou agendas
+     */
+    static final int MAX_FILTERED_CANDIDATES = 500;
+
     private final HealthcareFacilityRepository facilityRepository;
     private final DoctorScheduleRepository scheduleRepository;
     private final AdministratorFacilityRepository adminFacilityRepository;
-    private final PeopleClient peopleClient;
+    private final PeopleExistenceCache peopleExistenceCache;
     private final IdentityClient identityClient;
+    private final DoctorScheduleEventPublisher scheduleEventPublisher;
+    private final FacilityCapacityService capacityService;
+    private final FacilityGeoIndex geoIndex;
+    private final Counter overbookedAppointmentCounter;
 
     @Transactional
     public HealthcareFacility createFacility(HealthcareFacilityRequest request) {
@@ -63,8 +84,26 @@ public class FacilityService {
                 .currentLoad(0)
                 .build();
 
+        HealthcareFacility saved = facilityRepository.save(facility);
+        indexAfterCommit(saved);
         log.info("Unidade de saúde criada com sucesso");
-        return facilityRepository.save(facility);
+        return saved;
+    }
+
+    /**
+     * Inclui a unidade no índice espacial depois do commit, para não indexar unidades de transações desfeitas
+     */
+    private void indexAfterCommit(HealthcareFacility facility) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    geoIndex.upsert(facility);
+                }
+            });
+        } else {
+            geoIndex.upsert(facility);
+        }
     }
 
     @Transactional
@@ -72,7 +111,7 @@ public class FacilityService {
         log.info("Criando agenda para o médico {} na unidade {}", request.getDoctorId(), request.getFacilityId());
         
         // Verificar se o médico existe
-        peopleClient.doctorExists(request.getDoctorId());
+        peopleExistenceCache.doctorExists(request.getDoctorId());
         
         // Verificar se a unidade de saúde existe
         facilityRepository.findById(request.getFacilityId())
@@ -98,8 +137,63 @@ public class FacilityService {
             }
         }
         
+        DoctorSchedule schedule = scheduleRepository.save(newSchedule);
+        scheduleEventPublisher.publish(DoctorScheduleChangedEvent.of(DoctorScheduleChangedEvent.ChangeType.CREATED, schedule));
         log.info("Agenda criada com sucesso");
-        return scheduleRepository.save(newSchedule);
+        return schedule;
+    }
+
+    @Transactional
+    public DoctorSchedule updateDoctorSchedule(Long scheduleId, DoctorScheduleRequest request) {
+        log.info("Atualizando agenda {} do médico {}", scheduleId, request.getDoctorId());
+        
+        DoctorSchedule schedule = scheduleRepository.findById(scheduleId)
+                .orElseThrow(() -> new EntityNotFoundException("Agenda com ID " + scheduleId + " não encontrada"));
+        
+        // Verificar se o médico existe
+        peopleExistenceCache.doctorExists(request.getDoctorId());
+        
+        // Verificar se a unidade de saúde existe
+        facilityRepository.findById(request.getFacilityId())
+                .orElseThrow(() -> new EntityNotFoundException("Unidade de saúde com ID " + request.getFacilityId() + " não encontrada"));
+        
+        schedule.setDayOfWeek(request.getDayOfWeek());
+        schedule.setStartTime(request.getStartTime());
+        schedule.setEndTime(request.getEndTime());
+        schedule.setSecondPeriodStart(request.getSecondPeriodStart());
+        schedule.setSecondPeriodEnd(request.getSecondPeriodEnd());
+        schedule.setDoctorId(request.getDoctorId());
+        schedule.setFacilityId(request.getFacilityId());
+        
+        // Verificar sobreposição com as demais agendas do médico no mesmo dia da semana
+        List<DoctorSchedule> existingSchedules = scheduleRepository.findByDoctorIdAndDayOfWeek(
+                request.getDoctorId(), request.getDayOfWeek());
+        for (DoctorSchedule existingSchedule : existingSchedules) {
+            if (!existingSchedule.getId().equals(scheduleId)
+                    && ScheduleTimeUtil.hasScheduleOverlap(schedule, existingSchedule)) {
+                throw new DataIntegrityViolationException("Há sobreposição de horários com uma agenda existente do médico no mesmo dia da semana");
+            }
+        }
+        
+        schedule = scheduleRepository.saveAndFlush(schedule);
+        scheduleEventPublisher.publish(DoctorScheduleChangedEvent.of(DoctorScheduleChangedEvent.ChangeType.UPDATED, schedule));
+        log.info("Agenda {} atualizada com sucesso", scheduleId);
+        return schedule;
+    }
+
+    @Transactional
+    public void deleteDoctorSchedule(Long scheduleId) {
+        log.info("Removendo agenda {}", scheduleId);
+        
+        DoctorSchedule schedule = scheduleRepository.findById(scheduleId)
+                .orElseThrow(() -> new EntityNotFoundException("Agenda com ID " + scheduleId + " não encontrada"));
+        
+        scheduleRepository.delete(schedule);
+        DoctorScheduleChangedEvent event = DoctorScheduleChangedEvent.of(DoctorScheduleChangedEvent.ChangeType.DELETED, schedule);
+        // A exclusão é a versão mais recente da agenda; as réplicas ignoram alterações anteriores a ela
+        event.setUpdatedAt(LocalDateTime.now());
+        scheduleEventPublisher.publish(event);
+        log.info("Agenda {} removida com sucesso", scheduleId);
     }
 
     @Transactional
@@ -107,7 +201,7 @@ public class FacilityService {
         log.info("Associando administrador {} à unidade {}", request.getAdministratorId(), request.getHealthcareFacilityId());
         
         // Verificar se o administrador existe
-        peopleClient.administratorExists(request.getAdministratorId());
+        peopleExistenceCache.administratorExists(request.getAdministratorId());
         
         // Verificar se a unidade de saúde existe
         facilityRepository.findById(request.getHealthcareFacilityId())
@@ -128,17 +222,21 @@ public class FacilityService {
         return adminFacilityRepository.save(adminFacility);
     }
 
-    @Transactional
     public void handleAppointmentCreated(AppointmentCreatedEvent event) {
         log.info("Processando evento de agendamento criado: {}", event);
+        if (event.getHealthcareFacilityId() == null) {
+            return;
+        }
         
+        // O agendamento já reserva a vaga de forma síncrona; o evento só cobre reservas que não chegaram aqui,
+        // e para as demais a reserva repetida não faz nada
         try {
-            var facility = facilityRepository.findById(event.getHealthcareFacilityId())
-                    .orElseThrow(() -> new EntityNotFoundException("Facility not found with ID: " + event.getHealthcareFacilityId()));
-
-            facility.setCurrentLoad(facility.getCurrentLoad() + 1);
-            facilityRepository.save(facility);
-            log.info("Carga da unidade {} atualizada para {}", facility.getId(), facility.getCurrentLoad());
+            capacityService.reserve(event.getAppointmentId(), event.getHealthcareFacilityId(), event.getAppointmentDate());
+        } catch (DataIntegrityViolationException e) {
+            // O agendamento já foi gravado e uma nova tentativa não libera vaga: contamos para alertar a operação
+            overbookedAppointmentCounter.increment();
+            log.error("Agendamento {} gravado acima da capacidade diária da unidade {} em {}: {}",
+                    event.getAppointmentId(), event.getHealthcareFacilityId(), event.getAppointmentDate(), e.getMessage());
         } catch (EntityNotFoundException e) {
             log.error("Erro ao processar evento de agendamento criado: {}", e.getMessage());
             // Aqui poderíamos implementar um mecanismo de DLQ (Dead Letter Queue) para tratar falhas
@@ -150,6 +248,17 @@ public class FacilityService {
         }
     }
 
+    public void handleAppointmentCancelled(AppointmentCancelledEvent event) {
+        log.info("Processando evento de agendamento cancelado: {}", event);
+        
+        try {
+            capacityService.release(event.getAppointmentId(), event.getHealthcareFacilityId(), event.getAppointmentDate());
+        } catch (Exception e) {
+            log.error("Erro inesperado ao processar evento de agendamento cancelado: {}", e.getMessage(), e);
+            throw e; // Re-lançar para que o mecanismo de retry do Kafka possa tentar novamente
+        }
+    }
+
     public HealthcareFacility getFacility(Long id) {
         return facilityRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException("Facility not found"));
@@ -163,13 +272,18 @@ public class FacilityService {
         log.info("Buscando agendas do médico {}", doctorId);
         
         // Verificar se o médico existe
-        peopleClient.doctorExists(doctorId);
+        peopleExistenceCache.doctorExists(doctorId);
         
         List<DoctorSchedule> schedules = scheduleRepository.findByDoctorId(doctorId);
         log.info("Encontradas {} agendas para o médico {}", schedules.size(), doctorId);
         return schedules;
     }
 
+    public List<DoctorSchedule> getAllDoctorSchedules() {
+        log.info("Buscando todas as agendas de médicos");
+        return scheduleRepository.findAll();
+    }
+
     public List<DoctorSchedule> getFacilitySchedules(Long facilityId) {
         log.info("Buscando agendas da unidade {}", facilityId);
         
@@ -186,7 +300,7 @@ public class FacilityService {
         log.info("Buscando unidades do administrador {}", administratorId);
         
         // Verificar se o administrador existe
-        peopleClient.administratorExists(administratorId);
+        peopleExistenceCache.administratorExists(administratorId);
         
         List<AdministratorFacility> facilities = adminFacilityRepository.findByAdministratorId(administratorId);
         log.info("Encontradas {} unidades para o administrador {}", facilities.size(), administratorId);
@@ -205,53 +319,101 @@ public class FacilityService {
         return administrators; // Retorna lista vazia se não houver administradores
     }
 
+    /**
+     * Unidades mais próximas dentro do raio, pelo índice espacial em memória.
+     * Enquanto o índice não foi carregado, filtra no banco pelo retângulo que contém o raio.
+     */
     public List<NearbyFacilitiesResponse> findNearbyFacilities(Double latitude, Double longitude, Double radiusInKm, Integer limit) {
-        List<HealthcareFacility> allFacilities = facilityRepository.findAll();
-        
-        return allFacilities.stream()
-                .map(facility -> new NearbyFacilitiesResponse(
-                        facility,
-                        calculateDistance(latitude, longitude, facility.getLatitude(), facility.getLongitude())))
-                .filter(response -> response.getDistanceInKm() <= radiusInKm)
-                .sorted(java.util.Comparator.comparing(NearbyFacilitiesResponse::getDistanceInKm))
-                .limit(limit)
-                .collect(Collectors.toList());
+        return findNearbyFacilities(latitude, longitude, radiusInKm, limit, new NearbyFacilitiesFilter());
     }
 
-    private Double calculateDistance(Double lat1, Double lon1, Double lat2, Double lon2) {
-        final int R = 6371; // Earth's radius in kilometers
+    /**
+     * Unidades mais próximas dentro do raio que atendem aos filtros, com as vagas do período
+     * e os médicos com agenda no dia junto de cada unidade.
+     * O tipo é filtrado no próprio índice; vagas e agendas das candidatas vêm de uma consulta cada,
+     * em vez de uma chamada por unidade.
+     */
+    public List<NearbyFacilitiesResponse> findNearbyFacilities(Double latitude, Double longitude, Double radiusInKm,
+                                                               Integer limit, NearbyFacilitiesFilter filter) {
+        LocalDate from = filter.getFrom();
+        LocalDate to = filter.getTo() != null ? filter.getTo() : from;
+        if (from == null && to != null) {
+            throw new IllegalArgumentException("Informe a data inicial do período");
+        }
+        if (from != null) {
+            FacilityCapacityService.validateRange(from, to);
+        }
+        int minRemaining = filter.getMinRemaining() != null ? filter.getMinRemaining() : 1;
+        DayOfWeek scheduleDay = filter.getScheduleDay();
 
-        double latDistance = Math.toRadians(lat2 - lat1);
-        double lonDistance = Math.toRadians(lon2 - lon1);
+        // Vagas e agendas só são conhecidas depois da consulta ao banco: busca mais candidatas para descartar as que não servem
+        int candidates = from != null || scheduleDay != null ? Math.max(limit, MAX_FILTERED_CANDIDATES) : limit;
+        List<FacilityGeoIndex.Match> matches;
+        Map<Long, HealthcareFacility> facilities;
+        if (geoIndex.isLoaded()) {
+            matches = geoIndex.nearest(latitude, longitude, radiusInKm, candidates, filter.getFacilityType());
+            facilities = facilityRepository.findAllById(matches.stream().map(FacilityGeoIndex.Match::facilityId).toList())
+                    .stream()
+                    .collect(Collectors.toMap(HealthcareFacility::getId, Function.identity()));
+        } else {
+            List<HealthcareFacility> candidatesInBox = findWithinBoundingBox(latitude, longitude, radiusInKm).stream()
+                    .filter(facility -> filter.getFacilityType() == null || facility.getFacilityType() == filter.getFacilityType())
+                    .toList();
+            matches = FacilityGeoIndex.nearest(candidatesInBox, latitude, longitude, radiusInKm, candidates);
+            facilities = candidatesInBox.stream().collect(Collectors.toMap(HealthcareFacility::getId, Function.identity()));
+        }
 
-        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
+        Map<Long, List<DailyCapacityResponse>> availability = from != null
+                ? capacityService.getAvailability(facilities.values(), from, to)
+                : Map.of();
+        Map<Long, List<Long>> doctorIds = scheduleDay != null && !facilities.isEmpty()
+                ? scheduleRepository.findByFacilityIdInAndDayOfWeek(facilities.keySet(), scheduleDay).stream()
+                        .collect(Collectors.groupingBy(DoctorSchedule::getFacilityId, Collectors.collectingAndThen(
+                                Collectors.mapping(DoctorSchedule::getDoctorId, Collectors.toCollection(TreeSet::new)),
+                                ArrayList::new)))
+                : Map.of();
 
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        List<NearbyFacilitiesResponse> result = new ArrayList<>();
+        for (FacilityGeoIndex.Match match : matches) {
+            if (result.size() >= limit) {
+                break;
+            }
+            HealthcareFacility facility = facilities.get(match.facilityId());
+            if (facility == null) {
+                continue;
+            }
+            List<DailyCapacityResponse> days = availability.get(facility.getId());
+            if (from != null && days.stream().noneMatch(day -> day.getRemaining() >= minRemaining)) {
+                continue;
+            }
+            List<Long> doctors = doctorIds.get(facility.getId());
+            if (scheduleDay != null && doctors == null) {
+                continue;
+            }
+            result.add(new NearbyFacilitiesResponse(facility, match.distanceKm(), days, doctors));
+        }
+        return result;
+    }
 
-        return R * c;
+    private List<HealthcareFacility> findWithinBoundingBox(double latitude, double longitude, double radiusInKm) {
+        double latDelta = radiusInKm / GeoUtil.KM_PER_DEGREE;
+        double lonDelta = GeoUtil.longitudeDelta(latitude, radiusInKm);
+        double minLongitude = longitude - lonDelta;
+        double maxLongitude = longitude + lonDelta;
+        if (minLongitude < -180.0 || maxLongitude > 180.0) {
+            // O retângulo cruza o antimeridiano: filtra só pela latitude
+            minLongitude = -180.0;
+            maxLongitude = 180.0;
+        }
+        return facilityRepository.findByLatitudeBetweenAndLongitudeBetween(
+                latitude - latDelta, latitude + latDelta, minLongitude, maxLongitude);
     }
 
     /**
      * Verifica se uma unidade de saúde tem capacidade disponível para uma data específica
      */
     public boolean checkAvailabilityForDate(Long facilityId, LocalDate date) {
-        HealthcareFacility facility = getFacility(facilityId);
-        
-        // Validar capacidade configurada
-        if (facility.getMaxDailyCapacity() == null) {
-            throw new IllegalStateException("Unidade de saúde não possui capacidade máxima configurada");
-        }
-        
-        if (facility.getCurrentLoad() == null) {
-            facility.setCurrentLoad(0);
-            facilityRepository.save(facility);
-        }
-        
-        // Em uma implementação mais avançada, poderíamos ter uma tabela de carga por data
-        // Por enquanto, usamos a carga atual vs. capacidade máxima
-        return facility.getCurrentLoad() < facility.getMaxDailyCapacity();
+        return capacityService.hasCapacity(facilityId, date);
     }
 
     /**
@@ -280,33 +442,4 @@ public class FacilityService {
         
         return facility.getMaxDailyCapacity();
     }
-
-    /**
-     * Atualiza a carga atual de uma unidade de saúde
-     */
-    @Transactional
-    public void updateCurrentLoad(Long facilityId, Boolean increment) {
-        HealthcareFacility facility = getFacility(facilityId);
-        
-        if (facility.getCurrentLoad() == null) {
-            facility.setCurrentLoad(0);
-        }
-        
-        if (Boolean.TRUE.equals(increment)) {
-            // Verificar limite
-            if (facility.getMaxDailyCapacity() != null && 
-                facility.getCurrentLoad() >= facility.getMaxDailyCapacity()) {
-                throw new IllegalStateException("Unidade de saúde já está em capacidade máxima");
-            }
-            facility.setCurrentLoad(facility.getCurrentLoad() + 1);
-        } else {
-            // Decrementar, garantindo que não fique negativo
-            if (facility.getCurrentLoad() > 0) {
-                facility.setCurrentLoad(facility.getCurrentLoad() - 1);
-            }
-        }
-        
-        facilityRepository.save(facility);
-        log.info("Carga da unidade ID {} atualizada para {}", facilityId, facility.getCurrentLoad());
-    }
 }
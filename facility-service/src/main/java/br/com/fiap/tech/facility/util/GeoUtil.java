@@ -0,0 +1,41 @@
+package br.com.fiap.tech.facility.util;
+
+public class GeoUtil {
+
+    public static final double EARTH_RADIUS_KM = 6371.0;
+
+    /**
+     * Quilômetros por grau de latitude (e de longitude, no equador)
+     */
+    public static final double KM_PER_DEGREE = Math.PI * EARTH_RADIUS_KM / 180.0;
+
+    /**
+     * Distância em quilômetros entre dois pontos pela fórmula de haversine
+     */
+    public static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        double latDistance = Math.toRadians(lat2 - lat1);
+        double lonDistance = Math.toRadians(lon2 - lon1);
+
+        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
+
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+
+        return EARTH_RADIUS_KM * c;
+    }
+
+    /**
+     * Metade da largura, em graus de longitude, do retângulo que contém o círculo do raio em torno da latitude.
+     * Retorna 180 quando o círculo alcança um dos polos (todas as longitudes).
+     */
+    public static double longitudeDelta(double latitude, double radiusKm) {
+        double latDelta = radiusKm / KM_PER_DEGREE;
+        double widestLatitude = Math.min(Math.abs(latitude) + latDelta, 90.0);
+        double cos = Math.cos(Math.toRadians(widestLatitude));
+        if (cos < 1e-9) {
+            return 180.0;
+        }
+        return Math.min(radiusKm / (KM_PER_DEGREE * cos), 180.0);
+    }
+}
@@ -0,0 +1,13 @@
+-- Vagas reservadas por unidade de saúde e data. A reserva é um único INSERT ... ON CONFLICT DO UPDATE condicional
+-- (reserved < max_daily_capacity), sem ler a entidade antes: reservas simultâneas não perdem atualizações
+-- nem ultrapassam a capacidade do dia.
+
+CREATE TABLE facility_daily_capacity (
+    facility_id BIGINT NOT NULL REFERENCES healthcare_facilities(id),
+    capacity_date DATE NOT NULL,
+    reserved INTEGER NOT NULL DEFAULT 0 CHECK (reserved >= 0),
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (facility_id, capacity_date)
+);
+
+CREATE INDEX idx_facility_daily_capacity_date ON facility_daily_capacity(capacity_date);
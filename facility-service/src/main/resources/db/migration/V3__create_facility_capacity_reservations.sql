@@ -0,0 +1,12 @@
+-- Uma reserva de vaga por agendamento. A chave primária torna reserva e liberação idempotentes:
+-- a repetição do mesmo evento (reentrega do Kafka) ou da mesma chamada não altera a capacidade de novo.
+
+CREATE TABLE facility_capacity_reservations (
+    appointment_id BIGINT PRIMARY KEY,
+    facility_id BIGINT NOT NULL,
+    capacity_date DATE NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_facility_capacity_reservations_facility_date
+    ON facility_capacity_reservations(facility_id, capacity_date);
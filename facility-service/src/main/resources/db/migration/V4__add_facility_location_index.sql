@@ -0,0 +1,2 @@
+-- Índice para o filtro por retângulo de latitude/longitude da busca por proximidade sem o índice em memória
+CREATE INDEX idx_facilities_location ON healthcare_facilities(latitude, longitude);
@@ -0,0 +1,8 @@
+-- A reserva liberada continua na tabela, marcada com released_at, para que a chave do agendamento não volte
+-- a ficar livre: uma reentrega do evento de criação depois do cancelamento, ou um cancelamento que chega antes
+-- da criação (tópicos diferentes, sem ordem entre eles), não reservam de novo uma vaga que nunca seria liberada.
+-- O cancelamento que chega primeiro grava a reserva já liberada; a unidade e a data podem não ser conhecidas.
+
+ALTER TABLE facility_capacity_reservations ADD COLUMN released_at TIMESTAMP;
+ALTER TABLE facility_capacity_reservations ALTER COLUMN facility_id DROP NOT NULL;
+ALTER TABLE facility_capacity_reservations ALTER COLUMN capacity_date DROP NOT NULL;
@@ -0,0 +1,178 @@
+package br.com.fiap.tech.facility.service;
+
+import br.com.fiap.tech.facility.domain.FacilityDailyCapacity;
+import br.com.fiap.tech.facility.domain.HealthcareFacility;
+import br.com.fiap.tech.facility.dto.AvailabilityCalendarResponse;
+import br.com.fiap.tech.facility.dto.DailyCapacityResponse;
+import br.com.fiap.tech.facility.repository.FacilityCapacityReservationRepository;
+import br.com.fiap.tech.facility.repository.FacilityDailyCapacityRepository;
+import br.com.fiap.tech.facility.repository.HealthcareFacilityRepository;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class FacilityCapacityServiceTest {
+
+    private static final LocalDate DATE = LocalDate.of(2026, 11, 2);
+
+    @InjectMocks
+    private FacilityCapacityService capacityService;
+
+    @Mock
+    private FacilityDailyCapacityRepository capacityRepository;
+
+    @Mock
+    private FacilityCapacityReservationRepository reservationRepository;
+
+    @Mock
+    private HealthcareFacilityRepository facilityRepository;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    void shouldReserveCapacityOnceForAppointment() {
+        when(reservationRepository.claim(10L, 1L, DATE)).thenReturn(1);
+        when(capacityRepository.reserve(1L, DATE)).thenReturn(3);
+
+        assertTrue(capacityService.reserve(10L, 1L, DATE));
+        verify(facilityRepository).addToCurrentLoad(1L, 1);
+        verify(facilityRepository, never()).existsById(any());
+    }
+
+    @Test
+    void shouldIgnoreRepeatedReservationForAppointment() {
+        when(reservationRepository.claim(10L, 1L, DATE)).thenReturn(0);
+
+        assertFalse(capacityService.reserve(10L, 1L, DATE));
+        verifyNoInteractions(capacityRepository);
+        verify(facilityRepository, never()).addToCurrentLoad(any(), anyInt());
+    }
+
+    @Test
+    void shouldRejectReservationWhenDateIsFullyBooked() {
+        when(reservationRepository.claim(10L, 1L, DATE)).thenReturn(1);
+        when(capacityRepository.reserve(1L, DATE)).thenReturn(null);
+        when(facilityRepository.existsById(1L)).thenReturn(true);
+
+        assertThrows(DataIntegrityViolationException.class, () -> capacityService.reserve(10L, 1L, DATE));
+    }
+
+    @Test
+    void shouldRejectReservationWhenFacilityDoesNotExist() {
+        when(reservationRepository.claim(10L, 1L, DATE)).thenReturn(1);
+        when(capacityRepository.reserve(1L, DATE)).thenReturn(null);
+        when(facilityRepository.existsById(1L)).thenReturn(false);
+
+        assertThrows(EntityNotFoundException.class, () -> capacityService.reserve(10L, 1L, DATE));
+    }
+
+    @Test
+    void shouldReleaseCapacityOnlyOnceForAppointment() {
+        when(reservationRepository.release(10L)).thenReturn(1L).thenReturn(null);
+
+        assertTrue(capacityService.release(10L));
+        assertFalse(capacityService.release(10L));
+        verify(facilityRepository, times(1)).addToCurrentLoad(1L, -1);
+    }
+
+    @Test
+    void shouldIgnoreRedeliveredCreationAfterCancellation() {
+        when(reservationRepository.claim(10L, 1L, DATE)).thenReturn(1).thenReturn(0);
+        when(capacityRepository.reserve(1L, DATE)).thenReturn(1);
+        when(reservationRepository.release(10L)).thenReturn(1L);
+
+        assertTrue(capacityService.reserve(10L, 1L, DATE));
+        assertTrue(capacityService.release(10L, 1L, DATE));
+        // A reserva liberada continua registrada, então a reentrega da criação não reserva de novo
+        assertFalse(capacityService.reserve(10L, 1L, DATE));
+
+        verify(capacityRepository, times(1)).reserve(1L, DATE);
+        verify(facilityRepository, times(1)).addToCurrentLoad(1L, 1);
+        verify(facilityRepository, times(1)).addToCurrentLoad(1L, -1);
+    }
+
+    @Test
+    void shouldIgnoreCreationWhenCancellationArrivesFirst() {
+        when(reservationRepository.claimReleased(10L, 1L, DATE)).thenReturn(1);
+        when(reservationRepository.claim(10L, 1L, DATE)).thenReturn(0);
+
+        assertFalse(capacityService.release(10L, 1L, DATE));
+        assertFalse(capacityService.reserve(10L, 1L, DATE));
+
+        verify(reservationRepository, never()).release(any());
+        verifyNoInteractions(capacityRepository);
+        verify(facilityRepository, never()).addToCurrentLoad(any(), anyInt());
+    }
+
+    @Test
+    void shouldReturnEveryDayOfRangeWithRemainingCapacity() {
+        when(facilityRepository.findById(1L)).thenReturn(Optional.of(HealthcareFacility.builder().id(1L).maxDailyCapacity(5).build()));
+        when(capacityRepository.findByFacilityIdInAndCapacityDateBetween(List.of(1L), DATE, DATE.plusDays(2)))
+                .thenReturn(List.of(new FacilityDailyCapacity(1L, DATE.plusDays(1), 5, null)));
+
+        List<DailyCapacityResponse> days = capacityService.getAvailability(1L, DATE, DATE.plusDays(2));
+
+        assertEquals(3, days.size());
+        assertEquals(5, days.get(0).getRemaining());
+        assertEquals(0, days.get(1).getRemaining());
+        assertEquals(5, days.get(1).getReserved());
+        assertEquals(DATE.plusDays(2), days.get(2).getDate());
+    }
+
+    @Test
+    void shouldReportNoCapacityWhenDateIsFullyBooked() {
+        when(facilityRepository.findById(1L)).thenReturn(Optional.of(HealthcareFacility.builder().id(1L).maxDailyCapacity(5).build()));
+        when(capacityRepository.findByFacilityIdInAndCapacityDateBetween(List.of(1L), DATE, DATE))
+                .thenReturn(List.of(new FacilityDailyCapacity(1L, DATE, 5, null)));
+
+        assertFalse(capacityService.hasCapacity(1L, DATE));
+        assertTrue(capacityService.hasCapacity(1L, DATE.plusDays(1)));
+    }
+
+    @Test
+    void shouldRejectInvalidRanges() {
+        assertThrows(IllegalArgumentException.class, () -> capacityService.getAvailability(1L, DATE, DATE.minusDays(1)));
+        assertThrows(IllegalArgumentException.class, () ->
+                capacityService.getAvailability(1L, DATE, DATE.plusDays(FacilityCapacityService.MAX_RANGE_DAYS)));
+    }
+
+    @Test
+    void shouldBuildRunLengthEncodedCalendarForSeveralFacilities() {
+        when(facilityRepository.findAllById(List.of(2L, 1L))).thenReturn(List.of(
+                HealthcareFacility.builder().id(1L).maxDailyCapacity(5).build(),
+                HealthcareFacility.builder().id(2L).maxDailyCapacity(3).build()));
+        when(capacityRepository.findByFacilityIdInAndCapacityDateBetween(anyCollection(), eq(DATE), eq(DATE.plusDays(4))))
+                .thenReturn(List.of(
+                        new FacilityDailyCapacity(1L, DATE.plusDays(2), 5, null),
+                        new FacilityDailyCapacity(1L, DATE.plusDays(3), 5, null)));
+
+        AvailabilityCalendarResponse calendar = capacityService.getAvailabilityCalendar(List.of(2L, 1L, 2L), DATE, DATE.plusDays(4));
+
+        assertEquals(List.of(2L, 1L), calendar.getFacilityIds());
+        assertEquals(List.of(3, 5), calendar.getMaxDailyCapacity());
+        assertEquals(List.of(List.of(3, 5), List.of(5, 2, 0, 2, 5, 1)), calendar.getRemaining());
+        verify(capacityRepository, times(1)).findByFacilityIdInAndCapacityDateBetween(anyCollection(), any(), any());
+    }
+
+    @Test
+    void shouldRejectCalendarWithUnknownFacility() {
+        when(facilityRepository.findAllById(List.of(1L, 9L))).thenReturn(List.of(
+                HealthcareFacility.builder().id(1L).maxDailyCapacity(5).build()));
+
+        assertThrows(EntityNotFoundException.class, () -> capacityService.getAvailabilityCalendar(List.of(1L, 9L), DATE, DATE));
+    }
+}
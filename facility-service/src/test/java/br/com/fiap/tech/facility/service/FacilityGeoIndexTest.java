@@ -0,0 +1,134 @@
+package br.com.fiap.tech.facility.service;
+
+import br.com.fiap.tech.facility.domain.FacilityType;
+import br.com.fiap.tech.facility.domain.HealthcareFacility;
+import br.com.fiap.tech.facility.repository.HealthcareFacilityRepository;
+import br.com.fiap.tech.facility.util.GeoUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class FacilityGeoIndexTest {
+
+    private HealthcareFacilityRepository facilityRepository;
+    private FacilityGeoIndex geoIndex;
+
+    @BeforeEach
+    void setUp() {
+        facilityRepository = mock(HealthcareFacilityRepository.class);
+        geoIndex = new FacilityGeoIndex(facilityRepository, 0.25);
+    }
+
+    @Test
+    void shouldReturnNearestFacilitiesWithinRadiusInOrder() {
+        when(facilityRepository.findAllLocations()).thenReturn(List.of(
+                location(1L, -23.5505, -46.6333),   // São Paulo, centro
+                location(2L, -23.5874, -46.6576),   // Ibirapuera
+                location(3L, -22.9068, -43.1729),   // Rio de Janeiro
+                location(4L, -23.5329, -46.6395))); // Luz
+        geoIndex.resync();
+
+        List<FacilityGeoIndex.Match> matches = geoIndex.nearest(-23.5505, -46.6333, 10.0, 2);
+
+        assertTrue(geoIndex.isLoaded());
+        assertEquals(List.of(1L, 4L), matches.stream().map(FacilityGeoIndex.Match::facilityId).toList());
+        assertEquals(0.0, matches.get(0).distanceKm(), 1e-9);
+        assertEquals(3, geoIndex.nearest(-23.5505, -46.6333, 10.0, 10).size());
+    }
+
+    @Test
+    void shouldMatchFullScanForRandomQueries() {
+        Random random = new Random(42);
+        List<HealthcareFacility> facilities = new ArrayList<>();
+        for (long id = 1; id <= 2000; id++) {
+            facilities.add(facility(id, -34 + random.nextDouble() * 30, -74 + random.nextDouble() * 40));
+        }
+        facilities.forEach(geoIndex::upsert);
+
+        for (int i = 0; i < 50; i++) {
+            double latitude = -34 + random.nextDouble() * 30;
+            double longitude = -74 + random.nextDouble() * 40;
+            double radius = 5 + random.nextDouble() * 800;
+
+            List<Long> expected = facilities.stream()
+                    .filter(f -> GeoUtil.distanceKm(latitude, longitude, f.getLatitude(), f.getLongitude()) <= radius)
+                    .sorted(Comparator.comparingDouble(f -> GeoUtil.distanceKm(latitude, longitude, f.getLatitude(), f.getLongitude())))
+                    .limit(15)
+                    .map(HealthcareFacility::getId)
+                    .toList();
+
+            assertEquals(expected, geoIndex.nearest(latitude, longitude, radius, 15).stream()
+                    .map(FacilityGeoIndex.Match::facilityId).toList());
+        }
+    }
+
+    @Test
+    void shouldFindFacilitiesAcrossTheAntimeridian() {
+        geoIndex.upsert(facility(1L, -17.0, 179.95));
+        geoIndex.upsert(facility(2L, -17.0, -179.95));
+
+        List<FacilityGeoIndex.Match> matches = geoIndex.nearest(-17.0, 179.99, 20.0, 5);
+
+        assertEquals(List.of(1L, 2L), matches.stream().map(FacilityGeoIndex.Match::facilityId).toList());
+    }
+
+    @Test
+    void shouldMoveFacilityWhenLocationChanges() {
+        geoIndex.upsert(facility(1L, -23.55, -46.63));
+        geoIndex.upsert(facility(1L, -22.90, -43.17));
+
+        assertTrue(geoIndex.nearest(-23.55, -46.63, 50.0, 5).isEmpty());
+        assertEquals(1, geoIndex.nearest(-22.90, -43.17, 50.0, 5).size());
+    }
+
+    @Test
+    void shouldLimitResultsToFacilitiesOfRequestedType() {
+        geoIndex.upsert(facility(1L, -23.5505, -46.6333, FacilityType.CLINIC));
+        geoIndex.upsert(facility(2L, -23.5874, -46.6576, FacilityType.HOSPITAL));
+        geoIndex.upsert(facility(3L, -23.5329, -46.6395, FacilityType.HOSPITAL));
+
+        List<FacilityGeoIndex.Match> matches = geoIndex.nearest(-23.5505, -46.6333, 10.0, 1, FacilityType.HOSPITAL);
+
+        assertEquals(List.of(3L), matches.stream().map(FacilityGeoIndex.Match::facilityId).toList());
+        assertEquals(3, geoIndex.nearest(-23.5505, -46.6333, 10.0, 5, null).size());
+    }
+
+    private static HealthcareFacility facility(Long id, double latitude, double longitude) {
+        return facility(id, latitude, longitude, FacilityType.HOSPITAL);
+    }
+
+    private static HealthcareFacility facility(Long id, double latitude, double longitude, FacilityType type) {
+        return HealthcareFacility.builder().id(id).latitude(latitude).longitude(longitude).facilityType(type).build();
+    }
+
+    private static HealthcareFacilityRepository.FacilityLocation location(Long id, double latitude, double longitude) {
+        return new HealthcareFacilityRepository.FacilityLocation() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Double getLatitude() {
+                return latitude;
+            }
+
+            @Override
+            public Double getLongitude() {
+                return longitude;
+            }
+
+            @Override
+            public FacilityType getFacilityType() {
+                return FacilityType.HOSPITAL;
+            }
+        };
+    }
+}
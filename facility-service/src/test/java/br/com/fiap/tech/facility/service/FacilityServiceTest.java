@@ -1,9 +1,22 @@
 package br.com.fiap.tech.facility.service;
 
+import br.com.fiap.tech.facility.client.PeopleExistenceCache;
+import br.com.fiap.tech.facility.domain.DayOfWeek;
+import br.com.fiap.tech.facility.domain.DoctorSchedule;
+import br.com.fiap.tech.facility.domain.FacilityType;
 import br.com.fiap.tech.facility.domain.HealthcareFacility;
+import br.com.fiap.tech.facility.dto.DailyCapacityResponse;
+import br.com.fiap.tech.facility.dto.DoctorScheduleRequest;
 import br.com.fiap.tech.facility.dto.HealthcareFacilityRequest;
+import br.com.fiap.tech.facility.dto.NearbyFacilitiesFilter;
+import br.com.fiap.tech.facility.dto.NearbyFacilitiesResponse;
+import br.com.fiap.tech.facility.events.AppointmentCreatedEvent;
+import br.com.fiap.tech.facility.events.DoctorScheduleChangedEvent;
+import br.com.fiap.tech.facility.events.DoctorScheduleEventPublisher;
+import br.com.fiap.tech.facility.repository.DoctorScheduleRepository;
 import br.com.fiap.tech.facility.repository.HealthcareFacilityRepository;
 import br.com.fiap.tech.facility.util.StringSanitizer;
+import io.micrometer.core.instrument.Counter;
 import jakarta.persistence.EntityNotFoundException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -12,6 +25,11 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.dao.DataIntegrityViolationException;
 
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -25,6 +43,24 @@ class FacilityServiceTest {
     @Mock
     private HealthcareFacilityRepository facilityRepository;
 
+    @Mock
+    private DoctorScheduleRepository scheduleRepository;
+
+    @Mock
+    private PeopleExistenceCache peopleExistenceCache;
+
+    @Mock
+    private DoctorScheduleEventPublisher scheduleEventPublisher;
+
+    @Mock
+    private FacilityGeoIndex geoIndex;
+
+    @Mock
+    private FacilityCapacityService capacityService;
+
+    @Mock
+    private Counter overbookedAppointmentCounter;
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
@@ -89,4 +125,100 @@ class FacilityServiceTest {
         assertThrows(EntityNotFoundException.class, () -> facilityService.getFacility(facilityId));
         verify(facilityRepository, times(1)).findById(facilityId);
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldPublishEventWhenDoctorScheduleIsCreated() {
+        DoctorScheduleRequest request = new DoctorScheduleRequest();
+        request.setDayOfWeek(DayOfWeek.MONDAY);
+        request.setStartTime(LocalTime.of(8, 0));
+        request.setEndTime(LocalTime.of(12, 0));
+        request.setDoctorId(1L);
+        request.setFacilityId(2L);
+
+        when(facilityRepository.findById(2L)).thenReturn(Optional.of(new HealthcareFacility()));
+        when(scheduleRepository.findByDoctorIdAndDayOfWeek(1L, DayOfWeek.MONDAY)).thenReturn(Collections.emptyList());
+        when(scheduleRepository.save(any(DoctorSchedule.class))).thenAnswer(invocation -> {
+            DoctorSchedule schedule = invocation.getArgument(0);
+            schedule.setId(10L);
+            return schedule;
+        });
+
+        facilityService.createDoctorSchedule(request);
+
+        verify(scheduleEventPublisher).publish(argThat(event ->
+                event.getChangeType() == DoctorScheduleChangedEvent.ChangeType.CREATED
+                        && event.getScheduleId().equals(10L)
+                        && "MONDAY".equals(event.getDayOfWeek())));
+    }
+
+    @Test
+    void shouldPublishEventWhenDoctorScheduleIsDeleted() {
+        DoctorSchedule schedule = DoctorSchedule.builder()
+                .id(10L)
+                .dayOfWeek(DayOfWeek.MONDAY)
+                .startTime(LocalTime.of(8, 0))
+                .endTime(LocalTime.of(12, 0))
+                .doctorId(1L)
+                .facilityId(2L)
+                .build();
+
+        when(scheduleRepository.findById(10L)).thenReturn(Optional.of(schedule));
+
+        facilityService.deleteDoctorSchedule(10L);
+
+        verify(scheduleRepository).delete(schedule);
+        verify(scheduleEventPublisher).publish(argThat(event ->
+                event.getChangeType() == DoctorScheduleChangedEvent.ChangeType.DELETED
+                        && event.getScheduleId().equals(10L)
+                        && event.getUpdatedAt() != null));
+    }
+
+    @Test
+    void shouldFilterNearbyFacilitiesByCapacityAndSchedulesInOnePass() {
+        LocalDate date = LocalDate.of(2026, 11, 2);
+        HealthcareFacility full = HealthcareFacility.builder().id(1L).maxDailyCapacity(5).build();
+        HealthcareFacility noDoctors = HealthcareFacility.builder().id(2L).maxDailyCapacity(5).build();
+        HealthcareFacility available = HealthcareFacility.builder().id(3L).maxDailyCapacity(5).build();
+        when(geoIndex.isLoaded()).thenReturn(true);
+        when(geoIndex.nearest(-23.55, -46.63, 10.0, FacilityService.MAX_FILTERED_CANDIDATES, FacilityType.CLINIC))
+                .thenReturn(List.of(new FacilityGeoIndex.Match(1L, 0.5), new FacilityGeoIndex.Match(2L, 1.0),
+                        new FacilityGeoIndex.Match(3L, 2.0)));
+        when(facilityRepository.findAllById(List.of(1L, 2L, 3L))).thenReturn(List.of(full, noDoctors, available));
+        when(capacityService.getAvailability(anyCollection(), eq(date), eq(date))).thenReturn(Map.of(
+                1L, List.of(new DailyCapacityResponse(date, 5, 5, 0)),
+                2L, List.of(new DailyCapacityResponse(date, 5, 1, 4)),
+                3L, List.of(new DailyCapacityResponse(date, 5, 2, 3))));
+        when(scheduleRepository.findByFacilityIdInAndDayOfWeek(anyCollection(), eq(DayOfWeek.MONDAY))).thenReturn(List.of(
+                DoctorSchedule.builder().doctorId(20L).facilityId(1L).build(),
+                DoctorSchedule.builder().doctorId(22L).facilityId(3L).build(),
+                DoctorSchedule.builder().doctorId(21L).facilityId(3L).build(),
+                DoctorSchedule.builder().doctorId(21L).facilityId(3L).build()));
+
+        NearbyFacilitiesFilter filter = NearbyFacilitiesFilter.builder()
+                .facilityType(FacilityType.CLINIC)
+                .from(date)
+                .scheduleDay(DayOfWeek.MONDAY)
+                .build();
+        List<NearbyFacilitiesResponse> result = facilityService.findNearbyFacilities(-23.55, -46.63, 10.0, 5, filter);
+
+        assertEquals(1, result.size());
+        assertEquals(3L, result.get(0).getFacility().getId());
+        assertEquals(3, result.get(0).getAvailability().get(0).getRemaining());
+        assertEquals(List.of(21L, 22L), result.get(0).getDoctorIds());
+        verify(capacityService, times(1)).getAvailability(anyCollection(), eq(date), eq(date));
+        verify(scheduleRepository, times(1)).findByFacilityIdInAndDayOfWeek(anyCollection(), eq(DayOfWeek.MONDAY));
+    }
+
+    @Test
+    void shouldCountAppointmentRejectedByDailyCapacity() {
+        AppointmentCreatedEvent event = new AppointmentCreatedEvent();
+        event.setAppointmentId(10L);
+        event.setHealthcareFacilityId(1L);
+        event.setAppointmentDate(LocalDate.of(2026, 11, 2));
+        when(capacityService.reserve(10L, 1L, event.getAppointmentDate()))
+                .thenThrow(new DataIntegrityViolationException("sem vagas"));
+
+        assertDoesNotThrow(() -> facilityService.handleAppointmentCreated(event));
+        verify(overbookedAppointmentCounter).increment();
+    }
+}
@@ -1,13 +1,22 @@
 package br.com.fiap.tech.identity.repository;
 
 import br.com.fiap.tech.identity.domain.UserCpf;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserCpfRepository extends JpaRepository<UserCpf, Long> {
     boolean existsByCpf(String cpf);
     Optional<UserCpf> findByCpf(String cpf);
+
+    /**
+     * Próxima página dos CPFs de uma parte da sincronização, pelo resto do ID, a partir do último ID processado
+     */
+    @Query("SELECT c FROM UserCpf c WHERE MOD(c.id, :shardCount) = :shard AND c.id > :afterId ORDER BY c.id")
+    List<UserCpf> findShardPage(int shardCount, int shard, long afterId, Pageable pageable);
 } 
\ No newline at end of file
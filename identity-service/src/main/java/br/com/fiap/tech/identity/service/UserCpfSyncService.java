@@ -5,23 +5,47 @@ import br.com.fiap.tech.identity.domain.UserCpf;
 import br.com.fiap.tech.identity.domain.UserType;
 import br.com.fiap.tech.identity.repository.UserCpfRepository;
 import br.com.fiap.tech.identity.service.client.PeopleServiceClient;
-import lombok.RequiredArgsConstructor;
+import br.com.fiap.tech.jobs.ShardedJobRunner;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.retry.annotation.Backoff;
 import org.springframework.retry.annotation.Retryable;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.concurrent.TimeUnit;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.IntStream;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class UserCpfSyncService {
 
+    static final String CPF_SYNC_JOB = "cpf-synchronization";
+
     private final UserCpfRepository userCpfRepository;
     private final PeopleServiceClient peopleServiceClient;
+    private final ShardedJobRunner jobRunner;
+    private final int shardCount;
+    private final int pageSize;
+    private final Duration interval;
+
+    public UserCpfSyncService(
+            UserCpfRepository userCpfRepository,
+            PeopleServiceClient peopleServiceClient,
+            ShardedJobRunner jobRunner,
+            @Value("${identity.cpf-sync.shards:8}") int shardCount,
+            @Value("${identity.cpf-sync.page-size:200}") int pageSize,
+            @Value("${identity.cpf-sync.interval:3600000}") long intervalMillis) {
+        this.userCpfRepository = userCpfRepository;
+        this.peopleServiceClient = peopleServiceClient;
+        this.jobRunner = jobRunner;
+        this.shardCount = shardCount;
+        this.pageSize = pageSize;
+        this.interval = Duration.ofMillis(intervalMillis);
+    }
     
     /**
      * Verifica se um CPF já existe, tanto localmente quanto remotamente
@@ -90,10 +114,47 @@ public class UserCpfSyncService {
         return peopleServiceClient.checkCpfExists(cpf);
     }
     
-    @Scheduled(fixedDelay = 1, timeUnit = TimeUnit.HOURS)
+    /**
+     * Confere os CPFs registrados localmente com o people-service.
+     * Os CPFs são divididos em partes pelo resto do ID, distribuídas entre as instâncias pelo ShardedJobRunner;
+     * o último ID conferido de cada parte é gravado como checkpoint.
+     */
+    @Scheduled(fixedDelayString = "${identity.cpf-sync.interval:3600000}")
     public void synchronizeCpfs() {
         log.info("Starting CPF synchronization.");
+        List<String> shards = IntStream.range(0, shardCount).mapToObj(String::valueOf).toList();
+        try {
+            int processed = jobRunner.run(CPF_SYNC_JOB, shards, interval, this::synchronizeShard);
+            log.info("CPF synchronization finished: {} of {} shards processed by this instance.", processed, shardCount);
+        } catch (Exception e) {
+            log.error("Error during CPF synchronization: {}", e.getMessage());
+        }
+    }
+
+    void synchronizeShard(ShardedJobRunner.Shard shard) {
+        int shardIndex = Integer.parseInt(shard.name());
+        long lastId = shard.checkpoint() != null ? Long.parseLong(shard.checkpoint()) : 0L;
+        int checked = 0;
+        int missing = 0;
+
+        List<UserCpf> page;
+        do {
+            page = userCpfRepository.findShardPage(shardCount, shardIndex, lastId, PageRequest.of(0, pageSize));
+            for (UserCpf userCpf : page) {
+                checked++;
+                if (!peopleServiceClient.checkCpfExists(userCpf.getCpf())) {
+                    missing++;
+                    log.warn("CPF {} of user {} is registered locally but was not found remotely.",
+                            userCpf.getCpf(), userCpf.getUsername());
+                }
+            }
+            if (!page.isEmpty()) {
+                lastId = page.get(page.size() - 1).getId();
+                shard.checkpoint(String.valueOf(lastId));
+            }
+        } while (page.size() == pageSize);
 
+        log.info("CPF shard {} synchronized: {} checked, {} missing remotely.", shardIndex, checked, missing);
     }
 
     private String normalizeCpf(String cpf) {
@@ -0,0 +1,13 @@
+-- Partes (shards) dos jobs agendados. Cada instância reserva uma parte por vez (lease), grava o progresso
+-- (checkpoint) durante o processamento e marca a conclusão; a parte só volta a rodar depois do intervalo do job.
+-- Se a instância cair, o lease expira e outra instância retoma a parte a partir do checkpoint.
+CREATE TABLE job_shards (
+    job_name VARCHAR(100) NOT NULL,
+    shard VARCHAR(50) NOT NULL,
+    owner VARCHAR(100),
+    leased_until TIMESTAMP,
+    checkpoint VARCHAR(255),
+    last_completed_at TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (job_name, shard)
+);
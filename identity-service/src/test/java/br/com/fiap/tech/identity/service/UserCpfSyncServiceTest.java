@@ -0,0 +1,60 @@
+package br.com.fiap.tech.identity.service;
+
+import br.com.fiap.tech.identity.domain.UserCpf;
+import br.com.fiap.tech.identity.repository.UserCpfRepository;
+import br.com.fiap.tech.identity.service.client.PeopleServiceClient;
+import br.com.fiap.tech.jobs.ShardedJobRunner;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class UserCpfSyncServiceTest {
+
+    private UserCpfRepository userCpfRepository;
+    private PeopleServiceClient peopleServiceClient;
+    private ShardedJobRunner jobRunner;
+    private UserCpfSyncService userCpfSyncService;
+
+    @BeforeEach
+    void setUp() {
+        userCpfRepository = mock(UserCpfRepository.class);
+        peopleServiceClient = mock(PeopleServiceClient.class);
+        jobRunner = mock(ShardedJobRunner.class);
+        userCpfSyncService = new UserCpfSyncService(userCpfRepository, peopleServiceClient, jobRunner, 4, 2, 3600000);
+    }
+
+    @Test
+    void testSynchronizeShardResumesFromCheckpoint() {
+        ShardedJobRunner.Shard shard = mock(ShardedJobRunner.Shard.class);
+        when(shard.name()).thenReturn("1");
+        when(shard.checkpoint()).thenReturn("5");
+        when(userCpfRepository.findShardPage(4, 1, 5L, PageRequest.of(0, 2)))
+                .thenReturn(List.of(userCpf(9L, "11111111111"), userCpf(13L, "22222222222")));
+        when(userCpfRepository.findShardPage(4, 1, 13L, PageRequest.of(0, 2)))
+                .thenReturn(List.of(userCpf(17L, "33333333333")));
+        when(peopleServiceClient.checkCpfExists(anyString())).thenReturn(true);
+
+        userCpfSyncService.synchronizeShard(shard);
+
+        verify(peopleServiceClient, times(3)).checkCpfExists(anyString());
+        verify(shard).checkpoint("13");
+        verify(shard).checkpoint("17");
+        verify(userCpfRepository, never()).findShardPage(anyInt(), anyInt(), eq(0L), any());
+    }
+
+    @Test
+    void testSynchronizeCpfsRunsAllShardsThroughJobRunner() {
+        userCpfSyncService.synchronizeCpfs();
+
+        verify(jobRunner).run(eq(UserCpfSyncService.CPF_SYNC_JOB), eq(List.of("0", "1", "2", "3")), any(), any());
+    }
+
+    private UserCpf userCpf(Long id, String cpf) {
+        return UserCpf.builder().id(id).cpf(cpf).username("user" + id).build();
+    }
+}
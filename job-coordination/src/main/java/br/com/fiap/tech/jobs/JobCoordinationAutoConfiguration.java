@@ -0,0 +1,18 @@
+package br.com.fiap.tech.jobs;
+
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackage;
+import org.springframework.boot.autoconfigure.data.jpa.JpaRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.context.annotation.Import;
+
+/**
+ * Registra o ShardedJobRunner nos serviços que dependem deste módulo.
+ * O pacote é adicionado aos pacotes da aplicação para que a entidade JobShard e o JobShardRepository
+ * sejam encontrados junto com os do serviço; a tabela job_shards é criada pela migration de cada serviço.
+ */
+@AutoConfiguration(before = {HibernateJpaAutoConfiguration.class, JpaRepositoriesAutoConfiguration.class})
+@AutoConfigurationPackage
+@Import(ShardedJobRunner.class)
+public class JobCoordinationAutoConfiguration {
+}
@@ -0,0 +1,48 @@
+package br.com.fiap.tech.jobs;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Parte de um job agendado, reservada por uma instância de cada vez
+ */
+@Data
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@IdClass(JobShard.Key.class)
+@Table(name = "job_shards")
+public class JobShard {
+
+    @Id
+    private String jobName;
+
+    @Id
+    private String shard;
+
+    private String owner;
+
+    private LocalDateTime leasedUntil;
+
+    private String checkpoint;
+
+    private LocalDateTime lastCompletedAt;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String jobName;
+        private String shard;
+    }
+}
@@ -0,0 +1,69 @@
+package br.com.fiap.tech.jobs;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface JobShardRepository extends JpaRepository<JobShard, JobShard.Key> {
+
+    /**
+     * Cria a parte do job se ela ainda não existir
+     */
+    @Modifying
+    @Query(value = "INSERT INTO job_shards (job_name, shard, updated_at) VALUES (:jobName, :shard, CURRENT_TIMESTAMP) " +
+                   "ON CONFLICT (job_name, shard) DO NOTHING",
+           nativeQuery = true)
+    void register(String jobName, String shard);
+
+    /**
+     * Bloqueia a próxima parte livre do job cuja última conclusão foi até dueBefore, começando pelas mais atrasadas
+     */
+    @Query(value = "SELECT * FROM job_shards " +
+                   "WHERE job_name = :jobName AND shard IN (:shards) " +
+                   "AND (leased_until IS NULL OR leased_until < :now) " +
+                   "AND (last_completed_at IS NULL OR last_completed_at <= :dueBefore) " +
+                   "ORDER BY last_completed_at NULLS FIRST LIMIT 1 FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<JobShard> lockNextDue(String jobName, Collection<String> shards, LocalDateTime now, LocalDateTime dueBefore);
+
+    /**
+     * Instâncias que estão com alguma parte do job ou que concluíram alguma desde activeSince
+     */
+    @Query("SELECT DISTINCT s.owner FROM JobShard s WHERE s.jobName = :jobName AND s.owner IS NOT NULL " +
+           "AND (s.leasedUntil >= :now OR s.lastCompletedAt >= :activeSince)")
+    List<String> findActiveOwners(String jobName, LocalDateTime now, LocalDateTime activeSince);
+
+    /**
+     * Grava o progresso e renova o lease; não altera nada se a parte estiver com outra instância
+     */
+    @Modifying
+    @Query("UPDATE JobShard s SET s.checkpoint = :checkpoint, s.leasedUntil = :leasedUntil, s.updatedAt = :now " +
+           "WHERE s.jobName = :jobName AND s.shard = :shard AND s.owner = :owner")
+    int saveCheckpoint(String jobName, String shard, String owner, String checkpoint,
+                       LocalDateTime leasedUntil, LocalDateTime now);
+
+    /**
+     * Renova o lease sem alterar o checkpoint; não altera nada se a parte estiver com outra instância
+     */
+    @Modifying
+    @Query("UPDATE JobShard s SET s.leasedUntil = :leasedUntil, s.updatedAt = :now " +
+           "WHERE s.jobName = :jobName AND s.shard = :shard AND s.owner = :owner")
+    int renewLease(String jobName, String shard, String owner, LocalDateTime leasedUntil, LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE JobShard s SET s.checkpoint = null, s.leasedUntil = null, s.lastCompletedAt = :now, " +
+           "s.updatedAt = :now WHERE s.jobName = :jobName AND s.shard = :shard AND s.owner = :owner")
+    int markCompleted(String jobName, String shard, String owner, LocalDateTime now);
+
+    /**
+     * Libera a parte mantendo o checkpoint, para ser retomada na próxima execução
+     */
+    @Modifying
+    @Query("UPDATE JobShard s SET s.leasedUntil = null, s.updatedAt = :now " +
+           "WHERE s.jobName = :jobName AND s.shard = :shard AND s.owner = :owner")
+    int release(String jobName, String shard, String owner, LocalDateTime now);
+}
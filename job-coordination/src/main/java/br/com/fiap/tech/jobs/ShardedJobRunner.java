@@ -0,0 +1,175 @@
+package br.com.fiap.tech.jobs;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Coordena os jobs agendados entre as instâncias do serviço pela tabela job_shards.
+ * O trabalho de cada job é dividido em partes (shards); a cada execução a instância reserva (lease) uma parte livre
+ * por vez, processa e marca a conclusão, e a parte só volta a rodar depois do intervalo do job, em qualquer instância.
+ * Cada instância fica com no máximo a sua fatia das partes, dividida entre as instâncias ativas no job.
+ * O progresso gravado com {@link Shard#checkpoint(String)} sobrevive a uma queda: quando o lease expira,
+ * outra instância retoma a parte de onde parou. Gravar o checkpoint também renova o lease; partes sem progresso
+ * para retomar usam {@link Shard#renewLease()}.
+ */
+@Slf4j
+public class ShardedJobRunner {
+
+    private final JobShardRepository jobShardRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration lease;
+    private final String instanceId;
+
+    @FunctionalInterface
+    public interface ShardTask {
+        void process(Shard shard);
+    }
+
+    public ShardedJobRunner(
+            JobShardRepository jobShardRepository,
+            TransactionTemplate transactionTemplate,
+            @Value("${jobs.lease:2m}") Duration lease,
+            @Value("${jobs.instance-name:${HOSTNAME:local}}") String instanceName) {
+        this.jobShardRepository = jobShardRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.lease = lease;
+        this.instanceId = instanceName + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    /**
+     * Processa as partes do job que estão livres e cuja última conclusão tem pelo menos um intervalo
+     *
+     * @return quantidade de partes processadas por esta instância
+     */
+    public int run(String jobName, Collection<String> shards, Duration interval, ShardTask task) {
+        transactionTemplate.executeWithoutResult(status ->
+                shards.forEach(shard -> jobShardRepository.register(jobName, shard)));
+
+        int share = share(jobName, shards.size(), interval);
+        int processed = 0;
+        while (processed < share) {
+            JobShard claimed = claim(jobName, shards, interval);
+            if (claimed == null) {
+                break;
+            }
+            processed++;
+
+            Shard shard = new Shard(jobName, claimed.getShard(), claimed.getCheckpoint());
+            if (shard.checkpoint() != null) {
+                log.info("Retomando a parte {} do job {} a partir do checkpoint {}", shard.name(), jobName, shard.checkpoint());
+            }
+            try {
+                task.process(shard);
+                Integer updated = transactionTemplate.execute(status ->
+                        jobShardRepository.markCompleted(jobName, shard.name(), instanceId, LocalDateTime.now()));
+                if (updated == null || updated == 0) {
+                    log.warn("Parte {} do job {} concluída após perder o lease", shard.name(), jobName);
+                }
+            } catch (Exception e) {
+                log.error("Erro na parte {} do job {}: {}. Ela será retomada na próxima execução",
+                        shard.name(), jobName, e.getMessage());
+                transactionTemplate.executeWithoutResult(status ->
+                        jobShardRepository.release(jobName, shard.name(), instanceId, LocalDateTime.now()));
+            }
+        }
+        log.debug("Job {}: {} de {} partes processadas pela instância {}", jobName, processed, shards.size(), instanceId);
+        return processed;
+    }
+
+    String instanceId() {
+        return instanceId;
+    }
+
+    /**
+     * Fatia das partes desta instância: as partes divididas igualmente entre ela e as demais instâncias ativas
+     */
+    private int share(String jobName, int shards, Duration interval) {
+        LocalDateTime now = LocalDateTime.now();
+        long others = jobShardRepository.findActiveOwners(jobName, now, now.minus(interval.multipliedBy(2))).stream()
+                .filter(owner -> !owner.equals(instanceId))
+                .count();
+        return (int) ((shards + others) / (others + 1));
+    }
+
+    private JobShard claim(String jobName, Collection<String> shards, Duration interval) {
+        return transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<JobShard> due = jobShardRepository.lockNextDue(jobName, shards, now, now.minus(interval));
+            if (due.isEmpty()) {
+                return null;
+            }
+            JobShard shard = due.get(0);
+            shard.setOwner(instanceId);
+            shard.setLeasedUntil(now.plus(lease));
+            shard.setUpdatedAt(now);
+            return shard;
+        });
+    }
+
+    /**
+     * Parte reservada por esta instância
+     */
+    public final class Shard {
+
+        private final String jobName;
+        private final String name;
+        private String checkpoint;
+
+        private Shard(String jobName, String name, String checkpoint) {
+            this.jobName = jobName;
+            this.name = name;
+            this.checkpoint = checkpoint;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        /**
+         * Último progresso gravado, ou null se a parte está começando do início
+         */
+        public String checkpoint() {
+            return checkpoint;
+        }
+
+        /**
+         * Grava o progresso e renova o lease
+         *
+         * @throws IllegalStateException se a parte passou para outra instância
+         */
+        public void checkpoint(String value) {
+            Integer updated = transactionTemplate.execute(status -> {
+                LocalDateTime now = LocalDateTime.now();
+                return jobShardRepository.saveCheckpoint(jobName, name, instanceId, value, now.plus(lease), now);
+            });
+            requireLease(updated);
+            checkpoint = value;
+        }
+
+        /**
+         * Renova o lease sem gravar progresso, para tarefas longas que recomeçam do início quando retomadas
+         *
+         * @throws IllegalStateException se a parte passou para outra instância
+         */
+        public void renewLease() {
+            Integer updated = transactionTemplate.execute(status -> {
+                LocalDateTime now = LocalDateTime.now();
+                return jobShardRepository.renewLease(jobName, name, instanceId, now.plus(lease), now);
+            });
+            requireLease(updated);
+        }
+
+        private void requireLease(Integer updated) {
+            if (updated == null || updated == 0) {
+                throw new IllegalStateException("Lease da parte " + name + " do job " + jobName + " perdido");
+            }
+        }
+    }
+}
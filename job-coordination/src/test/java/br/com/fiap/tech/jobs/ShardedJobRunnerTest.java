@@ -0,0 +1,120 @@
+package br.com.fiap.tech.jobs;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+class ShardedJobRunnerTest {
+
+    private static final List<String> SHARDS = List.of("LAB", "SPECIALIST", "HOSPITAL");
+    private static final Duration INTERVAL = Duration.ofMinutes(5);
+
+    private JobShardRepository jobShardRepository;
+    private ShardedJobRunner jobRunner;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        jobShardRepository = mock(JobShardRepository.class);
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        doAnswer(invocation -> {
+            invocation.<Consumer<Object>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        when(jobShardRepository.markCompleted(any(), any(), any(), any())).thenReturn(1);
+        jobRunner = new ShardedJobRunner(jobShardRepository, transactionTemplate, Duration.ofMinutes(2), "node");
+    }
+
+    @Test
+    void shouldProcessOnlyThisInstanceShareOfTheShards() {
+        when(jobShardRepository.findActiveOwners(eq("job"), any(), any())).thenReturn(List.of("other-node"));
+        when(jobShardRepository.lockNextDue(eq("job"), eq(SHARDS), any(), any()))
+                .thenReturn(List.of(shard("LAB", null)), List.of(shard("HOSPITAL", null)), List.of(shard("SPECIALIST", null)));
+        List<String> processed = new ArrayList<>();
+
+        int count = jobRunner.run("job", SHARDS, INTERVAL, shard -> processed.add(shard.name()));
+
+        assertThat(count).isEqualTo(2);
+        assertThat(processed).containsExactly("LAB", "HOSPITAL");
+        verify(jobShardRepository, times(3)).register(eq("job"), anyString());
+        verify(jobShardRepository).markCompleted(eq("job"), eq("LAB"), eq(jobRunner.instanceId()), any());
+        verify(jobShardRepository).markCompleted(eq("job"), eq("HOSPITAL"), eq(jobRunner.instanceId()), any());
+    }
+
+    @Test
+    void shouldResumeFromCheckpointAndReleaseShardOnFailure() {
+        when(jobShardRepository.lockNextDue(eq("job"), eq(SHARDS), any(), any()))
+                .thenReturn(List.of(shard("LAB", "42")), List.of());
+        when(jobShardRepository.saveCheckpoint(eq("job"), eq("LAB"), any(), eq("50"), any(), any())).thenReturn(1);
+        List<String> checkpoints = new ArrayList<>();
+
+        int count = jobRunner.run("job", SHARDS, INTERVAL, shard -> {
+            checkpoints.add(shard.checkpoint());
+            shard.checkpoint("50");
+            checkpoints.add(shard.checkpoint());
+            throw new IllegalStateException("falha");
+        });
+
+        assertThat(count).isEqualTo(1);
+        assertThat(checkpoints).containsExactly("42", "50");
+        verify(jobShardRepository).release(eq("job"), eq("LAB"), eq(jobRunner.instanceId()), any());
+        verify(jobShardRepository, never()).markCompleted(any(), any(), any(), any());
+    }
+
+    @Test
+    void shouldStopWhenLeaseIsLost() {
+        when(jobShardRepository.lockNextDue(eq("job"), eq(SHARDS), any(), any()))
+                .thenReturn(List.of(shard("LAB", null)), List.of());
+        List<RuntimeException> errors = new ArrayList<>();
+
+        jobRunner.run("job", SHARDS, INTERVAL, shard ->
+                errors.add(assertThrows(IllegalStateException.class, () -> shard.checkpoint("10"))));
+
+        assertThat(errors).hasSize(1);
+    }
+
+    @Test
+    void shouldRenewLeaseWithoutTouchingCheckpoint() {
+        when(jobShardRepository.lockNextDue(eq("job"), eq(SHARDS), any(), any()))
+                .thenReturn(List.of(shard("LAB", null)), List.of());
+        when(jobShardRepository.renewLease(eq("job"), eq("LAB"), any(), any(), any())).thenReturn(1);
+        List<String> checkpoints = new ArrayList<>();
+
+        jobRunner.run("job", SHARDS, INTERVAL, shard -> {
+            shard.renewLease();
+            checkpoints.add(shard.checkpoint());
+        });
+
+        assertThat(checkpoints).containsNull();
+        verify(jobShardRepository).renewLease(eq("job"), eq("LAB"), eq(jobRunner.instanceId()), any(), any());
+        verify(jobShardRepository, never()).saveCheckpoint(any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void shouldFailLeaseRenewalAfterShardMovedToAnotherInstance() {
+        when(jobShardRepository.lockNextDue(eq("job"), eq(SHARDS), any(), any()))
+                .thenReturn(List.of(shard("LAB", null)), List.of());
+        List<RuntimeException> errors = new ArrayList<>();
+
+        jobRunner.run("job", SHARDS, INTERVAL, shard ->
+                errors.add(assertThrows(IllegalStateException.class, shard::renewLease)));
+
+        assertThat(errors).hasSize(1);
+    }
+
+    private JobShard shard(String name, String checkpoint) {
+        return JobShard.builder().jobName("job").shard(name).checkpoint(checkpoint).build();
+    }
+}
@@ -0,0 +1,107 @@
+package br.com.fiap.tech.people.existence;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import feign.FeignException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Cache das respostas do people-service para "esta pessoa existe?", chaveado por tipo de pessoa e ID.
+ * Os 404 também são guardados, com validade própria (negativeTtl); falhas de comunicação não são.
+ * Cada entrada guarda o usuário dono do cadastro, para que {@link #evictUser(Long)} possa marcá-la como inexistente.
+ *
+ * @param <T> tipos de pessoa consultados pelo serviço
+ */
+@Slf4j
+public class ExistenceCache<T> {
+
+    private record Key<T>(T type, Long id) {
+    }
+
+    private record Existence(boolean exists, Long userId) {
+    }
+
+    private static final Existence NOT_FOUND = new Existence(false, null);
+
+    private final Cache<Key<T>, Existence> cache;
+
+    public ExistenceCache(String name, MeterRegistry meterRegistry, long maximumSize, Duration ttl, Duration negativeTtl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<Key<T>, Existence>() {
+                    @Override
+                    public long expireAfterCreate(Key<T> key, Existence value, long currentTime) {
+                        return (value.exists() ? ttl : negativeTtl).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Key<T> key, Existence value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Key<T> key, Existence value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, name);
+    }
+
+    /**
+     * Confirma que a pessoa existe, consultando o people-service só quando não há resposta guardada
+     *
+     * @param lookup busca a pessoa no people-service e devolve o ID do usuário dela
+     * @throws EntityNotFoundException se a pessoa não existe ou o people-service não pôde ser consultado
+     */
+    public boolean exists(T type, Long id, Supplier<Long> lookup, String notFoundMessage) {
+        Existence existence;
+        try {
+            existence = cache.get(new Key<>(type, id), key -> {
+                try {
+                    return new Existence(true, lookup.get());
+                } catch (RuntimeException e) {
+                    if (isNotFound(e)) {
+                        return NOT_FOUND;
+                    }
+                    throw e;
+                }
+            });
+        } catch (RuntimeException e) {
+            log.warn("Erro ao verificar existência no people-service: {}", e.getMessage());
+            throw new EntityNotFoundException(notFoundMessage);
+        }
+
+        if (!existence.exists()) {
+            throw new EntityNotFoundException(notFoundMessage);
+        }
+        return true;
+    }
+
+    /**
+     * Marca como inexistentes todas as pessoas associadas ao usuário excluído
+     */
+    public void evictUser(Long userId) {
+        cache.asMap().replaceAll((key, existence) ->
+                userId.equals(existence.userId()) ? NOT_FOUND : existence);
+        log.debug("Entradas do usuário {} invalidadas no cache de existência", userId);
+    }
+
+    private boolean isNotFound(Throwable error) {
+        // Com o circuit breaker do Feign a resposta 404 pode chegar encapsulada
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof FeignException.NotFound) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
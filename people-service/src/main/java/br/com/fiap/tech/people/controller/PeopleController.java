@@ -78,6 +78,19 @@ public class PeopleController {
         return ResponseEntity.ok(peopleService.getDoctor(id));
     }
 
+    @Operation(
+        summary = "Get doctor IDs by specialty",
+        description = "Retrieves the IDs of all doctors with the given specialty (case-insensitive)"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Doctor IDs retrieved"),
+        @ApiResponse(responseCode = "400", description = "Specialty not informed")
+    })
+    @GetMapping("/doctors/ids")
+    public ResponseEntity<List<Long>> getDoctorIdsBySpecialty(@RequestParam String specialty) {
+        return ResponseEntity.ok(peopleService.getDoctorIdsBySpecialty(specialty));
+    }
+
     @Operation(
         summary = "Update doctor",
         description = "Updates doctor information. Required fields: fullName, cpf, crm, specialty. Optional fields: phoneNumber"
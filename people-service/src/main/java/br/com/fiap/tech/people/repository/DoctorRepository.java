@@ -2,11 +2,17 @@ package br.com.fiap.tech.people.repository;
 
 import br.com.fiap.tech.people.domain.Doctor;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface DoctorRepository extends JpaRepository<Doctor, Long> {
     Optional<Doctor> findByCrm(String crm);
     Optional<Doctor> findByCpf(String cpf);
     Optional<Doctor> findByUserId(Long userId);
+
+    @Query("SELECT d.id FROM Doctor d WHERE LOWER(d.specialty) = LOWER(:specialty) ORDER BY d.id")
+    List<Long> findIdsBySpecialty(@Param("specialty") String specialty);
 }
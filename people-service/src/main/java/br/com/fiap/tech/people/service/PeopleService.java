@@ -24,6 +24,8 @@ import org.springframework.util.StringUtils;
 import org.springframework.retry.annotation.Backoff;
 import org.springframework.retry.annotation.Retryable;
 
+import java.util.List;
+
 @Slf4j
 @Service
 @RequiredArgsConstructor
@@ -344,6 +346,13 @@ public class PeopleService {
                 .orElseThrow(() -> new EntityNotFoundException("Doctor not found"));
     }
 
+    public List<Long> getDoctorIdsBySpecialty(String specialty) {
+        if (specialty == null || specialty.isBlank()) {
+            throw new IllegalArgumentException("Specialty is required");
+        }
+        return doctorRepository.findIdsBySpecialty(specialty.trim());
+    }
+
     public Administrator getAdministrator(Long id) {
         return administratorRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException("Administrator not found"));
@@ -0,0 +1,2 @@
+-- Busca de médicos por especialidade (usada na busca de horários livres do scheduling-service)
+CREATE INDEX idx_doctors_specialty ON doctors (LOWER(specialty));
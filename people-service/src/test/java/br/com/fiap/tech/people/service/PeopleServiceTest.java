@@ -16,6 +16,7 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.time.LocalDate;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -258,4 +259,13 @@ class PeopleServiceTest {
         peopleService.handleUserCreated(adminEvent);
         verify(administratorRepository).save(any(Administrator.class));
     }
-} 
\ No newline at end of file
+
+    @Test
+    @DisplayName("Deve buscar os IDs dos médicos de uma especialidade")
+    void shouldFindDoctorIdsBySpecialty() {
+        when(doctorRepository.findIdsBySpecialty("Cardiologia")).thenReturn(List.of(1L, 4L));
+
+        assertEquals(List.of(1L, 4L), peopleService.getDoctorIdsBySpecialty(" Cardiologia "));
+        assertThrows(IllegalArgumentException.class, () -> peopleService.getDoctorIdsBySpecialty(" "));
+    }
+}
@@ -0,0 +1,45 @@
+package br.com.fiap.tech.scheduling.client;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Cache dos médicos de cada especialidade, consultados no people-service.
+ * A busca de horários livres filtra por especialidade a cada chamada; a lista muda raramente.
+ */
+@Component
+public class DoctorSpecialtyCache {
+
+    private final PeopleClient peopleClient;
+    private final Cache<String, Set<Long>> cache;
+
+    public DoctorSpecialtyCache(
+            PeopleClient peopleClient,
+            MeterRegistry meterRegistry,
+            @Value("${people.specialty-cache.maximum-size:500}") long maximumSize,
+            @Value("${people.specialty-cache.ttl:5m}") Duration ttl) {
+        this.peopleClient = peopleClient;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "people.specialty");
+    }
+
+    /**
+     * Retorna os IDs dos médicos da especialidade (sem diferenciar maiúsculas e minúsculas)
+     */
+    public Set<Long> getDoctorIds(String specialty) {
+        String key = specialty.trim().toLowerCase(Locale.ROOT);
+        return cache.get(key, k -> Set.copyOf(peopleClient.getDoctorIdsBySpecialty(specialty.trim())));
+    }
+}
@@ -1,10 +1,13 @@
 package br.com.fiap.tech.scheduling.client;
 
 import br.com.fiap.tech.scheduling.config.FeignConfig;
+import br.com.fiap.tech.scheduling.dto.AvailabilityCalendarResponse;
+import br.com.fiap.tech.scheduling.dto.DailyCapacityDTO;
 import br.com.fiap.tech.scheduling.dto.NearbyFacilityResponse;
 import br.com.fiap.tech.scheduling.dto.DoctorScheduleDTO;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PutMapping;
@@ -22,12 +25,20 @@ import java.util.List;
 )
 public interface FacilityClient {
 
+    /**
+     * Unidades próximas; os filtros opcionais (tipo, vagas no período de from a to e médicos com agenda
+     * no dia da semana) são aplicados pela própria busca, que devolve as vagas e os médicos de cada unidade
+     */
     @GetMapping("/api/v1/facilities/nearby")
     List<NearbyFacilityResponse> findNearbyFacilities(
             @RequestParam Double latitude,
             @RequestParam Double longitude,
             @RequestParam(required = false) Double radiusInKm,
-            @RequestParam(required = false) Integer limit);
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String facilityType,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String scheduleDay);
             
     @GetMapping("/api/v1/facilities/{facilityId}/current-load")
     Integer getCurrentLoad(@PathVariable("facilityId") Long facilityId);
@@ -35,18 +46,52 @@ public interface FacilityClient {
     @GetMapping("/api/v1/facilities/{facilityId}/max-capacity")
     Integer getMaxDailyCapacity(@PathVariable("facilityId") Long facilityId);
 
-    @PutMapping("/api/v1/facilities/{facilityId}/current-load")
-    void updateCurrentLoad(
-        @PathVariable("facilityId") Long facilityId,
-        @RequestParam("increment") Boolean increment
-    );
-
     @GetMapping("/api/v1/facilities/{facilityId}/available")
     Boolean checkAvailabilityForDate(
         @PathVariable("facilityId") Long facilityId,
         @RequestParam("date") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date
     );
     
+    /**
+     * Vagas restantes de várias unidades em cada dia do intervalo, em uma única chamada
+     */
+    @GetMapping("/api/v1/facilities/availability")
+    AvailabilityCalendarResponse getAvailabilityCalendar(
+        @RequestParam("ids") List<Long> facilityIds,
+        @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+        @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    );
+
+    /**
+     * Vagas reservadas e restantes da unidade em cada dia do intervalo
+     */
+    @GetMapping("/api/v1/facilities/{facilityId}/availability")
+    List<DailyCapacityDTO> getAvailability(
+        @PathVariable("facilityId") Long facilityId,
+        @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+        @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    );
+
+    /**
+     * Reserva uma vaga da unidade na data para o agendamento; responde 409 se a unidade não tem mais vagas.
+     * Repetir a chamada para o mesmo agendamento não reserva outra vaga
+     */
+    @PutMapping("/api/v1/facilities/{facilityId}/capacity/reservations/{appointmentId}")
+    void reserveCapacity(
+        @PathVariable("facilityId") Long facilityId,
+        @PathVariable("appointmentId") Long appointmentId,
+        @RequestParam("date") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date
+    );
+
+    /**
+     * Libera a vaga do agendamento; feita antes da reserva, faz a reserva posterior não ter efeito
+     */
+    @DeleteMapping("/api/v1/facilities/capacity/reservations/{appointmentId}")
+    void releaseCapacity(@PathVariable("appointmentId") Long appointmentId);
+
+    @GetMapping("/api/v1/facilities/schedules")
+    List<DoctorScheduleDTO> getAllDoctorSchedules();
+
     @GetMapping("/api/v1/facilities/schedules/doctor/{doctorId}")
     List<DoctorScheduleDTO> getDoctorSchedules(@PathVariable("doctorId") Long doctorId);
 }
@@ -7,6 +7,9 @@ import jakarta.persistence.EntityNotFoundException;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.util.List;
 
 @FeignClient(
     name = "scheduling-people-client", 
@@ -20,6 +23,9 @@ public interface PeopleClient {
     
     @GetMapping("/api/v1/people/patients/{id}")
     PatientResponse getPatient(@PathVariable("id") Long id);
+
+    @GetMapping("/api/v1/people/doctors/ids")
+    List<Long> getDoctorIdsBySpecialty(@RequestParam("specialty") String specialty);
     
     default boolean doctorExists(Long id) {
         try {
@@ -0,0 +1,51 @@
+package br.com.fiap.tech.scheduling.client;
+
+import br.com.fiap.tech.people.existence.ExistenceCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Validação de pacientes e médicos nos agendamentos, encaminhamentos e consultas de histórico.
+ * Essas validações se repetem a cada requisição para os mesmos IDs, então as respostas ficam no cache.
+ * O UserEventConsumer invalida as entradas do usuário excluído.
+ */
+@Component
+public class PeopleExistenceCache {
+
+    enum PersonType {
+        DOCTOR,
+        PATIENT
+    }
+
+    private final PeopleClient peopleClient;
+    private final ExistenceCache<PersonType> cache;
+
+    public PeopleExistenceCache(
+            PeopleClient peopleClient,
+            MeterRegistry meterRegistry,
+            @Value("${people.existence-cache.maximum-size:10000}") long maximumSize,
+            @Value("${people.existence-cache.ttl:10m}") Duration ttl,
+            @Value("${people.existence-cache.negative-ttl:30s}") Duration negativeTtl) {
+        this.peopleClient = peopleClient;
+        this.cache = new ExistenceCache<>("people.existence", meterRegistry, maximumSize, ttl, negativeTtl);
+    }
+
+    public boolean doctorExists(Long id) {
+        return cache.exists(PersonType.DOCTOR, id,
+                () -> peopleClient.getDoctor(id).getUserId(),
+                "Médico com ID " + id + " não encontrado");
+    }
+
+    public boolean patientExists(Long id) {
+        return cache.exists(PersonType.PATIENT, id,
+                () -> peopleClient.getPatient(id).getUserId(),
+                "Paciente com ID " + id + " não encontrado");
+    }
+
+    public void evictUser(Long userId) {
+        cache.evictUser(userId);
+    }
+}
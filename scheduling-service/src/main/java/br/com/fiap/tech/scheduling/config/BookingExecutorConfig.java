@@ -0,0 +1,55 @@
+package br.com.fiap.tech.scheduling.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Executor usado para disparar em paralelo as validações remotas de um agendamento.
+ * Com scheduling.booking.parallel-validation=false as validações rodam em sequência na própria thread da requisição.
+ */
+@Configuration
+public class BookingExecutorConfig {
+
+    @Bean
+    public TaskExecutor bookingValidationExecutor(
+            @Value("${scheduling.booking.parallel-validation:true}") boolean parallelValidation,
+            @Value("${scheduling.booking.validation-pool-size:16}") int poolSize,
+            @Value("${scheduling.booking.validation-queue-capacity:64}") int queueCapacity) {
+        if (!parallelValidation) {
+            return new SyncTaskExecutor();
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("booking-validation-");
+        // Com a fila cheia a validação roda na thread da requisição em vez de ser rejeitada
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Executor do reaproveitamento dos horários cancelados pela lista de espera, fora da thread da requisição.
+     * Com a fila cheia a tarefa é descartada e o horário continua livre para novos agendamentos.
+     */
+    @Bean
+    public TaskExecutor waitlistBackfillExecutor(
+            @Value("${scheduling.waitlist.backfill-pool-size:2}") int poolSize,
+            @Value("${scheduling.waitlist.backfill-queue-capacity:500}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("waitlist-backfill-");
+        executor.initialize();
+        return executor;
+    }
+}
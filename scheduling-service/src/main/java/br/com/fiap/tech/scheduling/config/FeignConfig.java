@@ -1,6 +1,8 @@
 package br.com.fiap.tech.scheduling.config;
 
+import feign.Capability;
 import feign.Logger;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -11,4 +13,9 @@ public class FeignConfig {
     Logger.Level feignLoggerLevel() {
         return Logger.Level.FULL;
     }
-} 
\ No newline at end of file
+
+    @Bean
+    Capability feignMetricsCapability(MeterRegistry meterRegistry) {
+        return new FeignMetricsCapability(meterRegistry);
+    }
+}
@@ -0,0 +1,55 @@
+package br.com.fiap.tech.scheduling.config;
+
+import feign.Capability;
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Mede as chamadas dos clientes Feign (timer scheduling.client.requests), com as tags client (nome do FeignClient),
+ * method (método da interface) e outcome (SUCCESS, CLIENT_ERROR, SERVER_ERROR ou IO_ERROR)
+ */
+public class FeignMetricsCapability implements Capability {
+
+    static final String TIMER_NAME = "scheduling.client.requests";
+
+    private final MeterRegistry meterRegistry;
+
+    public FeignMetricsCapability(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Client enrich(Client client) {
+        return (request, options) -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            String outcome = "IO_ERROR";
+            try {
+                Response response = client.execute(request, options);
+                outcome = outcome(response.status());
+                return response;
+            } finally {
+                sample.stop(timer(request, outcome));
+            }
+        };
+    }
+
+    private Timer timer(Request request, String outcome) {
+        return Timer.builder(TIMER_NAME)
+                .description("Duração das chamadas aos outros serviços")
+                .tag("client", request.requestTemplate().feignTarget().name())
+                .tag("method", request.requestTemplate().methodMetadata().configKey())
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private static String outcome(int status) {
+        if (status >= 500) {
+            return "SERVER_ERROR";
+        }
+        return status >= 400 ? "CLIENT_ERROR" : "SUCCESS";
+    }
+}
@@ -3,8 +3,15 @@ package br.com.fiap.tech.scheduling.controller;
 import br.com.fiap.tech.scheduling.domain.*;
 import br.com.fiap.tech.scheduling.dto.*;
 import br.com.fiap.tech.scheduling.service.SchedulingService;
+import br.com.fiap.tech.scheduling.service.AppointmentConflictIndex;
+import br.com.fiap.tech.scheduling.service.BatchAppointmentService;
 import br.com.fiap.tech.scheduling.service.PriorityService;
 import br.com.fiap.tech.scheduling.service.AppointmentPriorityService;
+import br.com.fiap.tech.scheduling.service.DoctorScheduleReadModel;
+import br.com.fiap.tech.scheduling.service.IdempotencyService;
+import br.com.fiap.tech.scheduling.service.SlotSearchService;
+import br.com.fiap.tech.scheduling.service.WaitlistService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
@@ -12,11 +19,17 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import io.swagger.v3.oas.annotations.Hidden;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.function.Consumer;
 
 @RestController
 @RequestMapping("/api/v1/scheduling")
@@ -25,35 +38,71 @@ import java.util.List;
 public class SchedulingController {
 
     private final SchedulingService schedulingService;
+    private final BatchAppointmentService batchAppointmentService;
     private final PriorityService priorityService;
     private final AppointmentPriorityService appointmentPriorityService;
+    private final DoctorScheduleReadModel doctorScheduleReadModel;
+    private final SlotSearchService slotSearchService;
+    private final AppointmentConflictIndex appointmentConflictIndex;
+    private final IdempotencyService idempotencyService;
+    private final WaitlistService waitlistService;
+    private final ObjectMapper objectMapper;
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
 
     @Operation(
         summary = "Criar agendamento",
-        description = "Cria um novo agendamento para um paciente com um médico em uma unidade de saúde"
+        description = "Cria um novo agendamento para um paciente com um médico em uma unidade de saúde. "
+                + "Com o cabeçalho Idempotency-Key, repetições da mesma requisição devolvem o agendamento já criado"
     )
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Agendamento criado com sucesso"),
-        @ApiResponse(responseCode = "400", description = "Dados inválidos ou conflito de agendamento"),
-        @ApiResponse(responseCode = "404", description = "Paciente ou médico não encontrado")
+        @ApiResponse(responseCode = "400", description = "Dados inválidos, conflito de agendamento ou Idempotency-Key usada com outra requisição"),
+        @ApiResponse(responseCode = "404", description = "Paciente ou médico não encontrado"),
+        @ApiResponse(responseCode = "409", description = "Requisição com a mesma Idempotency-Key ainda em processamento ou sem resultado confirmado")
     })
     @PostMapping("/appointments")
-    public ResponseEntity<Appointment> createAppointment(@RequestBody AppointmentRequest request) {
-        return ResponseEntity.ok(schedulingService.createAppointment(request));
+    public ResponseEntity<Appointment> createAppointment(
+            @RequestBody AppointmentRequest request,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey
+    ) {
+        return ResponseEntity.ok(idempotencyService.execute(IdempotencyService.APPOINTMENT_SCOPE, idempotencyKey,
+                request, Appointment.class, () -> schedulingService.createAppointment(request)));
+    }
+
+    @Operation(
+        summary = "Criar agendamentos em lote",
+        description = "Cria vários agendamentos de uma vez (campanhas de vacinação, coletas). "
+                + "Cada item é validado de forma independente e recebe seu próprio resultado, na ordem do pedido"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Lote processado; consulte o status de cada item"),
+        @ApiResponse(responseCode = "400", description = "Lote vazio ou acima do tamanho máximo")
+    })
+    @PostMapping("/appointments:batch")
+    public ResponseEntity<List<BatchAppointmentResult>> createAppointments(@RequestBody List<AppointmentRequest> requests) {
+        return ResponseEntity.ok(batchAppointmentService.createAppointments(requests));
     }
 
     @Operation(
         summary = "Create referral",
-        description = "Creates a new referral for a patient to a specialist"
+        description = "Creates a new referral for a patient to a specialist. "
+                + "With an Idempotency-Key header, retries of the same request return the referral already created"
     )
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Referral created successfully"),
-        @ApiResponse(responseCode = "400", description = "Invalid input data"),
-        @ApiResponse(responseCode = "404", description = "Patient or doctor not found")
+        @ApiResponse(responseCode = "400", description = "Invalid input data or Idempotency-Key reused with another request"),
+        @ApiResponse(responseCode = "404", description = "Patient or doctor not found"),
+        @ApiResponse(responseCode = "409", description = "Request with the same Idempotency-Key still in progress or its result is unconfirmed")
     })
     @PostMapping("/referrals")
-    public ResponseEntity<Referral> createReferral(@RequestBody ReferralRequest request) {
-        return ResponseEntity.ok(schedulingService.createReferral(request));
+    public ResponseEntity<Referral> createReferral(
+            @RequestBody ReferralRequest request,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey
+    ) {
+        return ResponseEntity.ok(idempotencyService.execute(IdempotencyService.REFERRAL_SCOPE, idempotencyKey,
+                request, Referral.class, () -> schedulingService.createReferral(request)));
     }
 
     @Operation(
@@ -110,6 +159,91 @@ public class SchedulingController {
         return ResponseEntity.ok(schedulingService.getDoctorAppointments(doctorId));
     }
 
+    @Operation(
+        summary = "Get patient appointment history page",
+        description = "Retrieves one page of a patient's appointments in the given period, most recent first, "
+                    + "with only the appointment fields. Prefer it over the full list for long histories"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Appointments retrieved successfully"),
+        @ApiResponse(responseCode = "400", description = "Invalid period, page or page size"),
+        @ApiResponse(responseCode = "404", description = "Patient not found")
+    })
+    @GetMapping("/appointments/patient/{patientId}/history")
+    public ResponseEntity<AppointmentHistoryPage> getPatientAppointmentHistory(
+            @PathVariable Long patientId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size
+    ) {
+        return ResponseEntity.ok(schedulingService.getPatientAppointmentHistory(patientId, from, to, page, size));
+    }
+
+    @Operation(
+        summary = "Get doctor appointment history page",
+        description = "Retrieves one page of a doctor's appointments in the given period in calendar order, "
+                    + "with only the appointment fields. Prefer it over the full list for calendar views"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Appointments retrieved successfully"),
+        @ApiResponse(responseCode = "400", description = "Invalid period, page or page size"),
+        @ApiResponse(responseCode = "404", description = "Doctor not found")
+    })
+    @GetMapping("/appointments/doctor/{doctorId}/history")
+    public ResponseEntity<AppointmentHistoryPage> getDoctorAppointmentHistory(
+            @PathVariable Long doctorId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size
+    ) {
+        return ResponseEntity.ok(schedulingService.getDoctorAppointmentHistory(doctorId, from, to, page, size));
+    }
+
+    @Operation(
+        summary = "Join doctor waitlist",
+        description = "Puts a pending referral on the waitlist of a doctor for a date. When an appointment of the "
+                    + "doctor on that date is cancelled, the freed slot is booked for the highest priority referral on the list"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Referral added to the waitlist"),
+        @ApiResponse(responseCode = "400", description = "Missing fields or past date"),
+        @ApiResponse(responseCode = "404", description = "Referral not found"),
+        @ApiResponse(responseCode = "409", description = "Referral not pending or already on the waitlist")
+    })
+    @PostMapping("/waitlist")
+    public ResponseEntity<WaitlistEntry> joinWaitlist(@RequestBody WaitlistRequest request) {
+        return ResponseEntity.ok(waitlistService.join(request));
+    }
+
+    @Operation(
+        summary = "Get doctor waitlist",
+        description = "Retrieves the pending referrals on the waitlist of a doctor for a date, ordered by priority score"
+    )
+    @ApiResponse(responseCode = "200", description = "Waitlist retrieved successfully")
+    @GetMapping("/waitlist/doctor/{doctorId}")
+    public ResponseEntity<List<ReferralWithPriorityDTO>> getWaitlist(
+            @PathVariable Long doctorId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date
+    ) {
+        return ResponseEntity.ok(waitlistService.getWaitlist(doctorId, date));
+    }
+
+    @Operation(
+        summary = "Leave waitlist",
+        description = "Removes an entry from the waitlist"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "204", description = "Entry removed"),
+        @ApiResponse(responseCode = "404", description = "Entry not found")
+    })
+    @DeleteMapping("/waitlist/{entryId}")
+    public ResponseEntity<Void> leaveWaitlist(@PathVariable Long entryId) {
+        waitlistService.leave(entryId);
+        return ResponseEntity.noContent().build();
+    }
+
     @Operation(
         summary = "Get patient referrals",
         description = "Retrieves all referrals for a specific patient"
@@ -130,9 +264,47 @@ public class SchedulingController {
         return ResponseEntity.ok(schedulingService.getDoctorReferrals(doctorId));
     }
 
+    @Operation(
+        summary = "Buscar horários livres",
+        description = "Lista os próximos horários livres por médico ou especialidade, período e localização, "
+                + "ordenados pelo horário mais cedo (EARLIEST) ou pela unidade mais próxima (DISTANCE)"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Horários livres encontrados"),
+        @ApiResponse(responseCode = "400", description = "Parâmetros de busca inválidos")
+    })
+    @GetMapping("/slots")
+    public ResponseEntity<List<AvailableSlotDTO>> searchAvailableSlots(
+            @RequestParam(required = false) String specialty,
+            @RequestParam(required = false) Long doctorId,
+            @RequestParam(required = false) Double latitude,
+            @RequestParam(required = false) Double longitude,
+            @RequestParam(defaultValue = "10.0") Double radiusInKm,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(defaultValue = "14") int days,
+            @RequestParam(defaultValue = "30") int durationMinutes,
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(defaultValue = "EARLIEST") SlotSearchRequest.Order orderBy) {
+        SlotSearchRequest request = SlotSearchRequest.builder()
+                .specialty(specialty)
+                .doctorId(doctorId)
+                .latitude(latitude)
+                .longitude(longitude)
+                .radiusInKm(radiusInKm)
+                .from(from)
+                .days(days)
+                .durationMinutes(durationMinutes)
+                .limit(limit)
+                .orderBy(orderBy)
+                .build();
+        return ResponseEntity.ok(slotSearchService.search(request));
+    }
+
     @Operation(
         summary = "Find nearby facilities for referral",
-        description = "Finds healthcare facilities near a patient's location for referral purposes"
+        description = "Finds healthcare facilities near a patient's location for referral purposes. " +
+                    "Optionally filters by facility type and, given a date, keeps only facilities with remaining " +
+                    "capacity and doctors scheduled on that date, returning both inline"
     )
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "List of nearby facilities retrieved successfully"),
@@ -143,8 +315,11 @@ public class SchedulingController {
             @RequestParam Double latitude,
             @RequestParam Double longitude,
             @RequestParam(defaultValue = "10.0") Double radiusInKm,
-            @RequestParam(defaultValue = "10") Integer limit) {
-        return ResponseEntity.ok(schedulingService.findNearbyFacilitiesForReferral(latitude, longitude, radiusInKm, limit));
+            @RequestParam(defaultValue = "10") Integer limit,
+            @RequestParam(required = false) String facilityType,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        return ResponseEntity.ok(schedulingService.findNearbyFacilitiesForReferral(
+                latitude, longitude, radiusInKm, limit, facilityType, date));
     }
 
     @Operation(
@@ -176,6 +351,36 @@ public class SchedulingController {
         return ResponseEntity.ok(priorityService.getPrioritizedReferralsByType(referralType));
     }
 
+    @Operation(
+        summary = "Get prioritized referral queue page",
+        description = "Retrieves one page of pending referrals ordered by priority score, requested date and id. " +
+                    "Pass the returned nextCursor to get the following page; it is null on the last page."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Referrals retrieved successfully"),
+        @ApiResponse(responseCode = "400", description = "Invalid cursor, page size or referral type")
+    })
+    @GetMapping("/referrals/queue/page")
+    public ResponseEntity<PriorityQueuePage<ReferralWithPriorityDTO>> getPrioritizedReferralsPage(
+            @RequestParam(required = false) ReferralType referralType,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size
+    ) {
+        return ResponseEntity.ok(priorityService.getPrioritizedReferralsPage(referralType, cursor, size));
+    }
+
+    @Operation(
+        summary = "Stream prioritized referral queue",
+        description = "Streams all pending referrals ordered by priority as newline-delimited JSON (one referral per line)"
+    )
+    @ApiResponse(responseCode = "200", description = "Referrals streamed successfully")
+    @GetMapping(value = "/referrals/queue/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> streamPrioritizedReferrals(
+            @RequestParam(required = false) ReferralType referralType
+    ) {
+        return ndjson(out -> priorityService.streamPrioritizedReferrals(referralType, writeLine(out)));
+    }
+
     @Hidden
     @Operation(
         summary = "Get next highest priority referral",
@@ -191,6 +396,36 @@ public class SchedulingController {
         return ResponseEntity.ok(nextReferral);
     }
 
+    @Operation(
+        summary = "Get doctor occupancy for a date",
+        description = "Returns the in-memory occupancy bitmap (5-minute slots) kept for the doctor on the given date, " +
+                    "along with the busy periods. Useful for diagnostics and calendar views."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Occupancy returned")
+    })
+    @GetMapping("/doctors/{doctorId}/occupancy")
+    public ResponseEntity<DoctorDayOccupancyDTO> getDoctorOccupancy(
+            @PathVariable Long doctorId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        return ResponseEntity.ok(appointmentConflictIndex.describe(doctorId, date));
+    }
+
+    @Hidden
+    @Operation(
+        summary = "Resync doctor schedules",
+        description = "Rebuilds the local copy of doctor schedules from the facility service. " +
+                    "For internal use by system operators when schedule events were lost."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Number of schedules loaded"),
+        @ApiResponse(responseCode = "503", description = "Facility service unavailable")
+    })
+    @PostMapping("/doctor-schedules/resync")
+    public ResponseEntity<Integer> resyncDoctorSchedules() {
+        return ResponseEntity.ok(doctorScheduleReadModel.resync());
+    }
+
     @Operation(
         summary = "Cancel appointment",
         description = "Cancels an existing appointment and releases capacity in the healthcare facility. " +
@@ -239,6 +474,36 @@ public class SchedulingController {
         return ResponseEntity.ok(appointmentPriorityService.getPrioritizedAppointmentsByDate(date));
     }
 
+    @Operation(
+        summary = "Get prioritized appointments queue page",
+        description = "Retrieves one page of scheduled appointments ordered by priority score, appointment date/time and id. " +
+                    "Pass the returned nextCursor to get the following page; it is null on the last page."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Appointments retrieved successfully"),
+        @ApiResponse(responseCode = "400", description = "Invalid cursor, page size or date")
+    })
+    @GetMapping("/appointments/queue/page")
+    public ResponseEntity<PriorityQueuePage<AppointmentWithPriorityDTO>> getPrioritizedAppointmentsPage(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size
+    ) {
+        return ResponseEntity.ok(appointmentPriorityService.getPrioritizedAppointmentsPage(date, cursor, size));
+    }
+
+    @Operation(
+        summary = "Stream prioritized appointments queue",
+        description = "Streams all scheduled appointments ordered by priority as newline-delimited JSON (one appointment per line)"
+    )
+    @ApiResponse(responseCode = "200", description = "Appointments streamed successfully")
+    @GetMapping(value = "/appointments/queue/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> streamPrioritizedAppointments(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date
+    ) {
+        return ndjson(out -> appointmentPriorityService.streamPrioritizedAppointments(date, writeLine(out)));
+    }
+
     @Hidden
     @Operation(
         summary = "Get next highest priority appointment",
@@ -253,4 +518,19 @@ public class SchedulingController {
         }
         return ResponseEntity.ok(nextAppointment);
     }
-}
\ No newline at end of file
+
+    private ResponseEntity<StreamingResponseBody> ndjson(StreamingResponseBody body) {
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    private <T> Consumer<T> writeLine(OutputStream out) {
+        return item -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(item));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+}
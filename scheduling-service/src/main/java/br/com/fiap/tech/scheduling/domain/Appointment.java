@@ -18,8 +18,10 @@ import java.time.LocalDateTime;
 @Table(name = "appointments")
 public class Appointment {
     
+    // IDs reservados em blocos de 50 para permitir inserts em lote (IDENTITY desativa o batch do Hibernate)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "appointments_id_seq")
+    @SequenceGenerator(name = "appointments_id_seq", sequenceName = "appointments_id_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false)
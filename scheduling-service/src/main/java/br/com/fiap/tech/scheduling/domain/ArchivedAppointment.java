@@ -0,0 +1,59 @@
+package br.com.fiap.tech.scheduling.domain;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * Agendamento de um mês já arquivado (partições movidas para o schema appointments_archive).
+ * Somente leitura: os meses só são arquivados quando todos os agendamentos já terminaram.
+ */
+@Data
+@Entity
+@Immutable
+@NoArgsConstructor
+@Table(schema = "appointments_archive", name = "appointments")
+public class ArchivedAppointment {
+
+    @Id
+    private Long id;
+
+    @Column(nullable = false)
+    private LocalDate appointmentDate;
+
+    @Column(nullable = false)
+    private LocalTime startTime;
+
+    @Column(nullable = false)
+    private LocalTime endTime;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private AppointmentType appointmentType;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private AppointmentStatus status;
+
+    @Column(nullable = false)
+    private Long patientId;
+
+    @Column(nullable = false)
+    private Long doctorId;
+
+    private Long healthcareFacilityId;
+
+    private Long referralId;
+
+    @Enumerated(EnumType.STRING)
+    private PriorityLevel priorityLevel;
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime updatedAt;
+}
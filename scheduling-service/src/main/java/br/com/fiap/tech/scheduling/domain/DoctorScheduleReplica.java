@@ -0,0 +1,53 @@
+package br.com.fiap.tech.scheduling.domain;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * Cópia local de uma agenda de médico mantida pelo facility-service.
+ * O ID é o mesmo da agenda de origem.
+ */
+@Data
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "doctor_schedule_replicas")
+public class DoctorScheduleReplica {
+
+    @Id
+    private Long id;
+
+    @Column(nullable = false)
+    private Long doctorId;
+
+    @Column(nullable = false)
+    private Long facilityId;
+
+    @Column(nullable = false)
+    private String dayOfWeek;
+
+    @Column(nullable = false)
+    private LocalTime startTime;
+
+    @Column(nullable = false)
+    private LocalTime endTime;
+
+    private LocalTime secondPeriodStart;
+
+    private LocalTime secondPeriodEnd;
+
+    private LocalDateTime updatedAt;
+
+    /**
+     * Agenda excluída no facility-service; a linha fica como marcação, com a versão da exclusão em updatedAt
+     */
+    @Column(nullable = false)
+    private boolean deleted;
+}
@@ -0,0 +1,52 @@
+package br.com.fiap.tech.scheduling.domain;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Chave de idempotência de uma requisição de criação e a resposta gravada da primeira execução
+ */
+@Data
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@IdClass(IdempotencyKey.Key.class)
+@Table(name = "idempotency_keys")
+public class IdempotencyKey {
+
+    @Id
+    private String scope;
+
+    @Id
+    private String idempotencyKey;
+
+    @Column(nullable = false)
+    private String requestHash;
+
+    private String owner;
+
+    private LocalDateTime lockedUntil;
+
+    private String responseBody;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String scope;
+        private String idempotencyKey;
+    }
+}
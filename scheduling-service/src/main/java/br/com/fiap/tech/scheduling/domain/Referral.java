@@ -54,6 +54,12 @@ public class Referral {
     @Column(name = "has_medical_urgency")
     private Boolean hasMedicalUrgency;
     
+    /**
+     * Parte da pontuação de prioridade que não depende do tempo de espera, gravada para ordenar a fila no banco
+     */
+    @Column(name = "base_score", nullable = false)
+    private Integer baseScore;
+    
     private LocalDateTime createdAt;
     
     private LocalDateTime updatedAt;
@@ -66,11 +72,54 @@ public class Referral {
         createdAt = LocalDateTime.now();
         updatedAt = LocalDateTime.now();
         requestedDate = LocalDateTime.now();
+        baseScore = calculateBaseScore();
     }
     
     @PreUpdate
     protected void onUpdate() {
         updatedAt = LocalDateTime.now();
+        baseScore = calculateBaseScore();
+    }
+    
+    /**
+     * Calcula a pontuação de prioridade sem o tempo de espera: nível de prioridade, faixa etária,
+     * gestação e urgência médica
+     */
+    public int calculateBaseScore() {
+        int score = 0;
+        
+        // Base score por nível de prioridade
+        switch (priorityLevel) {
+            case URGENT:
+                score += 100;
+                break;
+            case HIGH:
+                score += 70;
+                break;
+            case MEDIUM:
+                score += 40;
+                break;
+            case LOW:
+                score += 10;
+                break;
+        }
+        
+        // Adicionar pontos para fatores adicionais
+        if (patientAge != null) {
+            if (patientAge < 12 || patientAge > 65) {
+                score += 10; // Prioridade para crianças e idosos
+            }
+        }
+        
+        if (Boolean.TRUE.equals(isPregnant)) {
+            score += 15; // Prioridade para gestantes
+        }
+        
+        if (Boolean.TRUE.equals(hasMedicalUrgency)) {
+            score += 20; // Prioridade para condições médicas urgentes
+        }
+        
+        return score;
     }
     
     /**
@@ -0,0 +1,20 @@
+package br.com.fiap.tech.scheduling.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Página do histórico de agendamentos. hasNext indica se existe a página seguinte.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AppointmentHistoryPage {
+    private List<AppointmentSummary> items;
+    private int page;
+    private int size;
+    private boolean hasNext;
+}
@@ -0,0 +1,25 @@
+package br.com.fiap.tech.scheduling.dto;
+
+import br.com.fiap.tech.scheduling.domain.AppointmentStatus;
+import br.com.fiap.tech.scheduling.domain.AppointmentType;
+import br.com.fiap.tech.scheduling.domain.PriorityLevel;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * Dados de um agendamento no histórico do paciente ou médico, lidos direto do banco sem carregar a entidade
+ */
+public record AppointmentSummary(
+        Long id,
+        LocalDate appointmentDate,
+        LocalTime startTime,
+        LocalTime endTime,
+        AppointmentType appointmentType,
+        AppointmentStatus status,
+        Long patientId,
+        Long doctorId,
+        Long healthcareFacilityId,
+        Long referralId,
+        PriorityLevel priorityLevel) {
+}
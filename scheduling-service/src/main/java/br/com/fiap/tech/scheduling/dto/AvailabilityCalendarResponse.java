@@ -0,0 +1,23 @@
+package br.com.fiap.tech.scheduling.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Calendário de vagas restantes de várias unidades, em colunas: a posição i de cada lista corresponde
+ * à unidade facilityIds[i], e as vagas vêm como pares [vagas, dias seguidos] a partir de from
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AvailabilityCalendarResponse {
+    private LocalDate from;
+    private LocalDate to;
+    private List<Long> facilityIds;
+    private List<Integer> maxDailyCapacity;
+    private List<List<Integer>> remaining;
+}
@@ -0,0 +1,42 @@
+package br.com.fiap.tech.scheduling.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * Horário livre encontrado na busca. Os campos correspondem aos de AppointmentRequest,
+ * para que o horário possa ser reservado diretamente.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Horário livre para agendamento")
+public class AvailableSlotDTO {
+    @Schema(description = "ID do médico", example = "1")
+    private Long doctorId;
+
+    @Schema(description = "ID da unidade de saúde", example = "1")
+    private Long healthcareFacilityId;
+
+    @Schema(description = "Data do horário", example = "2023-12-20")
+    private LocalDate appointmentDate;
+
+    @Schema(description = "Dia da semana do horário", example = "WEDNESDAY")
+    private String appointmentDay;
+
+    @Schema(description = "Horário de início", example = "10:00:00")
+    private LocalTime startTime;
+
+    @Schema(description = "Horário de término", example = "10:30:00")
+    private LocalTime endTime;
+
+    @Schema(description = "Distância até a unidade, quando a busca informa uma localização", example = "2.4")
+    private Double distanceInKm;
+}
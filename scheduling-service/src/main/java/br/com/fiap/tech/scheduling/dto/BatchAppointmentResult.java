@@ -0,0 +1,39 @@
+package br.com.fiap.tech.scheduling.dto;
+
+import br.com.fiap.tech.scheduling.domain.Appointment;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Resultado de um item do agendamento em lote")
+public class BatchAppointmentResult {
+    @Schema(description = "Posição do item na lista enviada", example = "0")
+    private int index;
+
+    @Schema(description = "Status HTTP equivalente ao de um agendamento individual", example = "200")
+    private int status;
+
+    @Schema(description = "Agendamento criado, quando o item foi aceito")
+    private Appointment appointment;
+
+    @Schema(description = "Motivo da recusa, quando o item não foi aceito")
+    private String error;
+
+    public static BatchAppointmentResult created(int index, Appointment appointment) {
+        return new BatchAppointmentResult(index, 200, appointment, null);
+    }
+
+    public static BatchAppointmentResult rejected(int index, int status, String error) {
+        return new BatchAppointmentResult(index, status, null, error);
+    }
+
+    @JsonIgnore
+    public boolean isCreated() {
+        return appointment != null;
+    }
+}
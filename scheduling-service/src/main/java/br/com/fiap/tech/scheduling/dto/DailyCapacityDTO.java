@@ -0,0 +1,17 @@
+package br.com.fiap.tech.scheduling.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class DailyCapacityDTO {
+    private LocalDate date;
+    private Integer maxDailyCapacity;
+    private Integer reserved;
+    private Integer remaining;
+}
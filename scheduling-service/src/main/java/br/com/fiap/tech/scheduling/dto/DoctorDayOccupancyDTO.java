@@ -0,0 +1,42 @@
+package br.com.fiap.tech.scheduling.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Ocupação de um médico em uma data, como mantida no índice em memória")
+public class DoctorDayOccupancyDTO {
+    @Schema(description = "ID do médico", example = "1")
+    private Long doctorId;
+
+    @Schema(description = "Data", example = "2023-12-20")
+    private LocalDate date;
+
+    @Schema(description = "Duração de cada faixa do mapa de bits, em minutos", example = "5")
+    private int cellMinutes;
+
+    @Schema(description = "Quantidade de faixas ocupadas", example = "12")
+    private int busyCells;
+
+    @Schema(description = "Mapa de bits em hexadecimal, a partir da meia-noite")
+    private String bitmap;
+
+    @Schema(description = "Períodos ocupados, com os horários arredondados para a grade de faixas")
+    private List<BusyPeriod> busyPeriods;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class BusyPeriod {
+        private LocalTime start;
+        private LocalTime end;
+    }
+}
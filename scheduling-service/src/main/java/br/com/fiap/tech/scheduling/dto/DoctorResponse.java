@@ -10,6 +10,7 @@ public class DoctorResponse {
     private String email;
     private String crm;
     private String specialty;
+    private Long userId;
     private String phoneNumber;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
@@ -4,10 +4,26 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 public class NearbyFacilityResponse {
     private FacilityResponse facility;
     private Double distanceInKm;
+
+    /**
+     * Vagas de cada dia do período pedido; nulo quando a busca não informa período
+     */
+    private List<DailyCapacityDTO> availability;
+
+    /**
+     * Médicos com agenda na unidade no dia pedido; nulo quando a busca não informa o dia
+     */
+    private List<Long> doctorIds;
+
+    public NearbyFacilityResponse(FacilityResponse facility, Double distanceInKm) {
+        this(facility, distanceInKm, null, null);
+    }
 }
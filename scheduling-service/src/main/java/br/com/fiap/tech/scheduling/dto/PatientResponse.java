@@ -15,6 +15,7 @@ public class PatientResponse {
     private String address;
     private String insuranceProvider;
     private String insuranceNumber;
+    private Long userId;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 } 
\ No newline at end of file
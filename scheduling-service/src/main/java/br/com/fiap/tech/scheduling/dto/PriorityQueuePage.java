@@ -0,0 +1,18 @@
+package br.com.fiap.tech.scheduling.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Página de uma fila priorizada. nextCursor é nulo na última página.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PriorityQueuePage<T> {
+    private List<T> items;
+    private String nextCursor;
+}
@@ -0,0 +1,42 @@
+package br.com.fiap.tech.scheduling.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Posição de leitura de uma fila priorizada: último item retornado (pontuação, desempate e ID)
+ * e o instante usado no cálculo das pontuações, para que todas as páginas usem a mesma referência de tempo.
+ */
+public record QueueCursor(int priorityScore, LocalDateTime tieBreaker, long id, LocalDateTime asOf) {
+
+    /**
+     * Cursor da primeira página: antes de qualquer item
+     */
+    public static QueueCursor first(LocalDateTime asOf) {
+        return new QueueCursor(Integer.MAX_VALUE, LocalDateTime.of(1970, 1, 1, 0, 0), 0L, asOf);
+    }
+
+    public String encode() {
+        String raw = priorityScore + ";" + tieBreaker + ";" + id + ";" + asOf;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static QueueCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(";");
+            if (parts.length != 4) {
+                throw new IllegalArgumentException("Cursor inválido");
+            }
+            return new QueueCursor(
+                    Integer.parseInt(parts[0]),
+                    LocalDateTime.parse(parts[1]),
+                    Long.parseLong(parts[2]),
+                    LocalDateTime.parse(parts[3]));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Cursor inválido");
+        }
+    }
+}
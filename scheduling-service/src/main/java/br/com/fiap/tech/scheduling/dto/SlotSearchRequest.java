@@ -0,0 +1,40 @@
+package br.com.fiap.tech.scheduling.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Filtros da busca de horários livres
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SlotSearchRequest {
+
+    public enum Order {
+        /** Horários mais cedo primeiro */
+        EARLIEST,
+        /** Unidades mais próximas primeiro e, em cada unidade, os horários mais cedo */
+        DISTANCE
+    }
+
+    private String specialty;
+    private Long doctorId;
+    private Double latitude;
+    private Double longitude;
+    private Double radiusInKm;
+    private LocalDate from;
+    @Builder.Default
+    private int days = 14;
+    @Builder.Default
+    private int durationMinutes = 30;
+    @Builder.Default
+    private int limit = 10;
+    @Builder.Default
+    private Order orderBy = Order.EARLIEST;
+}
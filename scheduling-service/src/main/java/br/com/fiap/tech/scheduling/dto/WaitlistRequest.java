@@ -0,0 +1,12 @@
+package br.com.fiap.tech.scheduling.dto;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+public class WaitlistRequest {
+    private Long referralId;
+    private Long doctorId;
+    private LocalDate appointmentDate;
+}
@@ -0,0 +1,31 @@
+package br.com.fiap.tech.scheduling.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DoctorScheduleChangedEvent {
+
+    public enum ChangeType {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    private ChangeType changeType;
+    private Long scheduleId;
+    private Long doctorId;
+    private Long facilityId;
+    private String dayOfWeek;
+    private LocalTime startTime;
+    private LocalTime endTime;
+    private LocalTime secondPeriodStart;
+    private LocalTime secondPeriodEnd;
+    private LocalDateTime updatedAt;
+}
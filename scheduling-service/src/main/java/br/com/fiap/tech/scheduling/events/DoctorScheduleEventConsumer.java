@@ -0,0 +1,26 @@
+package br.com.fiap.tech.scheduling.events;
+
+import br.com.fiap.tech.scheduling.service.DoctorScheduleReadModel;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.function.Consumer;
+
+@Slf4j
+@Configuration
+@RequiredArgsConstructor
+public class DoctorScheduleEventConsumer {
+
+    private final DoctorScheduleReadModel doctorScheduleReadModel;
+
+    @Bean
+    public Consumer<DoctorScheduleChangedEvent> doctorScheduleChangedInput() {
+        return event -> {
+            log.info("Evento de agenda {} recebido para a agenda {} do médico {}",
+                    event.getChangeType(), event.getScheduleId(), event.getDoctorId());
+            doctorScheduleReadModel.apply(event);
+        };
+    }
+}
@@ -0,0 +1,42 @@
+package br.com.fiap.tech.scheduling.events;
+
+import br.com.fiap.tech.scheduling.domain.OutboxEvent;
+import br.com.fiap.tech.scheduling.repository.OutboxEventRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Grava eventos na tabela outbox_events dentro da transação de quem publica.
+ * O evento só existe se a transação for confirmada, e o envio ao Kafka fica a cargo do OutboxRelay.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EventOutbox {
+
+    public static final String APPOINTMENT_CREATED_TOPIC = "appointment-created";
+    public static final String APPOINTMENT_CANCELLED_TOPIC = "appointment-cancelled";
+    public static final String REFERRAL_CREATED_TOPIC = "referral-created";
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(String topic, Object key, Object event) {
+        try {
+            outboxEventRepository.save(OutboxEvent.builder()
+                    .topic(topic)
+                    .messageKey(key != null ? key.toString() : null)
+                    .payload(objectMapper.writeValueAsString(event))
+                    .build());
+            log.debug("Evento {} gravado no outbox para o tópico {}", event.getClass().getSimpleName(), topic);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Não foi possível serializar o evento " + event.getClass().getSimpleName(), e);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package br.com.fiap.tech.scheduling.events;
+
+import br.com.fiap.tech.scheduling.domain.OutboxEvent;
+import br.com.fiap.tech.scheduling.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publica no Kafka os eventos gravados em outbox_events.
+ * Cada lote é bloqueado com FOR UPDATE SKIP LOCKED, então várias instâncias podem drenar a tabela em paralelo
+ * sem publicar o mesmo evento duas vezes. O lote é enviado de uma vez, para aproveitar o batching e a compressão
+ * do producer, e as linhas só são removidas depois da confirmação do broker.
+ * Como os bloqueios ficam presos enquanto o lote é enviado, a espera é limitada: o producer desiste de um envio
+ * sem metadados do broker depois de max.block.ms (configurado curto no application.yml), o lote para no primeiro
+ * envio recusado assim, e as confirmações são esperadas até send-timeout para o lote inteiro.
+ */
+@Slf4j
+@Component
+public class OutboxRelay {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final Duration sendTimeout;
+
+    private final Counter publishedCounter;
+    private final Counter failedCounter;
+    private final AtomicLong pendingEvents = new AtomicLong();
+    private final AtomicLong oldestEventAgeSeconds = new AtomicLong();
+
+    public OutboxRelay(
+            OutboxEventRepository outboxEventRepository,
+            KafkaTemplate<String, String> kafkaTemplate,
+            TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${scheduling.outbox.batch-size:200}") int batchSize,
+            @Value("${scheduling.outbox.max-batches-per-run:10}") int maxBatchesPerRun,
+            @Value("${scheduling.outbox.send-timeout:10s}") Duration sendTimeout) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.kafkaTemplate = kafkaTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.sendTimeout = sendTimeout;
+
+        this.publishedCounter = Counter.builder("scheduling.outbox.published")
+                .description("Eventos do outbox publicados no Kafka")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("scheduling.outbox.failed")
+                .description("Tentativas de publicação do outbox que falharam")
+                .register(meterRegistry);
+        Gauge.builder("scheduling.outbox.pending", pendingEvents, AtomicLong::get)
+                .description("Eventos aguardando publicação")
+                .register(meterRegistry);
+        Gauge.builder("scheduling.outbox.lag", oldestEventAgeSeconds, AtomicLong::get)
+                .description("Idade do evento mais antigo aguardando publicação")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${scheduling.outbox.poll-interval:500}")
+    public void relay() {
+        try {
+            for (int i = 0; i < maxBatchesPerRun; i++) {
+                Integer published = transactionTemplate.execute(status -> publishNextBatch());
+                if (published == null || published < batchSize) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            log.error("Erro ao publicar eventos do outbox: {}", e.getMessage());
+        } finally {
+            updateLagMetrics();
+        }
+    }
+
+    /**
+     * Publica o próximo lote e remove os eventos confirmados pelo broker.
+     * Se algum envio falhar, o lote conta como incompleto e a execução para, em vez de reler os mesmos eventos
+     *
+     * @return quantidade de eventos publicados no lote
+     */
+    int publishNextBatch() {
+        List<OutboxEvent> batch = outboxEventRepository.lockNextBatch(batchSize);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        List<CompletableFuture<?>> sends = new ArrayList<>();
+        for (OutboxEvent event : batch) {
+            CompletableFuture<?> send;
+            try {
+                send = kafkaTemplate.send(event.getTopic(), event.getMessageKey(), event.getPayload());
+            } catch (Exception e) {
+                send = CompletableFuture.failedFuture(e);
+            }
+            sends.add(send);
+            if (send.isCompletedExceptionally()) {
+                // Recusado já no envio (broker inacessível): os próximos esperariam max.block.ms cada um
+                break;
+            }
+        }
+
+        long deadline = System.nanoTime() + sendTimeout.toNanos();
+        List<Long> published = new ArrayList<>();
+        for (int i = 0; i < sends.size(); i++) {
+            OutboxEvent event = batch.get(i);
+            try {
+                sends.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                published.add(event.getId());
+            } catch (Exception e) {
+                failedCounter.increment();
+                log.warn("Falha ao publicar o evento {} no tópico {}: {}", event.getId(), event.getTopic(), e.getMessage());
+            }
+        }
+
+        if (!published.isEmpty()) {
+            outboxEventRepository.deleteAllByIdInBatch(published);
+            publishedCounter.increment(published.size());
+        }
+        log.debug("Lote do outbox publicado: {} de {} eventos", published.size(), batch.size());
+        return published.size();
+    }
+
+    private void updateLagMetrics() {
+        try {
+            pendingEvents.set(outboxEventRepository.count());
+            LocalDateTime oldest = outboxEventRepository.findOldestCreatedAt();
+            oldestEventAgeSeconds.set(oldest == null ? 0 : Duration.between(oldest, LocalDateTime.now()).toSeconds());
+        } catch (Exception e) {
+            log.debug("Não foi possível atualizar as métricas do outbox: {}", e.getMessage());
+        }
+    }
+}
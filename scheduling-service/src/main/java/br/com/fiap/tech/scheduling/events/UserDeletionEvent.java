@@ -0,0 +1,12 @@
+package br.com.fiap.tech.scheduling.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserDeletionEvent {
+    private Long userId;
+}
@@ -0,0 +1,27 @@
+package br.com.fiap.tech.scheduling.events;
+
+import br.com.fiap.tech.scheduling.client.PeopleExistenceCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.function.Consumer;
+
+@Slf4j
+@Configuration
+@RequiredArgsConstructor
+public class UserEventConsumer {
+
+    private final PeopleExistenceCache peopleExistenceCache;
+
+    @Bean
+    public Consumer<UserDeletionEvent> userDeletedInput() {
+        return event -> {
+            log.info("Evento de exclusão de usuário recebido: userId={}", event.getUserId());
+            if (event.getUserId() != null) {
+                peopleExistenceCache.evictUser(event.getUserId());
+            }
+        };
+    }
+}
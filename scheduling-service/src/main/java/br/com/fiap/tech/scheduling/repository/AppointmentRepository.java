@@ -1,12 +1,21 @@
 package br.com.fiap.tech.scheduling.repository;
 
 import br.com.fiap.tech.scheduling.domain.Appointment;
+import br.com.fiap.tech.scheduling.dto.AppointmentSummary;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import jakarta.persistence.QueryHint;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 public interface AppointmentRepository extends JpaRepository<Appointment, Long> {
     
@@ -15,16 +24,120 @@ public interface AppointmentRepository extends JpaRepository<Appointment, Long>
     List<Appointment> findByDoctorId(Long doctorId);
     
     List<Appointment> findByHealthcareFacilityId(Long healthcareFacilityId);
+
+    String APPOINTMENT_SUMMARY = "SELECT new br.com.fiap.tech.scheduling.dto.AppointmentSummary(" +
+            "a.id, a.appointmentDate, a.startTime, a.endTime, a.appointmentType, a.status, " +
+            "a.patientId, a.doctorId, a.healthcareFacilityId, a.referralId, a.priorityLevel) FROM Appointment a ";
+
+    /**
+     * Histórico do paciente no período, do mais recente para o mais antigo.
+     * Paginado por deslocamento porque a página pode continuar no arquivo (ArchivedAppointmentRepository).
+     */
+    @Query(APPOINTMENT_SUMMARY +
+           "WHERE a.patientId = :patientId AND a.appointmentDate BETWEEN :from AND :to " +
+           "ORDER BY a.appointmentDate DESC, a.startTime DESC, a.id DESC LIMIT :limit OFFSET :offset")
+    List<AppointmentSummary> findPatientHistory(Long patientId, LocalDate from, LocalDate to, int offset, int limit);
+
+    @Query("SELECT COUNT(a) FROM Appointment a " +
+           "WHERE a.patientId = :patientId AND a.appointmentDate BETWEEN :from AND :to")
+    long countPatientHistory(Long patientId, LocalDate from, LocalDate to);
+
+    /**
+     * Agenda do médico no período, em ordem de calendário
+     */
+    @Query(APPOINTMENT_SUMMARY +
+           "WHERE a.doctorId = :doctorId AND a.appointmentDate BETWEEN :from AND :to " +
+           "ORDER BY a.appointmentDate, a.startTime, a.id LIMIT :limit OFFSET :offset")
+    List<AppointmentSummary> findDoctorHistory(Long doctorId, LocalDate from, LocalDate to, int offset, int limit);
     
     @Query("SELECT a FROM Appointment a WHERE a.doctorId = :doctorId AND a.appointmentDate = :date")
     List<Appointment> findByDoctorIdAndDate(Long doctorId, LocalDate date);
     
     @Query("SELECT CASE WHEN COUNT(a) > 0 THEN true ELSE false END FROM Appointment a " +
            "WHERE a.doctorId = :doctorId AND a.appointmentDate = :date " +
-           "AND ((a.startTime <= :endTime AND a.endTime >= :startTime))")
+           "AND a.status <> br.com.fiap.tech.scheduling.domain.AppointmentStatus.CANCELLED " +
+           "AND a.startTime < :endTime AND a.endTime > :startTime")
     boolean hasConflictingAppointment(Long doctorId, LocalDate date, LocalTime startTime, LocalTime endTime);
     
+    List<Appointment> findByDoctorIdInAndAppointmentDateAndStatusNot(Collection<Long> doctorIds, LocalDate date, br.com.fiap.tech.scheduling.domain.AppointmentStatus status);
+    
     List<Appointment> findByStatus(br.com.fiap.tech.scheduling.domain.AppointmentStatus status);
     
-    List<Appointment> findByAppointmentDateAndStatus(LocalDate date, br.com.fiap.tech.scheduling.domain.AppointmentStatus status);
+    /**
+     * Pontuação de prioridade calculada no banco; deve acompanhar AppointmentPriorityService.calculatePriorityScore
+     */
+    String PRIORITY_SCORE =
+           "(CASE a.priority_level WHEN 'URGENT' THEN 100 WHEN 'HIGH' THEN 70 WHEN 'MEDIUM' THEN 40 ELSE 10 END " +
+           " + CASE a.appointment_type WHEN 'EXAM' THEN 35 WHEN 'CONSULTATION' THEN 20 ELSE 0 END " +
+           " + CASE WHEN a.appointment_date - CAST(:today AS date) <= 3 THEN 30 " +
+           "        WHEN a.appointment_date - CAST(:today AS date) <= 7 THEN 15 ELSE 0 END " +
+           " + CASE WHEN a.referral_id IS NOT NULL THEN 25 ELSE 0 END)";
+
+    String SCHEDULED_QUEUE =
+           "SELECT * FROM (SELECT a.*, " + PRIORITY_SCORE + " AS priority_score, " +
+           "a.appointment_date + a.start_time AS starts_at FROM appointments a " +
+           "WHERE a.status = 'SCHEDULED' AND (CAST(:date AS date) IS NULL OR a.appointment_date = CAST(:date AS date))) q ";
+
+    /**
+     * Próxima página da fila de agendamentos após a posição (score, início do atendimento, id),
+     * em ordem decrescente de pontuação e crescente de data e horário
+     */
+    @Query(value = SCHEDULED_QUEUE +
+           "WHERE q.priority_score < :score " +
+           "   OR (q.priority_score = :score AND (q.starts_at > :startsAt " +
+           "       OR (q.starts_at = :startsAt AND q.id > :id))) " +
+           "ORDER BY q.priority_score DESC, q.starts_at ASC, q.id ASC LIMIT :limit",
+           nativeQuery = true)
+    List<Appointment> findScheduledQueuePage(@Param("date") LocalDate date,
+                                             @Param("today") LocalDate today,
+                                             @Param("score") int score,
+                                             @Param("startsAt") LocalDateTime startsAt,
+                                             @Param("id") long id,
+                                             @Param("limit") int limit);
+
+    /**
+     * Fila completa de agendamentos, lida do banco aos poucos.
+     * Deve ser consumida dentro de uma transação.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(value = SCHEDULED_QUEUE + "ORDER BY q.priority_score DESC, q.starts_at ASC, q.id ASC",
+           nativeQuery = true)
+    Stream<Appointment> streamScheduledQueue(@Param("date") LocalDate date, @Param("today") LocalDate today);
+
+    /**
+     * Cria a partição mensal do mês informado, se ela ainda não existir
+     *
+     * @return true se a partição foi criada
+     */
+    @Query(value = "SELECT create_appointment_partition(:month)", nativeQuery = true)
+    boolean createMonthlyPartition(LocalDate month);
+
+    /**
+     * Meses com agendamentos na partição padrão, que ainda não têm partição própria
+     */
+    @Query(value = "SELECT DISTINCT CAST(date_trunc('month', appointment_date) AS DATE) FROM appointments_default",
+           nativeQuery = true)
+    List<LocalDate> findUnpartitionedMonths();
+
+    /**
+     * Partição analisada pelo arquivamento: arquivada quando não tem agendamentos em aberto,
+     * ou a que bloqueou o arquivamento dos meses seguintes
+     */
+    interface ArchivedPartition {
+        String getPartitionName();
+
+        long getOpenAppointments();
+    }
+
+    String ARCHIVE_MONTHLY_PARTITIONS =
+            "SELECT partition_name AS \"partitionName\", open_appointments AS \"openAppointments\" " +
+            "FROM archive_appointment_partitions(:before)";
+
+    /**
+     * Move para o arquivo os meses encerrados antes da data informada, até o primeiro com agendamentos em aberto
+     *
+     * @return partições arquivadas, seguidas da que bloqueou o arquivamento, se houver
+     */
+    @Query(value = ARCHIVE_MONTHLY_PARTITIONS, nativeQuery = true)
+    List<ArchivedPartition> archiveMonthlyPartitions(LocalDate before);
 }
@@ -0,0 +1,42 @@
+package br.com.fiap.tech.scheduling.repository;
+
+import br.com.fiap.tech.scheduling.domain.ArchivedAppointment;
+import br.com.fiap.tech.scheduling.dto.AppointmentSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface ArchivedAppointmentRepository extends JpaRepository<ArchivedAppointment, Long> {
+
+    String ARCHIVED_APPOINTMENT_SUMMARY = "SELECT new br.com.fiap.tech.scheduling.dto.AppointmentSummary(" +
+            "a.id, a.appointmentDate, a.startTime, a.endTime, a.appointmentType, a.status, " +
+            "a.patientId, a.doctorId, a.healthcareFacilityId, a.referralId, a.priorityLevel) FROM ArchivedAppointment a ";
+
+    /**
+     * Data do agendamento mais recente já arquivado, ou null se nenhum mês foi arquivado
+     */
+    @Query("SELECT MAX(a.appointmentDate) FROM ArchivedAppointment a")
+    LocalDate findLatestArchivedDate();
+
+    /**
+     * Histórico arquivado do paciente no período, do mais recente para o mais antigo
+     */
+    @Query(ARCHIVED_APPOINTMENT_SUMMARY +
+           "WHERE a.patientId = :patientId AND a.appointmentDate BETWEEN :from AND :to " +
+           "ORDER BY a.appointmentDate DESC, a.startTime DESC, a.id DESC LIMIT :limit OFFSET :offset")
+    List<AppointmentSummary> findPatientHistory(Long patientId, LocalDate from, LocalDate to, int offset, int limit);
+
+    /**
+     * Agenda arquivada do médico no período, em ordem de calendário
+     */
+    @Query(ARCHIVED_APPOINTMENT_SUMMARY +
+           "WHERE a.doctorId = :doctorId AND a.appointmentDate BETWEEN :from AND :to " +
+           "ORDER BY a.appointmentDate, a.startTime, a.id LIMIT :limit OFFSET :offset")
+    List<AppointmentSummary> findDoctorHistory(Long doctorId, LocalDate from, LocalDate to, int offset, int limit);
+
+    @Query("SELECT COUNT(a) FROM ArchivedAppointment a " +
+           "WHERE a.doctorId = :doctorId AND a.appointmentDate BETWEEN :from AND :to")
+    long countDoctorHistory(Long doctorId, LocalDate from, LocalDate to);
+}
@@ -0,0 +1,24 @@
+package br.com.fiap.tech.scheduling.repository;
+
+import br.com.fiap.tech.scheduling.domain.DoctorScheduleReplica;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+public interface DoctorScheduleReplicaRepository extends JpaRepository<DoctorScheduleReplica, Long> {
+    List<DoctorScheduleReplica> findByDeletedFalse();
+
+    List<DoctorScheduleReplica> findByDoctorIdAndDeletedFalse(Long doctorId);
+
+    @Query("SELECT r.id FROM DoctorScheduleReplica r WHERE r.deleted = true")
+    List<Long> findDeletedIds();
+
+    /**
+     * Remove as agendas ativas, mantendo as marcações de exclusão
+     */
+    @Modifying
+    @Query("DELETE FROM DoctorScheduleReplica r WHERE r.deleted = false")
+    void deleteAllLive();
+}
@@ -0,0 +1,45 @@
+package br.com.fiap.tech.scheduling.repository;
+
+import br.com.fiap.tech.scheduling.domain.IdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, IdempotencyKey.Key> {
+
+    /**
+     * Reserva a chave para execução. Só reaproveita a chave expirada: uma chave sem resposta gravada pode ser
+     * de uma execução que já gravou o agendamento e parou antes de gravar a resposta, então não é retomada.
+     *
+     * @return 1 se a chave foi reservada, 0 se ela já está em uso
+     */
+    @Modifying
+    @Query(value = "INSERT INTO idempotency_keys (scope, idempotency_key, request_hash, owner, locked_until, " +
+                   "created_at, expires_at) VALUES (:scope, :key, :requestHash, :owner, :lockedUntil, :now, :expiresAt) " +
+                   "ON CONFLICT (scope, idempotency_key) DO UPDATE SET request_hash = EXCLUDED.request_hash, " +
+                   "owner = EXCLUDED.owner, locked_until = EXCLUDED.locked_until, response_body = NULL, " +
+                   "created_at = EXCLUDED.created_at, expires_at = EXCLUDED.expires_at " +
+                   "WHERE idempotency_keys.expires_at < :now",
+           nativeQuery = true)
+    int claim(String scope, String key, String requestHash, String owner,
+              LocalDateTime lockedUntil, LocalDateTime expiresAt, LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE IdempotencyKey k SET k.responseBody = :responseBody, k.lockedUntil = null " +
+           "WHERE k.scope = :scope AND k.idempotencyKey = :key AND k.owner = :owner")
+    int complete(String scope, String key, String owner, String responseBody);
+
+    /**
+     * Libera a chave de uma execução que falhou, para que a próxima tentativa execute de novo
+     */
+    @Modifying
+    @Query("DELETE FROM IdempotencyKey k WHERE k.scope = :scope AND k.idempotencyKey = :key " +
+           "AND k.owner = :owner AND k.responseBody IS NULL")
+    int release(String scope, String key, String owner);
+
+    @Modifying
+    @Query("DELETE FROM IdempotencyKey k WHERE k.expiresAt < :now")
+    int deleteExpired(LocalDateTime now);
+}
@@ -0,0 +1,21 @@
+package br.com.fiap.tech.scheduling.repository;
+
+import br.com.fiap.tech.scheduling.domain.OutboxEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /**
+     * Bloqueia o próximo lote de eventos; linhas já bloqueadas por outra instância são puladas
+     */
+    @Query(value = "SELECT * FROM outbox_events ORDER BY id LIMIT :batchSize FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<OutboxEvent> lockNextBatch(int batchSize);
+
+    @Query("SELECT MIN(e.createdAt) FROM OutboxEvent e")
+    LocalDateTime findOldestCreatedAt();
+}
@@ -5,9 +5,15 @@ import br.com.fiap.tech.scheduling.domain.ReferralStatus;
 import br.com.fiap.tech.scheduling.domain.ReferralType;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import jakarta.persistence.QueryHint;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 public interface ReferralRepository extends JpaRepository<Referral, Long> {
     
@@ -21,12 +27,65 @@ public interface ReferralRepository extends JpaRepository<Referral, Long> {
     
     List<Referral> findByReferralTypeAndStatus(ReferralType referralType, ReferralStatus status);
     
-    @Query("SELECT r FROM Referral r WHERE r.status = :status ORDER BY " +
-           "CASE r.priorityLevel " +
-           "    WHEN 'URGENT' THEN 0 " +
-           "    WHEN 'HIGH' THEN 1 " +
-           "    WHEN 'MEDIUM' THEN 2 " +
-           "    WHEN 'LOW' THEN 3 " +
-           "END, r.requestedDate ASC")
-    List<Referral> findByStatusOrderedByPriority(@Param("status") ReferralStatus status);
+    /**
+     * Pontos pelo tempo de espera calculados no banco; deve acompanhar PriorityService.agingScore
+     */
+    String AGING_SCORE =
+           "LEAST(GREATEST(FLOOR(EXTRACT(EPOCH FROM (CAST(:asOf AS timestamp) - r.requested_date)) / 86400), 0) * 2, 30)";
+
+    String PRIORITY_SCORE = "(r.base_score + " + AGING_SCORE + ")";
+
+    String AFTER_CURSOR =
+           "(" + PRIORITY_SCORE + " < :score " +
+           " OR (" + PRIORITY_SCORE + " = :score AND (r.requested_date > :requestedDate " +
+           "     OR (r.requested_date = :requestedDate AND r.id > :id))))";
+
+    /**
+     * Próxima página da fila de encaminhamentos pendentes após a posição (score, requestedDate, id),
+     * em ordem decrescente de pontuação e crescente de data de solicitação.
+     * Dentro de um mesmo tipo e pontuação base, os mais antigos têm sempre a maior pontuação; por isso cada
+     * grupo é lido pelo índice idx_referrals_pending_queue em ordem de data, até :limit linhas, e só esses
+     * candidatos são ordenados. O custo depende do tamanho da página, não do tamanho da fila.
+     * Grupos cuja pontuação base já passa do cursor são ignorados, e nos demais a leitura começa pela
+     * data mais antiga que ainda pode estar depois do cursor. No grupo em que o teto do tempo de espera empata
+     * com o cursor, os encaminhamentos no teto só vêm depois dele a partir da data do cursor, e os abaixo do teto
+     * são os dos últimos 15 dias; a leitura começa pela menor dessas datas, sem percorrer o teto desde o início.
+     *
+     * @param types tipos de encaminhamento separados por vírgula
+     * @param baseScores pontuações base possíveis separadas por vírgula
+     */
+    @Query(value = "SELECT r.* FROM unnest(string_to_array(:types, ',')) AS t(type_value) " +
+           "CROSS JOIN unnest(CAST(string_to_array(:baseScores, ',') AS int[])) AS b(score_value) " +
+           "CROSS JOIN LATERAL (" +
+           "    SELECT r.* FROM referrals r " +
+           "    WHERE r.status = 'PENDING' AND r.referral_type = t.type_value AND r.base_score = b.score_value " +
+           "      AND b.score_value <= :score " +
+           "      AND r.requested_date >= CASE " +
+           "          WHEN :score - b.score_value > 30 THEN CAST('-infinity' AS timestamp) " +
+           "          WHEN :score - b.score_value = 30 THEN LEAST(CAST(:requestedDate AS timestamp), " +
+           "              CAST(:asOf AS timestamp) - make_interval(days => 15)) " +
+           "          ELSE CAST(:asOf AS timestamp) - make_interval(days => (:score - b.score_value) / 2 + 1) END " +
+           "      AND " + AFTER_CURSOR +
+           "    ORDER BY r.requested_date ASC, r.id ASC LIMIT :limit" +
+           ") r " +
+           "ORDER BY " + PRIORITY_SCORE + " DESC, r.requested_date ASC, r.id ASC LIMIT :limit",
+           nativeQuery = true)
+    List<Referral> findPendingQueuePage(@Param("types") String types,
+                                        @Param("baseScores") String baseScores,
+                                        @Param("asOf") LocalDateTime asOf,
+                                        @Param("score") int score,
+                                        @Param("requestedDate") LocalDateTime requestedDate,
+                                        @Param("id") long id,
+                                        @Param("limit") int limit);
+
+    /**
+     * Fila completa de encaminhamentos pendentes, lida do banco aos poucos.
+     * Deve ser consumida dentro de uma transação.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(value = "SELECT r.* FROM referrals r " +
+           "WHERE r.status = 'PENDING' AND (CAST(:type AS varchar) IS NULL OR r.referral_type = CAST(:type AS varchar)) " +
+           "ORDER BY " + PRIORITY_SCORE + " DESC, r.requested_date ASC, r.id ASC",
+           nativeQuery = true)
+    Stream<Referral> streamPendingQueue(@Param("type") String type, @Param("asOf") LocalDateTime asOf);
 }
@@ -0,0 +1,28 @@
+package br.com.fiap.tech.scheduling.repository;
+
+import br.com.fiap.tech.scheduling.domain.WaitlistEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+public interface WaitlistEntryRepository extends JpaRepository<WaitlistEntry, Long> {
+
+    List<WaitlistEntry> findByDoctorIdAndAppointmentDate(Long doctorId, LocalDate appointmentDate);
+
+    boolean existsByReferralIdAndDoctorIdAndAppointmentDate(Long referralId, Long doctorId, LocalDate appointmentDate);
+
+    /**
+     * Remove as entradas dos encaminhamentos que já não aguardam horário
+     */
+    @Modifying
+    @Query("DELETE FROM WaitlistEntry w WHERE w.referralId IN :referralIds")
+    int deleteByReferralIds(Collection<Long> referralIds);
+
+    @Modifying
+    @Query("DELETE FROM WaitlistEntry w WHERE w.appointmentDate < :date")
+    int deleteBefore(LocalDate date);
+}
@@ -0,0 +1,186 @@
+package br.com.fiap.tech.scheduling.service;
+
+import br.com.fiap.tech.scheduling.domain.Appointment;
+import br.com.fiap.tech.scheduling.domain.AppointmentStatus;
+import br.com.fiap.tech.scheduling.dto.DoctorDayOccupancyDTO;
+import br.com.fiap.tech.scheduling.repository.AppointmentRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Índice em memória dos horários ocupados de cada médico por data, em mapas de bits de 5 minutos (DayOccupancy).
+ * Responde às verificações de conflito e à busca de horários livres com operações de bits, sem consultar o banco.
+ * Os dias são carregados sob demanda e ficam em um cache limitado; dias pouco usados são descartados
+ * e recarregados quando voltam a ser consultados.
+ * O banco continua sendo a fonte da verdade: a constraint de exclusão de cada partição mensal
+ * (appointments_AAAA_MM_no_overlap) impede sobreposições que escapem do índice
+ * (por exemplo, reservas simultâneas em instâncias diferentes).
+ */
+@Component
+@Slf4j
+public class AppointmentConflictIndex {
+
+    private final AppointmentRepository appointmentRepository;
+    private final Cache<DoctorDay, DayOccupancy> days;
+
+    public AppointmentConflictIndex(
+            AppointmentRepository appointmentRepository,
+            MeterRegistry meterRegistry,
+            @Value("${scheduling.occupancy.maximum-size:100000}") long maximumSize,
+            @Value("${scheduling.occupancy.expire-after-access:2h}") Duration expireAfterAccess) {
+        this.appointmentRepository = appointmentRepository;
+        this.days = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterAccess(expireAfterAccess)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, days, "scheduling.occupancy");
+    }
+
+    record DoctorDay(Long doctorId, LocalDate date) {
+    }
+
+    /**
+     * Verifica se o intervalo [startTime, endTime) se sobrepõe a algum agendamento ativo do médico na data.
+     * Um conflito apontado pelo mapa de bits é confirmado no banco, pois ele arredonda os horários para a grade
+     * de 5 minutos e o agendamento pode ter sido cancelado por outra instância; nesse caso o dia é recarregado.
+     */
+    public boolean hasConflict(Long doctorId, LocalDate date, LocalTime startTime, LocalTime endTime) {
+        if (occupancy(doctorId, date).isFree(startTime, endTime)) {
+            return false;
+        }
+
+        if (appointmentRepository.hasConflictingAppointment(doctorId, date, startTime, endTime)) {
+            return true;
+        }
+
+        log.debug("Conflito não confirmado no banco para o médico {} em {}; recarregando agenda do dia", doctorId, date);
+        reload(doctorId, date);
+        return false;
+    }
+
+    /**
+     * Ocupação do médico na data, carregada do banco se ainda não estiver no cache
+     */
+    DayOccupancy occupancy(Long doctorId, LocalDate date) {
+        return days.get(new DoctorDay(doctorId, date), this::load);
+    }
+
+    /**
+     * Ocupação de vários médicos na mesma data; os dias fora do cache são carregados em uma única consulta
+     */
+    Map<Long, DayOccupancy> occupancies(Collection<Long> doctorIds, LocalDate date) {
+        Set<DoctorDay> keys = doctorIds.stream()
+                .map(doctorId -> new DoctorDay(doctorId, date))
+                .collect(Collectors.toSet());
+        return days.getAll(keys, this::loadAll).entrySet().stream()
+                .collect(Collectors.toMap(entry -> entry.getKey().doctorId(), Map.Entry::getValue));
+    }
+
+    /**
+     * Ocupação do médico na data, para diagnóstico e visões de calendário
+     */
+    public DoctorDayOccupancyDTO describe(Long doctorId, LocalDate date) {
+        DayOccupancy occupancy = occupancy(doctorId, date);
+        List<DoctorDayOccupancyDTO.BusyPeriod> busyPeriods = occupancy.busyPeriods().stream()
+                .map(period -> new DoctorDayOccupancyDTO.BusyPeriod(period.start(), period.end()))
+                .toList();
+        return new DoctorDayOccupancyDTO(doctorId, date, DayOccupancy.CELL_MINUTES, occupancy.busyCells(),
+                occupancy.toHex(), busyPeriods);
+    }
+
+    /**
+     * Atualiza o índice com o estado atual do agendamento: agendamentos ativos ocupam o horário e
+     * os demais fazem o dia ser recarregado (os bits de uma faixa podem ser compartilhados com outro agendamento).
+     * Dentro de uma transação, a atualização só acontece após o commit.
+     */
+    public void update(Appointment appointment) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(appointment);
+                }
+            });
+        } else {
+            apply(appointment);
+        }
+    }
+
+    /**
+     * Recarrega do banco a agenda de um médico em uma data
+     */
+    public void reload(Long doctorId, LocalDate date) {
+        DoctorDay key = new DoctorDay(doctorId, date);
+        days.put(key, load(key));
+    }
+
+    /**
+     * Remove do índice as agendas de datas passadas
+     */
+    @Scheduled(cron = "0 5 0 * * *")
+    public void evictPastDays() {
+        LocalDate today = LocalDate.now();
+        days.asMap().keySet().removeIf(key -> key.date().isBefore(today));
+    }
+
+    private void apply(Appointment appointment) {
+        DoctorDay key = new DoctorDay(appointment.getDoctorId(), appointment.getAppointmentDate());
+        if (blocksSlot(appointment)) {
+            // Se o dia não estiver no cache, o agendamento entra quando ele for carregado
+            days.asMap().computeIfPresent(key, (k, occupancy) ->
+                    occupancy.with(appointment.getStartTime(), appointment.getEndTime()));
+        } else {
+            days.invalidate(key);
+        }
+    }
+
+    private DayOccupancy load(DoctorDay key) {
+        DayOccupancy occupancy = DayOccupancy.EMPTY;
+        for (Appointment appointment : appointmentRepository.findByDoctorIdAndDate(key.doctorId(), key.date())) {
+            if (blocksSlot(appointment)) {
+                occupancy = occupancy.with(appointment.getStartTime(), appointment.getEndTime());
+            }
+        }
+        return occupancy;
+    }
+
+    private Map<DoctorDay, DayOccupancy> loadAll(Set<? extends DoctorDay> keys) {
+        Map<DoctorDay, DayOccupancy> loaded = new HashMap<>();
+        keys.forEach(key -> loaded.put(key, DayOccupancy.EMPTY));
+        if (keys.isEmpty()) {
+            return loaded;
+        }
+
+        LocalDate date = keys.iterator().next().date();
+        Set<Long> doctorIds = keys.stream().map(DoctorDay::doctorId).collect(Collectors.toSet());
+        appointmentRepository.findByDoctorIdInAndAppointmentDateAndStatusNot(doctorIds, date, AppointmentStatus.CANCELLED)
+                .forEach(appointment -> loaded.computeIfPresent(
+                        new DoctorDay(appointment.getDoctorId(), appointment.getAppointmentDate()),
+                        (key, occupancy) -> occupancy.with(appointment.getStartTime(), appointment.getEndTime())));
+        log.debug("Ocupação de {} médicos carregada para {}", doctorIds.size(), date);
+        return loaded;
+    }
+
+    private boolean blocksSlot(Appointment appointment) {
+        return !AppointmentStatus.CANCELLED.equals(appointment.getStatus());
+    }
+}
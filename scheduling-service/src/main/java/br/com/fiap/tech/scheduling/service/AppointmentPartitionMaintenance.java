@@ -0,0 +1,147 @@
+package br.com.fiap.tech.scheduling.service;
+
+import br.com.fiap.tech.jobs.ShardedJobRunner;
+import br.com.fiap.tech.scheduling.repository.AppointmentRepository;
+import br.com.fiap.tech.scheduling.repository.AppointmentRepository.ArchivedPartition;
+import br.com.fiap.tech.scheduling.repository.ArchivedAppointmentRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Manutenção das partições mensais da tabela appointments.
+ * Uma vez por dia, em uma única instância (job "appointment-partitions"), cria as partições dos próximos meses,
+ * dá partição própria aos meses que caíram na partição padrão e move para o schema appointments_archive
+ * os meses encerrados há mais tempo que a retenção, do mais antigo até o primeiro com agendamentos em aberto.
+ * O mês que bloqueia o arquivamento é registrado em log e na métrica scheduling.partitions.archive.blocked,
+ * com a quantidade de agendamentos ainda agendados ou confirmados nele.
+ * Também guarda a data mais recente já arquivada, usada pelo histórico para só consultar o arquivo quando necessário.
+ */
+@Slf4j
+@Component
+public class AppointmentPartitionMaintenance {
+
+    static final String JOB_NAME = "appointment-partitions";
+    private static final List<String> SHARDS = List.of("maintenance");
+    private static final Duration INTERVAL = Duration.ofHours(12);
+
+    private final AppointmentRepository appointmentRepository;
+    private final ArchivedAppointmentRepository archivedAppointmentRepository;
+    private final ShardedJobRunner jobRunner;
+    private final TransactionTemplate transactionTemplate;
+    private final int monthsAhead;
+    private final int archiveAfterMonths;
+    private final AtomicLong blockedOpenAppointments = new AtomicLong();
+    private volatile Optional<LocalDate> archivedUntil;
+
+    public AppointmentPartitionMaintenance(
+            AppointmentRepository appointmentRepository,
+            ArchivedAppointmentRepository archivedAppointmentRepository,
+            ShardedJobRunner jobRunner,
+            TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${scheduling.partitions.months-ahead:12}") int monthsAhead,
+            @Value("${scheduling.partitions.archive-after-months:12}") int archiveAfterMonths) {
+        this.appointmentRepository = appointmentRepository;
+        this.archivedAppointmentRepository = archivedAppointmentRepository;
+        this.jobRunner = jobRunner;
+        this.transactionTemplate = transactionTemplate;
+        this.monthsAhead = monthsAhead;
+        this.archiveAfterMonths = archiveAfterMonths;
+
+        Gauge.builder("scheduling.partitions.archive.blocked", blockedOpenAppointments, AtomicLong::get)
+                .description("Agendamentos em aberto no mês que impede o arquivamento; 0 quando nada está bloqueado")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${scheduling.partitions.cron:0 30 1 * * *}")
+    public void runMaintenance() {
+        try {
+            jobRunner.run(JOB_NAME, SHARDS, INTERVAL, shard -> maintain(LocalDate.now()));
+        } catch (Exception e) {
+            log.error("Erro na manutenção das partições de agendamentos: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Data do agendamento mais recente já arquivado; vazio se nenhum mês foi arquivado
+     */
+    public Optional<LocalDate> archivedUntil() {
+        Optional<LocalDate> current = archivedUntil;
+        if (current == null) {
+            current = refreshArchivedUntil();
+        }
+        return current;
+    }
+
+    /**
+     * Relê a data mais recente arquivada, que pode ter mudado pela manutenção em outra instância
+     */
+    @Scheduled(fixedDelayString = "${scheduling.partitions.archive-refresh-interval:600000}",
+               initialDelayString = "${scheduling.partitions.archive-refresh-interval:600000}")
+    public Optional<LocalDate> refreshArchivedUntil() {
+        Optional<LocalDate> latest = Optional.ofNullable(archivedAppointmentRepository.findLatestArchivedDate());
+        archivedUntil = latest;
+        return latest;
+    }
+
+    void maintain(LocalDate today) {
+        LocalDate currentMonth = today.withDayOfMonth(1);
+        LocalDate lastMonth = currentMonth.plusMonths(monthsAhead);
+
+        int created = 0;
+        for (LocalDate month = currentMonth; !month.isAfter(lastMonth); month = month.plusMonths(1)) {
+            created += createPartition(month) ? 1 : 0;
+        }
+        // Linhas na partição padrão dentro do horizonte ganham a partição do mês; as muito distantes continuam lá
+        for (LocalDate month : appointmentRepository.findUnpartitionedMonths()) {
+            if (!month.isAfter(lastMonth)) {
+                created += createPartition(month) ? 1 : 0;
+            }
+        }
+        if (created > 0) {
+            log.info("{} partições mensais de agendamentos criadas", created);
+        }
+
+        LocalDate archiveBefore = currentMonth.minusMonths(archiveAfterMonths);
+        List<ArchivedPartition> partitions = transactionTemplate.execute(status ->
+                appointmentRepository.archiveMonthlyPartitions(archiveBefore));
+        if (partitions == null) {
+            partitions = List.of();
+        }
+        List<String> archived = partitions.stream()
+                .filter(partition -> partition.getOpenAppointments() == 0)
+                .map(ArchivedPartition::getPartitionName)
+                .toList();
+        if (!archived.isEmpty()) {
+            log.info("Partições de agendamentos arquivadas: {}", archived);
+            refreshArchivedUntil();
+        }
+
+        // O arquivamento para no primeiro mês com agendamentos em aberto, e os meses seguintes esperam por ele
+        ArchivedPartition blocked = partitions.stream()
+                .filter(partition -> partition.getOpenAppointments() > 0)
+                .findFirst()
+                .orElse(null);
+        blockedOpenAppointments.set(blocked == null ? 0 : blocked.getOpenAppointments());
+        if (blocked != null) {
+            log.warn("Arquivamento de agendamentos parado na partição {}: {} agendamentos ainda agendados ou confirmados",
+                    blocked.getPartitionName(), blocked.getOpenAppointments());
+        }
+    }
+
+    private boolean createPartition(LocalDate month) {
+        return Boolean.TRUE.equals(transactionTemplate.execute(status ->
+                appointmentRepository.createMonthlyPartition(month)));
+    }
+}
@@ -0,0 +1,199 @@
+package br.com.fiap.tech.scheduling.service;
+
+import br.com.fiap.tech.scheduling.domain.Appointment;
+import br.com.fiap.tech.scheduling.domain.AppointmentStatus;
+import br.com.fiap.tech.scheduling.dto.AppointmentWithPriorityDTO;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ToIntFunction;
+
+/**
+ * Fila de prioridade em memória dos agendamentos com status SCHEDULED, separada em baldes por data.
+ * A pontuação tem uma parte fixa (nível de prioridade, tipo, encaminhamento) e a proximidade da data,
+ * que só muda quando a data cruza os limites de 3 e 7 dias. As pontuações ficam calculadas na fila ordenada
+ * e, na virada do dia, só os baldes das datas que cruzaram um limite são pontuados de novo.
+ */
+class AppointmentPriorityIndex {
+
+    private static final Comparator<Scored> ORDER = Comparator.comparingInt(Scored::score).reversed()
+            .thenComparing(scored -> scored.entry().date())
+            .thenComparing(scored -> scored.entry().startTime(), Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(scored -> scored.entry().id());
+
+    private final ToIntFunction<Appointment> baseScore;
+    private final NavigableSet<Scored> ordered = new TreeSet<>(ORDER);
+    private final NavigableMap<LocalDate, Map<Long, Scored>> dates = new TreeMap<>();
+    private final Map<Long, Scored> entries = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile LocalDate today;
+
+    record Entry(Long id, LocalDate date, LocalTime startTime, int baseScore, Appointment appointment) {
+    }
+
+    record Scored(Entry entry, int score) {
+    }
+
+    AppointmentPriorityIndex(ToIntFunction<Appointment> baseScore) {
+        this.baseScore = baseScore;
+    }
+
+    /**
+     * Substitui todo o conteúdo do índice pelos agendamentos informados, pontuados em relação à data informada
+     */
+    void reset(Collection<Appointment> scheduledAppointments, LocalDate today) {
+        lock.writeLock().lock();
+        try {
+            this.today = today;
+            ordered.clear();
+            dates.clear();
+            entries.clear();
+            scheduledAppointments.forEach(this::put);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Atualiza o índice com o estado atual do agendamento: apenas os SCHEDULED permanecem nele
+     */
+    void update(Appointment appointment) {
+        lock.writeLock().lock();
+        try {
+            remove(appointment.getId());
+            if (AppointmentStatus.SCHEDULED.equals(appointment.getStatus())) {
+                put(appointment);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Avança o dia de referência, pontuando de novo só os baldes das datas que entraram nos 3 ou nos 7 dias
+     */
+    void rollover(LocalDate newToday) {
+        LocalDate current = today;
+        if (current == null || !newToday.isAfter(current)) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            LocalDate previous = today;
+            if (!newToday.isAfter(previous)) {
+                return;
+            }
+            today = newToday;
+            for (int limit : new int[]{AppointmentPriorityService.NEAR_DAYS, AppointmentPriorityService.WEEK_DAYS}) {
+                rescore(previous.plusDays(limit), newToday.plusDays(limit));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Lista os agendamentos em ordem decrescente de pontuação; em caso de empate, o mais cedo primeiro
+     */
+    List<AppointmentWithPriorityDTO> ordered() {
+        lock.readLock().lock();
+        try {
+            return ordered.stream().map(this::toDto).toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Lista os agendamentos de uma data em ordem decrescente de pontuação
+     */
+    List<AppointmentWithPriorityDTO> ordered(LocalDate date) {
+        lock.readLock().lock();
+        try {
+            Map<Long, Scored> bucket = dates.get(date);
+            if (bucket == null) {
+                return List.of();
+            }
+            return bucket.values().stream().sorted(ORDER).map(this::toDto).toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retorna o agendamento de maior pontuação, ou null se o índice estiver vazio
+     */
+    AppointmentWithPriorityDTO peek() {
+        lock.readLock().lock();
+        try {
+            return ordered.isEmpty() ? null : toDto(ordered.first());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Pontua de novo os baldes das datas no intervalo (from, to]
+     */
+    private void rescore(LocalDate from, LocalDate to) {
+        for (Map<Long, Scored> bucket : dates.subMap(from, false, to, true).values()) {
+            bucket.replaceAll((id, scored) -> {
+                ordered.remove(scored);
+                Scored rescored = score(scored.entry());
+                ordered.add(rescored);
+                entries.put(id, rescored);
+                return rescored;
+            });
+        }
+    }
+
+    private void put(Appointment appointment) {
+        Entry entry = new Entry(appointment.getId(), appointment.getAppointmentDate(), appointment.getStartTime(),
+                baseScore.applyAsInt(appointment), appointment);
+        Scored scored = score(entry);
+        entries.put(entry.id(), scored);
+        ordered.add(scored);
+        dates.computeIfAbsent(entry.date(), d -> new HashMap<>()).put(entry.id(), scored);
+    }
+
+    private void remove(Long id) {
+        Scored scored = entries.remove(id);
+        if (scored == null) {
+            return;
+        }
+        ordered.remove(scored);
+        Map<Long, Scored> bucket = dates.get(scored.entry().date());
+        bucket.remove(id);
+        if (bucket.isEmpty()) {
+            dates.remove(scored.entry().date());
+        }
+    }
+
+    private Scored score(Entry entry) {
+        return new Scored(entry, entry.baseScore() + AppointmentPriorityService.dateScore(entry.date(), today));
+    }
+
+    private AppointmentWithPriorityDTO toDto(Scored scored) {
+        return new AppointmentWithPriorityDTO(scored.entry().appointment(), scored.score());
+    }
+}
@@ -5,27 +5,59 @@ import br.com.fiap.tech.scheduling.domain.AppointmentStatus;
 import br.com.fiap.tech.scheduling.domain.AppointmentType;
 import br.com.fiap.tech.scheduling.domain.PriorityLevel;
 import br.com.fiap.tech.scheduling.dto.AppointmentWithPriorityDTO;
+import br.com.fiap.tech.scheduling.dto.PriorityQueuePage;
+import br.com.fiap.tech.scheduling.dto.QueueCursor;
 import br.com.fiap.tech.scheduling.repository.AppointmentRepository;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
-import java.util.Comparator;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class AppointmentPriorityService {
+    // Limites de proximidade da data que mudam a pontuação
+    static final int NEAR_DAYS = 3;
+    static final int WEEK_DAYS = 7;
+
     private final AppointmentRepository appointmentRepository;
+    private final EntityManager entityManager;
+
+    // Fila dos agendamentos SCHEDULED por data, carregada do banco no primeiro acesso
+    private final AppointmentPriorityIndex index = new AppointmentPriorityIndex(this::calculateBaseScore);
+    private volatile boolean indexLoaded;
     
     /**
      * Calcula a pontuação de prioridade para um agendamento
      */
     public int calculatePriorityScore(Appointment appointment) {
+        return calculatePriorityScore(appointment, LocalDate.now());
+    }
+
+    /**
+     * Calcula a pontuação de prioridade considerando a proximidade em relação à data informada
+     */
+    public int calculatePriorityScore(Appointment appointment, LocalDate today) {
+        return calculateBaseScore(appointment) + dateScore(appointment.getAppointmentDate(), today);
+    }
+
+    /**
+     * Calcula a parte da pontuação que não depende da data atual
+     */
+    int calculateBaseScore(Appointment appointment) {
         int score = 0;
         
         // Base score por nível de prioridade (se tiver)
@@ -56,14 +88,6 @@ public class AppointmentPriorityService {
             score += 20; // Consultas têm prioridade padrão
         }
         
-        // Considerar a proximidade da data do agendamento
-        long daysUntilAppointment = ChronoUnit.DAYS.between(LocalDate.now(), appointment.getAppointmentDate());
-        if (daysUntilAppointment <= 3) {
-            score += 30; // Alta prioridade para agendamentos próximos
-        } else if (daysUntilAppointment <= 7) {
-            score += 15; // Prioridade média para agendamentos na próxima semana
-        }
-        
         // Se o agendamento foi gerado a partir de um encaminhamento, adicionar pontos
         if (appointment.getReferralId() != null) {
             score += 25; // Agendamentos de encaminhamentos têm maior prioridade
@@ -71,46 +95,149 @@ public class AppointmentPriorityService {
         
         return score;
     }
-    
+
+    /**
+     * Pontos pela proximidade da data do agendamento: 30 até 3 dias, 15 até 7 dias
+     */
+    static int dateScore(LocalDate appointmentDate, LocalDate today) {
+        long daysUntilAppointment = ChronoUnit.DAYS.between(today, appointmentDate);
+        if (daysUntilAppointment <= NEAR_DAYS) {
+            return 30; // Alta prioridade para agendamentos próximos
+        } else if (daysUntilAppointment <= WEEK_DAYS) {
+            return 15; // Prioridade média para agendamentos na próxima semana
+        }
+        return 0;
+    }
+
+    /**
+     * Atualiza a fila de agendamentos com o estado atual do agendamento.
+     * Dentro de uma transação, a atualização só acontece após o commit.
+     */
+    public void appointmentChanged(Appointment appointment) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    applyChange(appointment);
+                }
+            });
+        } else {
+            applyChange(appointment);
+        }
+    }
+
+    /**
+     * Virada do dia: pontua de novo as datas que passaram a estar a 3 ou 7 dias
+     */
+    @Scheduled(cron = "0 0 0 * * *")
+    public void rollover() {
+        if (indexLoaded) {
+            index.rollover(LocalDate.now());
+        }
+    }
+
+    /**
+     * Recarrega a fila a partir do banco, incorporando alterações feitas por outras instâncias
+     */
+    @Scheduled(fixedDelayString = "${scheduling.appointment-queue.resync-interval:300000}",
+               initialDelayString = "${scheduling.appointment-queue.resync-interval:300000}")
+    public void resyncQueue() {
+        if (indexLoaded) {
+            loadIndex();
+        }
+    }
+
     /**
      * Obtém todos os agendamentos agendados ordenados por prioridade
      */
     public List<AppointmentWithPriorityDTO> getPrioritizedAppointments() {
-        // Buscar todos os agendamentos com status SCHEDULED
-        List<Appointment> scheduledAppointments = appointmentRepository.findByStatus(AppointmentStatus.SCHEDULED);
-        
-        // Calcular pontuação de prioridade e ordenar
-        return scheduledAppointments.stream()
-            .map(app -> new AppointmentWithPriorityDTO(app, calculatePriorityScore(app)))
-            .sorted(Comparator.comparing(AppointmentWithPriorityDTO::getPriorityScore).reversed())
-            .collect(Collectors.toList());
+        return scheduledIndex().ordered();
     }
     
     /**
      * Obtém agendamentos para uma data específica, ordenados por prioridade
      */
     public List<AppointmentWithPriorityDTO> getPrioritizedAppointmentsByDate(LocalDate date) {
-        // Buscar agendamentos agendados para a data especificada
-        List<Appointment> scheduledAppointments = 
-            appointmentRepository.findByAppointmentDateAndStatus(date, AppointmentStatus.SCHEDULED);
-        
-        // Calcular pontuação de prioridade e ordenar
-        return scheduledAppointments.stream()
-            .map(app -> new AppointmentWithPriorityDTO(app, calculatePriorityScore(app)))
-            .sorted(Comparator.comparing(AppointmentWithPriorityDTO::getPriorityScore).reversed())
-            .collect(Collectors.toList());
+        return scheduledIndex().ordered(date);
     }
     
     /**
      * Obtém o próximo agendamento com maior prioridade
      */
     public AppointmentWithPriorityDTO getNextHighestPriorityAppointment() {
-        List<AppointmentWithPriorityDTO> prioritizedList = getPrioritizedAppointments();
-        
-        if (prioritizedList.isEmpty()) {
-            return null;
+        return scheduledIndex().peek();
+    }
+
+    /**
+     * Obtém uma página da fila de agendamentos, a partir do cursor da página anterior
+     *
+     * @param date data dos agendamentos, ou null para todas
+     * @param cursor cursor retornado na página anterior, ou null para a primeira página
+     */
+    @Transactional(readOnly = true)
+    public PriorityQueuePage<AppointmentWithPriorityDTO> getPrioritizedAppointmentsPage(LocalDate date, String cursor, int size) {
+        PriorityService.validatePageSize(size);
+        QueueCursor position = cursor == null ? QueueCursor.first(LocalDate.now().atStartOfDay()) : QueueCursor.decode(cursor);
+        LocalDate today = position.asOf().toLocalDate();
+
+        List<AppointmentWithPriorityDTO> items = appointmentRepository.findScheduledQueuePage(
+                        date, today, position.priorityScore(), position.tieBreaker(), position.id(), size)
+                .stream()
+                .map(app -> new AppointmentWithPriorityDTO(app, calculatePriorityScore(app, today)))
+                .collect(Collectors.toList());
+
+        String nextCursor = null;
+        if (items.size() == size) {
+            AppointmentWithPriorityDTO last = items.get(items.size() - 1);
+            Appointment appointment = last.getAppointment();
+            nextCursor = new QueueCursor(last.getPriorityScore(),
+                    LocalDateTime.of(appointment.getAppointmentDate(), appointment.getStartTime()),
+                    appointment.getId(), position.asOf()).encode();
+        }
+        return new PriorityQueuePage<>(items, nextCursor);
+    }
+
+    /**
+     * Percorre toda a fila de agendamentos em ordem de prioridade, sem carregá-la inteira em memória
+     *
+     * @param date data dos agendamentos, ou null para todas
+     */
+    @Transactional(readOnly = true)
+    public void streamPrioritizedAppointments(LocalDate date, Consumer<AppointmentWithPriorityDTO> consumer) {
+        LocalDate today = LocalDate.now();
+        try (Stream<Appointment> appointments = appointmentRepository.streamScheduledQueue(date, today)) {
+            appointments.forEach(app -> {
+                consumer.accept(new AppointmentWithPriorityDTO(app, calculatePriorityScore(app, today)));
+                // Libera a entidade já enviada para o contexto de persistência não crescer com a fila
+                entityManager.detach(app);
+            });
+        }
+    }
+
+    private AppointmentPriorityIndex scheduledIndex() {
+        if (!indexLoaded) {
+            synchronized (index) {
+                if (!indexLoaded) {
+                    loadIndex();
+                }
+            }
+        }
+        // Garante a pontuação do dia mesmo se a virada agendada ainda não rodou
+        index.rollover(LocalDate.now());
+        return index;
+    }
+
+    private void loadIndex() {
+        List<Appointment> scheduled = appointmentRepository.findByStatus(AppointmentStatus.SCHEDULED);
+        index.reset(scheduled, LocalDate.now());
+        indexLoaded = true;
+        log.info("Fila de agendamentos carregada com {} agendamentos", scheduled.size());
+    }
+
+    private void applyChange(Appointment appointment) {
+        // Enquanto a fila não foi carregada, a alteração já estará no banco na primeira leitura
+        if (indexLoaded) {
+            index.update(appointment);
         }
-        
-        return prioritizedList.get(0);
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,307 @@
+package br.com.fiap.tech.scheduling.service;
+
+import br.com.fiap.tech.scheduling.domain.Appointment;
+import br.com.fiap.tech.scheduling.domain.Referral;
+import br.com.fiap.tech.scheduling.dto.AppointmentRequest;
+import br.com.fiap.tech.scheduling.dto.BatchAppointmentResult;
+import br.com.fiap.tech.scheduling.dto.DoctorScheduleDTO;
+import br.com.fiap.tech.scheduling.repository.ReferralRepository;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Agendamento em lote, usado em campanhas (vacinação, coletas de exames).
+ * Cada médico, paciente, agenda semanal e unidade/data é consultado uma única vez para o lote inteiro,
+ * e as vagas restantes de cada unidade/data são descontadas pelos itens aceitos do próprio lote.
+ * Os encaminhamentos são lidos em uma só consulta e os conflitos de horário são verificados no índice
+ * em memória e entre os próprios itens do lote. Os itens aceitos são gravados em blocos, com inserts em lote.
+ * Cada item recebe seu próprio resultado: a recusa de um item não impede os demais.
+ */
+@Slf4j
+@Service
+public class BatchAppointmentService {
+
+    private static final String CONFLICT_MESSAGE = "O médico já possui um agendamento neste horário";
+
+    private final SchedulingService schedulingService;
+    private final AppointmentConflictIndex appointmentConflictIndex;
+    private final DoctorScheduleReadModel doctorScheduleReadModel;
+    private final ReferralRepository referralRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Executor bookingValidationExecutor;
+    private final int maxBatchSize;
+    private final int chunkSize;
+
+    public BatchAppointmentService(
+            SchedulingService schedulingService,
+            AppointmentConflictIndex appointmentConflictIndex,
+            DoctorScheduleReadModel doctorScheduleReadModel,
+            ReferralRepository referralRepository,
+            TransactionTemplate transactionTemplate,
+            @Qualifier("bookingValidationExecutor") Executor bookingValidationExecutor,
+            @Value("${scheduling.booking.batch-max-size:1000}") int maxBatchSize,
+            @Value("${scheduling.booking.batch-chunk-size:200}") int chunkSize) {
+        this.schedulingService = schedulingService;
+        this.appointmentConflictIndex = appointmentConflictIndex;
+        this.doctorScheduleReadModel = doctorScheduleReadModel;
+        this.referralRepository = referralRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.bookingValidationExecutor = bookingValidationExecutor;
+        this.maxBatchSize = maxBatchSize;
+        this.chunkSize = chunkSize;
+    }
+
+    record DoctorDay(Long doctorId, LocalDate date) {
+    }
+
+    record ScheduleKey(Long doctorId, DayOfWeek dayOfWeek) {
+    }
+
+    record CapacityKey(Long facilityId, LocalDate date) {
+    }
+
+    record Item(int index, AppointmentRequest request, Appointment appointment) {
+    }
+
+    public List<BatchAppointmentResult> createAppointments(List<AppointmentRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            throw new IllegalArgumentException("Informe ao menos um agendamento");
+        }
+        if (requests.size() > maxBatchSize) {
+            throw new IllegalArgumentException("O lote pode ter no máximo " + maxBatchSize + " agendamentos");
+        }
+
+        BatchAppointmentResult[] results = new BatchAppointmentResult[requests.size()];
+        Lookups lookups = new Lookups();
+
+        // Validações locais; as consultas remotas de cada item já são disparadas aqui, sem repetição
+        List<Item> candidates = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            AppointmentRequest request = requests.get(i);
+            try {
+                LocalDate appointmentDate = schedulingService.resolveAppointmentDate(request);
+                lookups.start(request, appointmentDate);
+                candidates.add(new Item(i, request, schedulingService.buildAppointment(request, appointmentDate)));
+            } catch (RuntimeException e) {
+                results[i] = rejected(i, e);
+            }
+        }
+
+        Map<Long, Referral> referrals = loadReferrals(candidates);
+
+        // Mesma ordem de validação do agendamento individual, seguida dos conflitos de horário
+        List<Item> accepted = new ArrayList<>();
+        Map<DoctorDay, NavigableMap<LocalTime, LocalTime>> bookedInBatch = new HashMap<>();
+        Set<Long> referralsInBatch = new HashSet<>();
+        Map<CapacityKey, Integer> capacityUsedInBatch = new HashMap<>();
+        for (Item item : candidates) {
+            try {
+                validate(item, lookups, referrals, referralsInBatch, capacityUsedInBatch);
+                reserve(item.appointment(), bookedInBatch);
+                if (item.request().getReferralId() != null) {
+                    referralsInBatch.add(item.request().getReferralId());
+                }
+                if (item.request().getHealthcareFacilityId() != null) {
+                    capacityUsedInBatch.merge(capacityKey(item.appointment()), 1, Integer::sum);
+                }
+                accepted.add(item);
+            } catch (RuntimeException e) {
+                results[item.index()] = rejected(item.index(), e);
+            }
+        }
+
+        for (int from = 0; from < accepted.size(); from += chunkSize) {
+            persist(accepted.subList(from, Math.min(from + chunkSize, accepted.size())), results);
+        }
+
+        long created = Arrays.stream(results).filter(BatchAppointmentResult::isCreated).count();
+        log.info("Agendamento em lote concluído: {} de {} agendamentos criados", created, requests.size());
+        return Arrays.asList(results);
+    }
+
+    private void validate(Item item, Lookups lookups, Map<Long, Referral> referrals, Set<Long> referralsInBatch,
+                          Map<CapacityKey, Integer> capacityUsedInBatch) {
+        AppointmentRequest request = item.request();
+        Appointment appointment = item.appointment();
+        DayOfWeek dayOfWeek = appointment.getAppointmentDate().getDayOfWeek();
+
+        schedulingService.verifyDoctorSchedule(
+                await(lookups.schedules(request.getDoctorId(), dayOfWeek)),
+                dayOfWeek.name(), request.getStartTime(), request.getEndTime());
+        await(lookups.patient(request.getPatientId()));
+        await(lookups.doctor(request.getDoctorId()));
+
+        if (request.getReferralId() != null) {
+            Referral referral = referrals.get(request.getReferralId());
+            if (referral == null) {
+                throw new EntityNotFoundException("Encaminhamento não encontrado com ID: " + request.getReferralId());
+            }
+            if (referralsInBatch.contains(request.getReferralId())) {
+                throw new IllegalStateException("Este encaminhamento já está agendado");
+            }
+            schedulingService.checkReferral(referral, request);
+        }
+
+        if (request.getHealthcareFacilityId() != null) {
+            // As vagas restantes valem para o lote todo: os itens já aceitos na mesma unidade e data ocupam parte delas
+            int remaining = await(lookups.capacity(request.getHealthcareFacilityId(), appointment.getAppointmentDate()));
+            if (capacityUsedInBatch.getOrDefault(capacityKey(appointment), 0) >= remaining) {
+                throw SchedulingService.facilityFull(request.getHealthcareFacilityId(), appointment.getAppointmentDate());
+            }
+        }
+
+        if (appointmentConflictIndex.hasConflict(request.getDoctorId(), appointment.getAppointmentDate(),
+                request.getStartTime(), request.getEndTime())) {
+            throw new IllegalStateException(CONFLICT_MESSAGE);
+        }
+    }
+
+    /**
+     * Reserva o horário entre os itens do lote, recusando sobreposições com itens já aceitos
+     */
+    private void reserve(Appointment appointment, Map<DoctorDay, NavigableMap<LocalTime, LocalTime>> bookedInBatch) {
+        NavigableMap<LocalTime, LocalTime> day = bookedInBatch.computeIfAbsent(
+                new DoctorDay(appointment.getDoctorId(), appointment.getAppointmentDate()), key -> new TreeMap<>());
+        // Os horários aceitos não se sobrepõem, então basta olhar o último que começa antes do fim do novo
+        Map.Entry<LocalTime, LocalTime> previous = day.lowerEntry(appointment.getEndTime());
+        if (previous != null && previous.getValue().isAfter(appointment.getStartTime())) {
+            throw new IllegalStateException(CONFLICT_MESSAGE);
+        }
+        day.put(appointment.getStartTime(), appointment.getEndTime());
+    }
+
+    private static CapacityKey capacityKey(Appointment appointment) {
+        return new CapacityKey(appointment.getHealthcareFacilityId(), appointment.getAppointmentDate());
+    }
+
+    private Map<Long, Referral> loadReferrals(List<Item> items) {
+        Set<Long> referralIds = items.stream()
+                .map(item -> item.request().getReferralId())
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        if (referralIds.isEmpty()) {
+            return Map.of();
+        }
+        return referralRepository.findAllById(referralIds).stream()
+                .collect(Collectors.toMap(Referral::getId, Function.identity()));
+    }
+
+    /**
+     * Grava um bloco em uma transação. Se outra instância ocupou algum dos horários nesse meio tempo,
+     * o bloco inteiro é desfeito e os itens são gravados um a um para identificar quais conflitaram.
+     */
+    private void persist(List<Item> chunk, BatchAppointmentResult[] results) {
+        List<Appointment> appointments = chunk.stream().map(Item::appointment).toList();
+        try {
+            List<Appointment> saved = transactionTemplate.execute(
+                    status -> schedulingService.persistAppointments(appointments));
+            for (int i = 0; i < chunk.size(); i++) {
+                results[chunk.get(i).index()] = BatchAppointmentResult.created(chunk.get(i).index(), saved.get(i));
+            }
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Conflito ao gravar bloco de {} agendamentos; gravando item a item", chunk.size());
+            chunk.forEach(item -> persistOne(item, results));
+        }
+    }
+
+    private void persistOne(Item item, BatchAppointmentResult[] results) {
+        // O ID reservado na tentativa desfeita não é reaproveitado
+        item.appointment().setId(null);
+        try {
+            List<Appointment> saved = transactionTemplate.execute(
+                    status -> schedulingService.persistAppointments(List.of(item.appointment())));
+            results[item.index()] = BatchAppointmentResult.created(item.index(), saved.get(0));
+        } catch (DataIntegrityViolationException e) {
+            results[item.index()] = BatchAppointmentResult.rejected(item.index(), 409, CONFLICT_MESSAGE);
+        }
+    }
+
+    private BatchAppointmentResult rejected(int index, RuntimeException e) {
+        int status;
+        if (e instanceof IllegalArgumentException) {
+            status = 400;
+        } else if (e instanceof EntityNotFoundException) {
+            status = 404;
+        } else if (e instanceof IllegalStateException) {
+            status = 409;
+        } else {
+            status = 500;
+            log.error("Erro ao validar item {} do agendamento em lote: {}", index, e.getMessage());
+        }
+        return BatchAppointmentResult.rejected(index, status, e.getMessage());
+    }
+
+    private static <T> T await(CompletableFuture<T> check) {
+        try {
+            return check.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Consultas remotas do lote, disparadas uma única vez por chave
+     */
+    private final class Lookups {
+        private final Map<ScheduleKey, CompletableFuture<List<DoctorScheduleDTO>>> schedules = new HashMap<>();
+        private final Map<Long, CompletableFuture<Void>> patients = new HashMap<>();
+        private final Map<Long, CompletableFuture<Void>> doctors = new HashMap<>();
+        private final Map<CapacityKey, CompletableFuture<Integer>> capacities = new HashMap<>();
+
+        void start(AppointmentRequest request, LocalDate appointmentDate) {
+            schedules(request.getDoctorId(), appointmentDate.getDayOfWeek());
+            patient(request.getPatientId());
+            doctor(request.getDoctorId());
+            if (request.getHealthcareFacilityId() != null) {
+                capacity(request.getHealthcareFacilityId(), appointmentDate);
+            }
+        }
+
+        CompletableFuture<List<DoctorScheduleDTO>> schedules(Long doctorId, DayOfWeek dayOfWeek) {
+            return schedules.computeIfAbsent(new ScheduleKey(doctorId, dayOfWeek), key -> CompletableFuture.supplyAsync(
+                    () -> doctorScheduleReadModel.getDoctorSchedules(doctorId, dayOfWeek), bookingValidationExecutor));
+        }
+
+        CompletableFuture<Void> patient(Long patientId) {
+            return patients.computeIfAbsent(patientId, key -> CompletableFuture.runAsync(
+                    () -> schedulingService.verifyPatientExists(patientId), bookingValidationExecutor));
+        }
+
+        CompletableFuture<Void> doctor(Long doctorId) {
+            return doctors.computeIfAbsent(doctorId, key -> CompletableFuture.runAsync(
+                    () -> schedulingService.verifyDoctorExists(doctorId), bookingValidationExecutor));
+        }
+
+        CompletableFuture<Integer> capacity(Long facilityId, LocalDate date) {
+            return capacities.computeIfAbsent(new CapacityKey(facilityId, date), key -> CompletableFuture.supplyAsync(
+                    () -> schedulingService.remainingFacilityCapacity(facilityId, date), bookingValidationExecutor));
+        }
+    }
+}
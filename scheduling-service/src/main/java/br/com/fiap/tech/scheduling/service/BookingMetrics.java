@@ -0,0 +1,114 @@
+package br.com.fiap.tech.scheduling.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Tempo de cada etapa da criação de agendamento (timer scheduling.booking.stage, com as tags stage e outcome),
+ * com histograma de percentis para os painéis e os percentis 50, 95 e 99 calculados na própria instância.
+ * O endpoint /actuator/bookingstages lista as etapas da mais lenta para a mais rápida pelo percentil 95.
+ */
+@Component
+@Endpoint(id = "bookingstages")
+public class BookingMetrics {
+
+    static final String TIMER_NAME = "scheduling.booking.stage";
+
+    public enum Stage {
+        SCHEDULE_FETCH("schedule-fetch"),
+        PATIENT_CHECK("patient-check"),
+        DOCTOR_CHECK("doctor-check"),
+        REFERRAL_LOOKUP("referral-lookup"),
+        CONFLICT_QUERY("conflict-query"),
+        INSERT("insert"),
+        CAPACITY_RESERVATION("capacity-reservation"),
+        REFERRAL_UPDATE("referral-update"),
+        EVENT_PUBLISH("event-publish");
+
+        private final String tag;
+
+        Stage(String tag) {
+            this.tag = tag;
+        }
+
+        public String tag() {
+            return tag;
+        }
+    }
+
+    public record StageSummary(String stage, long count, long errors, double meanMs, double p95Ms, double p99Ms, double maxMs) {
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final Map<Stage, Timer> success = new EnumMap<>(Stage.class);
+    private final Map<Stage, Timer> error = new EnumMap<>(Stage.class);
+
+    public BookingMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        for (Stage stage : Stage.values()) {
+            success.put(stage, timer(stage, "success"));
+            error.put(stage, timer(stage, "error"));
+        }
+    }
+
+    public <T> T record(Stage stage, Supplier<T> action) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            T result = action.get();
+            sample.stop(success.get(stage));
+            return result;
+        } catch (RuntimeException e) {
+            sample.stop(error.get(stage));
+            throw e;
+        }
+    }
+
+    public void record(Stage stage, Runnable action) {
+        record(stage, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Resumo das etapas bem-sucedidas desde o início da instância, da mais lenta para a mais rápida pelo percentil 95
+     */
+    @ReadOperation
+    public List<StageSummary> slowestStages() {
+        List<StageSummary> summaries = new ArrayList<>();
+        for (Stage stage : Stage.values()) {
+            Timer timer = success.get(stage);
+            Map<Double, Double> percentiles = new HashMap<>();
+            Arrays.stream(timer.takeSnapshot().percentileValues())
+                    .forEach(value -> percentiles.put(value.percentile(), value.value(TimeUnit.MILLISECONDS)));
+            summaries.add(new StageSummary(stage.tag(), timer.count(), error.get(stage).count(),
+                    timer.mean(TimeUnit.MILLISECONDS), percentiles.getOrDefault(0.95, 0.0),
+                    percentiles.getOrDefault(0.99, 0.0), timer.max(TimeUnit.MILLISECONDS)));
+        }
+        summaries.sort(Comparator.comparingDouble(StageSummary::p95Ms).reversed());
+        return summaries;
+    }
+
+    private Timer timer(Stage stage, String outcome) {
+        return Timer.builder(TIMER_NAME)
+                .description("Duração de cada etapa da criação de agendamento")
+                .tag("stage", stage.tag())
+                .tag("outcome", outcome)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,139 @@
+package br.com.fiap.tech.scheduling.service;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Ocupação de um médico em um dia, em um mapa de bits: cada bit é uma faixa de 5 minutos (288 bits em 5 longs).
+ * Um agendamento marca todas as faixas que toca, então horários fora da grade de 5 minutos ocupam a faixa inteira:
+ * o mapa nunca deixa passar um conflito, mas pode apontar um que não existe (por isso o índice confirma no banco).
+ * As instâncias são imutáveis; cada alteração gera uma cópia, que substitui a anterior no cache.
+ */
+final class DayOccupancy {
+
+    static final int CELL_MINUTES = 5;
+    static final int CELLS = 24 * 60 / CELL_MINUTES;
+
+    private static final int CELL_SECONDS = CELL_MINUTES * 60;
+    private static final int WORDS = (CELLS + Long.SIZE - 1) / Long.SIZE;
+
+    static final DayOccupancy EMPTY = new DayOccupancy(new long[WORDS]);
+
+    record Period(LocalTime start, LocalTime end) {
+    }
+
+    private final long[] words;
+
+    private DayOccupancy(long[] words) {
+        this.words = words;
+    }
+
+    /**
+     * Retorna uma cópia com o intervalo [start, end) ocupado
+     */
+    DayOccupancy with(LocalTime start, LocalTime end) {
+        int first = firstCell(start);
+        int last = lastCell(end);
+        if (last < first) {
+            return this;
+        }
+        long[] copy = words.clone();
+        for (int word = first / Long.SIZE; word <= last / Long.SIZE; word++) {
+            copy[word] |= mask(word, first, last);
+        }
+        return new DayOccupancy(copy);
+    }
+
+    /**
+     * Indica se nenhuma faixa tocada pelo intervalo [start, end) está ocupada
+     */
+    boolean isFree(LocalTime start, LocalTime end) {
+        int first = firstCell(start);
+        int last = lastCell(end);
+        for (int word = first / Long.SIZE; word <= last / Long.SIZE && last >= first; word++) {
+            if ((words[word] & mask(word, first, last)) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int busyCells() {
+        return Arrays.stream(words).mapToInt(Long::bitCount).sum();
+    }
+
+    /**
+     * Faixas ocupadas consecutivas agrupadas em períodos, em ordem
+     */
+    List<Period> busyPeriods() {
+        List<Period> periods = new ArrayList<>();
+        int cell = nextBusy(0);
+        while (cell < CELLS) {
+            int end = nextFree(cell);
+            periods.add(new Period(timeOf(cell), end == CELLS ? LocalTime.MAX : timeOf(end)));
+            cell = nextBusy(end);
+        }
+        return periods;
+    }
+
+    /**
+     * Mapa de bits em hexadecimal, uma palavra de 64 bits (5h20) por bloco, começando à meia-noite
+     */
+    String toHex() {
+        StringBuilder hex = new StringBuilder();
+        for (long word : words) {
+            if (!hex.isEmpty()) {
+                hex.append(' ');
+            }
+            hex.append(String.format("%016x", Long.reverse(word)));
+        }
+        return hex.toString();
+    }
+
+    private int nextBusy(int from) {
+        for (int cell = from; cell < CELLS; cell++) {
+            if (isSet(cell)) {
+                return cell;
+            }
+        }
+        return CELLS;
+    }
+
+    private int nextFree(int from) {
+        for (int cell = from; cell < CELLS; cell++) {
+            if (!isSet(cell)) {
+                return cell;
+            }
+        }
+        return CELLS;
+    }
+
+    private boolean isSet(int cell) {
+        return (words[cell / Long.SIZE] & (1L << (cell % Long.SIZE))) != 0;
+    }
+
+    /**
+     * Bits da palavra que estão entre as faixas first e last, inclusive
+     */
+    private static long mask(int word, int first, int last) {
+        int from = Math.max(first, word * Long.SIZE) - word * Long.SIZE;
+        int to = Math.min(last, word * Long.SIZE + Long.SIZE - 1) - word * Long.SIZE;
+        long upTo = to == Long.SIZE - 1 ? -1L : (1L << (to + 1)) - 1;
+        return upTo & (-1L << from);
+    }
+
+    private static int firstCell(LocalTime start) {
+        return start.toSecondOfDay() / CELL_SECONDS;
+    }
+
+    private static int lastCell(LocalTime end) {
+        // A faixa em que o intervalo termina só conta se o fim estiver dentro dela
+        return Math.min((end.toSecondOfDay() + CELL_SECONDS - 1) / CELL_SECONDS, CELLS) - 1;
+    }
+
+    private static LocalTime timeOf(int cell) {
+        return LocalTime.ofSecondOfDay((long) cell * CELL_SECONDS);
+    }
+}
@@ -0,0 +1,226 @@
+package br.com.fiap.tech.scheduling.service;
+
+import br.com.fiap.tech.scheduling.client.FacilityClient;
+import br.com.fiap.tech.scheduling.domain.DoctorScheduleReplica;
+import br.com.fiap.tech.scheduling.dto.DoctorScheduleDTO;
+import br.com.fiap.tech.scheduling.events.DoctorScheduleChangedEvent;
+import br.com.fiap.tech.scheduling.repository.DoctorScheduleReplicaRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.DayOfWeek;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Cópia local das agendas dos médicos, alimentada pelos eventos do facility-service.
+ * As agendas ficam na tabela doctor_schedule_replicas e em memória, indexadas por médico e dia da semana,
+ * para que o agendamento não dependa de uma chamada ao facility-service.
+ * Enquanto a cópia não foi carregada, ou se o médico ainda não tem agendas nela, a consulta vai ao facility-service.
+ * Agendas excluídas continuam na tabela marcadas como excluídas, com a versão da exclusão, para que um evento de
+ * criação ou alteração entregue depois da exclusão não traga a agenda de volta.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DoctorScheduleReadModel {
+
+    private final DoctorScheduleReplicaRepository replicaRepository;
+    private final FacilityClient facilityClient;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Map<Long, Map<DayOfWeek, List<DoctorScheduleDTO>>> schedulesByDoctor = new ConcurrentHashMap<>();
+
+    private volatile boolean loaded;
+
+    /**
+     * Carrega a cópia local gravada; se ela estiver vazia, busca as agendas no facility-service
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        List<DoctorScheduleReplica> replicas = replicaRepository.findByDeletedFalse();
+        if (replicas.isEmpty()) {
+            try {
+                resync();
+            } catch (Exception e) {
+                log.warn("Não foi possível carregar as agendas do facility-service: {}. " +
+                        "As agendas serão consultadas remotamente até a próxima ressincronização", e.getMessage());
+            }
+            return;
+        }
+
+        replaceAll(replicas);
+        log.info("Cópia local carregada com {} agendas de {} médicos", replicas.size(), schedulesByDoctor.size());
+    }
+
+    /**
+     * Substitui a cópia local por todas as agendas do facility-service
+     *
+     * @return quantidade de agendas carregadas
+     */
+    public synchronized int resync() {
+        List<DoctorScheduleDTO> schedules = facilityClient.getAllDoctorSchedules();
+
+        List<DoctorScheduleReplica> replicas = transactionTemplate.execute(status -> {
+            // Uma agenda excluída depois da leitura do facility-service continua excluída
+            Set<Long> deletedIds = new HashSet<>(replicaRepository.findDeletedIds());
+            List<DoctorScheduleReplica> live = schedules.stream()
+                    .filter(schedule -> !deletedIds.contains(schedule.getId()))
+                    .map(this::toReplica)
+                    .toList();
+            replicaRepository.deleteAllLive();
+            replicaRepository.saveAll(live);
+            return live;
+        });
+        replaceAll(replicas);
+        log.info("Cópia local ressincronizada com {} agendas de {} médicos", replicas.size(), schedulesByDoctor.size());
+        return replicas.size();
+    }
+
+    /**
+     * Aplica na cópia local uma alteração de agenda publicada pelo facility-service.
+     * Eventos mais antigos que a versão gravada são ignorados; depois da exclusão, só um evento
+     * com versão posterior à da exclusão altera a agenda.
+     */
+    public synchronized void apply(DoctorScheduleChangedEvent event) {
+        Long previousDoctorId = transactionTemplate.execute(status -> {
+            DoctorScheduleReplica current = replicaRepository.findById(event.getScheduleId()).orElse(null);
+
+            if (current != null && isOutdated(event, current)) {
+                log.debug("Evento desatualizado ignorado para a agenda {}", event.getScheduleId());
+                return current.getDoctorId();
+            }
+
+            DoctorScheduleReplica replica = toReplica(event);
+            replica.setDeleted(event.getChangeType() == DoctorScheduleChangedEvent.ChangeType.DELETED);
+            replicaRepository.save(replica);
+            return current != null ? current.getDoctorId() : null;
+        });
+
+        // A agenda pode ter mudado de médico; os dois precisam ser recarregados
+        if (previousDoctorId != null && !previousDoctorId.equals(event.getDoctorId())) {
+            reloadDoctor(previousDoctorId);
+        }
+        reloadDoctor(event.getDoctorId());
+    }
+
+    /**
+     * Retorna as agendas do médico no dia da semana informado
+     */
+    public List<DoctorScheduleDTO> getDoctorSchedules(Long doctorId, DayOfWeek dayOfWeek) {
+        Map<DayOfWeek, List<DoctorScheduleDTO>> byDay = schedulesByDoctor.get(doctorId);
+        if (loaded && byDay != null) {
+            return byDay.getOrDefault(dayOfWeek, Collections.emptyList());
+        }
+
+        log.debug("Agendas do médico {} não encontradas na cópia local; consultando o facility-service", doctorId);
+        return facilityClient.getDoctorSchedules(doctorId).stream()
+                .filter(schedule -> dayOfWeek.name().equals(schedule.getDayOfWeek()))
+                .toList();
+    }
+
+    /**
+     * Retorna as agendas de todos os médicos. Enquanto a cópia local não foi carregada,
+     * busca todas no facility-service em uma única chamada
+     */
+    public List<DoctorScheduleDTO> getAllSchedules() {
+        if (!loaded) {
+            log.debug("Cópia local ainda não carregada; consultando todas as agendas no facility-service");
+            return facilityClient.getAllDoctorSchedules();
+        }
+        return schedulesByDoctor.values().stream()
+                .flatMap(byDay -> byDay.values().stream())
+                .flatMap(List::stream)
+                .toList();
+    }
+
+    private boolean isOutdated(DoctorScheduleChangedEvent event, DoctorScheduleReplica current) {
+        if (current.isDeleted()) {
+            return event.getUpdatedAt() == null || current.getUpdatedAt() == null
+                    || !event.getUpdatedAt().isAfter(current.getUpdatedAt());
+        }
+        return current.getUpdatedAt() != null && event.getUpdatedAt() != null
+                && event.getUpdatedAt().isBefore(current.getUpdatedAt());
+    }
+
+    private void reloadDoctor(Long doctorId) {
+        List<DoctorScheduleReplica> replicas = replicaRepository.findByDoctorIdAndDeletedFalse(doctorId);
+        if (replicas.isEmpty()) {
+            schedulesByDoctor.remove(doctorId);
+        } else {
+            schedulesByDoctor.put(doctorId, indexByDay(replicas));
+        }
+    }
+
+    private void replaceAll(List<DoctorScheduleReplica> replicas) {
+        Map<Long, Map<DayOfWeek, List<DoctorScheduleDTO>>> rebuilt = replicas.stream()
+                .collect(Collectors.groupingBy(DoctorScheduleReplica::getDoctorId,
+                        Collectors.collectingAndThen(Collectors.toList(), this::indexByDay)));
+
+        schedulesByDoctor.keySet().retainAll(rebuilt.keySet());
+        schedulesByDoctor.putAll(rebuilt);
+        loaded = true;
+    }
+
+    private Map<DayOfWeek, List<DoctorScheduleDTO>> indexByDay(List<DoctorScheduleReplica> replicas) {
+        Map<DayOfWeek, List<DoctorScheduleDTO>> byDay = new EnumMap<>(DayOfWeek.class);
+        replicas.forEach(replica -> byDay
+                .computeIfAbsent(DayOfWeek.valueOf(replica.getDayOfWeek()), day -> new ArrayList<>())
+                .add(toDto(replica)));
+        byDay.replaceAll((day, schedules) -> List.copyOf(schedules));
+        return Collections.unmodifiableMap(byDay);
+    }
+
+    private DoctorScheduleReplica toReplica(DoctorScheduleDTO schedule) {
+        return DoctorScheduleReplica.builder()
+                .id(schedule.getId())
+                .doctorId(schedule.getDoctorId())
+                .facilityId(schedule.getFacilityId())
+                .dayOfWeek(schedule.getDayOfWeek())
+                .startTime(schedule.getStartTime())
+                .endTime(schedule.getEndTime())
+                .secondPeriodStart(schedule.getSecondPeriodStart())
+                .secondPeriodEnd(schedule.getSecondPeriodEnd())
+                .updatedAt(schedule.getUpdatedAt())
+                .build();
+    }
+
+    private DoctorScheduleReplica toReplica(DoctorScheduleChangedEvent event) {
+        return DoctorScheduleReplica.builder()
+                .id(event.getScheduleId())
+                .doctorId(event.getDoctorId())
+                .facilityId(event.getFacilityId())
+                .dayOfWeek(event.getDayOfWeek())
+                .startTime(event.getStartTime())
+                .endTime(event.getEndTime())
+                .secondPeriodStart(event.getSecondPeriodStart())
+                .secondPeriodEnd(event.getSecondPeriodEnd())
+                .updatedAt(event.getUpdatedAt())
+                .build();
+    }
+
+    private DoctorScheduleDTO toDto(DoctorScheduleReplica replica) {
+        return DoctorScheduleDTO.builder()
+                .id(replica.getId())
+                .dayOfWeek(replica.getDayOfWeek())
+                .startTime(replica.getStartTime())
+                .endTime(replica.getEndTime())
+                .secondPeriodStart(replica.getSecondPeriodStart())
+                .secondPeriodEnd(replica.getSecondPeriodEnd())
+                .doctorId(replica.getDoctorId())
+                .facilityId(replica.getFacilityId())
+                .updatedAt(replica.getUpdatedAt())
+                .build();
+    }
+}
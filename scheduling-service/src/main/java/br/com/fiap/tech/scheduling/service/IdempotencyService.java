@@ -0,0 +1,251 @@
+package br.com.fiap.tech.scheduling.service;
+
+import br.com.fiap.tech.scheduling.domain.IdempotencyKey;
+import br.com.fiap.tech.scheduling.repository.IdempotencyKeyRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Executa requisições de criação uma única vez por cabeçalho Idempotency-Key.
+ * A primeira requisição reserva a chave na tabela idempotency_keys, executa e grava a resposta, que também fica
+ * em cache; as repetições recebem a resposta gravada sem executar de novo (nem as validações remotas).
+ * Repetições simultâneas esperam a execução em andamento: na mesma instância, pelo resultado em memória;
+ * em outra instância, consultando a tabela até a resposta ser gravada.
+ * Se a execução falhar, a chave é liberada e a próxima tentativa executa normalmente.
+ * A ação grava em sua própria transação e a resposta é gravada depois, em outra; por isso uma chave que ficou
+ * sem resposta (execução lenta, ou instância que parou entre as duas gravações) nunca é executada de novo:
+ * as repetições recebem 409 até a chave expirar, em vez de arriscar um segundo agendamento.
+ */
+@Slf4j
+@Service
+public class IdempotencyService {
+
+    public static final String APPOINTMENT_SCOPE = "appointment";
+    public static final String REFERRAL_SCOPE = "referral";
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final Duration inFlightTimeout;
+    private final Duration pollInterval;
+    private final String instanceId;
+    private final Cache<String, StoredResponse> completed;
+    private final Map<String, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+
+    record StoredResponse(String requestHash, String body) {
+    }
+
+    public IdempotencyService(
+            IdempotencyKeyRepository idempotencyKeyRepository,
+            TransactionTemplate transactionTemplate,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${scheduling.idempotency.ttl:24h}") Duration ttl,
+            @Value("${scheduling.idempotency.in-flight-timeout:30s}") Duration inFlightTimeout,
+            @Value("${scheduling.idempotency.poll-interval:100ms}") Duration pollInterval,
+            @Value("${scheduling.idempotency.cache-size:10000}") long cacheSize,
+            @Value("${jobs.instance-name:${HOSTNAME:local}}") String instanceName) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+        this.inFlightTimeout = inFlightTimeout;
+        this.pollInterval = pollInterval;
+        this.instanceId = instanceName + "-" + UUID.randomUUID().toString().substring(0, 8);
+        this.completed = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, completed, "scheduling.idempotency");
+    }
+
+    /**
+     * Executa a ação uma única vez para a chave, ou devolve a resposta da execução anterior.
+     * Sem chave, apenas executa a ação.
+     *
+     * @param scope operação à qual a chave pertence
+     * @param key valor do cabeçalho Idempotency-Key, ou null
+     * @param request corpo da requisição; a mesma chave não pode ser usada com outro corpo
+     * @param responseType tipo da resposta, usado para ler a resposta gravada
+     */
+    public <T> T execute(String scope, String key, Object request, Class<T> responseType, Supplier<T> action) {
+        if (key == null) {
+            return action.get();
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("O cabeçalho Idempotency-Key deve ter entre 1 e " + MAX_KEY_LENGTH + " caracteres");
+        }
+        String requestHash = requestHash(request);
+        String cacheKey = scope + ":" + key;
+
+        StoredResponse cached = completed.getIfPresent(cacheKey);
+        if (cached != null) {
+            log.debug("Repetição da requisição {} com Idempotency-Key {}: devolvendo a resposta gravada", scope, key);
+            return read(verified(cached, requestHash), responseType);
+        }
+
+        CompletableFuture<StoredResponse> execution = new CompletableFuture<>();
+        CompletableFuture<StoredResponse> running = inFlight.putIfAbsent(cacheKey, execution);
+        if (running != null) {
+            log.debug("Requisição {} com Idempotency-Key {} em andamento: aguardando o resultado", scope, key);
+            return read(verified(await(running), requestHash), responseType);
+        }
+        try {
+            StoredResponse response = executeOnce(scope, key, requestHash, action);
+            if (response.body() != null) {
+                completed.put(cacheKey, response);
+            }
+            execution.complete(response);
+            return read(verified(response, requestHash), responseType);
+        } catch (RuntimeException e) {
+            execution.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(cacheKey, execution);
+        }
+    }
+
+    /**
+     * Remove as chaves expiradas
+     */
+    @Scheduled(fixedDelayString = "${scheduling.idempotency.purge-interval:3600000}")
+    public void purgeExpired() {
+        Integer removed = transactionTemplate.execute(status -> idempotencyKeyRepository.deleteExpired(LocalDateTime.now()));
+        if (removed != null && removed > 0) {
+            log.info("{} chaves de idempotência expiradas removidas", removed);
+        }
+    }
+
+    private <T> StoredResponse executeOnce(String scope, String key, String requestHash, Supplier<T> action) {
+        LocalDateTime deadline = LocalDateTime.now().plus(inFlightTimeout);
+        while (true) {
+            LocalDateTime now = LocalDateTime.now();
+            Integer claimed = transactionTemplate.execute(status -> idempotencyKeyRepository.claim(
+                    scope, key, requestHash, instanceId, now.plus(inFlightTimeout), now.plus(ttl), now));
+            if (claimed != null && claimed > 0) {
+                return run(scope, key, requestHash, action);
+            }
+
+            // Chave em uso: devolve a resposta gravada ou espera a execução em outra instância terminar
+            IdempotencyKey existing = idempotencyKeyRepository.findById(new IdempotencyKey.Key(scope, key)).orElse(null);
+            if (existing != null) {
+                StoredResponse response = new StoredResponse(existing.getRequestHash(), existing.getResponseBody());
+                if (response.body() != null || !requestHash.equals(response.requestHash())) {
+                    return response;
+                }
+                if (existing.getLockedUntil() != null && existing.getLockedUntil().isBefore(now)) {
+                    // A execução passou do prazo sem gravar a resposta e pode ter gravado o agendamento
+                    throw new IllegalStateException("A requisição com a mesma Idempotency-Key não confirmou o resultado; " +
+                            "consulte os agendamentos antes de tentar com outra chave");
+                }
+            }
+            if (now.isAfter(deadline)) {
+                throw new IllegalStateException("Requisição com a mesma Idempotency-Key ainda em processamento");
+            }
+            sleep();
+        }
+    }
+
+    private <T> StoredResponse run(String scope, String key, String requestHash, Supplier<T> action) {
+        T result;
+        try {
+            result = action.get();
+        } catch (RuntimeException e) {
+            transactionTemplate.executeWithoutResult(status -> idempotencyKeyRepository.release(scope, key, instanceId));
+            throw e;
+        }
+        String body = write(result);
+        Integer updated = transactionTemplate.execute(status -> idempotencyKeyRepository.complete(scope, key, instanceId, body));
+        if (updated == null || updated == 0) {
+            log.warn("Resposta da requisição {} com Idempotency-Key {} gravada após o fim da reserva", scope, key);
+        }
+        return new StoredResponse(requestHash, body);
+    }
+
+    private StoredResponse await(CompletableFuture<StoredResponse> running) {
+        try {
+            return running.get(inFlightTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Requisição com a mesma Idempotency-Key ainda em processamento");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Espera pela requisição com a mesma Idempotency-Key interrompida", e);
+        }
+    }
+
+    private static StoredResponse verified(StoredResponse response, String requestHash) {
+        if (!requestHash.equals(response.requestHash())) {
+            throw new IllegalArgumentException("A Idempotency-Key já foi usada com outra requisição");
+        }
+        return response;
+    }
+
+    private void sleep() {
+        try {
+            Thread.sleep(pollInterval.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Espera pela requisição com a mesma Idempotency-Key interrompida", e);
+        }
+    }
+
+    /**
+     * Hash SHA-256 do corpo serializado, que identifica a requisição associada à chave
+     */
+    String requestHash(Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(write(request).getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String write(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Não foi possível serializar " + value.getClass().getSimpleName(), e);
+        }
+    }
+
+    private <T> T read(StoredResponse response, Class<T> responseType) {
+        try {
+            return objectMapper.readValue(response.body(), responseType);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Não foi possível ler a resposta gravada", e);
+        }
+    }
+}
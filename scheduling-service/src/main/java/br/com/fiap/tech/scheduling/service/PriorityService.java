@@ -4,149 +4,229 @@ import br.com.fiap.tech.scheduling.domain.PriorityLevel;
 import br.com.fiap.tech.scheduling.domain.Referral;
 import br.com.fiap.tech.scheduling.domain.ReferralStatus;
 import br.com.fiap.tech.scheduling.domain.ReferralType;
+import br.com.fiap.tech.scheduling.dto.PriorityQueuePage;
+import br.com.fiap.tech.scheduling.dto.QueueCursor;
 import br.com.fiap.tech.scheduling.dto.ReferralWithPriorityDTO;
 import br.com.fiap.tech.scheduling.repository.ReferralRepository;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.util.Comparator;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class PriorityService {
+    static final int MAX_PAGE_SIZE = 500;
+
+    // Todas as pontuações base possíveis, usadas para percorrer a fila no banco por grupo de pontuação
+    static final String POSSIBLE_BASE_SCORES = possibleBaseScores();
+
     private final ReferralRepository referralRepository;
+    private final EntityManager entityManager;
+
+    // Fila dos encaminhamentos pendentes, carregada do banco no primeiro acesso
+    private final ReferralPriorityQueue queue = new ReferralPriorityQueue(this::calculateBaseScore);
+    private volatile boolean queueLoaded;
     
     /**
      * Calcula a pontuação de prioridade para um encaminhamento
      */
     public int calculatePriorityScore(Referral referral) {
-        int score = 0;
-        
-        // Base score por nível de prioridade
-        switch (referral.getPriorityLevel()) {
-            case URGENT:
-                score += 100;
-                break;
-            case HIGH:
-                score += 70;
-                break;
-            case MEDIUM:
-                score += 40;
-                break;
-            case LOW:
-                score += 10;
-                break;
-        }
-        
-        // Adicionar pontos para fatores adicionais
-        if (referral.getPatientAge() != null) {
-            if (referral.getPatientAge() < 12 || referral.getPatientAge() > 65) {
-                score += 10; // Prioridade para crianças e idosos
-            }
+        return calculatePriorityScore(referral, LocalDateTime.now());
+    }
+
+    /**
+     * Calcula a pontuação de prioridade considerando o tempo de espera até o instante informado
+     */
+    public int calculatePriorityScore(Referral referral, LocalDateTime now) {
+        return calculateBaseScore(referral) + agingScore(referral.getRequestedDate(), now);
+    }
+
+    /**
+     * Calcula a parte da pontuação que não depende do tempo de espera
+     */
+    int calculateBaseScore(Referral referral) {
+        return referral.calculateBaseScore();
+    }
+
+    /**
+     * Pontos pelo tempo de espera (2 por dia, máximo 30 pontos).
+     * Só depende da data da solicitação, então um encaminhamento mais antigo nunca tem menos pontos que um mais novo.
+     */
+    static int agingScore(LocalDateTime requestedDate, LocalDateTime now) {
+        if (requestedDate == null) {
+            return 0;
         }
-        
-        if (Boolean.TRUE.equals(referral.getIsPregnant())) {
-            score += 15; // Prioridade para gestantes
+        long waitingDays = ChronoUnit.DAYS.between(requestedDate, now);
+        return (int) Math.max(0, Math.min(waitingDays * 2, 30));
+    }
+
+    /**
+     * Atualiza a fila de prioridade com o estado atual do encaminhamento.
+     * Dentro de uma transação, a atualização só acontece após o commit.
+     */
+    public void referralChanged(Referral referral) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    applyChange(referral);
+                }
+            });
+        } else {
+            applyChange(referral);
         }
-        
-        if (Boolean.TRUE.equals(referral.getHasMedicalUrgency())) {
-            score += 20; // Prioridade para condições médicas urgentes
+    }
+
+    /**
+     * Recarrega a fila a partir do banco, incorporando alterações feitas por outras instâncias
+     */
+    @Scheduled(fixedDelayString = "${scheduling.referral-queue.resync-interval:300000}",
+               initialDelayString = "${scheduling.referral-queue.resync-interval:300000}")
+    public void resyncQueue() {
+        if (queueLoaded) {
+            loadQueue();
         }
-        
-        // Considerar tempo de espera (máximo 30 pontos)
-        int waitingDays = referral.getWaitingTimeInDays();
-        score += Math.min(waitingDays * 2, 30);
-        
-        return score;
     }
-    
+
     /**
      * Obtém todos os encaminhamentos pendentes ordenados por prioridade
      */
     public List<ReferralWithPriorityDTO> getPrioritizedReferrals() {
-        // Buscar todos os encaminhamentos pendentes
-        List<Referral> pendingReferrals = referralRepository.findByStatus(ReferralStatus.PENDING);
-        
-        // Calcular pontuação de prioridade e ordenar
-        return pendingReferrals.stream()
-            .map(ref -> new ReferralWithPriorityDTO(ref, calculatePriorityScore(ref)))
-            .sorted(Comparator.comparing(ReferralWithPriorityDTO::getPriorityScore).reversed())
-            .collect(Collectors.toList());
+        return pendingQueue().ordered(null, LocalDateTime.now());
     }
     
     /**
      * Obtém encaminhamentos pendentes de um tipo específico, ordenados por prioridade
      */
     public List<ReferralWithPriorityDTO> getPrioritizedReferralsByType(ReferralType type) {
-        // Buscar encaminhamentos pendentes do tipo especificado
-        List<Referral> pendingReferrals = referralRepository.findByReferralTypeAndStatus(type, ReferralStatus.PENDING);
-        
-        // Calcular pontuação de prioridade e ordenar
-        return pendingReferrals.stream()
-            .map(ref -> new ReferralWithPriorityDTO(ref, calculatePriorityScore(ref)))
-            .sorted(Comparator.comparing(ReferralWithPriorityDTO::getPriorityScore).reversed())
-            .collect(Collectors.toList());
+        return pendingQueue().ordered(type, LocalDateTime.now());
+    }
+    
+    /**
+     * Obtém os primeiros encaminhamentos pendentes de um tipo, ordenados por prioridade
+     */
+    public List<ReferralWithPriorityDTO> getTopPrioritizedReferrals(ReferralType type, int limit) {
+        return pendingQueue().ordered(type, LocalDateTime.now(), limit);
     }
     
     /**
      * Obtém o próximo encaminhamento com maior prioridade
      */
     public ReferralWithPriorityDTO getNextHighestPriorityReferral() {
-        List<ReferralWithPriorityDTO> prioritizedList = getPrioritizedReferrals();
-        
-        if (prioritizedList.isEmpty()) {
-            return null;
+        return pendingQueue().peek(null, LocalDateTime.now());
+    }
+
+    /**
+     * Obtém uma página da fila de encaminhamentos pendentes, a partir do cursor da página anterior
+     *
+     * @param type tipo de encaminhamento, ou null para todos
+     * @param cursor cursor retornado na página anterior, ou null para a primeira página
+     */
+    @Transactional(readOnly = true)
+    public PriorityQueuePage<ReferralWithPriorityDTO> getPrioritizedReferralsPage(ReferralType type, String cursor, int size) {
+        validatePageSize(size);
+        QueueCursor position = cursor == null ? QueueCursor.first(LocalDateTime.now()) : QueueCursor.decode(cursor);
+
+        String types = type == null
+                ? Arrays.stream(ReferralType.values()).map(Enum::name).collect(Collectors.joining(","))
+                : type.name();
+        List<ReferralWithPriorityDTO> items = referralRepository.findPendingQueuePage(
+                        types, POSSIBLE_BASE_SCORES, position.asOf(),
+                        position.priorityScore(), position.tieBreaker(), position.id(), size)
+                .stream()
+                .map(ref -> new ReferralWithPriorityDTO(ref, calculatePriorityScore(ref, position.asOf())))
+                .collect(Collectors.toList());
+
+        String nextCursor = null;
+        if (items.size() == size) {
+            ReferralWithPriorityDTO last = items.get(items.size() - 1);
+            nextCursor = new QueueCursor(last.getPriorityScore(), last.getReferral().getRequestedDate(),
+                    last.getReferral().getId(), position.asOf()).encode();
         }
-        
-        return prioritizedList.get(0);
+        return new PriorityQueuePage<>(items, nextCursor);
     }
 
     /**
-     * Processa a fila de encaminhamentos de alta prioridade
-     * Este método poderia ser chamado periodicamente por uma tarefa agendada
+     * Percorre toda a fila de encaminhamentos pendentes em ordem de prioridade, sem carregá-la inteira em memória
+     *
+     * @param type tipo de encaminhamento, ou null para todos
      */
-    //@Scheduled(fixedRate = 3600000) // Executar a cada hora
-    public void processHighPriorityReferrals() {
-        log.info("Iniciando processamento automático de encaminhamentos prioritários");
-        
-        // Buscar todos os encaminhamentos com alta prioridade (score >= 80)
-        List<ReferralWithPriorityDTO> highPriorityReferrals = getPrioritizedReferrals().stream()
-            .filter(ref -> ref.getPriorityScore() >= 80)
-            .collect(Collectors.toList());
-        
-        log.info("Encontrados {} encaminhamentos de alta prioridade para processamento", 
-                 highPriorityReferrals.size());
-        
-        // Para cada encaminhamento de alta prioridade
-        for (ReferralWithPriorityDTO referralDTO : highPriorityReferrals) {
-            Referral referral = referralDTO.getReferral();
-            try {
-                // Em um sistema real, aqui buscaríamos vagas disponíveis e faríamos o agendamento
-                // Por enquanto, apenas logamos a informação
-                log.info("Processando encaminhamento de alta prioridade: ID={}, PriorityScore={}, " +
-                         "Tipo={}, PatientId={}", 
-                         referral.getId(), 
-                         referralDTO.getPriorityScore(),
-                         referral.getReferralType(),
-                         referral.getPatientId());
-                         
-                // Exemplo: para casos URGENT, poderíamos enviar notificações especiais
-                if (referral.getPriorityLevel() == PriorityLevel.URGENT) {
-                    log.info("Encaminhamento URGENTE detectado! ID={}, PatientId={}", 
-                             referral.getId(), referral.getPatientId());
-                    
-                    // Aqui seria uma boa oportunidade para enviar notificações
+    @Transactional(readOnly = true)
+    public void streamPrioritizedReferrals(ReferralType type, Consumer<ReferralWithPriorityDTO> consumer) {
+        LocalDateTime now = LocalDateTime.now();
+        try (Stream<Referral> referrals = referralRepository.streamPendingQueue(type == null ? null : type.name(), now)) {
+            referrals.forEach(ref -> {
+                consumer.accept(new ReferralWithPriorityDTO(ref, calculatePriorityScore(ref, now)));
+                // Libera a entidade já enviada para o contexto de persistência não crescer com a fila
+                entityManager.detach(ref);
+            });
+        }
+    }
+
+    private static String possibleBaseScores() {
+        Set<Integer> scores = new TreeSet<>();
+        for (PriorityLevel level : PriorityLevel.values()) {
+            for (Integer age : Arrays.asList(null, 30, 70)) {
+                for (boolean pregnant : new boolean[]{false, true}) {
+                    for (boolean urgency : new boolean[]{false, true}) {
+                        scores.add(Referral.builder()
+                                .priorityLevel(level)
+                                .patientAge(age)
+                                .isPregnant(pregnant)
+                                .hasMedicalUrgency(urgency)
+                                .build()
+                                .calculateBaseScore());
+                    }
                 }
-                
-            } catch (Exception e) {
-                log.error("Erro ao processar encaminhamento ID {}: {}", referral.getId(), e.getMessage());
             }
         }
-        
-        log.info("Processamento de encaminhamentos prioritários concluído");
+        return scores.stream().map(String::valueOf).collect(Collectors.joining(","));
+    }
+
+    static void validatePageSize(int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("O tamanho da página deve estar entre 1 e " + MAX_PAGE_SIZE);
+        }
+    }
+
+    private ReferralPriorityQueue pendingQueue() {
+        if (!queueLoaded) {
+            synchronized (queue) {
+                if (!queueLoaded) {
+                    loadQueue();
+                }
+            }
+        }
+        return queue;
+    }
+
+    private void loadQueue() {
+        List<Referral> pending = referralRepository.findByStatus(ReferralStatus.PENDING);
+        queue.reset(pending);
+        queueLoaded = true;
+        log.info("Fila de prioridade carregada com {} encaminhamentos pendentes", pending.size());
+    }
+
+    private void applyChange(Referral referral) {
+        // Enquanto a fila não foi carregada, a alteração já estará no banco na primeira leitura
+        if (queueLoaded) {
+            queue.update(referral);
+        }
     }
-} 
\ No newline at end of file
+}
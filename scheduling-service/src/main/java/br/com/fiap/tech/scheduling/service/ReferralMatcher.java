@@ -0,0 +1,279 @@
+package br.com.fiap.tech.scheduling.service;
+
+import br.com.fiap.tech.jobs.ShardedJobRunner;
+import br.com.fiap.tech.scheduling.domain.AppointmentType;
+import br.com.fiap.tech.scheduling.domain.Referral;
+import br.com.fiap.tech.scheduling.domain.ReferralType;
+import br.com.fiap.tech.scheduling.dto.AppointmentRequest;
+import br.com.fiap.tech.scheduling.dto.AvailableSlotDTO;
+import br.com.fiap.tech.scheduling.dto.BatchAppointmentResult;
+import br.com.fiap.tech.scheduling.dto.ReferralWithPriorityDTO;
+import br.com.fiap.tech.scheduling.dto.SlotSearchRequest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Agendamento automático dos encaminhamentos pendentes de maior prioridade.
+ * A cada execução, pega os primeiros encaminhamentos de cada tipo na fila, busca os horários livres
+ * dos médicos do tipo (pela especialidade configurada) e distribui os horários em ordem de prioridade:
+ * cada encaminhamento fica com o horário livre mais cedo que não conflita com os já distribuídos
+ * para o mesmo médico ou paciente. Os agendamentos são gravados em lote pelo BatchAppointmentService,
+ * que revalida cada item e marca o encaminhamento como SCHEDULED.
+ * Cada tipo de encaminhamento é uma parte do job no ShardedJobRunner, então com várias instâncias os tipos
+ * são divididos entre elas e cada tipo roda uma vez por intervalo. Cada parte tem um tempo máximo;
+ * o que sobrar fica para a próxima execução.
+ * Desligado por padrão; só os tipos com especialidade configurada são agendados automaticamente.
+ */
+@Slf4j
+@Component
+public class ReferralMatcher {
+
+    static final String JOB_NAME = "referral-matching";
+    private static final List<String> SHARDS = Arrays.stream(ReferralType.values()).map(Enum::name).toList();
+
+    private final PriorityService priorityService;
+    private final SlotSearchService slotSearchService;
+    private final BatchAppointmentService batchAppointmentService;
+    private final ShardedJobRunner jobRunner;
+    private final boolean enabled;
+    private final Duration interval;
+    private final int topK;
+    private final int minScore;
+    private final int days;
+    private final int durationMinutes;
+    private final int chunkSize;
+    private final Duration timeBudget;
+    private final Map<ReferralType, String> specialties = new EnumMap<>(ReferralType.class);
+
+    private final Timer runTimer;
+    private final Counter scheduledCounter;
+    private final Counter unmatchedCounter;
+    private final Counter rejectedCounter;
+    private final Counter deferredCounter;
+
+    record Assignment(Referral referral, AvailableSlotDTO slot) {
+    }
+
+    record PersonDay(Long personId, LocalDate date) {
+    }
+
+    public ReferralMatcher(
+            PriorityService priorityService,
+            SlotSearchService slotSearchService,
+            BatchAppointmentService batchAppointmentService,
+            ShardedJobRunner jobRunner,
+            MeterRegistry meterRegistry,
+            @Value("${scheduling.referral-matching.enabled:false}") boolean enabled,
+            @Value("${scheduling.referral-matching.interval:300000}") long intervalMillis,
+            @Value("${scheduling.referral-matching.top-k:200}") int topK,
+            @Value("${scheduling.referral-matching.min-score:80}") int minScore,
+            @Value("${scheduling.referral-matching.days:14}") int days,
+            @Value("${scheduling.referral-matching.duration-minutes:30}") int durationMinutes,
+            @Value("${scheduling.referral-matching.chunk-size:50}") int chunkSize,
+            @Value("${scheduling.referral-matching.time-budget:30s}") Duration timeBudget,
+            @Value("${scheduling.referral-matching.specialty.lab:}") String labSpecialty,
+            @Value("${scheduling.referral-matching.specialty.specialist:}") String specialistSpecialty,
+            @Value("${scheduling.referral-matching.specialty.hospital:}") String hospitalSpecialty) {
+        this.priorityService = priorityService;
+        this.slotSearchService = slotSearchService;
+        this.batchAppointmentService = batchAppointmentService;
+        this.jobRunner = jobRunner;
+        this.enabled = enabled;
+        this.interval = Duration.ofMillis(intervalMillis);
+        this.topK = topK;
+        this.minScore = minScore;
+        this.days = days;
+        this.durationMinutes = durationMinutes;
+        this.chunkSize = chunkSize;
+        this.timeBudget = timeBudget;
+        specialties.put(ReferralType.LAB, labSpecialty);
+        specialties.put(ReferralType.SPECIALIST, specialistSpecialty);
+        specialties.put(ReferralType.HOSPITAL, hospitalSpecialty);
+
+        this.runTimer = Timer.builder("scheduling.referral.matching.run")
+                .description("Duração de cada execução do agendamento automático de encaminhamentos")
+                .register(meterRegistry);
+        this.scheduledCounter = counter(meterRegistry, "scheduled", "Encaminhamentos agendados automaticamente");
+        this.unmatchedCounter = counter(meterRegistry, "unmatched", "Encaminhamentos sem horário livre compatível");
+        this.rejectedCounter = counter(meterRegistry, "rejected", "Agendamentos automáticos recusados na gravação");
+        this.deferredCounter = counter(meterRegistry, "deferred", "Encaminhamentos adiados por falta de tempo na execução");
+    }
+
+    /**
+     * Processa a fila de encaminhamentos de alta prioridade, agendando os que encontrarem horário livre
+     */
+    @Scheduled(fixedDelayString = "${scheduling.referral-matching.interval:300000}",
+               initialDelayString = "${scheduling.referral-matching.initial-delay:60000}")
+    public void processHighPriorityReferrals() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            jobRunner.run(JOB_NAME, SHARDS, interval, shard -> runTimer.record(() ->
+                    match(ReferralType.valueOf(shard.name()), LocalDateTime.now(), shard)));
+        } catch (Exception e) {
+            log.error("Erro no agendamento automático de encaminhamentos: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Agenda os encaminhamentos de um tipo. Depois de cada lote gravado o lease da parte é renovado, para que
+     * outra instância não assuma o tipo enquanto a execução dura. Não há progresso a retomar: os candidatos
+     * são lidos de novo da fila a cada execução, e os já agendados deixam de estar pendentes.
+     *
+     * @return quantidade de encaminhamentos agendados
+     */
+    int match(ReferralType type, LocalDateTime now, ShardedJobRunner.Shard shard) {
+        String specialty = specialties.get(type);
+        if (specialty == null || specialty.isBlank()) {
+            // Sem especialidade, qualquer médico livre receberia o encaminhamento
+            log.debug("Encaminhamentos {} sem especialidade configurada; agendamento automático ignorado", type);
+            return 0;
+        }
+        LocalDateTime deadline = now.plus(timeBudget);
+
+        List<ReferralWithPriorityDTO> candidates = new ArrayList<>(priorityService.getTopPrioritizedReferrals(type, topK).stream()
+                .takeWhile(referral -> referral.getPriorityScore() >= minScore)
+                .toList());
+        if (candidates.isEmpty()) {
+            log.debug("Nenhum encaminhamento {} pendente com pontuação mínima {}", type, minScore);
+            return 0;
+        }
+        // Em caso de empate na pontuação, o mais antigo primeiro
+        candidates.sort(Comparator.comparing(ReferralWithPriorityDTO::getPriorityScore).reversed()
+                .thenComparing(dto -> dto.getReferral().getRequestedDate(), Comparator.nullsLast(Comparator.naturalOrder())));
+
+        List<Assignment> assignments = assign(candidates, now);
+        unmatchedCounter.increment(candidates.size() - assignments.size());
+
+        int scheduled = 0;
+        int rejected = 0;
+        int processed = 0;
+        for (int from = 0; from < assignments.size(); from += chunkSize) {
+            if (LocalDateTime.now().isAfter(deadline)) {
+                break;
+            }
+            List<Assignment> chunk = assignments.subList(from, Math.min(from + chunkSize, assignments.size()));
+            List<BatchAppointmentResult> results = batchAppointmentService.createAppointments(
+                    chunk.stream().map(this::toRequest).toList());
+            for (int i = 0; i < results.size(); i++) {
+                if (results.get(i).isCreated()) {
+                    scheduled++;
+                } else {
+                    rejected++;
+                    log.debug("Agendamento automático do encaminhamento {} recusado: {}",
+                            chunk.get(i).referral().getId(), results.get(i).getError());
+                }
+            }
+            processed += chunk.size();
+            shard.renewLease();
+        }
+
+        int deferred = assignments.size() - processed;
+        scheduledCounter.increment(scheduled);
+        rejectedCounter.increment(rejected);
+        deferredCounter.increment(deferred);
+        log.info("Agendamento automático {} concluído: {} encaminhamentos analisados, {} agendados, {} sem horário, " +
+                        "{} recusados, {} adiados", type, candidates.size(), scheduled, candidates.size() - assignments.size(),
+                rejected, deferred);
+        return scheduled;
+    }
+
+    /**
+     * Distribui os horários livres em ordem de prioridade
+     */
+    List<Assignment> assign(List<ReferralWithPriorityDTO> candidates, LocalDateTime now) {
+        Map<ReferralType, Long> demand = new EnumMap<>(ReferralType.class);
+        candidates.forEach(dto -> demand.merge(dto.getReferral().getReferralType(), 1L, Long::sum));
+
+        Map<ReferralType, LinkedList<AvailableSlotDTO>> pools = new EnumMap<>(ReferralType.class);
+        Map<PersonDay, DayOccupancy> doctorsBooked = new HashMap<>();
+        Map<PersonDay, DayOccupancy> patientsBooked = new HashMap<>();
+        List<Assignment> assignments = new ArrayList<>();
+
+        for (ReferralWithPriorityDTO candidate : candidates) {
+            Referral referral = candidate.getReferral();
+            LinkedList<AvailableSlotDTO> pool = pools.computeIfAbsent(referral.getReferralType(),
+                    type -> new LinkedList<>(findSlots(type, demand.get(type), now)));
+
+            Iterator<AvailableSlotDTO> slots = pool.iterator();
+            while (slots.hasNext()) {
+                AvailableSlotDTO slot = slots.next();
+                PersonDay doctorDay = new PersonDay(slot.getDoctorId(), slot.getAppointmentDate());
+                PersonDay patientDay = new PersonDay(referral.getPatientId(), slot.getAppointmentDate());
+                if (slot.getDoctorId().equals(referral.getRequestedByDoctorId())
+                        || !isFree(doctorsBooked, doctorDay, slot) || !isFree(patientsBooked, patientDay, slot)) {
+                    continue;
+                }
+                slots.remove();
+                book(doctorsBooked, doctorDay, slot);
+                book(patientsBooked, patientDay, slot);
+                assignments.add(new Assignment(referral, slot));
+                break;
+            }
+        }
+        return assignments;
+    }
+
+    private List<AvailableSlotDTO> findSlots(ReferralType type, long demand, LocalDateTime now) {
+        // Folga para os horários descartados por conflito com outro encaminhamento do mesmo paciente ou médico
+        int limit = (int) Math.min(demand * 2, (long) topK * 2);
+        return slotSearchService.search(SlotSearchRequest.builder()
+                .specialty(specialties.get(type))
+                .days(days)
+                .durationMinutes(durationMinutes)
+                .limit(limit)
+                .build(), now, limit);
+    }
+
+    private boolean isFree(Map<PersonDay, DayOccupancy> booked, PersonDay key, AvailableSlotDTO slot) {
+        return booked.getOrDefault(key, DayOccupancy.EMPTY).isFree(slot.getStartTime(), slot.getEndTime());
+    }
+
+    private void book(Map<PersonDay, DayOccupancy> booked, PersonDay key, AvailableSlotDTO slot) {
+        booked.put(key, booked.getOrDefault(key, DayOccupancy.EMPTY).with(slot.getStartTime(), slot.getEndTime()));
+    }
+
+    private AppointmentRequest toRequest(Assignment assignment) {
+        Referral referral = assignment.referral();
+        AvailableSlotDTO slot = assignment.slot();
+        AppointmentRequest request = new AppointmentRequest();
+        request.setAppointmentDay(slot.getAppointmentDay());
+        request.setAppointmentDate(slot.getAppointmentDate());
+        request.setStartTime(slot.getStartTime());
+        request.setEndTime(slot.getEndTime());
+        request.setAppointmentType(referral.getReferralType() == ReferralType.LAB
+                ? AppointmentType.EXAM
+                : AppointmentType.CONSULTATION);
+        request.setPatientId(referral.getPatientId());
+        request.setDoctorId(slot.getDoctorId());
+        request.setHealthcareFacilityId(slot.getHealthcareFacilityId());
+        request.setReferralId(referral.getId());
+        request.setPriorityLevel(referral.getPriorityLevel());
+        return request;
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String name, String description) {
+        return Counter.builder("scheduling.referral.matching." + name)
+                .description(description)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,217 @@
+package br.com.fiap.tech.scheduling.service;
+
+import br.com.fiap.tech.scheduling.domain.Referral;
+import br.com.fiap.tech.scheduling.domain.ReferralStatus;
+import br.com.fiap.tech.scheduling.domain.ReferralType;
+import br.com.fiap.tech.scheduling.dto.ReferralWithPriorityDTO;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ToIntFunction;
+
+/**
+ * Fila de prioridade em memória dos encaminhamentos pendentes, separada por tipo.
+ * A pontuação é dividida em uma parte fixa (nível de prioridade, idade, gestação, urgência)
+ * e no envelhecimento, que só depende da data da solicitação e cresce com o tempo de espera.
+ * Por isso, dentro de um grupo com a mesma parte fixa, a ordem nunca muda: o mais antigo está sempre
+ * na frente. Os encaminhamentos ficam agrupados pela parte fixa, ordenados por data de solicitação,
+ * e o próximo da fila é o melhor entre as cabeças dos grupos, sem recalcular os demais.
+ * <p>
+ * O número de grupos é limitado pelas combinações da parte fixa (nível de prioridade, faixa etária, gestação e
+ * urgência): no máximo 26 pontuações distintas por tipo, ou 78 somando os três tipos, qualquer que seja o tamanho
+ * da fila. Por isso {@link #peek} compara todas as cabeças em vez de manter um heap delas: a ordem entre as cabeças
+ * muda com o tempo (o envelhecimento para em 30 pontos), e um heap teria de ser refeito a cada consulta.
+ */
+class ReferralPriorityQueue {
+
+    private static final Comparator<Entry> BY_AGE = Comparator
+            .comparing(Entry::requestedDate, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(Entry::id);
+
+    private final ToIntFunction<Referral> baseScore;
+    private final Map<ReferralType, NavigableMap<Integer, NavigableSet<Entry>>> queues = new EnumMap<>(ReferralType.class);
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    record Entry(Long id, ReferralType type, int baseScore, LocalDateTime requestedDate, Referral referral) {
+    }
+
+    record Scored(Entry entry, int score) {
+    }
+
+    ReferralPriorityQueue(ToIntFunction<Referral> baseScore) {
+        this.baseScore = baseScore;
+    }
+
+    /**
+     * Substitui todo o conteúdo da fila pelos encaminhamentos informados
+     */
+    void reset(Collection<Referral> pendingReferrals) {
+        lock.writeLock().lock();
+        try {
+            queues.clear();
+            entries.clear();
+            pendingReferrals.forEach(this::put);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Atualiza a fila com o estado atual do encaminhamento: apenas os pendentes permanecem nela
+     */
+    void update(Referral referral) {
+        lock.writeLock().lock();
+        try {
+            remove(referral.getId());
+            if (ReferralStatus.PENDING.equals(referral.getStatus())) {
+                put(referral);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retorna o encaminhamento de maior pontuação no instante informado, ou null se a fila estiver vazia
+     *
+     * @param type tipo de encaminhamento, ou null para considerar todos
+     */
+    ReferralWithPriorityDTO peek(ReferralType type, LocalDateTime now) {
+        lock.readLock().lock();
+        try {
+            Scored best = null;
+            for (NavigableMap<Integer, NavigableSet<Entry>> buckets : queuesOf(type)) {
+                for (NavigableSet<Entry> bucket : buckets.values()) {
+                    Scored head = score(bucket.first(), now);
+                    if (best == null || compare(head, best) < 0) {
+                        best = head;
+                    }
+                }
+            }
+            return best == null ? null : toDto(best);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Lista os encaminhamentos em ordem decrescente de pontuação no instante informado,
+     * intercalando os grupos já ordenados
+     *
+     * @param type tipo de encaminhamento, ou null para considerar todos
+     */
+    List<ReferralWithPriorityDTO> ordered(ReferralType type, LocalDateTime now) {
+        return ordered(type, now, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Lista os primeiros encaminhamentos em ordem decrescente de pontuação, parando ao atingir o limite
+     *
+     * @param type tipo de encaminhamento, ou null para considerar todos
+     */
+    List<ReferralWithPriorityDTO> ordered(ReferralType type, LocalDateTime now, int limit) {
+        lock.readLock().lock();
+        try {
+            PriorityQueue<Cursor> heads = new PriorityQueue<>((a, b) -> compare(a.head, b.head));
+            for (NavigableMap<Integer, NavigableSet<Entry>> buckets : queuesOf(type)) {
+                for (NavigableSet<Entry> bucket : buckets.values()) {
+                    Iterator<Entry> iterator = bucket.iterator();
+                    heads.add(new Cursor(iterator, score(iterator.next(), now)));
+                }
+            }
+
+            List<ReferralWithPriorityDTO> result = new ArrayList<>();
+            while (!heads.isEmpty() && result.size() < limit) {
+                Cursor cursor = heads.poll();
+                result.add(toDto(cursor.head));
+                if (cursor.iterator.hasNext()) {
+                    cursor.head = score(cursor.iterator.next(), now);
+                    heads.add(cursor);
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void put(Referral referral) {
+        Entry entry = new Entry(referral.getId(), referral.getReferralType(), baseScore.applyAsInt(referral),
+                referral.getRequestedDate(), referral);
+        entries.put(entry.id(), entry);
+        queues.computeIfAbsent(entry.type(), t -> new TreeMap<>())
+                .computeIfAbsent(entry.baseScore(), s -> new TreeSet<>(BY_AGE))
+                .add(entry);
+    }
+
+    private void remove(Long id) {
+        Entry entry = entries.remove(id);
+        if (entry == null) {
+            return;
+        }
+        NavigableMap<Integer, NavigableSet<Entry>> buckets = queues.get(entry.type());
+        NavigableSet<Entry> bucket = buckets.get(entry.baseScore());
+        bucket.remove(entry);
+        if (bucket.isEmpty()) {
+            buckets.remove(entry.baseScore());
+        }
+    }
+
+    private Collection<NavigableMap<Integer, NavigableSet<Entry>>> queuesOf(ReferralType type) {
+        if (type == null) {
+            return queues.values();
+        }
+        NavigableMap<Integer, NavigableSet<Entry>> buckets = queues.get(type);
+        return buckets == null ? List.of() : List.of(buckets);
+    }
+
+    private Scored score(Entry entry, LocalDateTime now) {
+        return new Scored(entry, entry.baseScore() + PriorityService.agingScore(entry.requestedDate(), now));
+    }
+
+    /**
+     * Maior pontuação primeiro; em caso de empate, o encaminhamento mais antigo
+     */
+    private int compare(Scored a, Scored b) {
+        int byScore = Integer.compare(b.score(), a.score());
+        return byScore != 0 ? byScore : BY_AGE.compare(a.entry(), b.entry());
+    }
+
+    private ReferralWithPriorityDTO toDto(Scored scored) {
+        return new ReferralWithPriorityDTO(scored.entry().referral(), scored.score());
+    }
+
+    private static final class Cursor {
+        private final Iterator<Entry> iterator;
+        private Scored head;
+
+        private Cursor(Iterator<Entry> iterator, Scored head) {
+            this.iterator = iterator;
+            this.head = head;
+        }
+    }
+}
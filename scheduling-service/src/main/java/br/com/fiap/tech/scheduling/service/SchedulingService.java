@@ -2,24 +2,39 @@ package br.com.fiap.tech.scheduling.service;
 
 import br.com.fiap.tech.scheduling.domain.*;
 import br.com.fiap.tech.scheduling.dto.*;
+import br.com.fiap.tech.scheduling.events.AppointmentCancelledEvent;
 import br.com.fiap.tech.scheduling.events.AppointmentCreatedEvent;
+import br.com.fiap.tech.scheduling.events.EventOutbox;
 import br.com.fiap.tech.scheduling.events.ReferralCreatedEvent;
 import br.com.fiap.tech.scheduling.repository.AppointmentRepository;
+import br.com.fiap.tech.scheduling.repository.ArchivedAppointmentRepository;
 import br.com.fiap.tech.scheduling.repository.ReferralRepository;
+import br.com.fiap.tech.scheduling.service.BookingMetrics.Stage;
+import feign.FeignException;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import br.com.fiap.tech.scheduling.client.FacilityClient;
-import br.com.fiap.tech.scheduling.client.PeopleClient;
+import br.com.fiap.tech.scheduling.client.PeopleExistenceCache;
 import br.com.fiap.tech.scheduling.dto.NearbyFacilityResponse;
 import org.springframework.web.client.ResourceAccessException;
 
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.LongSupplier;
 
 @Service
 @RequiredArgsConstructor
@@ -27,13 +42,93 @@ import java.util.List;
 public class SchedulingService {
 
     private final AppointmentRepository appointmentRepository;
+    private final ArchivedAppointmentRepository archivedAppointmentRepository;
     private final ReferralRepository referralRepository;
-    private final StreamBridge streamBridge;
+    private final PriorityService priorityService;
+    private final EventOutbox eventOutbox;
     private final FacilityClient facilityClient;
-    private final PeopleClient peopleClient;
+    private final PeopleExistenceCache peopleExistenceCache;
+    private final AppointmentConflictIndex appointmentConflictIndex;
+    private final AppointmentPriorityService appointmentPriorityService;
+    private final DoctorScheduleReadModel doctorScheduleReadModel;
+    private final AppointmentPartitionMaintenance appointmentPartitionMaintenance;
+    private final WaitlistService waitlistService;
+    private final BookingMetrics bookingMetrics;
+    private final TransactionTemplate transactionTemplate;
+    @Qualifier("bookingValidationExecutor")
+    private final Executor bookingValidationExecutor;
 
-    @Transactional
     public Appointment createAppointment(AppointmentRequest request) {
+        LocalDate appointmentDate = resolveAppointmentDate(request);
+        String dayOfWeek = appointmentDate.getDayOfWeek().name();
+        
+        // Disparar todas as consultas remotas de uma vez: a latência passa a ser a da mais lenta,
+        // e não a soma de todas. Os resultados são avaliados na mesma ordem de antes, para que
+        // o erro retornado continue o mesmo quando mais de uma validação falha.
+        log.debug("Verificando disponibilidade do médico ID {} no dia da semana {}", request.getDoctorId(), dayOfWeek);
+        CompletableFuture<List<DoctorScheduleDTO>> schedulesCheck = CompletableFuture.supplyAsync(
+                () -> bookingMetrics.record(Stage.SCHEDULE_FETCH, () -> doctorScheduleReadModel.getDoctorSchedules(
+                        request.getDoctorId(), java.time.DayOfWeek.valueOf(dayOfWeek))),
+                bookingValidationExecutor);
+        CompletableFuture<Void> patientCheck = CompletableFuture.runAsync(
+                () -> bookingMetrics.record(Stage.PATIENT_CHECK, () -> verifyPatientExists(request.getPatientId())),
+                bookingValidationExecutor);
+        CompletableFuture<Void> doctorCheck = CompletableFuture.runAsync(
+                () -> bookingMetrics.record(Stage.DOCTOR_CHECK, () -> verifyDoctorExists(request.getDoctorId())),
+                bookingValidationExecutor);
+        CompletableFuture<Void> referralCheck = request.getReferralId() == null
+                ? CompletableFuture.completedFuture(null)
+                : CompletableFuture.runAsync(
+                        () -> bookingMetrics.record(Stage.REFERRAL_LOOKUP, () -> verifyReferral(request)),
+                        bookingValidationExecutor);
+        List<CompletableFuture<?>> checks = List.of(schedulesCheck, patientCheck, doctorCheck, referralCheck);
+
+        try {
+            verifyDoctorSchedule(await(schedulesCheck), dayOfWeek, request.getStartTime(), request.getEndTime());
+            await(patientCheck);
+            await(doctorCheck);
+            await(referralCheck);
+        } catch (RuntimeException e) {
+            // Não há mais o que esperar das validações restantes
+            checks.forEach(check -> check.cancel(false));
+            throw e;
+        }
+
+        // Verificar conflito de horário
+        if (bookingMetrics.record(Stage.CONFLICT_QUERY, () -> appointmentConflictIndex.hasConflict(
+                request.getDoctorId(),
+                appointmentDate,
+                request.getStartTime(),
+                request.getEndTime()
+        ))) {
+            throw new IllegalStateException("O médico já possui um agendamento neste horário");
+        }
+
+        var newAppointment = buildAppointment(request, appointmentDate);
+
+        // A transação só é aberta aqui, depois de todas as validações remotas.
+        // A vaga na unidade é reservada antes do commit: sem vaga, o agendamento não é gravado
+        Appointment appointment;
+        try {
+            appointment = transactionTemplate.execute(status -> {
+                Appointment saved = persistAppointment(newAppointment);
+                reserveFacilityCapacity(saved);
+                return saved;
+            });
+        } catch (DataIntegrityViolationException e) {
+            // Outra instância reservou o mesmo horário entre a verificação e a gravação
+            throw new IllegalStateException("O médico já possui um agendamento neste horário");
+        }
+        log.info("Agendamento criado com sucesso: {}", appointment);
+
+        return appointment;
+    }
+
+    /**
+     * Valida os dados do pedido de agendamento que não dependem de outros serviços
+     * e calcula a data do atendimento a partir do dia da semana
+     */
+    LocalDate resolveAppointmentDate(AppointmentRequest request) {
         // Validações básicas
         if (request.getDoctorId() == null) {
             throw new IllegalArgumentException("O ID do médico é obrigatório");
@@ -88,13 +183,102 @@ public class SchedulingService {
             throw new IllegalArgumentException("O horário de término deve ser posterior ao horário de início");
         }
         
-        // A validação de horário comercial foi removida, pois hospitais funcionam 24h
-        // e o que realmente importa é se o médico tem agenda nesse horário
-        
-        // Verificar se o médico tem agenda neste dia da semana
-        log.debug("Verificando disponibilidade do médico ID {} no dia da semana {}", request.getDoctorId(), dayOfWeek);
-        List<DoctorScheduleDTO> doctorSchedules = facilityClient.getDoctorSchedules(request.getDoctorId());
-        
+        return appointmentDate;
+    }
+
+    /**
+     * Monta o agendamento a partir de um pedido já validado
+     */
+    Appointment buildAppointment(AppointmentRequest request, LocalDate appointmentDate) {
+        return Appointment.builder()
+                .appointmentDate(appointmentDate)
+                .startTime(request.getStartTime())
+                .endTime(request.getEndTime())
+                .appointmentType(request.getAppointmentType())
+                .status(AppointmentStatus.SCHEDULED)
+                .patientId(request.getPatientId())
+                .doctorId(request.getDoctorId())
+                .healthcareFacilityId(request.getHealthcareFacilityId())
+                .referralId(request.getReferralId())
+                .priorityLevel(request.getPriorityLevel())
+                .build();
+    }
+
+    private Appointment persistAppointment(Appointment newAppointment) {
+        Appointment appointment = bookingMetrics.record(Stage.INSERT, () -> {
+            Appointment saved = appointmentRepository.save(newAppointment);
+            // Com IDs de sequence o insert fica para o flush; um conflito de horário precisa aparecer aqui
+            appointmentRepository.flush();
+            return saved;
+        });
+        appointmentConflictIndex.update(appointment);
+        appointmentPriorityService.appointmentChanged(appointment);
+
+        // Atualizar status do referral se necessário
+        if (appointment.getReferralId() != null) {
+            try {
+                bookingMetrics.record(Stage.REFERRAL_UPDATE, () -> {
+                    Referral referral = referralRepository.findById(appointment.getReferralId()).orElse(null);
+                    if (referral != null) {
+                        referral.setStatus(ReferralStatus.SCHEDULED);
+                        referralRepository.save(referral);
+                        priorityService.referralChanged(referral);
+                        log.debug("Status do encaminhamento ID {} atualizado para SCHEDULED", 
+                                  appointment.getReferralId());
+                    }
+                });
+            } catch (Exception e) {
+                log.error("Erro ao atualizar status do encaminhamento: {}", e.getMessage());
+                // Não lançar exceção para não impedir o agendamento
+            }
+        }
+
+        bookingMetrics.record(Stage.EVENT_PUBLISH, () -> enqueueAppointmentCreated(appointment));
+        return appointment;
+    }
+
+    /**
+     * Grava um lote de agendamentos já validados. Deve ser chamado dentro de uma transação:
+     * os inserts vão ao banco em lote e um conflito de horário em qualquer item desfaz o lote inteiro.
+     */
+    List<Appointment> persistAppointments(List<Appointment> appointments) {
+        List<Appointment> saved = appointmentRepository.saveAll(appointments);
+        appointmentRepository.flush();
+        saved.forEach(appointmentConflictIndex::update);
+        saved.forEach(appointmentPriorityService::appointmentChanged);
+
+        List<Long> referralIds = saved.stream()
+                .map(Appointment::getReferralId)
+                .filter(Objects::nonNull)
+                .toList();
+        if (!referralIds.isEmpty()) {
+            List<Referral> referrals = referralRepository.findAllById(referralIds);
+            referrals.forEach(referral -> referral.setStatus(ReferralStatus.SCHEDULED));
+            referralRepository.saveAll(referrals);
+            referrals.forEach(priorityService::referralChanged);
+        }
+
+        saved.forEach(this::enqueueAppointmentCreated);
+        return saved;
+    }
+
+    private void enqueueAppointmentCreated(Appointment appointment) {
+        var event = new AppointmentCreatedEvent(
+                appointment.getId(),
+                appointment.getAppointmentDate(),
+                appointment.getStartTime(),
+                appointment.getEndTime(),
+                appointment.getAppointmentType(),
+                appointment.getPatientId(),
+                appointment.getDoctorId(),
+                appointment.getHealthcareFacilityId()
+        );
+        eventOutbox.enqueue(EventOutbox.APPOINTMENT_CREATED_TOPIC, appointment.getId(), event);
+        log.debug("Evento de agendamento criado gravado no outbox");
+    }
+
+    void verifyDoctorSchedule(List<DoctorScheduleDTO> doctorSchedules, String dayOfWeek,
+                                      LocalTime startTime, LocalTime endTime) {
         // Filtrar agendas para o dia da semana solicitado
         boolean hasDayAvailability = false;
         boolean hasTimeAvailability = false;
@@ -104,16 +288,16 @@ public class SchedulingService {
                 hasDayAvailability = true;
                 
                 // Verificar disponibilidade no primeiro período
-                if ((request.getStartTime().equals(schedule.getStartTime()) || request.getStartTime().isAfter(schedule.getStartTime())) 
-                    && (request.getEndTime().equals(schedule.getEndTime()) || request.getEndTime().isBefore(schedule.getEndTime()))) {
+                if ((startTime.equals(schedule.getStartTime()) || startTime.isAfter(schedule.getStartTime())) 
+                    && (endTime.equals(schedule.getEndTime()) || endTime.isBefore(schedule.getEndTime()))) {
                     hasTimeAvailability = true;
                     break;
                 }
                 
                 // Verificar disponibilidade no segundo período, se existir
                 if (schedule.getSecondPeriodStart() != null && schedule.getSecondPeriodEnd() != null) {
-                    if ((request.getStartTime().equals(schedule.getSecondPeriodStart()) || request.getStartTime().isAfter(schedule.getSecondPeriodStart())) 
-                        && (request.getEndTime().equals(schedule.getSecondPeriodEnd()) || request.getEndTime().isBefore(schedule.getSecondPeriodEnd()))) {
+                    if ((startTime.equals(schedule.getSecondPeriodStart()) || startTime.isAfter(schedule.getSecondPeriodStart())) 
+                        && (endTime.equals(schedule.getSecondPeriodEnd()) || endTime.isBefore(schedule.getSecondPeriodEnd()))) {
                         hasTimeAvailability = true;
                         break;
                     }
@@ -128,163 +312,150 @@ public class SchedulingService {
         if (!hasTimeAvailability) {
             throw new IllegalStateException("O médico não tem horário disponível no período solicitado");
         }
-        
-        // Verificar se o paciente existe
-        log.debug("Verificando existência do paciente com ID: {}", request.getPatientId());
+    }
+
+    void verifyPatientExists(Long patientId) {
+        log.debug("Verificando existência do paciente com ID: {}", patientId);
         try {
-            peopleClient.patientExists(request.getPatientId());
+            peopleExistenceCache.patientExists(patientId);
         } catch (EntityNotFoundException e) {
-            throw new EntityNotFoundException("Paciente não encontrado com ID: " + request.getPatientId());
+            throw new EntityNotFoundException("Paciente não encontrado com ID: " + patientId);
         } catch (Exception e) {
             log.error("Erro ao verificar existência do paciente: {}", e.getMessage());
             throw new ResourceAccessException("Não foi possível verificar a existência do paciente no momento");
         }
-        
-        // Verificar se o médico existe
-        log.debug("Verificando existência do médico com ID: {}", request.getDoctorId());
+    }
+
+    void verifyDoctorExists(Long doctorId) {
+        log.debug("Verificando existência do médico com ID: {}", doctorId);
         try {
-            peopleClient.doctorExists(request.getDoctorId());
+            peopleExistenceCache.doctorExists(doctorId);
         } catch (EntityNotFoundException e) {
-            throw new EntityNotFoundException("Médico não encontrado com ID: " + request.getDoctorId());
+            throw new EntityNotFoundException("Médico não encontrado com ID: " + doctorId);
         } catch (Exception e) {
             log.error("Erro ao verificar existência do médico: {}", e.getMessage());
             throw new ResourceAccessException("Não foi possível verificar a existência do médico no momento");
         }
-        
-        // Verificar referral se informado
-        if (request.getReferralId() != null) {
-            log.debug("Verificando existência do encaminhamento com ID: {}", request.getReferralId());
-            Referral referral = referralRepository.findById(request.getReferralId())
-                .orElseThrow(() -> new EntityNotFoundException(
-                    "Encaminhamento não encontrado com ID: " + request.getReferralId()));
-            
-            // Verificar se o referral já está agendado
-            if (ReferralStatus.SCHEDULED.equals(referral.getStatus())) {
-                throw new IllegalStateException("Este encaminhamento já está agendado");
-            }
-            
-            // Verificar se o paciente do referral é o mesmo do agendamento
-            if (!referral.getPatientId().equals(request.getPatientId())) {
-                throw new IllegalArgumentException(
-                    "O paciente do encaminhamento não corresponde ao paciente do agendamento");
-            }
+    }
+
+    private void verifyReferral(AppointmentRequest request) {
+        log.debug("Verificando existência do encaminhamento com ID: {}", request.getReferralId());
+        Referral referral = referralRepository.findById(request.getReferralId())
+            .orElseThrow(() -> new EntityNotFoundException(
+                "Encaminhamento não encontrado com ID: " + request.getReferralId()));
+        checkReferral(referral, request);
+    }
+
+    void checkReferral(Referral referral, AppointmentRequest request) {
+        // Verificar se o referral já está agendado
+        if (ReferralStatus.SCHEDULED.equals(referral.getStatus())) {
+            throw new IllegalStateException("Este encaminhamento já está agendado");
         }
         
-        // Verificar capacidade na unidade de saúde
-        if (request.getHealthcareFacilityId() != null) {
-            try {
-                Boolean hasAvailability = facilityClient.checkAvailabilityForDate(
-                    request.getHealthcareFacilityId(), 
-                    appointmentDate
-                );
-                
-                if (!hasAvailability) {
-                    throw new IllegalStateException(
-                        "A unidade de saúde com ID " + request.getHealthcareFacilityId() + 
-                        " não possui mais vagas disponíveis para a data " + appointmentDate
-                    );
-                }
-            } catch (EntityNotFoundException e) {
-                throw new EntityNotFoundException("Unidade de saúde não encontrada com ID: " + 
-                                                 request.getHealthcareFacilityId());
-            } catch (IllegalStateException e) {
-                throw e; // Repassar exceção de capacidade
-            } catch (Exception e) {
-                log.error("Erro ao verificar disponibilidade da unidade: {}", e.getMessage());
-                throw new ResourceAccessException(
-                    "Não foi possível verificar a disponibilidade da unidade de saúde no momento");
-            }
+        // Verificar se o paciente do referral é o mesmo do agendamento
+        if (!referral.getPatientId().equals(request.getPatientId())) {
+            throw new IllegalArgumentException(
+                "O paciente do encaminhamento não corresponde ao paciente do agendamento");
         }
+    }
 
-        // Verificar conflito de horário
-        if (appointmentRepository.hasConflictingAppointment(
-                request.getDoctorId(),
-                appointmentDate,
-                request.getStartTime(),
-                request.getEndTime()
-        )) {
-            throw new IllegalStateException("O médico já possui um agendamento neste horário");
+    /**
+     * Reserva no facility-service a vaga do dia para o agendamento recém-gravado, dentro da transação da gravação.
+     * Sem vaga, a exceção desfaz o agendamento. Se a transação for desfeita depois da chamada, a reserva é liberada;
+     * a liberação antes da reserva também vale, então uma chamada que chegou atrasada ao facility-service não fica
+     * com a vaga. O consumo do evento de agendamento criado continua reservando de forma idempotente.
+     */
+    void reserveFacilityCapacity(Appointment appointment) {
+        Long facilityId = appointment.getHealthcareFacilityId();
+        if (facilityId == null) {
+            return;
         }
+        try {
+            bookingMetrics.record(Stage.CAPACITY_RESERVATION, () -> facilityClient.reserveCapacity(
+                    facilityId, appointment.getId(), appointment.getAppointmentDate()));
+        } catch (RuntimeException e) {
+            if (hasCause(e, FeignException.Conflict.class)) {
+                throw facilityFull(facilityId, appointment.getAppointmentDate());
+            }
+            if (hasCause(e, FeignException.NotFound.class)) {
+                throw new EntityNotFoundException("Unidade de saúde não encontrada com ID: " + facilityId);
+            }
+            // Sem resposta não dá para saber se a vaga ficou reservada
+            releaseCapacityOnRollback(appointment.getId());
+            log.error("Erro ao reservar vaga na unidade: {}", e.getMessage());
+            throw new ResourceAccessException(
+                "Não foi possível reservar a vaga na unidade de saúde no momento");
+        }
+        releaseCapacityOnRollback(appointment.getId());
+    }
 
-        var appointment = Appointment.builder()
-                .appointmentDate(appointmentDate)
-                .startTime(request.getStartTime())
-                .endTime(request.getEndTime())
-                .appointmentType(request.getAppointmentType())
-                .status(AppointmentStatus.SCHEDULED)
-                .patientId(request.getPatientId())
-                .doctorId(request.getDoctorId())
-                .healthcareFacilityId(request.getHealthcareFacilityId())
-                .referralId(request.getReferralId())
-                .priorityLevel(request.getPriorityLevel())
-                .build();
-
-        appointment = appointmentRepository.save(appointment);
-        log.info("Agendamento criado com sucesso: {}", appointment);
-
-        // Atualizar a capacidade da unidade de saúde
-        if (appointment.getHealthcareFacilityId() != null) {
-            try {
-                // Tentativa inicial
+    private void releaseCapacityOnRollback(Long appointmentId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    return;
+                }
                 try {
-                    facilityClient.updateCurrentLoad(appointment.getHealthcareFacilityId(), true);
-                    log.debug("Carga da unidade de saúde ID {} incrementada", appointment.getHealthcareFacilityId());
+                    facilityClient.releaseCapacity(appointmentId);
+                    log.info("Vaga do agendamento {} liberada após a gravação ser desfeita", appointmentId);
                 } catch (Exception e) {
-                    log.warn("Primeira tentativa de atualizar carga falhou: {}. Tentando novamente...", e.getMessage());
-                    
-                    // Esperar um pouco e tentar novamente
-                    Thread.sleep(1000);
-                    try {
-                        facilityClient.updateCurrentLoad(appointment.getHealthcareFacilityId(), true);
-                        log.debug("Carga da unidade de saúde ID {} incrementada na segunda tentativa", 
-                            appointment.getHealthcareFacilityId());
-                    } catch (Exception e2) {
-                        log.error("Falha na segunda tentativa: {}", e2.getMessage());
-                        
-                        // Última tentativa com retry
-                        Thread.sleep(2000);
-                        facilityClient.updateCurrentLoad(appointment.getHealthcareFacilityId(), true);
-                        log.debug("Carga da unidade de saúde ID {} incrementada na terceira tentativa", 
-                            appointment.getHealthcareFacilityId());
-                    }
+                    log.error("Não foi possível liberar a vaga do agendamento {} não gravado: {}",
+                            appointmentId, e.getMessage());
                 }
-            } catch (Exception e) {
-                log.error("Erro ao atualizar carga da unidade após múltiplas tentativas: {}", e.getMessage());
-                // Não lançar exceção para não impedir o agendamento
+            }
+        });
+    }
+
+    private static boolean hasCause(Throwable error, Class<? extends Throwable> type) {
+        // Com o circuit breaker do Feign a resposta pode chegar encapsulada
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (type.isInstance(cause)) {
+                return true;
             }
         }
-        
-        // Atualizar status do referral se necessário
-        if (appointment.getReferralId() != null) {
-            try {
-                Referral referral = referralRepository.findById(appointment.getReferralId()).orElse(null);
-                if (referral != null) {
-                    referral.setStatus(ReferralStatus.SCHEDULED);
-                    referralRepository.save(referral);
-                    log.debug("Status do encaminhamento ID {} atualizado para SCHEDULED", 
-                              appointment.getReferralId());
-                }
-            } catch (Exception e) {
-                log.error("Erro ao atualizar status do encaminhamento: {}", e.getMessage());
-                // Não lançar exceção para não impedir o agendamento
+        return false;
+    }
+
+    /**
+     * Vagas restantes da unidade na data, consultadas uma vez por unidade e data no agendamento em lote
+     */
+    int remainingFacilityCapacity(Long facilityId, LocalDate date) {
+        try {
+            List<DailyCapacityDTO> days = facilityClient.getAvailability(facilityId, date, date);
+            return days.isEmpty() ? 0 : days.get(0).getRemaining();
+        } catch (RuntimeException e) {
+            if (hasCause(e, FeignException.NotFound.class)) {
+                throw new EntityNotFoundException("Unidade de saúde não encontrada com ID: " + facilityId);
             }
+            log.error("Erro ao verificar disponibilidade da unidade: {}", e.getMessage());
+            throw new ResourceAccessException(
+                "Não foi possível verificar a disponibilidade da unidade de saúde no momento");
         }
+    }
 
-        // Publish appointment created event
-        var event = new AppointmentCreatedEvent(
-                appointment.getId(),
-                appointment.getAppointmentDate(),
-                appointment.getStartTime(),
-                appointment.getEndTime(),
-                appointment.getAppointmentType(),
-                appointment.getPatientId(),
-                appointment.getDoctorId(),
-                appointment.getHealthcareFacilityId()
+    static IllegalStateException facilityFull(Long facilityId, LocalDate date) {
+        return new IllegalStateException(
+            "A unidade de saúde com ID " + facilityId +
+            " não possui mais vagas disponíveis para a data " + date
         );
-        streamBridge.send("appointmentCreatedOutput-out-0", event);
-        log.info("Evento de agendamento criado enviado com sucesso");
+    }
 
-        return appointment;
+    /**
+     * Aguarda uma validação e repassa a exceção original lançada por ela
+     */
+    private static <T> T await(CompletableFuture<T> check) {
+        try {
+            return check.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
     }
 
     @Transactional
@@ -321,11 +492,11 @@ public class SchedulingService {
         
         // Verificar se o paciente existe
         log.debug("Verificando existência do paciente com ID: {}", request.getPatientId());
-        peopleClient.patientExists(request.getPatientId());
+        peopleExistenceCache.patientExists(request.getPatientId());
         
         // Verificar se o médico existe
         log.debug("Verificando existência do médico com ID: {}", request.getRequestedByDoctorId());
-        peopleClient.doctorExists(request.getRequestedByDoctorId());
+        peopleExistenceCache.doctorExists(request.getRequestedByDoctorId());
         
         var referral = Referral.builder()
                 .referralReason(request.getReferralReason())
@@ -340,6 +511,7 @@ public class SchedulingService {
                 .build();
 
         referral = referralRepository.save(referral);
+        priorityService.referralChanged(referral);
         log.info("Encaminhamento criado com sucesso: {}", referral);
 
         // Publish referral created event
@@ -350,8 +522,8 @@ public class SchedulingService {
                 referral.getReferralType(),
                 referral.getPriorityLevel()
         );
-        streamBridge.send("referralCreatedOutput-out-0", event);
-        log.info("Evento de encaminhamento criado enviado com sucesso");
+        eventOutbox.enqueue(EventOutbox.REFERRAL_CREATED_TOPIC, referral.getId(), event);
+        log.info("Evento de encaminhamento criado gravado no outbox");
 
         return referral;
     }
@@ -363,7 +535,10 @@ public class SchedulingService {
                 .orElseThrow(() -> new EntityNotFoundException("Agendamento não encontrado com ID: " + id));
         
         appointment.setStatus(status);
-        return appointmentRepository.save(appointment);
+        appointment = appointmentRepository.save(appointment);
+        appointmentConflictIndex.update(appointment);
+        appointmentPriorityService.appointmentChanged(appointment);
+        return appointment;
     }
 
     @Transactional
@@ -378,14 +553,16 @@ public class SchedulingService {
         
         var referral = referralOpt.get();
         referral.setStatus(status);
-        return referralRepository.save(referral);
+        referral = referralRepository.save(referral);
+        priorityService.referralChanged(referral);
+        return referral;
     }
 
     public List<Appointment> getPatientAppointments(Long patientId) {
         log.debug("Buscando agendamentos do paciente com ID: {}", patientId);
         
         // Verificar se o paciente existe
-        peopleClient.patientExists(patientId);
+        peopleExistenceCache.patientExists(patientId);
         
         return appointmentRepository.findByPatientId(patientId);
     }
@@ -394,16 +571,112 @@ public class SchedulingService {
         log.debug("Buscando agendamentos do médico com ID: {}", doctorId);
         
         // Verificar se o médico existe
-        peopleClient.doctorExists(doctorId);
+        peopleExistenceCache.doctorExists(doctorId);
         
         return appointmentRepository.findByDoctorId(doctorId);
     }
 
+    /**
+     * Histórico paginado do paciente no período, do mais recente para o mais antigo.
+     * A existência do paciente só é consultada quando a página vem vazia.
+     * Os meses arquivados vêm depois dos atuais e só são consultados quando o período alcança o arquivo.
+     *
+     * @param from data inicial, ou null para sem limite
+     * @param to data final, ou null para sem limite
+     */
+    @Transactional(readOnly = true)
+    public AppointmentHistoryPage getPatientAppointmentHistory(Long patientId, LocalDate from, LocalDate to, int page, int size) {
+        log.debug("Buscando histórico do paciente com ID: {} de {} a {}, página {}", patientId, from, to, page);
+        LocalDate start = fromOrMin(from);
+        LocalDate end = toOrMax(to);
+        HistoryQuery archived = reachesArchive(from)
+                ? (offset, limit) -> archivedAppointmentRepository.findPatientHistory(patientId, start, end, offset, limit)
+                : null;
+        return historyPage(
+                (offset, limit) -> appointmentRepository.findPatientHistory(patientId, start, end, offset, limit),
+                () -> appointmentRepository.countPatientHistory(patientId, start, end),
+                archived, () -> peopleExistenceCache.patientExists(patientId), from, to, page, size);
+    }
+
+    /**
+     * Agenda paginada do médico no período, em ordem de calendário.
+     * A existência do médico só é consultada quando a página vem vazia.
+     * Os meses arquivados vêm antes dos atuais e só são consultados quando o período alcança o arquivo.
+     *
+     * @param from data inicial, ou null para sem limite
+     * @param to data final, ou null para sem limite
+     */
+    @Transactional(readOnly = true)
+    public AppointmentHistoryPage getDoctorAppointmentHistory(Long doctorId, LocalDate from, LocalDate to, int page, int size) {
+        log.debug("Buscando agenda do médico com ID: {} de {} a {}, página {}", doctorId, from, to, page);
+        LocalDate start = fromOrMin(from);
+        LocalDate end = toOrMax(to);
+        HistoryQuery live = (offset, limit) -> appointmentRepository.findDoctorHistory(doctorId, start, end, offset, limit);
+        if (!reachesArchive(from)) {
+            return historyPage(live, null, null, () -> peopleExistenceCache.doctorExists(doctorId), from, to, page, size);
+        }
+        return historyPage(
+                (offset, limit) -> archivedAppointmentRepository.findDoctorHistory(doctorId, start, end, offset, limit),
+                () -> archivedAppointmentRepository.countDoctorHistory(doctorId, start, end),
+                live, () -> peopleExistenceCache.doctorExists(doctorId), from, to, page, size);
+    }
+
+    @FunctionalInterface
+    private interface HistoryQuery {
+        List<AppointmentSummary> find(int offset, int limit);
+    }
+
+    /**
+     * Monta a página sobre duas fontes lidas em sequência (a segunda é opcional): a segunda só é consultada
+     * quando a primeira não completa a página, e a contagem da primeira só quando a página começa depois dela.
+     */
+    private AppointmentHistoryPage historyPage(HistoryQuery first, LongSupplier firstCount, HistoryQuery second,
+                                               Runnable verifyExists, LocalDate from, LocalDate to, int page, int size) {
+        PriorityService.validatePageSize(size);
+        if (page < 0) {
+            throw new IllegalArgumentException("O número da página não pode ser negativo");
+        }
+        if ((long) page * size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Número da página muito grande");
+        }
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("A data inicial deve ser anterior ou igual à data final");
+        }
+
+        int offset = page * size;
+        List<AppointmentSummary> items = new ArrayList<>(first.find(offset, size + 1));
+        if (second != null && items.size() <= size) {
+            long firstTotal = items.isEmpty() && offset > 0 ? firstCount.getAsLong() : offset + items.size();
+            items.addAll(second.find((int) Math.max(0, offset - firstTotal), size + 1 - items.size()));
+        }
+
+        boolean hasNext = items.size() > size;
+        if (items.isEmpty()) {
+            verifyExists.run();
+        }
+        return new AppointmentHistoryPage(List.copyOf(hasNext ? items.subList(0, size) : items), page, size, hasNext);
+    }
+
+    private boolean reachesArchive(LocalDate from) {
+        return appointmentPartitionMaintenance.archivedUntil()
+                .filter(archivedUntil -> from == null || !from.isAfter(archivedUntil))
+                .isPresent();
+    }
+
+    // Limites do tipo date do Postgres, usados quando o período não tem início ou fim
+    private static LocalDate fromOrMin(LocalDate from) {
+        return from != null ? from : LocalDate.of(1, 1, 1);
+    }
+
+    private static LocalDate toOrMax(LocalDate to) {
+        return to != null ? to : LocalDate.of(9999, 12, 31);
+    }
+
     public List<Referral> getPatientReferrals(Long patientId) {
         log.debug("Buscando encaminhamentos do paciente com ID: {}", patientId);
         
         // Verificar se o paciente existe
-        peopleClient.patientExists(patientId);
+        peopleExistenceCache.patientExists(patientId);
         
         return referralRepository.findByPatientId(patientId);
     }
@@ -412,14 +685,19 @@ public class SchedulingService {
         log.debug("Buscando encaminhamentos do médico com ID: {}", doctorId);
         
         // Verificar se o médico existe
-        peopleClient.doctorExists(doctorId);
+        peopleExistenceCache.doctorExists(doctorId);
         
         return referralRepository.findByRequestedByDoctorId(doctorId);
     }
 
-    public List<NearbyFacilityResponse> findNearbyFacilitiesForReferral(Double latitude, Double longitude, Double radiusInKm, Integer limit) {
-        log.debug("Buscando unidades de saúde próximas às coordenadas: ({}, {}), raio: {}km, limite: {}",
-                latitude, longitude, radiusInKm, limit);
+    /**
+     * Unidades próximas para encaminhamento. Com uma data, traz só as unidades com vaga e com médicos
+     * atendendo naquele dia, junto com as vagas e os médicos de cada uma, em uma única chamada.
+     */
+    public List<NearbyFacilityResponse> findNearbyFacilitiesForReferral(Double latitude, Double longitude, Double radiusInKm,
+                                                                        Integer limit, String facilityType, LocalDate date) {
+        log.debug("Buscando unidades de saúde próximas às coordenadas: ({}, {}), raio: {}km, limite: {}, tipo: {}, data: {}",
+                latitude, longitude, radiusInKm, limit, facilityType, date);
                 
         if (radiusInKm == null) {
             radiusInKm = 10.0;  // Valor padrão de 10km
@@ -429,7 +707,8 @@ public class SchedulingService {
             limit = 10;  // Valor padrão de 10 resultados
         }
         
-        return facilityClient.findNearbyFacilities(latitude, longitude, radiusInKm, limit);
+        return facilityClient.findNearbyFacilities(latitude, longitude, radiusInKm, limit, facilityType,
+                date, date, date == null ? null : date.getDayOfWeek().name());
     }
 
     /**
@@ -460,39 +739,18 @@ public class SchedulingService {
         // Atualizar status para cancelado
         appointment.setStatus(AppointmentStatus.CANCELLED);
         appointmentRepository.save(appointment);
+        appointmentConflictIndex.update(appointment);
+        appointmentPriorityService.appointmentChanged(appointment);
         
-        // Liberar a vaga na unidade
+        // Liberar a vaga na unidade: o facility-service desfaz a reserva deste agendamento ao consumir o evento
         if (appointment.getHealthcareFacilityId() != null) {
-            try {
-                // Tentativa inicial
-                try {
-                    facilityClient.updateCurrentLoad(appointment.getHealthcareFacilityId(), false);
-                    log.debug("Carga da unidade de saúde ID {} decrementada", appointment.getHealthcareFacilityId());
-                } catch (Exception e) {
-                    log.warn("Primeira tentativa de decrementar carga falhou: {}. Tentando novamente...", e.getMessage());
-                    
-                    // Esperar um pouco e tentar novamente
-                    Thread.sleep(1000);
-                    try {
-                        facilityClient.updateCurrentLoad(appointment.getHealthcareFacilityId(), false);
-                        log.debug("Carga da unidade de saúde ID {} decrementada na segunda tentativa", 
-                            appointment.getHealthcareFacilityId());
-                    } catch (Exception e2) {
-                        log.error("Falha na segunda tentativa: {}", e2.getMessage());
-                        
-                        // Última tentativa com retry
-                        Thread.sleep(2000);
-                        facilityClient.updateCurrentLoad(appointment.getHealthcareFacilityId(), false);
-                        log.debug("Carga da unidade de saúde ID {} decrementada na terceira tentativa", 
-                            appointment.getHealthcareFacilityId());
-                    }
-                }
-            } catch (Exception e) {
-                log.error("Erro ao atualizar carga da unidade após múltiplas tentativas: {}", e.getMessage());
-                // Continuar mesmo com erro
-            }
+            eventOutbox.enqueue(EventOutbox.APPOINTMENT_CANCELLED_TOPIC, appointment.getId(), new AppointmentCancelledEvent(
+                    appointment.getId(), appointment.getAppointmentDate(), appointment.getHealthcareFacilityId()));
         }
         
+        // Oferecer o horário liberado à lista de espera do médico na data
+        waitlistService.slotFreed(appointment);
+        
         // Se havia um referral associado, voltar para status PENDING
         if (appointment.getReferralId() != null) {
             try {
@@ -500,6 +758,7 @@ public class SchedulingService {
                 if (referral != null && ReferralStatus.SCHEDULED.equals(referral.getStatus())) {
                     referral.setStatus(ReferralStatus.PENDING);
                     referralRepository.save(referral);
+                    priorityService.referralChanged(referral);
                     log.debug("Status do encaminhamento ID {} revertido para PENDING", appointment.getReferralId());
                 }
             } catch (Exception e) {
@@ -0,0 +1,354 @@
+package br.com.fiap.tech.scheduling.service;
+
+import br.com.fiap.tech.scheduling.client.DoctorSpecialtyCache;
+import br.com.fiap.tech.scheduling.client.FacilityClient;
+import br.com.fiap.tech.scheduling.dto.AvailabilityCalendarResponse;
+import br.com.fiap.tech.scheduling.dto.AvailableSlotDTO;
+import br.com.fiap.tech.scheduling.dto.DoctorScheduleDTO;
+import br.com.fiap.tech.scheduling.dto.NearbyFacilityResponse;
+import br.com.fiap.tech.scheduling.dto.SlotSearchRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Busca de horários livres por médico, especialidade, período e localização.
+ * Os períodos das agendas (incluindo o segundo período) são divididos em horários da duração pedida
+ * e os horários ocupados são descartados pelos mapas de bits do índice de conflitos, tudo em memória.
+ * Fora da memória ficam apenas a lista de médicos da especialidade (em cache) e uma busca de unidades próximas,
+ * que já traz as vagas de cada dia do período. Sem localização, as vagas do período de todas as unidades
+ * das agendas vêm de uma única consulta ao calendário de vagas, antes de gerar os horários.
+ */
+@Slf4j
+@Service
+public class SlotSearchService {
+
+    private static final int NEARBY_FACILITIES_LIMIT = 100;
+    // Limite de unidades por consulta ao calendário de vagas do facility-service
+    private static final int CALENDAR_FACILITIES_LIMIT = 200;
+
+    private static final Comparator<AvailableSlotDTO> BY_TIME = Comparator
+            .comparing(AvailableSlotDTO::getStartTime)
+            .thenComparing(AvailableSlotDTO::getDistanceInKm, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(AvailableSlotDTO::getDoctorId);
+
+    private final DoctorScheduleReadModel doctorScheduleReadModel;
+    private final AppointmentConflictIndex appointmentConflictIndex;
+    private final DoctorSpecialtyCache doctorSpecialtyCache;
+    private final FacilityClient facilityClient;
+    private final int maxDays;
+    private final int maxResults;
+
+    public SlotSearchService(
+            DoctorScheduleReadModel doctorScheduleReadModel,
+            AppointmentConflictIndex appointmentConflictIndex,
+            DoctorSpecialtyCache doctorSpecialtyCache,
+            FacilityClient facilityClient,
+            @Value("${scheduling.slot-search.max-days:60}") int maxDays,
+            @Value("${scheduling.slot-search.max-results:100}") int maxResults) {
+        this.doctorScheduleReadModel = doctorScheduleReadModel;
+        this.appointmentConflictIndex = appointmentConflictIndex;
+        this.doctorSpecialtyCache = doctorSpecialtyCache;
+        this.facilityClient = facilityClient;
+        this.maxDays = maxDays;
+        this.maxResults = maxResults;
+    }
+
+    record CapacityKey(Long facilityId, LocalDate date) {
+    }
+
+    public List<AvailableSlotDTO> search(SlotSearchRequest request) {
+        return search(request, LocalDateTime.now());
+    }
+
+    List<AvailableSlotDTO> search(SlotSearchRequest request, LocalDateTime now) {
+        return search(request, now, maxResults);
+    }
+
+    /**
+     * Busca para uso interno, com um limite de resultados próprio em vez do limite da API
+     */
+    List<AvailableSlotDTO> search(SlotSearchRequest request, LocalDateTime now, int resultLimit) {
+        validate(request, resultLimit);
+
+        LocalDate from = request.getFrom() == null || request.getFrom().isBefore(now.toLocalDate())
+                ? now.toLocalDate()
+                : request.getFrom();
+
+        Set<Long> doctorIds = resolveDoctors(request);
+        if (doctorIds != null && doctorIds.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, NearbyFacilityResponse> nearby = resolveFacilities(request, from);
+        if (nearby != null && nearby.isEmpty()) {
+            return List.of();
+        }
+
+        List<DoctorScheduleDTO> schedules = doctorScheduleReadModel.getAllSchedules().stream()
+                .filter(schedule -> doctorIds == null || doctorIds.contains(schedule.getDoctorId()))
+                .filter(schedule -> nearby == null || nearby.containsKey(schedule.getFacilityId()))
+                .toList();
+
+        LocalDate to = from.plusDays(request.getDays() - 1L);
+        Map<CapacityKey, Boolean> knownCapacity = nearby != null
+                ? nearbyCapacity(nearby)
+                : calendarCapacity(schedules, from, to);
+        SlotFinder finder = new SlotFinder(request.getDurationMinutes(), now, nearby, knownCapacity);
+        List<AvailableSlotDTO> slots = request.getOrderBy() == SlotSearchRequest.Order.DISTANCE
+                ? finder.byDistance(schedules, from, request.getDays(), request.getLimit())
+                : finder.byTime(schedules, from, request.getDays(), request.getLimit());
+
+        log.debug("Busca de horários livres: {} agendas analisadas, {} horários encontrados",
+                schedules.size(), slots.size());
+        return slots;
+    }
+
+    private void validate(SlotSearchRequest request, int resultLimit) {
+        if (request.getDurationMinutes() < 5 || request.getDurationMinutes() > 480) {
+            throw new IllegalArgumentException("A duração deve estar entre 5 e 480 minutos");
+        }
+        if (request.getDays() < 1 || request.getDays() > maxDays) {
+            throw new IllegalArgumentException("O período de busca deve estar entre 1 e " + maxDays + " dias");
+        }
+        if (request.getLimit() < 1 || request.getLimit() > resultLimit) {
+            throw new IllegalArgumentException("A quantidade de horários deve estar entre 1 e " + resultLimit);
+        }
+        if ((request.getLatitude() == null) != (request.getLongitude() == null)) {
+            throw new IllegalArgumentException("Informe latitude e longitude juntas");
+        }
+        if (request.getOrderBy() == SlotSearchRequest.Order.DISTANCE && request.getLatitude() == null) {
+            throw new IllegalArgumentException("A ordenação por distância exige latitude e longitude");
+        }
+    }
+
+    /**
+     * Médicos que podem aparecer no resultado, ou null para todos
+     */
+    private Set<Long> resolveDoctors(SlotSearchRequest request) {
+        Set<Long> doctorIds = null;
+        if (request.getSpecialty() != null && !request.getSpecialty().isBlank()) {
+            doctorIds = new HashSet<>(doctorSpecialtyCache.getDoctorIds(request.getSpecialty()));
+        }
+        if (request.getDoctorId() != null) {
+            if (doctorIds == null) {
+                doctorIds = new HashSet<>();
+                doctorIds.add(request.getDoctorId());
+            } else {
+                doctorIds.retainAll(Set.of(request.getDoctorId()));
+            }
+        }
+        return doctorIds;
+    }
+
+    /**
+     * Unidades próximas com vagas no período, em ordem crescente de distância,
+     * ou null quando a busca não informa localização
+     */
+    private Map<Long, NearbyFacilityResponse> resolveFacilities(SlotSearchRequest request, LocalDate from) {
+        if (request.getLatitude() == null) {
+            return null;
+        }
+        return facilityClient.findNearbyFacilities(request.getLatitude(), request.getLongitude(),
+                        request.getRadiusInKm(), NEARBY_FACILITIES_LIMIT, null,
+                        from, from.plusDays(request.getDays() - 1L), null).stream()
+                .filter(nearby -> nearby.getFacility() != null && nearby.getFacility().getId() != null
+                        && nearby.getDistanceInKm() != null)
+                .sorted(Comparator.comparing(NearbyFacilityResponse::getDistanceInKm))
+                .collect(Collectors.toMap(nearby -> nearby.getFacility().getId(),
+                        Function.identity(), (first, second) -> first, LinkedHashMap::new));
+    }
+
+    /**
+     * Se há vaga em cada unidade/data do período, pelas vagas que a busca de unidades próximas já trouxe
+     */
+    private static Map<CapacityKey, Boolean> nearbyCapacity(Map<Long, NearbyFacilityResponse> nearby) {
+        Map<CapacityKey, Boolean> capacity = new HashMap<>();
+        nearby.forEach((facilityId, facility) -> {
+            if (facility.getAvailability() != null) {
+                facility.getAvailability().forEach(day -> capacity.put(
+                        new CapacityKey(facilityId, day.getDate()),
+                        day.getRemaining() != null && day.getRemaining() > 0));
+            }
+        });
+        return capacity;
+    }
+
+    /**
+     * Se há vaga em cada unidade/data do período, com uma consulta ao calendário de vagas
+     * para todas as unidades das agendas (uma por bloco de unidades, acima do limite da consulta)
+     */
+    private Map<CapacityKey, Boolean> calendarCapacity(List<DoctorScheduleDTO> schedules, LocalDate from, LocalDate to) {
+        List<Long> facilityIds = schedules.stream()
+                .map(DoctorScheduleDTO::getFacilityId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        Map<CapacityKey, Boolean> capacity = new HashMap<>();
+        for (int start = 0; start < facilityIds.size(); start += CALENDAR_FACILITIES_LIMIT) {
+            List<Long> ids = facilityIds.subList(start, Math.min(start + CALENDAR_FACILITIES_LIMIT, facilityIds.size()));
+            try {
+                AvailabilityCalendarResponse calendar = facilityClient.getAvailabilityCalendar(ids, from, to);
+                for (int i = 0; i < calendar.getFacilityIds().size(); i++) {
+                    Long facilityId = calendar.getFacilityIds().get(i);
+                    List<Integer> runs = calendar.getRemaining().get(i);
+                    LocalDate date = calendar.getFrom();
+                    // Pares [vagas, dias seguidos com essas vagas]
+                    for (int run = 0; run + 1 < runs.size(); run += 2) {
+                        boolean available = runs.get(run) > 0;
+                        for (int day = 0; day < runs.get(run + 1); day++, date = date.plusDays(1)) {
+                            capacity.put(new CapacityKey(facilityId, date), available);
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                // A capacidade é verificada de novo no agendamento; a busca não falha por isso
+                log.warn("Não foi possível consultar as vagas de {} unidades de {} a {}: {}",
+                        ids.size(), from, to, e.getMessage());
+            }
+        }
+        return capacity;
+    }
+
+    /**
+     * Gera e filtra os horários de uma busca
+     */
+    private final class SlotFinder {
+        private final int durationSeconds;
+        private final LocalDateTime now;
+        private final Map<Long, NearbyFacilityResponse> nearby;
+        private final Map<CapacityKey, Boolean> knownCapacity;
+
+        private SlotFinder(int durationMinutes, LocalDateTime now, Map<Long, NearbyFacilityResponse> nearby,
+                           Map<CapacityKey, Boolean> knownCapacity) {
+            this.durationSeconds = durationMinutes * 60;
+            this.now = now;
+            this.nearby = nearby;
+            this.knownCapacity = knownCapacity;
+        }
+
+        /**
+         * Dia a dia, em ordem de horário; para assim que o limite é atingido
+         */
+        List<AvailableSlotDTO> byTime(List<DoctorScheduleDTO> schedules, LocalDate from, int days, int limit) {
+            Map<DayOfWeek, List<DoctorScheduleDTO>> byDay = groupByDay(schedules);
+            List<AvailableSlotDTO> result = new ArrayList<>();
+            for (LocalDate date = from; date.isBefore(from.plusDays(days)) && result.size() < limit; date = date.plusDays(1)) {
+                collect(daySlots(byDay.getOrDefault(date.getDayOfWeek(), List.of()), date), limit, result);
+            }
+            return result;
+        }
+
+        /**
+         * Unidade a unidade, da mais próxima para a mais distante, e em cada unidade em ordem de data e horário
+         */
+        List<AvailableSlotDTO> byDistance(List<DoctorScheduleDTO> schedules, LocalDate from, int days, int limit) {
+            Map<Long, List<DoctorScheduleDTO>> byFacility = schedules.stream()
+                    .collect(Collectors.groupingBy(DoctorScheduleDTO::getFacilityId));
+            List<AvailableSlotDTO> result = new ArrayList<>();
+            for (Long facilityId : nearby.keySet()) {
+                Map<DayOfWeek, List<DoctorScheduleDTO>> byDay = groupByDay(byFacility.getOrDefault(facilityId, List.of()));
+                for (LocalDate date = from; date.isBefore(from.plusDays(days)) && result.size() < limit; date = date.plusDays(1)) {
+                    collect(daySlots(byDay.getOrDefault(date.getDayOfWeek(), List.of()), date), limit, result);
+                }
+                if (result.size() >= limit) {
+                    break;
+                }
+            }
+            return result;
+        }
+
+        private void collect(List<AvailableSlotDTO> candidates, int limit, List<AvailableSlotDTO> result) {
+            for (AvailableSlotDTO slot : candidates) {
+                if (result.size() >= limit) {
+                    return;
+                }
+                if (slot.getHealthcareFacilityId() == null
+                        || hasCapacity(slot.getHealthcareFacilityId(), slot.getAppointmentDate())) {
+                    result.add(slot);
+                }
+            }
+        }
+
+        /**
+         * Horários livres das agendas na data, em ordem de horário.
+         * A ocupação de todos os médicos do dia vem do índice de uma vez
+         */
+        private List<AvailableSlotDTO> daySlots(List<DoctorScheduleDTO> schedules, LocalDate date) {
+            if (schedules.isEmpty()) {
+                return List.of();
+            }
+            Map<Long, DayOccupancy> occupancies = appointmentConflictIndex.occupancies(
+                    schedules.stream().map(DoctorScheduleDTO::getDoctorId).collect(Collectors.toSet()), date);
+            List<AvailableSlotDTO> slots = new ArrayList<>();
+            for (DoctorScheduleDTO schedule : schedules) {
+                DayOccupancy occupancy = occupancies.get(schedule.getDoctorId());
+                expandPeriod(schedule, date, schedule.getStartTime(), schedule.getEndTime(), occupancy, slots);
+                expandPeriod(schedule, date, schedule.getSecondPeriodStart(), schedule.getSecondPeriodEnd(), occupancy, slots);
+            }
+            slots.sort(BY_TIME);
+            return slots;
+        }
+
+        /**
+         * Divide o período em horários da duração pedida, descartando os ocupados
+         */
+        private void expandPeriod(DoctorScheduleDTO schedule, LocalDate date, LocalTime periodStart, LocalTime periodEnd,
+                                  DayOccupancy occupancy, List<AvailableSlotDTO> slots) {
+            if (periodStart == null || periodEnd == null) {
+                return;
+            }
+            // Em segundos do dia, para não dar a volta na meia-noite
+            int end = periodEnd.toSecondOfDay();
+            int earliest = date.equals(now.toLocalDate()) ? now.toLocalTime().toSecondOfDay() : 0;
+            for (int start = periodStart.toSecondOfDay(); start + durationSeconds <= end; start += durationSeconds) {
+                LocalTime slotStart = LocalTime.ofSecondOfDay(start);
+                LocalTime slotEnd = LocalTime.ofSecondOfDay(start + durationSeconds);
+                if (start < earliest || !occupancy.isFree(slotStart, slotEnd)) {
+                    continue;
+                }
+                slots.add(AvailableSlotDTO.builder()
+                        .doctorId(schedule.getDoctorId())
+                        .healthcareFacilityId(schedule.getFacilityId())
+                        .appointmentDate(date)
+                        .appointmentDay(date.getDayOfWeek().name())
+                        .startTime(slotStart)
+                        .endTime(slotEnd)
+                        .distanceInKm(nearby == null ? null : nearby.get(schedule.getFacilityId()).getDistanceInKm())
+                        .build());
+            }
+        }
+
+        /**
+         * Unidades/datas sem informação de vagas (a consulta falhou) não são descartadas:
+         * a capacidade é verificada de novo no agendamento
+         */
+        private boolean hasCapacity(Long facilityId, LocalDate date) {
+            return knownCapacity.getOrDefault(new CapacityKey(facilityId, date), true);
+        }
+
+        private Map<DayOfWeek, List<DoctorScheduleDTO>> groupByDay(List<DoctorScheduleDTO> schedules) {
+            Map<DayOfWeek, List<DoctorScheduleDTO>> byDay = new EnumMap<>(DayOfWeek.class);
+            schedules.forEach(schedule -> byDay
+                    .computeIfAbsent(DayOfWeek.valueOf(schedule.getDayOfWeek()), day -> new ArrayList<>())
+                    .add(schedule));
+            return byDay;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package br.com.fiap.tech.scheduling.service;
+
+import br.com.fiap.tech.scheduling.domain.Appointment;
+import br.com.fiap.tech.scheduling.domain.AppointmentType;
+import br.com.fiap.tech.scheduling.domain.Referral;
+import br.com.fiap.tech.scheduling.domain.ReferralStatus;
+import br.com.fiap.tech.scheduling.domain.ReferralType;
+import br.com.fiap.tech.scheduling.domain.WaitlistEntry;
+import br.com.fiap.tech.scheduling.dto.AppointmentRequest;
+import br.com.fiap.tech.scheduling.dto.BatchAppointmentResult;
+import br.com.fiap.tech.scheduling.dto.ReferralWithPriorityDTO;
+import br.com.fiap.tech.scheduling.dto.WaitlistRequest;
+import br.com.fiap.tech.scheduling.repository.ReferralRepository;
+import br.com.fiap.tech.scheduling.repository.WaitlistEntryRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Lista de espera por médico e data.
+ * Quando um agendamento é cancelado, o horário liberado é oferecido, fora da thread da requisição,
+ * aos encaminhamentos pendentes da lista do médico na data, em ordem de pontuação de prioridade:
+ * o primeiro que passar nas validações do agendamento fica com o horário e sai da lista.
+ * O BatchAppointmentService é injetado sob demanda porque depende do SchedulingService, que usa este serviço.
+ */
+@Slf4j
+@Service
+public class WaitlistService {
+
+    private final WaitlistEntryRepository waitlistEntryRepository;
+    private final ReferralRepository referralRepository;
+    private final PriorityService priorityService;
+    private final BatchAppointmentService batchAppointmentService;
+    private final TransactionTemplate transactionTemplate;
+    private final Executor waitlistBackfillExecutor;
+    private final boolean backfillEnabled;
+    private final int maxAttempts;
+
+    private final Counter backfilledCounter;
+    private final Counter unfilledCounter;
+
+    public WaitlistService(
+            WaitlistEntryRepository waitlistEntryRepository,
+            ReferralRepository referralRepository,
+            PriorityService priorityService,
+            @Lazy BatchAppointmentService batchAppointmentService,
+            TransactionTemplate transactionTemplate,
+            @Qualifier("waitlistBackfillExecutor") Executor waitlistBackfillExecutor,
+            MeterRegistry meterRegistry,
+            @Value("${scheduling.waitlist.backfill-enabled:true}") boolean backfillEnabled,
+            @Value("${scheduling.waitlist.max-attempts:5}") int maxAttempts) {
+        this.waitlistEntryRepository = waitlistEntryRepository;
+        this.referralRepository = referralRepository;
+        this.priorityService = priorityService;
+        this.batchAppointmentService = batchAppointmentService;
+        this.transactionTemplate = transactionTemplate;
+        this.waitlistBackfillExecutor = waitlistBackfillExecutor;
+        this.backfillEnabled = backfillEnabled;
+        this.maxAttempts = maxAttempts;
+        this.backfilledCounter = Counter.builder("scheduling.waitlist.backfilled")
+                .description("Horários cancelados agendados para encaminhamentos da lista de espera")
+                .register(meterRegistry);
+        this.unfilledCounter = Counter.builder("scheduling.waitlist.unfilled")
+                .description("Horários cancelados sem encaminhamento compatível na lista de espera")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Coloca um encaminhamento pendente na lista de espera do médico na data
+     */
+    public WaitlistEntry join(WaitlistRequest request) {
+        if (request.getReferralId() == null || request.getDoctorId() == null || request.getAppointmentDate() == null) {
+            throw new IllegalArgumentException("Encaminhamento, médico e data são obrigatórios");
+        }
+        if (request.getAppointmentDate().isBefore(LocalDate.now())) {
+            throw new IllegalArgumentException("A data da lista de espera não pode ser no passado");
+        }
+        Referral referral = referralRepository.findById(request.getReferralId())
+                .orElseThrow(() -> new EntityNotFoundException("Encaminhamento não encontrado com ID: " + request.getReferralId()));
+        if (!ReferralStatus.PENDING.equals(referral.getStatus())) {
+            throw new IllegalStateException("Apenas encaminhamentos pendentes podem entrar na lista de espera");
+        }
+        if (waitlistEntryRepository.existsByReferralIdAndDoctorIdAndAppointmentDate(
+                request.getReferralId(), request.getDoctorId(), request.getAppointmentDate())) {
+            throw new IllegalStateException("O encaminhamento já está na lista de espera do médico nesta data");
+        }
+
+        WaitlistEntry entry = waitlistEntryRepository.save(WaitlistEntry.builder()
+                .referralId(request.getReferralId())
+                .doctorId(request.getDoctorId())
+                .appointmentDate(request.getAppointmentDate())
+                .build());
+        log.info("Encaminhamento ID {} na lista de espera do médico ID {} em {}",
+                request.getReferralId(), request.getDoctorId(), request.getAppointmentDate());
+        return entry;
+    }
+
+    public void leave(Long entryId) {
+        if (!waitlistEntryRepository.existsById(entryId)) {
+            throw new EntityNotFoundException("Entrada da lista de espera não encontrada com ID: " + entryId);
+        }
+        waitlistEntryRepository.deleteById(entryId);
+    }
+
+    /**
+     * Encaminhamentos pendentes da lista de espera do médico na data, em ordem de prioridade
+     */
+    public List<ReferralWithPriorityDTO> getWaitlist(Long doctorId, LocalDate date) {
+        return candidates(doctorId, date, LocalDateTime.now());
+    }
+
+    /**
+     * Agenda o horário do agendamento cancelado para a lista de espera, após o commit e em segundo plano
+     */
+    public void slotFreed(Appointment cancelled) {
+        if (!backfillEnabled || hasStarted(cancelled, LocalDateTime.now())) {
+            return;
+        }
+        Runnable backfill = () -> {
+            try {
+                waitlistBackfillExecutor.execute(() -> backfill(cancelled));
+            } catch (TaskRejectedException e) {
+                log.warn("Fila da lista de espera cheia: horário do agendamento ID {} não será reaproveitado",
+                        cancelled.getId());
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    backfill.run();
+                }
+            });
+        } else {
+            backfill.run();
+        }
+    }
+
+    /**
+     * Tenta agendar o horário liberado para os encaminhamentos da lista, do mais prioritário para o menos
+     *
+     * @return o agendamento criado, ou null se nenhum encaminhamento ficou com o horário
+     */
+    Appointment backfill(Appointment cancelled) {
+        LocalDateTime now = LocalDateTime.now();
+        if (hasStarted(cancelled, now)) {
+            // Pode ter ficado na fila até o horário começar
+            log.debug("Horário do agendamento cancelado ID {} já começou; nada a reaproveitar", cancelled.getId());
+            return null;
+        }
+        try {
+            List<ReferralWithPriorityDTO> candidates = candidates(
+                    cancelled.getDoctorId(), cancelled.getAppointmentDate(), now).stream()
+                    // O encaminhamento do agendamento cancelado não volta para o mesmo horário
+                    .filter(candidate -> !candidate.getReferral().getId().equals(cancelled.getReferralId()))
+                    .limit(maxAttempts)
+                    .toList();
+
+            for (ReferralWithPriorityDTO candidate : candidates) {
+                Referral referral = candidate.getReferral();
+                BatchAppointmentResult result = batchAppointmentService.createAppointments(
+                        List.of(toRequest(referral, cancelled))).get(0);
+                if (result.isCreated()) {
+                    transactionTemplate.executeWithoutResult(status ->
+                            waitlistEntryRepository.deleteByReferralIds(List.of(referral.getId())));
+                    backfilledCounter.increment();
+                    log.info("Horário do agendamento cancelado ID {} agendado para o encaminhamento ID {} da lista de espera",
+                            cancelled.getId(), referral.getId());
+                    return result.getAppointment();
+                }
+                log.debug("Encaminhamento ID {} da lista de espera não ficou com o horário: {}",
+                        referral.getId(), result.getError());
+            }
+        } catch (Exception e) {
+            log.error("Erro ao reaproveitar o horário do agendamento cancelado ID {}: {}", cancelled.getId(), e.getMessage());
+        }
+        unfilledCounter.increment();
+        return null;
+    }
+
+    private static boolean hasStarted(Appointment appointment, LocalDateTime now) {
+        LocalTime start = appointment.getStartTime() != null ? appointment.getStartTime() : LocalTime.MIN;
+        return !appointment.getAppointmentDate().atTime(start).isAfter(now);
+    }
+
+    /**
+     * Remove as entradas de datas passadas
+     */
+    @Scheduled(cron = "0 10 0 * * *")
+    public void purgePastEntries() {
+        Integer removed = transactionTemplate.execute(status -> waitlistEntryRepository.deleteBefore(LocalDate.now()));
+        if (removed != null && removed > 0) {
+            log.info("{} entradas antigas da lista de espera removidas", removed);
+        }
+    }
+
+    private List<ReferralWithPriorityDTO> candidates(Long doctorId, LocalDate date, LocalDateTime now) {
+        List<Long> referralIds = waitlistEntryRepository.findByDoctorIdAndAppointmentDate(doctorId, date).stream()
+                .map(WaitlistEntry::getReferralId)
+                .distinct()
+                .toList();
+        if (referralIds.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Referral> referrals = referralRepository.findAllById(referralIds).stream()
+                .collect(Collectors.toMap(Referral::getId, Function.identity()));
+        return referralIds.stream()
+                .map(referrals::get)
+                .filter(Objects::nonNull)
+                .filter(referral -> ReferralStatus.PENDING.equals(referral.getStatus()))
+                .map(referral -> new ReferralWithPriorityDTO(referral, priorityService.calculatePriorityScore(referral, now), 0))
+                // Em caso de empate na pontuação, o mais antigo primeiro
+                .sorted(Comparator.comparing(ReferralWithPriorityDTO::getPriorityScore).reversed()
+                        .thenComparing(dto -> dto.getReferral().getRequestedDate(), Comparator.nullsLast(Comparator.naturalOrder())))
+                .toList();
+    }
+
+    private AppointmentRequest toRequest(Referral referral, Appointment cancelled) {
+        AppointmentRequest request = new AppointmentRequest();
+        request.setAppointmentDay(cancelled.getAppointmentDate().getDayOfWeek().name());
+        request.setAppointmentDate(cancelled.getAppointmentDate());
+        request.setStartTime(cancelled.getStartTime());
+        request.setEndTime(cancelled.getEndTime());
+        request.setAppointmentType(referral.getReferralType() == ReferralType.LAB
+                ? AppointmentType.EXAM
+                : AppointmentType.CONSULTATION);
+        request.setPatientId(referral.getPatientId());
+        request.setDoctorId(cancelled.getDoctorId());
+        request.setHealthcareFacilityId(cancelled.getHealthcareFacilityId());
+        request.setReferralId(referral.getId());
+        request.setPriorityLevel(referral.getPriorityLevel());
+        return request;
+    }
+}
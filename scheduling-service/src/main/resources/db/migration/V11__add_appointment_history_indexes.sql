@@ -0,0 +1,7 @@
+-- Índices do histórico paginado: o do paciente é lido do mais recente para o mais antigo
+-- e o do médico em ordem de calendário. Substituem os índices de uma coluna, que são prefixo deles.
+CREATE INDEX idx_appointments_patient_date ON appointments (patient_id, appointment_date DESC, start_time DESC, id DESC);
+CREATE INDEX idx_appointments_doctor_date ON appointments (doctor_id, appointment_date, start_time, id);
+
+DROP INDEX idx_appointments_patient;
+DROP INDEX idx_appointments_doctor;
@@ -0,0 +1,133 @@
+-- Particiona a tabela appointments por mês da data do agendamento (appointments_AAAA_MM).
+-- As consultas por data passam a ler só as partições do período, e os meses antigos em que todos os agendamentos
+-- já terminaram (COMPLETED/CANCELLED) são movidos para o schema appointments_archive pelo job de manutenção
+-- (AppointmentPartitionMaintenance), que também cria as partições dos próximos meses.
+-- A chave primária passa a incluir a data (exigência do particionamento); os IDs continuam vindo da sequence.
+-- A constraint de sobreposição fica em cada partição: agendamentos do mesmo dia estão sempre na mesma partição.
+
+ALTER TABLE appointments RENAME TO appointments_legacy;
+ALTER TABLE appointments_legacy DROP CONSTRAINT appointments_doctor_no_overlap;
+ALTER SEQUENCE appointments_id_seq OWNED BY NONE;
+
+CREATE TABLE appointments (
+    id BIGINT NOT NULL DEFAULT nextval('appointments_id_seq'),
+    patient_id BIGINT NOT NULL,
+    doctor_id BIGINT NOT NULL,
+    healthcare_facility_id BIGINT,
+    appointment_date DATE NOT NULL,
+    start_time TIME NOT NULL,
+    end_time TIME NOT NULL,
+    appointment_type VARCHAR(20) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    referral_id BIGINT,
+    priority_level VARCHAR(20),
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id, appointment_date)
+) PARTITION BY RANGE (appointment_date);
+
+ALTER SEQUENCE appointments_id_seq OWNED BY appointments.id;
+
+-- Recebe datas sem partição mensal (por exemplo, muito distantes); a criação da partição do mês move essas linhas
+CREATE TABLE appointments_default PARTITION OF appointments DEFAULT;
+
+CREATE SCHEMA IF NOT EXISTS appointments_archive;
+
+CREATE TABLE appointments_archive.appointments (LIKE appointments)
+    PARTITION BY RANGE (appointment_date);
+
+CREATE OR REPLACE FUNCTION add_appointment_overlap_constraint(p_table REGCLASS) RETURNS VOID AS $$
+BEGIN
+    EXECUTE format('ALTER TABLE %s ADD CONSTRAINT %I EXCLUDE USING gist ('
+                   || 'doctor_id WITH =, '
+                   || 'tsrange(appointment_date + start_time, appointment_date + end_time) WITH &&'
+                   || ') WHERE (status <> ''CANCELLED'')',
+                   p_table, replace(p_table::text, 'public.', '') || '_no_overlap');
+END;
+$$ LANGUAGE plpgsql;
+
+SELECT add_appointment_overlap_constraint('appointments_default');
+
+-- Cria a partição do mês, se ela ainda não existir (nem no arquivo), movendo para ela as linhas
+-- do mês que estiverem na partição padrão. Retorna true se a partição foi criada.
+CREATE OR REPLACE FUNCTION create_appointment_partition(p_month DATE) RETURNS BOOLEAN AS $$
+DECLARE
+    v_start DATE := date_trunc('month', p_month)::date;
+    v_end DATE := (date_trunc('month', p_month) + INTERVAL '1 month')::date;
+    v_name TEXT := 'appointments_' || to_char(date_trunc('month', p_month), 'YYYY_MM');
+BEGIN
+    IF to_regclass('public.' || v_name) IS NOT NULL
+       OR to_regclass('appointments_archive.' || v_name) IS NOT NULL THEN
+        RETURN FALSE;
+    END IF;
+
+    EXECUTE format('CREATE TABLE public.%I (LIKE appointments INCLUDING DEFAULTS)', v_name);
+    EXECUTE format('WITH moved AS (DELETE FROM appointments_default '
+                   || 'WHERE appointment_date >= %L AND appointment_date < %L RETURNING *) '
+                   || 'INSERT INTO public.%I SELECT * FROM moved', v_start, v_end, v_name);
+    PERFORM add_appointment_overlap_constraint(('public.' || v_name)::regclass);
+    EXECUTE format('ALTER TABLE appointments ATTACH PARTITION public.%I FOR VALUES FROM (%L) TO (%L)',
+                   v_name, v_start, v_end);
+    RETURN TRUE;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Move para o arquivo, do mês mais antigo para o mais recente, as partições mensais que terminam até p_before,
+-- parando na primeira que ainda tiver agendamentos em aberto: assim o arquivo só tem meses anteriores aos da
+-- tabela principal. Retorna o nome das partições arquivadas.
+CREATE OR REPLACE FUNCTION archive_appointment_partitions(p_before DATE) RETURNS SETOF TEXT AS $$
+DECLARE
+    v_name TEXT;
+    v_start DATE;
+    v_open BOOLEAN;
+BEGIN
+    FOR v_name IN
+        SELECT c.relname FROM pg_inherits i
+        JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = 'public.appointments'::regclass AND c.relname ~ '^appointments_\d{4}_\d{2}$'
+        ORDER BY c.relname
+    LOOP
+        v_start := to_date(substring(v_name FROM 14), 'YYYY_MM');
+        IF (v_start + INTERVAL '1 month')::date > p_before THEN
+            EXIT;
+        END IF;
+        EXECUTE format('SELECT EXISTS (SELECT 1 FROM public.%I WHERE status NOT IN (''COMPLETED'', ''CANCELLED''))', v_name)
+            INTO v_open;
+        IF v_open THEN
+            EXIT;
+        END IF;
+        EXECUTE format('ALTER TABLE appointments DETACH PARTITION public.%I', v_name);
+        EXECUTE format('ALTER TABLE public.%I SET SCHEMA appointments_archive', v_name);
+        EXECUTE format('ALTER TABLE appointments_archive.appointments ATTACH PARTITION appointments_archive.%I '
+                       || 'FOR VALUES FROM (%L) TO (%L)', v_name, v_start, (v_start + INTERVAL '1 month')::date);
+        RETURN NEXT v_name;
+    END LOOP;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Partições dos meses com agendamentos e dos próximos 12 meses
+SELECT create_appointment_partition(month::date)
+FROM generate_series(
+        date_trunc('month', LEAST(COALESCE((SELECT MIN(appointment_date) FROM appointments_legacy), CURRENT_DATE), CURRENT_DATE)),
+        date_trunc('month', CURRENT_DATE) + INTERVAL '12 months',
+        INTERVAL '1 month') AS month;
+
+INSERT INTO appointments (id, patient_id, doctor_id, healthcare_facility_id, appointment_date, start_time, end_time,
+                          appointment_type, status, referral_id, priority_level, created_at, updated_at)
+SELECT id, patient_id, doctor_id, healthcare_facility_id, appointment_date, start_time, end_time,
+       appointment_type, status, referral_id, priority_level, created_at, updated_at
+FROM appointments_legacy;
+
+DROP TABLE appointments_legacy;
+
+-- Índices criados no pai valem para todas as partições, inclusive as criadas depois
+CREATE INDEX idx_appointments_patient_date ON appointments (patient_id, appointment_date DESC, start_time DESC, id DESC);
+CREATE INDEX idx_appointments_doctor_date ON appointments (doctor_id, appointment_date, start_time, id);
+CREATE INDEX idx_appointments_facility ON appointments (healthcare_facility_id);
+CREATE INDEX idx_appointments_date ON appointments (appointment_date);
+CREATE INDEX idx_appointments_referral ON appointments (referral_id);
+
+CREATE INDEX idx_archived_appointments_patient_date
+    ON appointments_archive.appointments (patient_id, appointment_date DESC, start_time DESC, id DESC);
+CREATE INDEX idx_archived_appointments_doctor_date
+    ON appointments_archive.appointments (doctor_id, appointment_date, start_time, id);
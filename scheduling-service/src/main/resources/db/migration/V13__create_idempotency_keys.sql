@@ -0,0 +1,16 @@
+-- Chaves de idempotência (cabeçalho Idempotency-Key) da criação de agendamentos e encaminhamentos.
+-- A primeira requisição reserva a chave (owner/locked_until) enquanto executa e grava a resposta ao terminar;
+-- as repetições até expires_at recebem a resposta gravada sem executar de novo.
+CREATE TABLE idempotency_keys (
+    scope VARCHAR(50) NOT NULL,
+    idempotency_key VARCHAR(255) NOT NULL,
+    request_hash VARCHAR(64) NOT NULL,
+    owner VARCHAR(100),
+    locked_until TIMESTAMP,
+    response_body TEXT,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    expires_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (scope, idempotency_key)
+);
+
+CREATE INDEX idx_idempotency_keys_expires_at ON idempotency_keys (expires_at);
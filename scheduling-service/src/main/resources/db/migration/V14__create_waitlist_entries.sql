@@ -0,0 +1,13 @@
+-- Lista de espera por médico e data: encaminhamentos pendentes que aceitam qualquer horário do médico no dia.
+-- Quando um agendamento do médico é cancelado, o horário liberado é agendado para o encaminhamento da lista
+-- com maior pontuação de prioridade.
+CREATE TABLE waitlist_entries (
+    id BIGSERIAL PRIMARY KEY,
+    referral_id BIGINT NOT NULL REFERENCES referrals(id),
+    doctor_id BIGINT NOT NULL,
+    appointment_date DATE NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT uk_waitlist_entries_referral_doctor_date UNIQUE (referral_id, doctor_id, appointment_date)
+);
+
+CREATE INDEX idx_waitlist_entries_doctor_date ON waitlist_entries (doctor_id, appointment_date);
@@ -0,0 +1,3 @@
+-- A capacidade das unidades passa a ser reservada pelo facility-service por agendamento, a partir dos eventos
+-- appointment-created e appointment-cancelled; as variações de carga acumuladas deixam de existir.
+DROP TABLE IF EXISTS facility_load_deltas;
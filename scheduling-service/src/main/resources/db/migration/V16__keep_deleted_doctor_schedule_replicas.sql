@@ -0,0 +1,3 @@
+-- Agendas excluídas ficam na cópia local como marcação, com a versão da exclusão em updated_at,
+-- para que eventos de criação ou alteração entregues depois da exclusão sejam ignorados
+ALTER TABLE doctor_schedule_replicas ADD COLUMN deleted BOOLEAN NOT NULL DEFAULT FALSE;
@@ -0,0 +1,39 @@
+-- O arquivamento continua parando no primeiro mês com agendamentos em aberto, para que o arquivo só tenha
+-- meses anteriores aos da tabela principal, mas agora informa esse mês: a função retorna as partições
+-- arquivadas com 0 em open_appointments e, por último, a partição que bloqueou o arquivamento com a
+-- quantidade de agendamentos ainda em aberto (essa não é arquivada).
+DROP FUNCTION archive_appointment_partitions(DATE);
+
+CREATE FUNCTION archive_appointment_partitions(p_before DATE)
+    RETURNS TABLE (partition_name TEXT, open_appointments BIGINT) AS $$
+DECLARE
+    v_name TEXT;
+    v_start DATE;
+    v_open BIGINT;
+BEGIN
+    FOR v_name IN
+        SELECT c.relname FROM pg_inherits i
+        JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = 'public.appointments'::regclass AND c.relname ~ '^appointments_\d{4}_\d{2}$'
+        ORDER BY c.relname
+    LOOP
+        v_start := to_date(substring(v_name FROM 14), 'YYYY_MM');
+        IF (v_start + INTERVAL '1 month')::date > p_before THEN
+            EXIT;
+        END IF;
+        EXECUTE format('SELECT count(*) FROM public.%I WHERE status NOT IN (''COMPLETED'', ''CANCELLED'')', v_name)
+            INTO v_open;
+        partition_name := v_name;
+        open_appointments := v_open;
+        IF v_open > 0 THEN
+            RETURN NEXT;
+            EXIT;
+        END IF;
+        EXECUTE format('ALTER TABLE appointments DETACH PARTITION public.%I', v_name);
+        EXECUTE format('ALTER TABLE public.%I SET SCHEMA appointments_archive', v_name);
+        EXECUTE format('ALTER TABLE appointments_archive.appointments ATTACH PARTITION appointments_archive.%I '
+                       || 'FOR VALUES FROM (%L) TO (%L)', v_name, v_start, (v_start + INTERVAL '1 month')::date);
+        RETURN NEXT;
+    END LOOP;
+END;
+$$ LANGUAGE plpgsql;
@@ -0,0 +1,12 @@
+-- Garante no banco que um médico não possua dois agendamentos ativos sobrepostos.
+-- As verificações de conflito do dia a dia são respondidas pelo índice em memória
+-- (AppointmentConflictIndex); esta constraint é a garantia final quando duas
+-- instâncias tentam reservar o mesmo horário ao mesmo tempo.
+CREATE EXTENSION IF NOT EXISTS btree_gist;
+
+ALTER TABLE appointments
+    ADD CONSTRAINT appointments_doctor_no_overlap
+    EXCLUDE USING gist (
+        doctor_id WITH =,
+        tsrange(appointment_date + start_time, appointment_date + end_time) WITH &&
+    ) WHERE (status <> 'CANCELLED');
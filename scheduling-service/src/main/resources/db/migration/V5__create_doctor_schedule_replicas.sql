@@ -0,0 +1,14 @@
+-- Cópia local das agendas dos médicos, alimentada pelos eventos do facility-service
+CREATE TABLE doctor_schedule_replicas (
+    id BIGINT PRIMARY KEY,
+    doctor_id BIGINT NOT NULL,
+    facility_id BIGINT NOT NULL,
+    day_of_week VARCHAR(10) NOT NULL,
+    start_time TIME NOT NULL,
+    end_time TIME NOT NULL,
+    second_period_start TIME,
+    second_period_end TIME,
+    updated_at TIMESTAMP
+);
+
+CREATE INDEX idx_doctor_schedule_replicas_doctor ON doctor_schedule_replicas(doctor_id);
@@ -0,0 +1,11 @@
+-- Variações de carga das unidades de saúde ainda não enviadas ao facility-service, acumuladas por unidade
+CREATE TABLE facility_load_deltas (
+    facility_id BIGINT PRIMARY KEY,
+    pending_delta INTEGER NOT NULL DEFAULT 0,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    leased_until TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_facility_load_deltas_next_attempt ON facility_load_deltas(next_attempt_at);
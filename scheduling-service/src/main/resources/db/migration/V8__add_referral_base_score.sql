@@ -0,0 +1,16 @@
+-- Parte fixa da pontuação de prioridade (sem o tempo de espera), mantida pela aplicação a cada gravação
+ALTER TABLE referrals ADD COLUMN base_score INTEGER;
+
+UPDATE referrals SET base_score =
+      CASE priority_level WHEN 'URGENT' THEN 100 WHEN 'HIGH' THEN 70 WHEN 'MEDIUM' THEN 40 ELSE 10 END
+    + CASE WHEN patient_age < 12 OR patient_age > 65 THEN 10 ELSE 0 END
+    + CASE WHEN is_pregnant THEN 15 ELSE 0 END
+    + CASE WHEN has_medical_urgency THEN 20 ELSE 0 END;
+
+ALTER TABLE referrals ALTER COLUMN base_score SET NOT NULL;
+
+COMMENT ON COLUMN referrals.base_score IS 'Pontuação de prioridade sem o tempo de espera';
+
+-- Fila de pendentes: cada (tipo, pontuação base) é lido em ordem de data de solicitação
+CREATE INDEX idx_referrals_pending_queue ON referrals (referral_type, base_score, requested_date, id)
+    WHERE status = 'PENDING';
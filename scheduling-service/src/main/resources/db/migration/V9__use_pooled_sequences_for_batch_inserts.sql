@@ -0,0 +1,4 @@
+-- A aplicação passa a reservar IDs em blocos de 50 (allocationSize), o que permite inserts em lote.
+-- O incremento das sequences precisa ser igual ao tamanho do bloco.
+ALTER SEQUENCE appointments_id_seq INCREMENT BY 50;
+ALTER SEQUENCE outbox_events_id_seq INCREMENT BY 50;
@@ -0,0 +1,92 @@
+package br.com.fiap.tech.scheduling.client;
+
+import br.com.fiap.tech.scheduling.dto.DoctorResponse;
+import br.com.fiap.tech.scheduling.dto.PatientResponse;
+import feign.FeignException;
+import feign.Request;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+class PeopleExistenceCacheTest {
+
+    private PeopleClient peopleClient;
+    private SimpleMeterRegistry meterRegistry;
+    private PeopleExistenceCache cache;
+
+    @BeforeEach
+    void setUp() {
+        peopleClient = mock(PeopleClient.class);
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new PeopleExistenceCache(peopleClient, meterRegistry, 100, Duration.ofMinutes(10), Duration.ofSeconds(30));
+    }
+
+    @Test
+    void shouldCallPeopleServiceOnlyOnceForRepeatedProbes() {
+        when(peopleClient.getDoctor(1L)).thenReturn(doctor(10L));
+
+        assertThat(cache.doctorExists(1L)).isTrue();
+        assertThat(cache.doctorExists(1L)).isTrue();
+
+        verify(peopleClient, times(1)).getDoctor(1L);
+        assertThat(meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void shouldCacheNotFoundResponses() {
+        when(peopleClient.getPatient(2L)).thenThrow(notFound());
+
+        assertThrows(EntityNotFoundException.class, () -> cache.patientExists(2L));
+        assertThrows(EntityNotFoundException.class, () -> cache.patientExists(2L));
+
+        verify(peopleClient, times(1)).getPatient(2L);
+    }
+
+    @Test
+    void shouldNotCacheCommunicationFailures() {
+        when(peopleClient.getPatient(3L)).thenThrow(new RuntimeException("timeout"));
+
+        assertThrows(EntityNotFoundException.class, () -> cache.patientExists(3L));
+        assertThrows(EntityNotFoundException.class, () -> cache.patientExists(3L));
+
+        verify(peopleClient, times(2)).getPatient(3L);
+    }
+
+    @Test
+    void shouldTreatDeletedUserAsMissing() {
+        when(peopleClient.getDoctor(1L)).thenReturn(doctor(10L));
+        PatientResponse patient = new PatientResponse();
+        patient.setUserId(20L);
+        when(peopleClient.getPatient(2L)).thenReturn(patient);
+        cache.doctorExists(1L);
+        cache.patientExists(2L);
+
+        cache.evictUser(10L);
+
+        assertThrows(EntityNotFoundException.class, () -> cache.doctorExists(1L));
+        assertThat(cache.patientExists(2L)).isTrue();
+        verify(peopleClient, times(1)).getDoctor(1L);
+        verify(peopleClient, times(1)).getPatient(2L);
+    }
+
+    private DoctorResponse doctor(Long userId) {
+        DoctorResponse doctor = new DoctorResponse();
+        doctor.setUserId(userId);
+        return doctor;
+    }
+
+    private FeignException.NotFound notFound() {
+        Request request = Request.create(Request.HttpMethod.GET, "/api/v1/people/patients/2",
+                Collections.emptyMap(), null, StandardCharsets.UTF_8, null);
+        return new FeignException.NotFound("Not Found", request, null, Collections.emptyMap());
+    }
+}
@@ -3,19 +3,37 @@ package br.com.fiap.tech.scheduling.controller;
 import br.com.fiap.tech.scheduling.domain.*;
 import br.com.fiap.tech.scheduling.dto.*;
 import br.com.fiap.tech.scheduling.service.SchedulingService;
+import br.com.fiap.tech.scheduling.service.BatchAppointmentService;
 import br.com.fiap.tech.scheduling.service.PriorityService;
 import br.com.fiap.tech.scheduling.service.AppointmentPriorityService;
+import br.com.fiap.tech.scheduling.service.DoctorScheduleReadModel;
+import br.com.fiap.tech.scheduling.service.SlotSearchService;
+import br.com.fiap.tech.scheduling.service.AppointmentConflictIndex;
+import br.com.fiap.tech.scheduling.service.IdempotencyService;
+import br.com.fiap.tech.scheduling.service.WaitlistService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import java.time.LocalDate;
 import java.util.Collections;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -24,12 +42,33 @@ class SchedulingControllerTest {
     @Mock
     private SchedulingService schedulingService;
 
+    @Mock
+    private BatchAppointmentService batchAppointmentService;
+
     @Mock
     private PriorityService priorityService;
 
     @Mock
     private AppointmentPriorityService appointmentPriorityService;
 
+    @Mock
+    private DoctorScheduleReadModel doctorScheduleReadModel;
+
+    @Mock
+    private SlotSearchService slotSearchService;
+
+    @Mock
+    private AppointmentConflictIndex appointmentConflictIndex;
+
+    @Mock
+    private IdempotencyService idempotencyService;
+
+    @Mock
+    private WaitlistService waitlistService;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
     @InjectMocks
     private SchedulingController schedulingController;
 
@@ -45,8 +84,10 @@ class SchedulingControllerTest {
         AppointmentRequest request = new AppointmentRequest();
         Appointment appointment = new Appointment();
         when(schedulingService.createAppointment(request)).thenReturn(appointment);
+        when(idempotencyService.execute(eq(IdempotencyService.APPOINTMENT_SCOPE), eq("chave-1"), eq(request),
+                eq(Appointment.class), any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(4).get());
 
-        ResponseEntity<Appointment> response = schedulingController.createAppointment(request);
+        ResponseEntity<Appointment> response = schedulingController.createAppointment(request, "chave-1");
 
         assertThat(response.getBody()).isEqualTo(appointment);
         assertThat(response.getStatusCode().value()).isEqualTo(200);
@@ -58,8 +99,10 @@ class SchedulingControllerTest {
         ReferralRequest request = new ReferralRequest();
         Referral referral = new Referral();
         when(schedulingService.createReferral(request)).thenReturn(referral);
+        when(idempotencyService.execute(eq(IdempotencyService.REFERRAL_SCOPE), isNull(), eq(request),
+                eq(Referral.class), any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(4).get());
 
-        ResponseEntity<Referral> response = schedulingController.createReferral(request);
+        ResponseEntity<Referral> response = schedulingController.createReferral(request, null);
 
         assertThat(response.getBody()).isEqualTo(referral);
         assertThat(response.getStatusCode().value()).isEqualTo(200);
@@ -105,4 +148,38 @@ class SchedulingControllerTest {
         assertThat(response.getStatusCode().value()).isEqualTo(200);
         verify(appointmentPriorityService).getPrioritizedAppointmentsByDate(date);
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldResyncDoctorSchedules() {
+        when(doctorScheduleReadModel.resync()).thenReturn(3);
+
+        ResponseEntity<Integer> response = schedulingController.resyncDoctorSchedules();
+
+        assertThat(response.getBody()).isEqualTo(3);
+        verify(doctorScheduleReadModel).resync();
+    }
+
+    @Test
+    void shouldStreamReferralQueueAsNdjson() throws Exception {
+        Referral referral1 = new Referral();
+        referral1.setId(1L);
+        Referral referral2 = new Referral();
+        referral2.setId(2L);
+        doAnswer(invocation -> {
+            Consumer<ReferralWithPriorityDTO> consumer = invocation.getArgument(1);
+            consumer.accept(new ReferralWithPriorityDTO(referral1, 90));
+            consumer.accept(new ReferralWithPriorityDTO(referral2, 40));
+            return null;
+        }).when(priorityService).streamPrioritizedReferrals(eq(ReferralType.LAB), any());
+
+        ResponseEntity<StreamingResponseBody> response = schedulingController.streamPrioritizedReferrals(ReferralType.LAB);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(response.getHeaders().getContentType().toString()).isEqualTo("application/x-ndjson");
+        assertThat(lines).hasSize(2);
+        assertThat(objectMapper.readTree(lines[0]).get("priorityScore").asInt()).isEqualTo(90);
+        assertThat(objectMapper.readTree(lines[1]).get("referral").get("id").asLong()).isEqualTo(2L);
+    }
+}
@@ -0,0 +1,25 @@
+package br.com.fiap.tech.scheduling.dto;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class QueueCursorTest {
+
+    @Test
+    void deveCodificarEDecodificarCursor() {
+        QueueCursor cursor = new QueueCursor(85, LocalDateTime.of(2025, 5, 1, 10, 30, 15),
+                42L, LocalDateTime.of(2025, 5, 20, 8, 0));
+
+        assertThat(QueueCursor.decode(cursor.encode())).isEqualTo(cursor);
+    }
+
+    @Test
+    void deveRejeitarCursorInvalido() {
+        assertThrows(IllegalArgumentException.class, () -> QueueCursor.decode("não é um cursor"));
+        assertThrows(IllegalArgumentException.class, () -> QueueCursor.decode("YWJj"));
+    }
+}
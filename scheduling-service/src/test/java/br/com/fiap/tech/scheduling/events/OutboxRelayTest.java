@@ -0,0 +1,122 @@
+package br.com.fiap.tech.scheduling.events;
+
+import br.com.fiap.tech.scheduling.domain.OutboxEvent;
+import br.com.fiap.tech.scheduling.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class OutboxRelayTest {
+
+    private OutboxEventRepository outboxEventRepository;
+    private KafkaTemplate<String, String> kafkaTemplate;
+    private SimpleMeterRegistry meterRegistry;
+    private OutboxRelay relay;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        outboxEventRepository = mock(OutboxEventRepository.class);
+        kafkaTemplate = mock(KafkaTemplate.class);
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        meterRegistry = new SimpleMeterRegistry();
+        relay = new OutboxRelay(outboxEventRepository, kafkaTemplate, transactionTemplate, meterRegistry,
+                2, 5, Duration.ofSeconds(1));
+    }
+
+    @Test
+    void shouldDeleteOnlyEventsAcknowledgedByBroker() {
+        OutboxEvent first = event(1L);
+        OutboxEvent second = event(2L);
+        when(outboxEventRepository.lockNextBatch(2)).thenReturn(List.of(first, second), Collections.emptyList());
+        when(kafkaTemplate.send("appointment-created", "1", "{}"))
+                .thenReturn(CompletableFuture.completedFuture(mock(SendResult.class)));
+        when(kafkaTemplate.send("appointment-created", "2", "{}"))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("broker indisponível")));
+
+        relay.relay();
+
+        verify(outboxEventRepository).deleteAllByIdInBatch(List.of(1L));
+        assertThat(meterRegistry.get("scheduling.outbox.published").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("scheduling.outbox.failed").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void shouldStopWhenBatchIsNotFull() {
+        when(outboxEventRepository.lockNextBatch(2)).thenReturn(List.of(event(1L)));
+        when(kafkaTemplate.send(any(String.class), any(String.class), any(String.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        relay.relay();
+
+        verify(outboxEventRepository, times(1)).lockNextBatch(2);
+        verify(outboxEventRepository).deleteAllByIdInBatch(List.of(1L));
+    }
+
+    @Test
+    void shouldStopWhenAnySendFails() {
+        when(outboxEventRepository.lockNextBatch(2)).thenReturn(List.of(event(1L), event(2L)));
+        when(kafkaTemplate.send("appointment-created", "1", "{}"))
+                .thenReturn(CompletableFuture.completedFuture(null));
+        when(kafkaTemplate.send("appointment-created", "2", "{}"))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("broker indisponível")));
+
+        relay.relay();
+
+        verify(outboxEventRepository, times(1)).lockNextBatch(2);
+        assertThat(meterRegistry.get("scheduling.outbox.failed").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void shouldStopSendingBatchWhenProducerRejectsASend() {
+        when(outboxEventRepository.lockNextBatch(2)).thenReturn(List.of(event(1L), event(2L)));
+        when(kafkaTemplate.send("appointment-created", "1", "{}"))
+                .thenThrow(new KafkaException("Topic appointment-created not present in metadata after 5000 ms."));
+
+        relay.relay();
+
+        verify(kafkaTemplate, never()).send("appointment-created", "2", "{}");
+        verify(outboxEventRepository, never()).deleteAllByIdInBatch(any());
+        assertThat(meterRegistry.get("scheduling.outbox.failed").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void shouldReportPendingEventsAndLag() {
+        when(outboxEventRepository.lockNextBatch(2)).thenReturn(Collections.emptyList());
+        when(outboxEventRepository.count()).thenReturn(7L);
+        when(outboxEventRepository.findOldestCreatedAt()).thenReturn(LocalDateTime.now().minusSeconds(30));
+
+        relay.relay();
+
+        assertThat(meterRegistry.get("scheduling.outbox.pending").gauge().value()).isEqualTo(7.0);
+        assertThat(meterRegistry.get("scheduling.outbox.lag").gauge().value()).isGreaterThanOrEqualTo(30.0);
+        verify(kafkaTemplate, never()).send(any(String.class), any(String.class), any(String.class));
+    }
+
+    private OutboxEvent event(Long id) {
+        return OutboxEvent.builder()
+                .id(id)
+                .topic("appointment-created")
+                .messageKey(id.toString())
+                .payload("{}")
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+}
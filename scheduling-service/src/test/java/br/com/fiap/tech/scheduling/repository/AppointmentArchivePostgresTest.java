@@ -0,0 +1,122 @@
+package br.com.fiap.tech.scheduling.repository;
+
+import org.assertj.core.groups.Tuple;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Executa a função archive_appointment_partitions em um PostgreSQL de verdade, com todas as migrations aplicadas.
+ * Só roda quando SCHEDULING_TEST_DATABASE_URL aponta para um servidor (por exemplo
+ * jdbc:postgresql://localhost:5432/postgres) em que o usuário possa criar bancos: o teste cria um banco
+ * temporário e o remove no final. Usuário e senha vêm de SCHEDULING_TEST_DATABASE_USER e
+ * SCHEDULING_TEST_DATABASE_PASSWORD (padrão postgres, sem senha).
+ */
+@EnabledIfEnvironmentVariable(named = "SCHEDULING_TEST_DATABASE_URL", matches = ".+")
+class AppointmentArchivePostgresTest {
+
+    private static final String SERVER_URL = System.getenv("SCHEDULING_TEST_DATABASE_URL");
+    private static final String USER = Objects.requireNonNullElse(System.getenv("SCHEDULING_TEST_DATABASE_USER"), "postgres");
+    private static final String PASSWORD = Objects.requireNonNullElse(System.getenv("SCHEDULING_TEST_DATABASE_PASSWORD"), "");
+    private static final String DATABASE = "scheduling_archive_test_" + System.nanoTime();
+
+    private static String databaseUrl;
+
+    @BeforeAll
+    static void createDatabase() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(SERVER_URL, USER, PASSWORD);
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE DATABASE " + DATABASE);
+        }
+        databaseUrl = SERVER_URL.replaceFirst("/[^/?]*(\\?|$)", "/" + DATABASE + "$1");
+        Flyway.configure().dataSource(databaseUrl, USER, PASSWORD).load().migrate();
+    }
+
+    @AfterAll
+    static void dropDatabase() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(SERVER_URL, USER, PASSWORD);
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP DATABASE IF EXISTS " + DATABASE + " WITH (FORCE)");
+        }
+    }
+
+    @Test
+    void shouldArchiveClosedMonthsAndReportTheFirstMonthWithOpenAppointments() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(databaseUrl, USER, PASSWORD)) {
+            for (String month : List.of("2020-01-01", "2020-02-01", "2020-03-01")) {
+                execute(connection, "SELECT create_appointment_partition('" + month + "')");
+            }
+            insert(connection, 1L, "2020-01-10", "COMPLETED");
+            insert(connection, 2L, "2020-01-20", "CANCELLED");
+            insert(connection, 1L, "2020-02-10", "SCHEDULED");
+            insert(connection, 2L, "2020-02-11", "CONFIRMED");
+            insert(connection, 3L, "2020-02-12", "COMPLETED");
+            insert(connection, 1L, "2020-03-10", "COMPLETED");
+
+            assertThat(archive(connection, LocalDate.of(2020, 4, 1))).containsExactly(
+                    tuple("appointments_2020_01", 0L),
+                    tuple("appointments_2020_02", 2L));
+            assertThat(count(connection, "appointments_archive.appointments")).isEqualTo(2);
+            // Fevereiro bloqueia o arquivamento, e março continua na tabela principal mesmo encerrado
+            assertThat(count(connection, "appointments")).isEqualTo(4);
+
+            execute(connection, "UPDATE appointments SET status = 'COMPLETED' WHERE appointment_date < '2020-03-01'");
+
+            assertThat(archive(connection, LocalDate.of(2020, 4, 1))).containsExactly(
+                    tuple("appointments_2020_02", 0L),
+                    tuple("appointments_2020_03", 0L));
+            assertThat(count(connection, "appointments_archive.appointments")).isEqualTo(6);
+            assertThat(count(connection, "appointments")).isZero();
+        }
+    }
+
+    private static List<Tuple> archive(Connection connection, LocalDate before) throws SQLException {
+        List<Tuple> rows = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(
+                AppointmentRepository.ARCHIVE_MONTHLY_PARTITIONS.replace(":before", "?"))) {
+            statement.setObject(1, before);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    rows.add(tuple(resultSet.getString("partitionName"), resultSet.getLong("openAppointments")));
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static void insert(Connection connection, Long doctorId, String date, String status) throws SQLException {
+        execute(connection, "INSERT INTO appointments (patient_id, doctor_id, appointment_date, start_time, end_time, " +
+                "appointment_type, status) VALUES (1, " + doctorId + ", '" + date + "', '09:00', '09:30', " +
+                "'CONSULTATION', '" + status + "')");
+    }
+
+    private static long count(Connection connection, String table) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT count(*) FROM " + table)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
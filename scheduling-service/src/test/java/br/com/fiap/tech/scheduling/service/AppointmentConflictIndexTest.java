@@ -0,0 +1,126 @@
+package br.com.fiap.tech.scheduling.service;
+
+import br.com.fiap.tech.scheduling.domain.Appointment;
+import br.com.fiap.tech.scheduling.domain.AppointmentStatus;
+import br.com.fiap.tech.scheduling.dto.DoctorDayOccupancyDTO;
+import br.com.fiap.tech.scheduling.repository.AppointmentRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class AppointmentConflictIndexTest {
+
+    private static final LocalDate DATE = LocalDate.now().plusDays(1);
+
+    private AppointmentRepository appointmentRepository;
+    private AppointmentConflictIndex index;
+
+    @BeforeEach
+    void setUp() {
+        appointmentRepository = mock(AppointmentRepository.class);
+        index = new AppointmentConflictIndex(appointmentRepository, new SimpleMeterRegistry(), 100, Duration.ofHours(1));
+    }
+
+    private Appointment createAppointment(Long id, int startHour, int endHour, AppointmentStatus status) {
+        return Appointment.builder()
+                .id(id)
+                .doctorId(1L)
+                .appointmentDate(DATE)
+                .startTime(LocalTime.of(startHour, 0))
+                .endTime(LocalTime.of(endHour, 0))
+                .status(status)
+                .build();
+    }
+
+    @Test
+    void shouldLoadDayLazilyAndDetectOverlap() {
+        when(appointmentRepository.findByDoctorIdAndDate(1L, DATE)).thenReturn(List.of(
+                createAppointment(1L, 10, 11, AppointmentStatus.SCHEDULED),
+                createAppointment(2L, 14, 15, AppointmentStatus.CANCELLED)));
+        when(appointmentRepository.hasConflictingAppointment(any(), any(), any(), any())).thenReturn(true);
+
+        assertThat(index.hasConflict(1L, DATE, LocalTime.of(10, 30), LocalTime.of(11, 30))).isTrue();
+        assertThat(index.hasConflict(1L, DATE, LocalTime.of(9, 0), LocalTime.of(12, 0))).isTrue();
+        assertThat(index.hasConflict(1L, DATE, LocalTime.of(14, 0), LocalTime.of(15, 0))).isFalse();
+        verify(appointmentRepository, times(1)).findByDoctorIdAndDate(1L, DATE);
+    }
+
+    @Test
+    void shouldAllowBackToBackAppointmentsWithoutQueryingDatabase() {
+        when(appointmentRepository.findByDoctorIdAndDate(1L, DATE)).thenReturn(Collections.emptyList());
+        index.occupancy(1L, DATE);
+        index.update(createAppointment(1L, 10, 11, AppointmentStatus.SCHEDULED));
+
+        assertThat(index.hasConflict(1L, DATE, LocalTime.of(11, 0), LocalTime.of(12, 0))).isFalse();
+        assertThat(index.hasConflict(1L, DATE, LocalTime.of(9, 0), LocalTime.of(10, 0))).isFalse();
+        verify(appointmentRepository, never()).hasConflictingAppointment(any(), any(), any(), any());
+    }
+
+    @Test
+    void shouldReloadDayWhenAppointmentIsCancelled() {
+        when(appointmentRepository.findByDoctorIdAndDate(1L, DATE))
+                .thenReturn(List.of(createAppointment(1L, 10, 11, AppointmentStatus.SCHEDULED)))
+                .thenReturn(Collections.emptyList());
+        assertThat(index.occupancy(1L, DATE).isFree(LocalTime.of(10, 0), LocalTime.of(11, 0))).isFalse();
+
+        index.update(createAppointment(1L, 10, 11, AppointmentStatus.CANCELLED));
+
+        assertThat(index.hasConflict(1L, DATE, LocalTime.of(10, 0), LocalTime.of(11, 0))).isFalse();
+        verify(appointmentRepository, times(2)).findByDoctorIdAndDate(1L, DATE);
+        verify(appointmentRepository, never()).hasConflictingAppointment(any(), any(), any(), any());
+    }
+
+    @Test
+    void shouldReloadDayWhenConflictIsNotConfirmedByDatabase() {
+        when(appointmentRepository.findByDoctorIdAndDate(1L, DATE))
+                .thenReturn(List.of(createAppointment(1L, 10, 11, AppointmentStatus.SCHEDULED)))
+                .thenReturn(Collections.emptyList());
+        when(appointmentRepository.hasConflictingAppointment(1L, DATE, LocalTime.of(10, 0), LocalTime.of(11, 0)))
+                .thenReturn(false);
+
+        assertThat(index.hasConflict(1L, DATE, LocalTime.of(10, 0), LocalTime.of(11, 0))).isFalse();
+        assertThat(index.hasConflict(1L, DATE, LocalTime.of(10, 0), LocalTime.of(11, 0))).isFalse();
+        verify(appointmentRepository, times(1)).hasConflictingAppointment(1L, DATE, LocalTime.of(10, 0), LocalTime.of(11, 0));
+    }
+
+    @Test
+    void shouldLoadMissingDaysOfManyDoctorsInOneQuery() {
+        when(appointmentRepository.findByDoctorIdAndDate(1L, DATE)).thenReturn(Collections.emptyList());
+        index.occupancy(1L, DATE);
+        Appointment secondDoctor = createAppointment(5L, 8, 9, AppointmentStatus.SCHEDULED);
+        secondDoctor.setDoctorId(2L);
+        when(appointmentRepository.findByDoctorIdInAndAppointmentDateAndStatusNot(Set.of(2L, 3L), DATE, AppointmentStatus.CANCELLED))
+                .thenReturn(List.of(secondDoctor));
+
+        Map<Long, DayOccupancy> occupancies = index.occupancies(List.of(1L, 2L, 3L), DATE);
+
+        assertThat(occupancies).containsOnlyKeys(1L, 2L, 3L);
+        assertThat(occupancies.get(2L).isFree(LocalTime.of(8, 30), LocalTime.of(9, 0))).isFalse();
+        assertThat(occupancies.get(3L).busyCells()).isZero();
+        verify(appointmentRepository, times(1))
+                .findByDoctorIdInAndAppointmentDateAndStatusNot(any(), any(), any());
+    }
+
+    @Test
+    void shouldDescribeDayOccupancy() {
+        when(appointmentRepository.findByDoctorIdAndDate(1L, DATE))
+                .thenReturn(List.of(createAppointment(1L, 10, 11, AppointmentStatus.SCHEDULED)));
+
+        DoctorDayOccupancyDTO occupancy = index.describe(1L, DATE);
+
+        assertThat(occupancy.getBusyCells()).isEqualTo(12);
+        assertThat(occupancy.getBusyPeriods()).containsExactly(
+                new DoctorDayOccupancyDTO.BusyPeriod(LocalTime.of(10, 0), LocalTime.of(11, 0)));
+    }
+}
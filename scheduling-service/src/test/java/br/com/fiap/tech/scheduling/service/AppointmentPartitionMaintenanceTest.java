@@ -0,0 +1,102 @@
+package br.com.fiap.tech.scheduling.service;
+
+import br.com.fiap.tech.jobs.ShardedJobRunner;
+import br.com.fiap.tech.scheduling.repository.AppointmentRepository;
+import br.com.fiap.tech.scheduling.repository.AppointmentRepository.ArchivedPartition;
+import br.com.fiap.tech.scheduling.repository.ArchivedAppointmentRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class AppointmentPartitionMaintenanceTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2025, 3, 14);
+
+    private AppointmentRepository appointmentRepository;
+    private ArchivedAppointmentRepository archivedAppointmentRepository;
+    private ShardedJobRunner jobRunner;
+    private SimpleMeterRegistry meterRegistry;
+    private AppointmentPartitionMaintenance maintenance;
+
+    @BeforeEach
+    void setUp() {
+        appointmentRepository = mock(AppointmentRepository.class);
+        archivedAppointmentRepository = mock(ArchivedAppointmentRepository.class);
+        jobRunner = mock(ShardedJobRunner.class);
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        meterRegistry = new SimpleMeterRegistry();
+        maintenance = new AppointmentPartitionMaintenance(appointmentRepository, archivedAppointmentRepository,
+                jobRunner, transactionTemplate, meterRegistry, 2, 6);
+    }
+
+    @Test
+    void shouldCreateUpcomingPartitionsAndArchiveOldMonths() {
+        when(appointmentRepository.findUnpartitionedMonths())
+                .thenReturn(List.of(LocalDate.of(2025, 5, 1), LocalDate.of(2031, 1, 1)));
+        when(appointmentRepository.createMonthlyPartition(LocalDate.of(2025, 5, 1))).thenReturn(true);
+        when(appointmentRepository.archiveMonthlyPartitions(LocalDate.of(2024, 9, 1)))
+                .thenReturn(List.of(partition("appointments_2024_07", 0), partition("appointments_2024_08", 0)));
+        when(archivedAppointmentRepository.findLatestArchivedDate()).thenReturn(LocalDate.of(2024, 8, 30));
+
+        maintenance.maintain(TODAY);
+
+        verify(appointmentRepository).createMonthlyPartition(LocalDate.of(2025, 3, 1));
+        verify(appointmentRepository).createMonthlyPartition(LocalDate.of(2025, 4, 1));
+        verify(appointmentRepository, times(2)).createMonthlyPartition(LocalDate.of(2025, 5, 1));
+        verify(appointmentRepository, never()).createMonthlyPartition(LocalDate.of(2031, 1, 1));
+        assertThat(maintenance.archivedUntil()).contains(LocalDate.of(2024, 8, 30));
+        assertThat(meterRegistry.get("scheduling.partitions.archive.blocked").gauge().value()).isZero();
+    }
+
+    @Test
+    void shouldReportMonthBlockingTheArchive() {
+        when(appointmentRepository.findUnpartitionedMonths()).thenReturn(List.of());
+        when(appointmentRepository.archiveMonthlyPartitions(LocalDate.of(2024, 9, 1)))
+                .thenReturn(List.of(partition("appointments_2024_06", 0), partition("appointments_2024_07", 3)));
+
+        maintenance.maintain(TODAY);
+
+        assertThat(meterRegistry.get("scheduling.partitions.archive.blocked").gauge().value()).isEqualTo(3.0);
+        verify(archivedAppointmentRepository).findLatestArchivedDate();
+
+        // Quando o mês é encerrado, o bloqueio deixa de ser informado
+        when(appointmentRepository.archiveMonthlyPartitions(LocalDate.of(2024, 9, 1)))
+                .thenReturn(List.of(partition("appointments_2024_07", 0)));
+        maintenance.maintain(TODAY);
+
+        assertThat(meterRegistry.get("scheduling.partitions.archive.blocked").gauge().value()).isZero();
+    }
+
+    @Test
+    void shouldLoadArchiveBoundaryOnlyOnce() {
+        assertThat(maintenance.archivedUntil()).isEqualTo(Optional.empty());
+        assertThat(maintenance.archivedUntil()).isEqualTo(Optional.empty());
+
+        verify(archivedAppointmentRepository, times(1)).findLatestArchivedDate();
+    }
+
+    private ArchivedPartition partition(String name, long openAppointments) {
+        return new ArchivedPartition() {
+            @Override
+            public String getPartitionName() {
+                return name;
+            }
+
+            @Override
+            public long getOpenAppointments() {
+                return openAppointments;
+            }
+        };
+    }
+}
@@ -0,0 +1,75 @@
+package br.com.fiap.tech.scheduling.service;
+
+import br.com.fiap.tech.scheduling.domain.Appointment;
+import br.com.fiap.tech.scheduling.domain.AppointmentStatus;
+import br.com.fiap.tech.scheduling.domain.AppointmentType;
+import br.com.fiap.tech.scheduling.domain.PriorityLevel;
+import br.com.fiap.tech.scheduling.dto.AppointmentWithPriorityDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AppointmentPriorityIndexTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2024, 3, 1);
+
+    private AppointmentPriorityIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new AppointmentPriorityIndex(new AppointmentPriorityService(null, null)::calculateBaseScore);
+    }
+
+    @Test
+    void shouldRescoreDatesCrossingLimitsOnRollover() {
+        Appointment in4Days = appointment(1L, PriorityLevel.MEDIUM, TODAY.plusDays(4), 9);
+        Appointment in8Days = appointment(2L, PriorityLevel.MEDIUM, TODAY.plusDays(8), 9);
+        Appointment in20Days = appointment(3L, PriorityLevel.HIGH, TODAY.plusDays(20), 9);
+        index.reset(List.of(in4Days, in8Days, in20Days), TODAY);
+
+        // HIGH sem bônus de data = 90, MEDIUM a 4 dias = 75, MEDIUM a 8 dias = 60
+        assertThat(index.ordered()).extracting(AppointmentWithPriorityDTO::getPriorityScore).containsExactly(90, 75, 60);
+
+        index.rollover(TODAY.plusDays(1));
+
+        // A 3 dias = 90 e a 7 dias = 75; empate com o HIGH, vence a data mais próxima
+        assertThat(index.ordered()).extracting(dto -> dto.getAppointment().getId()).containsExactly(1L, 3L, 2L);
+        assertThat(index.ordered()).extracting(AppointmentWithPriorityDTO::getPriorityScore).containsExactly(90, 90, 75);
+    }
+
+    @Test
+    void shouldServeDateBucketAndKeepOnlyScheduledAppointments() {
+        Appointment early = appointment(1L, PriorityLevel.LOW, TODAY.plusDays(1), 8);
+        Appointment late = appointment(2L, PriorityLevel.LOW, TODAY.plusDays(1), 15);
+        Appointment urgent = appointment(3L, PriorityLevel.URGENT, TODAY.plusDays(1), 16);
+        index.reset(List.of(late, early, urgent, appointment(4L, PriorityLevel.URGENT, TODAY.plusDays(2), 8)), TODAY);
+
+        assertThat(index.ordered(TODAY.plusDays(1))).extracting(dto -> dto.getAppointment().getId())
+                .containsExactly(3L, 1L, 2L);
+
+        urgent.setStatus(AppointmentStatus.CANCELLED);
+        index.update(urgent);
+
+        assertThat(index.ordered(TODAY.plusDays(1))).extracting(dto -> dto.getAppointment().getId())
+                .containsExactly(1L, 2L);
+        assertThat(index.peek().getAppointment().getId()).isEqualTo(4L);
+        assertThat(index.size()).isEqualTo(3);
+        assertThat(index.ordered(TODAY.plusDays(5))).isEmpty();
+    }
+
+    private Appointment appointment(Long id, PriorityLevel priorityLevel, LocalDate date, int hour) {
+        Appointment appointment = new Appointment();
+        appointment.setId(id);
+        appointment.setPriorityLevel(priorityLevel);
+        appointment.setAppointmentType(AppointmentType.CONSULTATION);
+        appointment.setAppointmentDate(date);
+        appointment.setStartTime(LocalTime.of(hour, 0));
+        appointment.setStatus(AppointmentStatus.SCHEDULED);
+        return appointment;
+    }
+}
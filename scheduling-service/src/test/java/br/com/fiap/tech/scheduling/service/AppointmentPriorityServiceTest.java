@@ -5,7 +5,10 @@ import br.com.fiap.tech.scheduling.domain.AppointmentStatus;
 import br.com.fiap.tech.scheduling.domain.AppointmentType;
 import br.com.fiap.tech.scheduling.domain.PriorityLevel;
 import br.com.fiap.tech.scheduling.dto.AppointmentWithPriorityDTO;
+import br.com.fiap.tech.scheduling.dto.PriorityQueuePage;
+import br.com.fiap.tech.scheduling.dto.QueueCursor;
 import br.com.fiap.tech.scheduling.repository.AppointmentRepository;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -14,11 +17,14 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.when;
 
 class AppointmentPriorityServiceTest {
@@ -26,6 +32,9 @@ class AppointmentPriorityServiceTest {
     @Mock
     private AppointmentRepository appointmentRepository;
 
+    @Mock
+    private EntityManager entityManager;
+
     @InjectMocks
     private AppointmentPriorityService appointmentPriorityService;
 
@@ -80,8 +89,10 @@ class AppointmentPriorityServiceTest {
         LocalDate date = LocalDate.now().plusDays(3);
         Appointment appointment = createAppointment(1L, PriorityLevel.LOW, AppointmentType.CONSULTATION, date, null);
 
-        when(appointmentRepository.findByAppointmentDateAndStatus(date, AppointmentStatus.SCHEDULED))
-                .thenReturn(Collections.singletonList(appointment));
+        Appointment otherDate = createAppointment(2L, PriorityLevel.URGENT, AppointmentType.EXAM, date.plusDays(1), null);
+
+        when(appointmentRepository.findByStatus(AppointmentStatus.SCHEDULED))
+                .thenReturn(Arrays.asList(appointment, otherDate));
 
         List<AppointmentWithPriorityDTO> result = appointmentPriorityService.getPrioritizedAppointmentsByDate(date);
 
@@ -112,4 +123,24 @@ class AppointmentPriorityServiceTest {
 
         assertThat(result).isNull();
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldReturnCursorWithAppointmentStartForNextPage() {
+        LocalDate date = LocalDate.now().plusDays(1);
+        Appointment appointment = createAppointment(5L, PriorityLevel.LOW, AppointmentType.CONSULTATION, date, null);
+        appointment.setStartTime(LocalTime.of(9, 30));
+        when(appointmentRepository.findScheduledQueuePage(eq(date), eq(LocalDate.now()), eq(Integer.MAX_VALUE),
+                any(LocalDateTime.class), eq(0L), eq(1)))
+                .thenReturn(Collections.singletonList(appointment));
+
+        PriorityQueuePage<AppointmentWithPriorityDTO> page =
+                appointmentPriorityService.getPrioritizedAppointmentsPage(date, null, 1);
+
+        assertThat(page.getItems()).hasSize(1);
+        assertThat(page.getItems().get(0).getPriorityScore()).isEqualTo(10 + 20 + 30);
+        QueueCursor next = QueueCursor.decode(page.getNextCursor());
+        assertThat(next.tieBreaker()).isEqualTo(LocalDateTime.of(date, LocalTime.of(9, 30)));
+        assertThat(next.id()).isEqualTo(5L);
+        assertThat(next.priorityScore()).isEqualTo(60);
+    }
+}
@@ -0,0 +1,163 @@
+package br.com.fiap.tech.scheduling.service;
+
+import br.com.fiap.tech.scheduling.domain.Appointment;
+import br.com.fiap.tech.scheduling.domain.AppointmentType;
+import br.com.fiap.tech.scheduling.dto.AppointmentRequest;
+import br.com.fiap.tech.scheduling.dto.BatchAppointmentResult;
+import br.com.fiap.tech.scheduling.dto.DoctorScheduleDTO;
+import br.com.fiap.tech.scheduling.repository.ReferralRepository;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+class BatchAppointmentServiceTest {
+
+    private SchedulingService schedulingService;
+    private AppointmentConflictIndex appointmentConflictIndex;
+    private DoctorScheduleReadModel doctorScheduleReadModel;
+    private BatchAppointmentService batchAppointmentService;
+
+    @BeforeEach
+    void setUp() {
+        schedulingService = mock(SchedulingService.class);
+        when(schedulingService.resolveAppointmentDate(any())).thenCallRealMethod();
+        when(schedulingService.buildAppointment(any(), any())).thenCallRealMethod();
+        when(schedulingService.persistAppointments(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(schedulingService.remainingFacilityCapacity(any(), any())).thenReturn(10);
+        appointmentConflictIndex = mock(AppointmentConflictIndex.class);
+        doctorScheduleReadModel = mock(DoctorScheduleReadModel.class);
+        when(doctorScheduleReadModel.getDoctorSchedules(any(), any())).thenReturn(List.of(schedule()));
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+
+        batchAppointmentService = new BatchAppointmentService(schedulingService, appointmentConflictIndex,
+                doctorScheduleReadModel, mock(ReferralRepository.class), transactionTemplate,
+                new SyncTaskExecutor(), 10, 2);
+    }
+
+    @Test
+    void shouldLookUpSharedDataOncePerBatch() {
+        List<BatchAppointmentResult> results = batchAppointmentService.createAppointments(List.of(
+                request(2L, 8), request(3L, 9), request(4L, 10)));
+
+        assertThat(results).allMatch(BatchAppointmentResult::isCreated);
+        verify(doctorScheduleReadModel, times(1)).getDoctorSchedules(1L, DayOfWeek.MONDAY);
+        verify(schedulingService, times(1)).verifyDoctorExists(1L);
+        verify(schedulingService, times(1)).remainingFacilityCapacity(eq(5L), any());
+        // Três itens em blocos de dois
+        verify(schedulingService, times(2)).persistAppointments(anyList());
+    }
+
+    @Test
+    void shouldRejectOverlappingItemsInsideTheBatch() {
+        List<BatchAppointmentResult> results = batchAppointmentService.createAppointments(List.of(
+                request(2L, 8), request(3L, 8)));
+
+        assertThat(results.get(0).isCreated()).isTrue();
+        assertThat(results.get(1).getStatus()).isEqualTo(409);
+        verify(schedulingService).persistAppointments(argThat(chunk -> chunk.size() == 1));
+    }
+
+    @Test
+    void shouldRejectItemsBeyondRemainingFacilityCapacity() {
+        when(schedulingService.remainingFacilityCapacity(eq(5L), any())).thenReturn(2);
+
+        List<BatchAppointmentResult> results = batchAppointmentService.createAppointments(List.of(
+                request(2L, 8), request(3L, 9), request(4L, 10)));
+
+        assertThat(results).extracting(BatchAppointmentResult::getStatus).containsExactly(200, 200, 409);
+        assertThat(results.get(2).getError()).contains("não possui mais vagas disponíveis");
+        verify(schedulingService, times(1)).remainingFacilityCapacity(eq(5L), any());
+    }
+
+    @Test
+    void shouldNotCountRejectedItemsAgainstFacilityCapacity() {
+        when(schedulingService.remainingFacilityCapacity(eq(5L), any())).thenReturn(2);
+
+        List<BatchAppointmentResult> results = batchAppointmentService.createAppointments(List.of(
+                request(2L, 8), request(3L, 8), request(4L, 10)));
+
+        // O segundo item conflita com o primeiro e não consome a vaga que sobra para o terceiro
+        assertThat(results).extracting(BatchAppointmentResult::getStatus).containsExactly(200, 409, 200);
+        assertThat(results.get(1).getError()).isEqualTo("O médico já possui um agendamento neste horário");
+    }
+
+    @Test
+    void shouldReportEachRejectedItemWithItsOwnStatus() {
+        doThrow(new EntityNotFoundException("Paciente não encontrado com ID: 3"))
+                .when(schedulingService).verifyPatientExists(3L);
+        when(appointmentConflictIndex.hasConflict(eq(1L), any(), eq(LocalTime.of(10, 0)), any())).thenReturn(true);
+        AppointmentRequest invalidDay = request(2L, 9);
+        invalidDay.setAppointmentDay("DOMINGO");
+
+        List<BatchAppointmentResult> results = batchAppointmentService.createAppointments(List.of(
+                request(2L, 8), invalidDay, request(3L, 11), request(4L, 10)));
+
+        assertThat(results).extracting(BatchAppointmentResult::getStatus).containsExactly(200, 400, 404, 409);
+        assertThat(results).extracting(BatchAppointmentResult::getIndex).containsExactly(0, 1, 2, 3);
+    }
+
+    @Test
+    void shouldRetryItemsOneByOneWhenChunkConflicts() {
+        when(schedulingService.persistAppointments(anyList())).thenAnswer(invocation -> {
+            List<Appointment> chunk = invocation.getArgument(0);
+            if (chunk.size() > 1 || chunk.get(0).getPatientId().equals(3L)) {
+                throw new DataIntegrityViolationException("uk_appointments_doctor_slot");
+            }
+            return chunk;
+        });
+
+        List<BatchAppointmentResult> results = batchAppointmentService.createAppointments(List.of(
+                request(2L, 8), request(3L, 9)));
+
+        assertThat(results.get(0).isCreated()).isTrue();
+        assertThat(results.get(1).getStatus()).isEqualTo(409);
+    }
+
+    @Test
+    void shouldRejectBatchAboveMaximumSize() {
+        List<AppointmentRequest> requests = IntStream.range(0, 11)
+                .mapToObj(i -> request(2L, 8))
+                .toList();
+
+        assertThrows(IllegalArgumentException.class, () -> batchAppointmentService.createAppointments(requests));
+        assertThrows(IllegalArgumentException.class, () -> batchAppointmentService.createAppointments(List.of()));
+    }
+
+    private AppointmentRequest request(Long patientId, int hour) {
+        AppointmentRequest request = new AppointmentRequest();
+        request.setDoctorId(1L);
+        request.setPatientId(patientId);
+        request.setHealthcareFacilityId(5L);
+        request.setAppointmentDay("MONDAY");
+        request.setAppointmentDate(LocalDate.now().with(TemporalAdjusters.next(DayOfWeek.MONDAY)));
+        request.setStartTime(LocalTime.of(hour, 0));
+        request.setEndTime(LocalTime.of(hour + 1, 0));
+        request.setAppointmentType(AppointmentType.CONSULTATION);
+        return request;
+    }
+
+    private DoctorScheduleDTO schedule() {
+        DoctorScheduleDTO schedule = new DoctorScheduleDTO();
+        schedule.setDayOfWeek("MONDAY");
+        schedule.setStartTime(LocalTime.of(8, 0));
+        schedule.setEndTime(LocalTime.of(18, 0));
+        return schedule;
+    }
+}
@@ -0,0 +1,59 @@
+package br.com.fiap.tech.scheduling.service;
+
+import br.com.fiap.tech.scheduling.service.BookingMetrics.Stage;
+import br.com.fiap.tech.scheduling.service.BookingMetrics.StageSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BookingMetricsTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private BookingMetrics bookingMetrics;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        bookingMetrics = new BookingMetrics(meterRegistry);
+    }
+
+    @Test
+    void shouldRecordStageOutcome() {
+        assertThat(bookingMetrics.record(Stage.INSERT, () -> "ok")).isEqualTo("ok");
+        assertThrows(IllegalStateException.class, () -> bookingMetrics.record(Stage.INSERT, () -> {
+            throw new IllegalStateException("conflito");
+        }));
+
+        assertThat(meterRegistry.get(BookingMetrics.TIMER_NAME).tags("stage", "insert", "outcome", "success")
+                .timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get(BookingMetrics.TIMER_NAME).tags("stage", "insert", "outcome", "error")
+                .timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldListSlowestStagesFirst() {
+        bookingMetrics.record(Stage.CONFLICT_QUERY, () -> sleep(30));
+        bookingMetrics.record(Stage.INSERT, () -> sleep(5));
+
+        List<StageSummary> summaries = bookingMetrics.slowestStages();
+
+        assertThat(summaries).hasSize(Stage.values().length);
+        assertThat(summaries.get(0).stage()).isEqualTo("conflict-query");
+        assertThat(summaries.get(0).count()).isEqualTo(1);
+        assertThat(summaries.get(0).p95Ms()).isGreaterThanOrEqualTo(summaries.get(1).p95Ms());
+        assertThat(summaries.get(1).stage()).isEqualTo("insert");
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
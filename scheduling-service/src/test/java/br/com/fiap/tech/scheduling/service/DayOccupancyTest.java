@@ -0,0 +1,47 @@
+package br.com.fiap.tech.scheduling.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DayOccupancyTest {
+
+    @Test
+    void shouldMarkEveryCellTouchedByTheInterval() {
+        DayOccupancy occupancy = DayOccupancy.EMPTY.with(LocalTime.of(10, 2), LocalTime.of(10, 7));
+
+        assertThat(occupancy.busyCells()).isEqualTo(2);
+        assertThat(occupancy.isFree(LocalTime.of(9, 55), LocalTime.of(10, 0))).isTrue();
+        assertThat(occupancy.isFree(LocalTime.of(10, 8), LocalTime.of(10, 10))).isFalse();
+        assertThat(occupancy.isFree(LocalTime.of(10, 10), LocalTime.of(10, 30))).isTrue();
+        assertThat(DayOccupancy.EMPTY.busyCells()).isZero();
+    }
+
+    @Test
+    void shouldCheckIntervalsSpanningSeveralWords() {
+        // 05:20 é o início da segunda palavra de 64 bits
+        DayOccupancy occupancy = DayOccupancy.EMPTY
+                .with(LocalTime.of(5, 15), LocalTime.of(5, 25))
+                .with(LocalTime.of(23, 55), LocalTime.MAX);
+
+        assertThat(occupancy.isFree(LocalTime.of(0, 0), LocalTime.of(5, 15))).isTrue();
+        assertThat(occupancy.isFree(LocalTime.of(5, 20), LocalTime.of(6, 0))).isFalse();
+        assertThat(occupancy.isFree(LocalTime.of(5, 25), LocalTime.of(23, 55))).isTrue();
+        assertThat(occupancy.isFree(LocalTime.of(1, 0), LocalTime.MAX)).isFalse();
+        assertThat(occupancy.busyPeriods()).containsExactly(
+                new DayOccupancy.Period(LocalTime.of(5, 15), LocalTime.of(5, 25)),
+                new DayOccupancy.Period(LocalTime.of(23, 55), LocalTime.MAX));
+    }
+
+    @Test
+    void shouldNotChangeOriginalWhenAddingInterval() {
+        DayOccupancy original = DayOccupancy.EMPTY.with(LocalTime.of(8, 0), LocalTime.of(9, 0));
+        DayOccupancy updated = original.with(LocalTime.of(9, 0), LocalTime.of(10, 0));
+
+        assertThat(original.isFree(LocalTime.of(9, 0), LocalTime.of(10, 0))).isTrue();
+        assertThat(updated.isFree(LocalTime.of(9, 0), LocalTime.of(10, 0))).isFalse();
+        assertThat(updated.toHex()).startsWith("0000000000000000 00000000ffffff00 ");
+    }
+}
@@ -0,0 +1,188 @@
+package br.com.fiap.tech.scheduling.service;
+
+import br.com.fiap.tech.scheduling.client.FacilityClient;
+import br.com.fiap.tech.scheduling.domain.DoctorScheduleReplica;
+import br.com.fiap.tech.scheduling.dto.DoctorScheduleDTO;
+import br.com.fiap.tech.scheduling.events.DoctorScheduleChangedEvent;
+import br.com.fiap.tech.scheduling.repository.DoctorScheduleReplicaRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class DoctorScheduleReadModelTest {
+
+    @Mock
+    private DoctorScheduleReplicaRepository replicaRepository;
+
+    @Mock
+    private FacilityClient facilityClient;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @InjectMocks
+    private DoctorScheduleReadModel readModel;
+
+    private AutoCloseable mocks;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        mocks = MockitoAnnotations.openMocks(this);
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        doAnswer(invocation -> {
+            invocation.<Consumer<Object>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        mocks.close();
+    }
+
+    @Test
+    void shouldServeSchedulesFromLocalCopyAfterLoad() {
+        when(replicaRepository.findByDeletedFalse()).thenReturn(List.of(replica(1L, 10L, "MONDAY"), replica(2L, 10L, "FRIDAY")));
+
+        readModel.load();
+        List<DoctorScheduleDTO> schedules = readModel.getDoctorSchedules(10L, DayOfWeek.MONDAY);
+
+        assertThat(schedules).extracting(DoctorScheduleDTO::getId).containsExactly(1L);
+        verify(facilityClient, never()).getDoctorSchedules(any());
+    }
+
+    @Test
+    void shouldFallBackToFacilityServiceWhenDoctorIsNotInLocalCopy() {
+        when(replicaRepository.findByDeletedFalse()).thenReturn(List.of(replica(1L, 10L, "MONDAY")));
+        DoctorScheduleDTO remote = DoctorScheduleDTO.builder().id(5L).doctorId(20L).dayOfWeek("MONDAY").build();
+        when(facilityClient.getDoctorSchedules(20L)).thenReturn(List.of(remote));
+
+        readModel.load();
+        List<DoctorScheduleDTO> schedules = readModel.getDoctorSchedules(20L, DayOfWeek.MONDAY);
+
+        assertThat(schedules).containsExactly(remote);
+    }
+
+    @Test
+    void shouldResyncFromFacilityServiceWhenLocalCopyIsEmpty() {
+        when(replicaRepository.findByDeletedFalse()).thenReturn(Collections.emptyList());
+        when(facilityClient.getAllDoctorSchedules()).thenReturn(List.of(
+                DoctorScheduleDTO.builder().id(1L).doctorId(10L).facilityId(3L).dayOfWeek("TUESDAY")
+                        .startTime(LocalTime.of(8, 0)).endTime(LocalTime.of(12, 0)).build()));
+
+        readModel.load();
+
+        verify(replicaRepository).deleteAllLive();
+        verify(replicaRepository).saveAll(anyList());
+        assertThat(readModel.getDoctorSchedules(10L, DayOfWeek.TUESDAY)).hasSize(1);
+    }
+
+    @Test
+    void shouldApplyCreatedAndDeletedEvents() {
+        when(replicaRepository.findByDeletedFalse()).thenReturn(List.of(replica(1L, 10L, "MONDAY")));
+        readModel.load();
+
+        DoctorScheduleChangedEvent created = event(DoctorScheduleChangedEvent.ChangeType.CREATED, 2L, "MONDAY");
+        when(replicaRepository.findById(2L)).thenReturn(Optional.empty());
+        when(replicaRepository.findByDoctorIdAndDeletedFalse(10L))
+                .thenReturn(List.of(replica(1L, 10L, "MONDAY"), replica(2L, 10L, "MONDAY")));
+
+        readModel.apply(created);
+
+        verify(replicaRepository).save(any(DoctorScheduleReplica.class));
+        assertThat(readModel.getDoctorSchedules(10L, DayOfWeek.MONDAY)).hasSize(2);
+
+        DoctorScheduleChangedEvent deleted = event(DoctorScheduleChangedEvent.ChangeType.DELETED, 2L, "MONDAY");
+        when(replicaRepository.findById(2L)).thenReturn(Optional.of(replica(2L, 10L, "MONDAY")));
+        when(replicaRepository.findByDoctorIdAndDeletedFalse(10L)).thenReturn(List.of(replica(1L, 10L, "MONDAY")));
+
+        readModel.apply(deleted);
+
+        verify(replicaRepository).save(argThat(DoctorScheduleReplica::isDeleted));
+        assertThat(readModel.getDoctorSchedules(10L, DayOfWeek.MONDAY)).hasSize(1);
+    }
+
+    @Test
+    void shouldIgnoreEventsRedeliveredAfterDeletion() {
+        DoctorScheduleReplica deleted = replica(2L, 10L, "MONDAY");
+        deleted.setDeleted(true);
+        deleted.setUpdatedAt(LocalDateTime.of(2024, 1, 2, 10, 0));
+        when(replicaRepository.findById(2L)).thenReturn(Optional.of(deleted));
+
+        DoctorScheduleChangedEvent created = event(DoctorScheduleChangedEvent.ChangeType.CREATED, 2L, "MONDAY");
+        created.setUpdatedAt(LocalDateTime.of(2024, 1, 1, 10, 0));
+        DoctorScheduleChangedEvent updated = event(DoctorScheduleChangedEvent.ChangeType.UPDATED, 2L, "MONDAY");
+        updated.setUpdatedAt(LocalDateTime.of(2024, 1, 2, 10, 0));
+
+        readModel.apply(created);
+        readModel.apply(updated);
+
+        verify(replicaRepository, never()).save(any(DoctorScheduleReplica.class));
+    }
+
+    @Test
+    void shouldKeepDeletedSchedulesOutOfResync() {
+        when(replicaRepository.findDeletedIds()).thenReturn(List.of(2L));
+        when(facilityClient.getAllDoctorSchedules()).thenReturn(List.of(
+                DoctorScheduleDTO.builder().id(1L).doctorId(10L).facilityId(3L).dayOfWeek("TUESDAY")
+                        .startTime(LocalTime.of(8, 0)).endTime(LocalTime.of(12, 0)).build(),
+                DoctorScheduleDTO.builder().id(2L).doctorId(10L).facilityId(3L).dayOfWeek("TUESDAY")
+                        .startTime(LocalTime.of(13, 0)).endTime(LocalTime.of(17, 0)).build()));
+
+        int loaded = readModel.resync();
+
+        assertThat(loaded).isEqualTo(1);
+        verify(replicaRepository).saveAll(argThat(replicas -> replicas.iterator().next().getId().equals(1L)));
+        assertThat(readModel.getDoctorSchedules(10L, DayOfWeek.TUESDAY)).extracting(DoctorScheduleDTO::getId).containsExactly(1L);
+    }
+
+    @Test
+    void shouldIgnoreOutdatedUpdateEvents() {
+        DoctorScheduleReplica current = replica(1L, 10L, "MONDAY");
+        current.setUpdatedAt(LocalDateTime.of(2024, 1, 2, 10, 0));
+        when(replicaRepository.findById(1L)).thenReturn(Optional.of(current));
+        when(replicaRepository.findByDoctorIdAndDeletedFalse(10L)).thenReturn(List.of(current));
+
+        DoctorScheduleChangedEvent outdated = event(DoctorScheduleChangedEvent.ChangeType.UPDATED, 1L, "FRIDAY");
+        outdated.setUpdatedAt(LocalDateTime.of(2024, 1, 1, 10, 0));
+
+        readModel.apply(outdated);
+
+        verify(replicaRepository, never()).save(any(DoctorScheduleReplica.class));
+    }
+
+    private DoctorScheduleReplica replica(Long id, Long doctorId, String dayOfWeek) {
+        return DoctorScheduleReplica.builder()
+                .id(id)
+                .doctorId(doctorId)
+                .facilityId(3L)
+                .dayOfWeek(dayOfWeek)
+                .startTime(LocalTime.of(8, 0))
+                .endTime(LocalTime.of(12, 0))
+                .build();
+    }
+
+    private DoctorScheduleChangedEvent event(DoctorScheduleChangedEvent.ChangeType changeType, Long scheduleId, String dayOfWeek) {
+        return new DoctorScheduleChangedEvent(changeType, scheduleId, 10L, 3L, dayOfWeek,
+                LocalTime.of(8, 0), LocalTime.of(12, 0), null, null, LocalDateTime.now());
+    }
+}
@@ -0,0 +1,145 @@
+package br.com.fiap.tech.scheduling.service;
+
+import br.com.fiap.tech.scheduling.domain.Appointment;
+import br.com.fiap.tech.scheduling.domain.IdempotencyKey;
+import br.com.fiap.tech.scheduling.dto.AppointmentRequest;
+import br.com.fiap.tech.scheduling.repository.IdempotencyKeyRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+class IdempotencyServiceTest {
+
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+    private IdempotencyService idempotencyService;
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        idempotencyKeyRepository = mock(IdempotencyKeyRepository.class);
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        doAnswer(invocation -> {
+            invocation.<Consumer<Object>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        idempotencyService = new IdempotencyService(idempotencyKeyRepository, transactionTemplate,
+                new ObjectMapper().findAndRegisterModules(), new SimpleMeterRegistry(),
+                Duration.ofHours(24), Duration.ofSeconds(5), Duration.ofMillis(10), 100, "node");
+    }
+
+    @Test
+    void shouldReplayStoredResponseWithoutExecutingAgain() {
+        when(idempotencyKeyRepository.claim(eq("appointment"), eq("k1"), anyString(), anyString(), any(), any(), any()))
+                .thenReturn(1);
+        AppointmentRequest request = request(1L);
+
+        Appointment first = idempotencyService.execute("appointment", "k1", request, Appointment.class, this::create);
+        Appointment replay = idempotencyService.execute("appointment", "k1", request, Appointment.class, this::create);
+
+        assertThat(first.getId()).isEqualTo(1L);
+        assertThat(replay.getId()).isEqualTo(1L);
+        assertThat(executions).hasValue(1);
+        verify(idempotencyKeyRepository).complete(eq("appointment"), eq("k1"), anyString(), contains("\"id\":1"));
+        assertThrows(IllegalArgumentException.class, () ->
+                idempotencyService.execute("appointment", "k1", request(2L), Appointment.class, this::create));
+    }
+
+    @Test
+    void shouldMakeConcurrentDuplicateWaitForInFlightRequest() throws Exception {
+        when(idempotencyKeyRepository.claim(any(), any(), any(), any(), any(), any(), any())).thenReturn(1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AppointmentRequest request = request(1L);
+
+        CompletableFuture<Appointment> first = CompletableFuture.supplyAsync(() ->
+                idempotencyService.execute("appointment", "k1", request, Appointment.class, () -> {
+                    started.countDown();
+                    await(release);
+                    return create();
+                }));
+        started.await();
+        CompletableFuture<Appointment> duplicate = CompletableFuture.supplyAsync(() ->
+                idempotencyService.execute("appointment", "k1", request, Appointment.class, this::create));
+        release.countDown();
+
+        assertThat(first.get().getId()).isEqualTo(1L);
+        assertThat(duplicate.get().getId()).isEqualTo(1L);
+        assertThat(executions).hasValue(1);
+        verify(idempotencyKeyRepository, times(1)).claim(any(), any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void shouldReturnResponseStoredByAnotherInstanceAndReleaseKeyOnFailure() {
+        AppointmentRequest request = request(1L);
+        when(idempotencyKeyRepository.claim(eq("appointment"), eq("k2"), any(), any(), any(), any(), any())).thenReturn(1);
+        assertThrows(IllegalStateException.class, () -> idempotencyService.execute("appointment", "k2", request,
+                Appointment.class, () -> {
+                    throw new IllegalStateException("Horário indisponível");
+                }));
+        verify(idempotencyKeyRepository).release(eq("appointment"), eq("k2"), anyString());
+
+        when(idempotencyKeyRepository.claim(eq("appointment"), eq("k3"), any(), any(), any(), any(), any())).thenReturn(0);
+        IdempotencyKey inProgress = IdempotencyKey.builder().requestHash(idempotencyService.requestHash(request)).build();
+        IdempotencyKey stored = IdempotencyKey.builder().requestHash(idempotencyService.requestHash(request)).responseBody("{\"id\":7}").build();
+        when(idempotencyKeyRepository.findById(new IdempotencyKey.Key("appointment", "k3")))
+                .thenReturn(Optional.of(inProgress), Optional.of(stored));
+
+        Appointment appointment = idempotencyService.execute("appointment", "k3", request, Appointment.class, this::create);
+
+        assertThat(appointment.getId()).isEqualTo(7L);
+        assertThat(executions).hasValue(0);
+    }
+
+    @Test
+    void shouldNotExecuteAgainWhenPreviousExecutionMayHaveCommitted() {
+        AppointmentRequest request = request(1L);
+        when(idempotencyKeyRepository.claim(eq("appointment"), eq("k4"), any(), any(), any(), any(), any())).thenReturn(0);
+        IdempotencyKey abandoned = IdempotencyKey.builder()
+                .requestHash(idempotencyService.requestHash(request))
+                .lockedUntil(LocalDateTime.now().minusSeconds(1))
+                .build();
+        when(idempotencyKeyRepository.findById(new IdempotencyKey.Key("appointment", "k4"))).thenReturn(Optional.of(abandoned));
+
+        assertThrows(IllegalStateException.class, () ->
+                idempotencyService.execute("appointment", "k4", request, Appointment.class, this::create));
+        assertThat(executions).hasValue(0);
+    }
+
+    private Appointment create() {
+        executions.incrementAndGet();
+        return Appointment.builder().id(1L).build();
+    }
+
+    private static AppointmentRequest request(Long patientId) {
+        AppointmentRequest request = new AppointmentRequest();
+        request.setPatientId(patientId);
+        request.setDoctorId(10L);
+        return request;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -4,8 +4,11 @@ import br.com.fiap.tech.scheduling.domain.PriorityLevel;
 import br.com.fiap.tech.scheduling.domain.Referral;
 import br.com.fiap.tech.scheduling.domain.ReferralStatus;
 import br.com.fiap.tech.scheduling.domain.ReferralType;
+import br.com.fiap.tech.scheduling.dto.PriorityQueuePage;
+import br.com.fiap.tech.scheduling.dto.QueueCursor;
 import br.com.fiap.tech.scheduling.dto.ReferralWithPriorityDTO;
 import br.com.fiap.tech.scheduling.repository.ReferralRepository;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -13,18 +16,26 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.mockito.Mockito.when;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
 
 class PriorityServiceTest {
 
     @Mock
     private ReferralRepository referralRepository;
 
+    @Mock
+    private EntityManager entityManager;
+
     @InjectMocks
     private PriorityService priorityService;
 
@@ -79,9 +90,10 @@ class PriorityServiceTest {
     @Test
     void shouldGetPrioritizedReferralsByType() {
         Referral referral = createReferral(1L, PriorityLevel.LOW, ReferralType.LAB, 7, 25, false, false);
+        Referral other = createReferral(2L, PriorityLevel.HIGH, ReferralType.SPECIALIST, 1, 40, false, false);
 
-        when(referralRepository.findByReferralTypeAndStatus(ReferralType.LAB, ReferralStatus.PENDING))
-                .thenReturn(Collections.singletonList(referral));
+        when(referralRepository.findByStatus(ReferralStatus.PENDING))
+                .thenReturn(Arrays.asList(referral, other));
 
         List<ReferralWithPriorityDTO> result = priorityService.getPrioritizedReferralsByType(ReferralType.LAB);
 
@@ -112,4 +124,86 @@ class PriorityServiceTest {
 
         assertThat(result).isNull();
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldLoadQueueOnceAndApplyReferralChanges() {
+        Referral referral1 = createReferral(1L, PriorityLevel.MEDIUM, ReferralType.LAB, 0, 30, false, false);
+        when(referralRepository.findByStatus(ReferralStatus.PENDING))
+                .thenReturn(Collections.singletonList(referral1));
+        priorityService.getPrioritizedReferrals();
+
+        Referral referral2 = createReferral(2L, PriorityLevel.URGENT, ReferralType.LAB, 0, 30, false, false);
+        priorityService.referralChanged(referral2);
+        referral1.setStatus(ReferralStatus.SCHEDULED);
+        priorityService.referralChanged(referral1);
+
+        List<ReferralWithPriorityDTO> result = priorityService.getPrioritizedReferrals();
+
+        assertThat(result).extracting(ReferralWithPriorityDTO::getReferral).containsExactly(referral2);
+        verify(referralRepository, times(1)).findByStatus(ReferralStatus.PENDING);
+    }
+
+    @Test
+    void shouldReturnCursorForNextPageWhenPageIsFull() {
+        Referral referral1 = createReferral(1L, PriorityLevel.HIGH, ReferralType.LAB, 0, 30, false, false);
+        Referral referral2 = createReferral(2L, PriorityLevel.LOW, ReferralType.LAB, 0, 30, false, false);
+        referral2.setRequestedDate(LocalDateTime.of(2025, 5, 1, 9, 0));
+        when(referralRepository.findPendingQueuePage(eq("LAB"), eq(PriorityService.POSSIBLE_BASE_SCORES),
+                any(LocalDateTime.class), eq(Integer.MAX_VALUE),
+                any(LocalDateTime.class), eq(0L), eq(2)))
+                .thenReturn(Arrays.asList(referral1, referral2));
+
+        PriorityQueuePage<ReferralWithPriorityDTO> page = priorityService.getPrioritizedReferralsPage(ReferralType.LAB, null, 2);
+
+        assertThat(page.getItems()).hasSize(2);
+        QueueCursor next = QueueCursor.decode(page.getNextCursor());
+        assertThat(next.id()).isEqualTo(2L);
+        assertThat(next.tieBreaker()).isEqualTo(referral2.getRequestedDate());
+        assertThat(next.priorityScore()).isEqualTo(page.getItems().get(1).getPriorityScore());
+    }
+
+    @Test
+    void shouldReuseCursorInstantAndStopOnLastPage() {
+        LocalDateTime asOf = LocalDateTime.of(2025, 5, 20, 8, 0);
+        String cursor = new QueueCursor(50, LocalDateTime.of(2025, 5, 1, 9, 0), 7L, asOf).encode();
+        Referral referral = createReferral(8L, PriorityLevel.LOW, ReferralType.LAB, 0, 30, false, false);
+        when(referralRepository.findPendingQueuePage("LAB,SPECIALIST,HOSPITAL", PriorityService.POSSIBLE_BASE_SCORES,
+                asOf, 50, LocalDateTime.of(2025, 5, 1, 9, 0), 7L, 10))
+                .thenReturn(Collections.singletonList(referral));
+
+        PriorityQueuePage<ReferralWithPriorityDTO> page = priorityService.getPrioritizedReferralsPage(null, cursor, 10);
+
+        assertThat(page.getItems()).hasSize(1);
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    @Test
+    void shouldRejectInvalidPageSize() {
+        assertThrows(IllegalArgumentException.class, () -> priorityService.getPrioritizedReferralsPage(null, null, 0));
+        assertThrows(IllegalArgumentException.class, () -> priorityService.getPrioritizedReferralsPage(null, null, 501));
+    }
+
+    @Test
+    void shouldStreamQueueDetachingEachReferral() {
+        Referral referral1 = createReferral(1L, PriorityLevel.HIGH, ReferralType.LAB, 0, 30, false, false);
+        Referral referral2 = createReferral(2L, PriorityLevel.LOW, ReferralType.LAB, 0, 30, false, false);
+        when(referralRepository.streamPendingQueue(isNull(), any(LocalDateTime.class)))
+                .thenReturn(Stream.of(referral1, referral2));
+
+        List<ReferralWithPriorityDTO> streamed = new ArrayList<>();
+        priorityService.streamPrioritizedReferrals(null, streamed::add);
+
+        assertThat(streamed).extracting(ReferralWithPriorityDTO::getReferral).containsExactly(referral1, referral2);
+        verify(entityManager).detach(referral1);
+        verify(entityManager).detach(referral2);
+    }
+
+    @Test
+    void shouldListEveryPossibleBaseScore() {
+        // Também é o limite de grupos por tipo na fila em memória (ReferralPriorityQueue)
+        assertThat(PriorityService.POSSIBLE_BASE_SCORES.split(","))
+                .hasSize(26)
+                .contains("10", "55", "100")
+                .endsWith("145");
+    }
+}
@@ -0,0 +1,153 @@
+package br.com.fiap.tech.scheduling.service;
+
+import br.com.fiap.tech.jobs.ShardedJobRunner;
+import br.com.fiap.tech.scheduling.domain.Appointment;
+import br.com.fiap.tech.scheduling.domain.AppointmentType;
+import br.com.fiap.tech.scheduling.domain.PriorityLevel;
+import br.com.fiap.tech.scheduling.domain.Referral;
+import br.com.fiap.tech.scheduling.domain.ReferralType;
+import br.com.fiap.tech.scheduling.dto.AppointmentRequest;
+import br.com.fiap.tech.scheduling.dto.AvailableSlotDTO;
+import br.com.fiap.tech.scheduling.dto.BatchAppointmentResult;
+import br.com.fiap.tech.scheduling.dto.ReferralWithPriorityDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.*;
+
+class ReferralMatcherTest {
+
+    private static final LocalDate DATE = LocalDate.now().plusDays(1);
+
+    private PriorityService priorityService;
+    private SlotSearchService slotSearchService;
+    private BatchAppointmentService batchAppointmentService;
+    private SimpleMeterRegistry meterRegistry;
+    private ShardedJobRunner.Shard shard;
+
+    @BeforeEach
+    void setUp() {
+        priorityService = mock(PriorityService.class);
+        slotSearchService = mock(SlotSearchService.class);
+        batchAppointmentService = mock(BatchAppointmentService.class);
+        meterRegistry = new SimpleMeterRegistry();
+        shard = mock(ShardedJobRunner.Shard.class);
+        when(priorityService.getTopPrioritizedReferrals(any(), anyInt())).thenReturn(List.of());
+        when(batchAppointmentService.createAppointments(anyList())).thenAnswer(invocation -> {
+            List<AppointmentRequest> requests = invocation.getArgument(0);
+            return IntStream.range(0, requests.size())
+                    .mapToObj(i -> BatchAppointmentResult.created(i, new Appointment()))
+                    .toList();
+        });
+    }
+
+    private ReferralMatcher matcher(int chunkSize, Duration timeBudget) {
+        return new ReferralMatcher(priorityService, slotSearchService, batchAppointmentService, mock(ShardedJobRunner.class),
+                meterRegistry, true, 300000, 10, 80, 14, 30, chunkSize, timeBudget, "", "Cardiologia", "");
+    }
+
+    @Test
+    void shouldGiveEarliestSlotsToHighestPriorityWithoutOverlaps() {
+        ReferralWithPriorityDTO urgent = referral(1L, 100L, 120);
+        ReferralWithPriorityDTO samePatient = referral(2L, 100L, 110);
+        ReferralWithPriorityDTO referredByFirstDoctor = referral(3L, 300L, 90);
+        referredByFirstDoctor.getReferral().setRequestedByDoctorId(10L);
+        ReferralWithPriorityDTO noSlotLeft = referral(4L, 400L, 85);
+        when(priorityService.getTopPrioritizedReferrals(ReferralType.SPECIALIST, 10))
+                .thenReturn(List.of(urgent, samePatient, referredByFirstDoctor, noSlotLeft, referral(5L, 500L, 50)));
+        when(slotSearchService.search(argThat(request -> "Cardiologia".equals(request.getSpecialty())), any(), eq(8)))
+                .thenReturn(List.of(slot(10L, 8), slot(20L, 8), slot(10L, 9)));
+
+        List<ReferralMatcher.Assignment> assignments = matcher(50, Duration.ofSeconds(30))
+                .assign(List.of(urgent, samePatient, referredByFirstDoctor, noSlotLeft), LocalDateTime.now());
+
+        assertThat(assignments).extracting(a -> a.referral().getId(), a -> a.slot().getDoctorId(),
+                        a -> a.slot().getStartTime().getHour())
+                .containsExactly(
+                        tuple(1L, 10L, 8),
+                        tuple(2L, 10L, 9),
+                        tuple(3L, 20L, 8));
+    }
+
+    @Test
+    void shouldBookAssignmentsInChunksAndReportMetrics() {
+        when(priorityService.getTopPrioritizedReferrals(ReferralType.SPECIALIST, 10))
+                .thenReturn(List.of(referral(1L, 100L, 120), referral(2L, 200L, 110), referral(3L, 300L, 100)));
+        when(slotSearchService.search(any(), any(), anyInt()))
+                .thenReturn(List.of(slot(10L, 8), slot(10L, 9), slot(10L, 10)));
+        when(batchAppointmentService.createAppointments(anyList()))
+                .thenReturn(List.of(BatchAppointmentResult.created(0, new Appointment()), BatchAppointmentResult.rejected(1, 409, "conflito")))
+                .thenReturn(List.of(BatchAppointmentResult.created(0, new Appointment())));
+
+        int scheduled = matcher(2, Duration.ofSeconds(30)).match(ReferralType.SPECIALIST, LocalDateTime.now(), shard);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<AppointmentRequest>> requests = ArgumentCaptor.forClass(List.class);
+        verify(batchAppointmentService, times(2)).createAppointments(requests.capture());
+        AppointmentRequest first = requests.getAllValues().get(0).get(0);
+        assertThat(first.getReferralId()).isEqualTo(1L);
+        assertThat(first.getAppointmentType()).isEqualTo(AppointmentType.CONSULTATION);
+        assertThat(first.getAppointmentDay()).isEqualTo(DATE.getDayOfWeek().name());
+        assertThat(scheduled).isEqualTo(2);
+        verify(shard, times(2)).renewLease();
+        assertThat(meterRegistry.get("scheduling.referral.matching.scheduled").counter().count()).isEqualTo(2.0);
+        assertThat(meterRegistry.get("scheduling.referral.matching.rejected").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void shouldDeferBookingsWhenTimeBudgetIsExhausted() {
+        when(priorityService.getTopPrioritizedReferrals(ReferralType.SPECIALIST, 10))
+                .thenReturn(List.of(referral(1L, 100L, 120)));
+        when(slotSearchService.search(any(), any(), anyInt())).thenReturn(List.of(slot(10L, 8)));
+
+        int scheduled = matcher(50, Duration.ofSeconds(-1)).match(ReferralType.SPECIALIST, LocalDateTime.now(), shard);
+
+        assertThat(scheduled).isZero();
+        verify(batchAppointmentService, never()).createAppointments(anyList());
+        verify(shard, never()).renewLease();
+        assertThat(meterRegistry.get("scheduling.referral.matching.deferred").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void shouldSkipReferralTypeWithoutConfiguredSpecialty() {
+        int scheduled = matcher(50, Duration.ofSeconds(30)).match(ReferralType.LAB, LocalDateTime.now(), shard);
+
+        assertThat(scheduled).isZero();
+        verify(priorityService, never()).getTopPrioritizedReferrals(eq(ReferralType.LAB), anyInt());
+        verifyNoInteractions(slotSearchService, batchAppointmentService);
+    }
+
+    private ReferralWithPriorityDTO referral(Long id, Long patientId, int score) {
+        Referral referral = Referral.builder()
+                .id(id)
+                .patientId(patientId)
+                .requestedByDoctorId(99L)
+                .referralType(ReferralType.SPECIALIST)
+                .priorityLevel(PriorityLevel.HIGH)
+                .requestedDate(LocalDateTime.now().minusDays(id))
+                .build();
+        return new ReferralWithPriorityDTO(referral, score, 0);
+    }
+
+    private AvailableSlotDTO slot(Long doctorId, int hour) {
+        return AvailableSlotDTO.builder()
+                .doctorId(doctorId)
+                .healthcareFacilityId(1L)
+                .appointmentDate(DATE)
+                .appointmentDay(DATE.getDayOfWeek().name())
+                .startTime(LocalTime.of(hour, 0))
+                .endTime(LocalTime.of(hour, 30))
+                .build();
+    }
+}
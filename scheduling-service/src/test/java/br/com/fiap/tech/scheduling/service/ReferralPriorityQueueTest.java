@@ -0,0 +1,94 @@
+package br.com.fiap.tech.scheduling.service;
+
+import br.com.fiap.tech.scheduling.domain.PriorityLevel;
+import br.com.fiap.tech.scheduling.domain.Referral;
+import br.com.fiap.tech.scheduling.domain.ReferralStatus;
+import br.com.fiap.tech.scheduling.domain.ReferralType;
+import br.com.fiap.tech.scheduling.dto.ReferralWithPriorityDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReferralPriorityQueueTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 3, 1, 10, 0);
+
+    private ReferralPriorityQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        queue = new ReferralPriorityQueue(new PriorityService(null, null)::calculateBaseScore);
+    }
+
+    @Test
+    void shouldOrderByScoreIncludingWaitingTime() {
+        Referral recentHigh = referral(1L, PriorityLevel.HIGH, ReferralType.SPECIALIST, NOW.minusDays(1));
+        Referral oldMedium = referral(2L, PriorityLevel.MEDIUM, ReferralType.SPECIALIST, NOW.minusDays(20));
+        Referral recentMedium = referral(3L, PriorityLevel.MEDIUM, ReferralType.LAB, NOW.minusDays(2));
+        queue.reset(List.of(recentHigh, oldMedium, recentMedium));
+
+        List<ReferralWithPriorityDTO> result = queue.ordered(null, NOW);
+
+        // HIGH há 1 dia = 72, MEDIUM há 20 dias = 70 (envelhecimento limitado a 30), MEDIUM há 2 dias = 44
+        assertThat(result).extracting(ReferralWithPriorityDTO::getPriorityScore).containsExactly(72, 70, 44);
+        assertThat(result).extracting(dto -> dto.getReferral().getId()).containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    void shouldReorderAsReferralsAge() {
+        Referral child = referral(1L, PriorityLevel.MEDIUM, ReferralType.SPECIALIST, NOW);
+        child.setPatientAge(8);
+        Referral adult = referral(2L, PriorityLevel.MEDIUM, ReferralType.SPECIALIST, NOW.minusDays(10));
+        queue.reset(List.of(child, adult));
+
+        // 50 contra 40 + 20 dias de espera
+        assertThat(queue.peek(null, NOW).getReferral()).isEqualTo(adult);
+        // 70 contra 70: empate, vence o mais antigo
+        assertThat(queue.peek(null, NOW.plusDays(10)).getReferral()).isEqualTo(adult);
+        // O envelhecimento do adulto já atingiu o limite de 30 pontos
+        assertThat(queue.ordered(null, NOW.plusDays(15)))
+                .extracting(ReferralWithPriorityDTO::getPriorityScore).containsExactly(80, 70);
+        assertThat(queue.peek(null, NOW.plusDays(15)).getReferral()).isEqualTo(child);
+    }
+
+    @Test
+    void shouldFilterByTypeAndKeepOnlyPendingReferrals() {
+        Referral lab = referral(1L, PriorityLevel.LOW, ReferralType.LAB, NOW);
+        Referral specialist = referral(2L, PriorityLevel.URGENT, ReferralType.SPECIALIST, NOW);
+        queue.reset(List.of(lab, specialist));
+
+        specialist.setStatus(ReferralStatus.SCHEDULED);
+        queue.update(specialist);
+
+        assertThat(queue.size()).isEqualTo(1);
+        assertThat(queue.peek(ReferralType.SPECIALIST, NOW)).isNull();
+        assertThat(queue.ordered(ReferralType.LAB, NOW)).extracting(ReferralWithPriorityDTO::getReferral).containsExactly(lab);
+    }
+
+    @Test
+    void shouldMoveReferralWhenPriorityChanges() {
+        Referral first = referral(1L, PriorityLevel.LOW, ReferralType.LAB, NOW);
+        Referral second = referral(2L, PriorityLevel.MEDIUM, ReferralType.LAB, NOW);
+        queue.reset(List.of(first, second));
+
+        first.setPriorityLevel(PriorityLevel.URGENT);
+        queue.update(first);
+
+        assertThat(queue.size()).isEqualTo(2);
+        assertThat(queue.peek(ReferralType.LAB, NOW).getReferral()).isEqualTo(first);
+    }
+
+    private Referral referral(Long id, PriorityLevel level, ReferralType type, LocalDateTime requestedDate) {
+        return Referral.builder()
+                .id(id)
+                .priorityLevel(level)
+                .referralType(type)
+                .status(ReferralStatus.PENDING)
+                .requestedDate(requestedDate)
+                .build();
+    }
+}
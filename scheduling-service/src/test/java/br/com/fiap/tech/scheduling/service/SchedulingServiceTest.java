@@ -1,27 +1,43 @@
 package br.com.fiap.tech.scheduling.service;
 
 import br.com.fiap.tech.scheduling.domain.*;
+import br.com.fiap.tech.scheduling.dto.AppointmentHistoryPage;
 import br.com.fiap.tech.scheduling.dto.AppointmentRequest;
+import br.com.fiap.tech.scheduling.dto.AppointmentSummary;
 import br.com.fiap.tech.scheduling.dto.DoctorScheduleDTO;
 import br.com.fiap.tech.scheduling.dto.ReferralRequest;
+import br.com.fiap.tech.scheduling.events.AppointmentCancelledEvent;
 import br.com.fiap.tech.scheduling.events.AppointmentCreatedEvent;
+import br.com.fiap.tech.scheduling.events.EventOutbox;
 import br.com.fiap.tech.scheduling.events.ReferralCreatedEvent;
 import br.com.fiap.tech.scheduling.repository.AppointmentRepository;
+import br.com.fiap.tech.scheduling.repository.ArchivedAppointmentRepository;
 import br.com.fiap.tech.scheduling.repository.ReferralRepository;
 import br.com.fiap.tech.scheduling.client.FacilityClient;
-import br.com.fiap.tech.scheduling.client.PeopleClient;
+import br.com.fiap.tech.scheduling.client.PeopleExistenceCache;
+import feign.FeignException;
+import feign.Request;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import jakarta.persistence.EntityNotFoundException;
 import org.junit.jupiter.api.*;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-import org.springframework.cloud.stream.function.StreamBridge;
-
+import org.mockito.Spy;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.nio.charset.StandardCharsets;
+
+import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Executor;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -35,14 +51,44 @@ class SchedulingServiceTest {
     @Mock
     private ReferralRepository referralRepository;
 
+    @Mock
+    private PriorityService priorityService;
+
     @Mock
     private FacilityClient facilityClient;
 
     @Mock
-    private PeopleClient peopleClient;
+    private PeopleExistenceCache peopleExistenceCache;
+
+    @Mock
+    private EventOutbox eventOutbox;
+
+    @Mock
+    private AppointmentConflictIndex appointmentConflictIndex;
 
     @Mock
-    private StreamBridge streamBridge;
+    private AppointmentPriorityService appointmentPriorityService;
+
+    @Mock
+    private DoctorScheduleReadModel doctorScheduleReadModel;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private ArchivedAppointmentRepository archivedAppointmentRepository;
+
+    @Mock
+    private AppointmentPartitionMaintenance appointmentPartitionMaintenance;
+
+    @Mock
+    private WaitlistService waitlistService;
+
+    @Spy
+    private Executor bookingValidationExecutor = new SyncTaskExecutor();
+
+    @Spy
+    private BookingMetrics bookingMetrics = new BookingMetrics(new SimpleMeterRegistry());
 
     @InjectMocks
     private SchedulingService schedulingService;
@@ -52,6 +98,8 @@ class SchedulingServiceTest {
     @BeforeEach
     void setUp() {
         mocks = MockitoAnnotations.openMocks(this);
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
     }
 
     @AfterEach
@@ -73,10 +121,10 @@ class SchedulingServiceTest {
         schedule.setDayOfWeek("MONDAY");
         schedule.setStartTime(LocalTime.of(8, 0));
         schedule.setEndTime(LocalTime.of(18, 0));
-        when(facilityClient.getDoctorSchedules(1L)).thenReturn(Collections.singletonList(schedule));
+        when(doctorScheduleReadModel.getDoctorSchedules(1L, DayOfWeek.MONDAY)).thenReturn(Collections.singletonList(schedule));
 
-        when(peopleClient.patientExists(2L)).thenReturn(true);
-        when(peopleClient.doctorExists(1L)).thenReturn(true);
+        when(peopleExistenceCache.patientExists(2L)).thenReturn(true);
+        when(peopleExistenceCache.doctorExists(1L)).thenReturn(true);
         when(appointmentRepository.save(any(Appointment.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
         Appointment appointment = schedulingService.createAppointment(request);
@@ -85,6 +133,94 @@ class SchedulingServiceTest {
         assertThat(appointment.getDoctorId()).isEqualTo(1L);
         assertThat(appointment.getPatientId()).isEqualTo(2L);
         verify(appointmentRepository, times(1)).save(any(Appointment.class));
+        verify(eventOutbox, times(1)).enqueue(eq(EventOutbox.APPOINTMENT_CREATED_TOPIC), any(), any(AppointmentCreatedEvent.class));
+    }
+
+    @Test
+    void shouldReserveFacilityCapacityForSavedAppointment() {
+        AppointmentRequest request = bookableRequest();
+        when(appointmentRepository.save(any(Appointment.class))).thenAnswer(invocation -> {
+            Appointment saved = invocation.getArgument(0);
+            saved.setId(9L);
+            return saved;
+        });
+
+        Appointment appointment = schedulingService.createAppointment(request);
+
+        verify(facilityClient).reserveCapacity(5L, 9L, appointment.getAppointmentDate());
+        verify(facilityClient, never()).releaseCapacity(any());
+    }
+
+    @Test
+    void shouldRejectBookingWhenFacilityDayIsFull() {
+        AppointmentRequest request = bookableRequest();
+        when(appointmentRepository.save(any(Appointment.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        doThrow(conflict()).when(facilityClient).reserveCapacity(eq(5L), any(), any());
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> schedulingService.createAppointment(request));
+
+        assertThat(exception.getMessage()).contains("não possui mais vagas disponíveis");
+    }
+
+    @Test
+    void shouldReleaseReservationWhenInsertIsRolledBack() {
+        Appointment appointment = Appointment.builder().id(9L).healthcareFacilityId(5L)
+                .appointmentDate(LocalDate.now().plusDays(1)).build();
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            schedulingService.reserveFacilityCapacity(appointment);
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(facilityClient).releaseCapacity(9L);
+    }
+
+    @Test
+    void shouldReportScheduleFailureBeforeRemoteValidationFailures() {
+        AppointmentRequest request = new AppointmentRequest();
+        request.setDoctorId(1L);
+        request.setPatientId(2L);
+        request.setAppointmentDay("MONDAY");
+        request.setStartTime(LocalTime.of(10, 0));
+        request.setEndTime(LocalTime.of(11, 0));
+
+        when(doctorScheduleReadModel.getDoctorSchedules(1L, DayOfWeek.MONDAY)).thenReturn(Collections.emptyList());
+        when(peopleExistenceCache.patientExists(2L)).thenThrow(new EntityNotFoundException("Paciente com ID 2 não encontrado"));
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> schedulingService.createAppointment(request));
+
+        assertThat(exception.getMessage()).startsWith("O médico não tem agenda disponível");
+        verify(transactionTemplate, never()).execute(any());
+    }
+
+    @Test
+    void shouldNotOpenTransactionWhenPatientDoesNotExist() {
+        AppointmentRequest request = new AppointmentRequest();
+        request.setDoctorId(1L);
+        request.setPatientId(2L);
+        request.setAppointmentDay("MONDAY");
+        request.setStartTime(LocalTime.of(10, 0));
+        request.setEndTime(LocalTime.of(11, 0));
+
+        DoctorScheduleDTO schedule = new DoctorScheduleDTO();
+        schedule.setDayOfWeek("MONDAY");
+        schedule.setStartTime(LocalTime.of(8, 0));
+        schedule.setEndTime(LocalTime.of(18, 0));
+        when(doctorScheduleReadModel.getDoctorSchedules(1L, DayOfWeek.MONDAY)).thenReturn(Collections.singletonList(schedule));
+        when(peopleExistenceCache.patientExists(2L)).thenThrow(new EntityNotFoundException("Paciente com ID 2 não encontrado"));
+        when(peopleExistenceCache.doctorExists(1L)).thenReturn(true);
+
+        EntityNotFoundException exception = assertThrows(EntityNotFoundException.class,
+                () -> schedulingService.createAppointment(request));
+
+        assertThat(exception.getMessage()).isEqualTo("Paciente não encontrado com ID: 2");
+        verify(transactionTemplate, never()).execute(any());
+        verify(appointmentRepository, never()).save(any(Appointment.class));
     }
 
     @Test
@@ -108,17 +244,16 @@ class SchedulingServiceTest {
         request.setRequestedByDoctorId(1L);
         request.setReferralType(ReferralType.SPECIALIST);
 
-        when(peopleClient.patientExists(2L)).thenReturn(true);
-        when(peopleClient.doctorExists(1L)).thenReturn(true);
+        when(peopleExistenceCache.patientExists(2L)).thenReturn(true);
+        when(peopleExistenceCache.doctorExists(1L)).thenReturn(true);
         when(referralRepository.save(any(Referral.class))).thenAnswer(invocation -> invocation.getArgument(0));
-        when(streamBridge.send(eq("referralCreatedOutput-out-0"), any(ReferralCreatedEvent.class))).thenReturn(true);
 
         Referral referral = schedulingService.createReferral(request);
 
         assertThat(referral).isNotNull();
         assertThat(referral.getReferralReason()).isEqualTo("Consulta especializada");
         verify(referralRepository, times(1)).save(any(Referral.class));
-        verify(streamBridge, times(1)).send(eq("referralCreatedOutput-out-0"), any(ReferralCreatedEvent.class));
+        verify(eventOutbox, times(1)).enqueue(eq(EventOutbox.REFERRAL_CREATED_TOPIC), any(), any(ReferralCreatedEvent.class));
     }
 
     @Test
@@ -161,6 +296,25 @@ class SchedulingServiceTest {
 
         assertThat(cancelledAppointment.getStatus()).isEqualTo(AppointmentStatus.CANCELLED);
         verify(appointmentRepository, times(1)).save(appointment);
+        verify(waitlistService).slotFreed(appointment);
+    }
+
+    @Test
+    void shouldPublishCancellationEventWhenCancellingAppointment() {
+        Appointment appointment = new Appointment();
+        appointment.setId(1L);
+        appointment.setAppointmentDate(LocalDate.now().plusDays(1));
+        appointment.setStatus(AppointmentStatus.SCHEDULED);
+        appointment.setHealthcareFacilityId(5L);
+
+        when(appointmentRepository.findById(1L)).thenReturn(Optional.of(appointment));
+        when(appointmentRepository.save(any(Appointment.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        schedulingService.cancelAppointment(1L, null);
+
+        verify(eventOutbox).enqueue(EventOutbox.APPOINTMENT_CANCELLED_TOPIC, 1L,
+                new AppointmentCancelledEvent(1L, appointment.getAppointmentDate(), 5L));
+        verifyNoInteractions(facilityClient);
     }
 
     @Test
@@ -178,4 +332,97 @@ class SchedulingServiceTest {
 
         assertThat(exception.getMessage()).isEqualTo("Não é possível cancelar um agendamento de data passada");
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldReturnDoctorHistoryPageWithoutCheckingDoctor() {
+        LocalDate from = LocalDate.now();
+        AppointmentSummary summary = new AppointmentSummary(1L, from, LocalTime.of(9, 0), LocalTime.of(9, 30),
+                AppointmentType.CONSULTATION, AppointmentStatus.SCHEDULED, 2L, 3L, null, null, null);
+        when(appointmentRepository.findDoctorHistory(3L, from, LocalDate.of(9999, 12, 31), 0, 2))
+                .thenReturn(List.of(summary, summary));
+
+        AppointmentHistoryPage page = schedulingService.getDoctorAppointmentHistory(3L, from, null, 0, 1);
+
+        assertThat(page.getItems()).containsExactly(summary);
+        assertThat(page.isHasNext()).isTrue();
+        verifyNoInteractions(peopleExistenceCache, archivedAppointmentRepository);
+    }
+
+    @Test
+    void shouldContinuePatientHistoryInArchiveAfterCurrentMonths() {
+        LocalDate archivedUntil = LocalDate.of(2024, 1, 31);
+        LocalDate max = LocalDate.of(9999, 12, 31);
+        LocalDate min = LocalDate.of(1, 1, 1);
+        AppointmentSummary live = summary(10L, archivedUntil.plusMonths(2));
+        AppointmentSummary archived = summary(5L, archivedUntil);
+        when(appointmentPartitionMaintenance.archivedUntil()).thenReturn(Optional.of(archivedUntil));
+        when(appointmentRepository.findPatientHistory(2L, min, max, 2, 3)).thenReturn(List.of(live));
+        when(archivedAppointmentRepository.findPatientHistory(2L, min, max, 0, 2)).thenReturn(List.of(archived));
+        when(appointmentRepository.findPatientHistory(2L, min, max, 4, 3)).thenReturn(List.of());
+        when(appointmentRepository.countPatientHistory(2L, min, max)).thenReturn(3L);
+        when(archivedAppointmentRepository.findPatientHistory(2L, min, max, 1, 3)).thenReturn(List.of());
+
+        AppointmentHistoryPage second = schedulingService.getPatientAppointmentHistory(2L, null, null, 1, 2);
+        AppointmentHistoryPage third = schedulingService.getPatientAppointmentHistory(2L, null, null, 2, 2);
+
+        assertThat(second.getItems()).containsExactly(live, archived);
+        assertThat(second.isHasNext()).isFalse();
+        assertThat(third.getItems()).isEmpty();
+        verify(archivedAppointmentRepository).findPatientHistory(2L, min, max, 1, 3);
+    }
+
+    @Test
+    void shouldSkipArchiveWhenPeriodStartsAfterIt() {
+        LocalDate from = LocalDate.of(2024, 3, 1);
+        when(appointmentPartitionMaintenance.archivedUntil()).thenReturn(Optional.of(from.minusDays(1)));
+        when(appointmentRepository.findPatientHistory(eq(2L), eq(from), any(), eq(0), eq(21))).thenReturn(List.of(summary(1L, from)));
+
+        AppointmentHistoryPage page = schedulingService.getPatientAppointmentHistory(2L, from, null, 0, 20);
+
+        assertThat(page.getItems()).hasSize(1);
+        verifyNoInteractions(archivedAppointmentRepository);
+    }
+
+    private AppointmentSummary summary(Long id, LocalDate date) {
+        return new AppointmentSummary(id, date, LocalTime.of(9, 0), LocalTime.of(9, 30),
+                AppointmentType.CONSULTATION, AppointmentStatus.COMPLETED, 2L, 3L, null, null, null);
+    }
+
+    @Test
+    void shouldCheckPatientOnlyWhenHistoryPageIsEmpty() {
+        when(appointmentRepository.findPatientHistory(eq(2L), any(), any(), anyInt(), anyInt()))
+                .thenReturn(List.of());
+        when(peopleExistenceCache.patientExists(2L)).thenThrow(new EntityNotFoundException("Paciente com ID 2 não encontrado"));
+
+        assertThrows(EntityNotFoundException.class,
+                () -> schedulingService.getPatientAppointmentHistory(2L, null, null, 0, 20));
+        assertThrows(IllegalArgumentException.class,
+                () -> schedulingService.getPatientAppointmentHistory(2L, LocalDate.now(), LocalDate.now().minusDays(1), 0, 20));
+    }
+
+    private AppointmentRequest bookableRequest() {
+        AppointmentRequest request = new AppointmentRequest();
+        request.setDoctorId(1L);
+        request.setPatientId(2L);
+        request.setAppointmentDay("MONDAY");
+        request.setStartTime(LocalTime.of(10, 0));
+        request.setEndTime(LocalTime.of(11, 0));
+        request.setAppointmentType(AppointmentType.CONSULTATION);
+        request.setHealthcareFacilityId(5L);
+
+        DoctorScheduleDTO schedule = new DoctorScheduleDTO();
+        schedule.setDayOfWeek("MONDAY");
+        schedule.setStartTime(LocalTime.of(8, 0));
+        schedule.setEndTime(LocalTime.of(18, 0));
+        when(doctorScheduleReadModel.getDoctorSchedules(1L, DayOfWeek.MONDAY)).thenReturn(Collections.singletonList(schedule));
+        when(peopleExistenceCache.patientExists(2L)).thenReturn(true);
+        when(peopleExistenceCache.doctorExists(1L)).thenReturn(true);
+        return request;
+    }
+
+    private FeignException.Conflict conflict() {
+        Request request = Request.create(Request.HttpMethod.PUT, "/api/v1/facilities/5/capacity/reservations/9",
+                Collections.emptyMap(), null, StandardCharsets.UTF_8, null);
+        return new FeignException.Conflict("Conflict", request, null, Collections.emptyMap());
+    }
+}
@@ -0,0 +1,192 @@
+package br.com.fiap.tech.scheduling.service;
+
+import br.com.fiap.tech.scheduling.client.DoctorSpecialtyCache;
+import br.com.fiap.tech.scheduling.client.FacilityClient;
+import br.com.fiap.tech.scheduling.dto.AvailabilityCalendarResponse;
+import br.com.fiap.tech.scheduling.dto.AvailableSlotDTO;
+import br.com.fiap.tech.scheduling.dto.DailyCapacityDTO;
+import br.com.fiap.tech.scheduling.dto.DoctorScheduleDTO;
+import br.com.fiap.tech.scheduling.dto.FacilityResponse;
+import br.com.fiap.tech.scheduling.dto.NearbyFacilityResponse;
+import br.com.fiap.tech.scheduling.dto.SlotSearchRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+class SlotSearchServiceTest {
+
+    // Segunda-feira
+    private static final LocalDate MONDAY = LocalDate.of(2030, 1, 7);
+
+    private DoctorScheduleReadModel doctorScheduleReadModel;
+    private AppointmentConflictIndex appointmentConflictIndex;
+    private DoctorSpecialtyCache doctorSpecialtyCache;
+    private FacilityClient facilityClient;
+    private SlotSearchService slotSearchService;
+
+    @BeforeEach
+    void setUp() {
+        doctorScheduleReadModel = mock(DoctorScheduleReadModel.class);
+        appointmentConflictIndex = mock(AppointmentConflictIndex.class);
+        doctorSpecialtyCache = mock(DoctorSpecialtyCache.class);
+        facilityClient = mock(FacilityClient.class);
+        when(appointmentConflictIndex.occupancies(any(), any())).thenAnswer(invocation -> {
+            Collection<Long> doctorIds = invocation.getArgument(0);
+            return doctorIds.stream().collect(Collectors.toMap(Function.identity(), id -> DayOccupancy.EMPTY));
+        });
+        when(facilityClient.getAvailabilityCalendar(anyList(), any(), any())).thenAnswer(invocation -> {
+            List<Long> facilityIds = invocation.getArgument(0);
+            LocalDate from = invocation.getArgument(1);
+            LocalDate to = invocation.getArgument(2);
+            int days = (int) ChronoUnit.DAYS.between(from, to) + 1;
+            return new AvailabilityCalendarResponse(from, to, facilityIds,
+                    facilityIds.stream().map(id -> 5).toList(),
+                    facilityIds.stream().map(id -> List.of(5, days)).toList());
+        });
+        slotSearchService = new SlotSearchService(doctorScheduleReadModel, appointmentConflictIndex,
+                doctorSpecialtyCache, facilityClient, 60, 100);
+    }
+
+    @Test
+    void shouldExpandBothPeriodsSkippingBookedAndPastSlots() {
+        DoctorScheduleDTO schedule = schedule(1L, 10L, "MONDAY", 8, 10);
+        schedule.setSecondPeriodStart(LocalTime.of(14, 0));
+        schedule.setSecondPeriodEnd(LocalTime.of(15, 0));
+        when(doctorScheduleReadModel.getAllSchedules()).thenReturn(List.of(schedule));
+        when(appointmentConflictIndex.occupancies(Set.of(1L), MONDAY)).thenReturn(Map.of(
+                1L, DayOccupancy.EMPTY.with(LocalTime.of(9, 15), LocalTime.of(9, 45))));
+
+        List<AvailableSlotDTO> slots = slotSearchService.search(
+                SlotSearchRequest.builder().days(1).limit(20).build(), MONDAY.atTime(8, 10));
+
+        assertThat(slots).extracting(AvailableSlotDTO::getStartTime).containsExactly(
+                LocalTime.of(8, 30), LocalTime.of(14, 0), LocalTime.of(14, 30));
+        assertThat(slots.get(0).getAppointmentDay()).isEqualTo("MONDAY");
+        assertThat(slots.get(0).getEndTime()).isEqualTo(LocalTime.of(9, 0));
+    }
+
+    @Test
+    void shouldReturnEarliestSlotsWithCapacityFromOneCalendarQuery() {
+        when(doctorScheduleReadModel.getAllSchedules()).thenReturn(List.of(
+                schedule(1L, 10L, "MONDAY", 9, 11),
+                schedule(2L, 20L, "MONDAY", 8, 9),
+                schedule(2L, 20L, "TUESDAY", 8, 12)));
+        // Unidade 10 sem vagas na segunda e com vagas nos 13 dias seguintes; unidade 20 com vagas no período todo
+        doReturn(new AvailabilityCalendarResponse(MONDAY, MONDAY.plusDays(13), List.of(10L, 20L),
+                List.of(5, 5), List.of(List.of(0, 1, 3, 13), List.of(5, 14))))
+                .when(facilityClient).getAvailabilityCalendar(List.of(10L, 20L), MONDAY, MONDAY.plusDays(13));
+
+        List<AvailableSlotDTO> slots = slotSearchService.search(
+                SlotSearchRequest.builder().limit(3).build(), MONDAY.atStartOfDay());
+
+        assertThat(slots).extracting(AvailableSlotDTO::getAppointmentDate, AvailableSlotDTO::getStartTime)
+                .containsExactly(
+                        tuple(MONDAY, LocalTime.of(8, 0)),
+                        tuple(MONDAY, LocalTime.of(8, 30)),
+                        tuple(MONDAY.plusDays(1), LocalTime.of(8, 0)));
+        verify(facilityClient, times(1)).getAvailabilityCalendar(anyList(), any(), any());
+        verify(facilityClient, never()).checkAvailabilityForDate(any(), any());
+    }
+
+    @Test
+    void shouldOrderByDistanceWithinSpecialty() {
+        when(doctorSpecialtyCache.getDoctorIds("cardiologia")).thenReturn(Set.of(1L, 2L));
+        when(facilityClient.findNearbyFacilities(-23.5, -46.6, 10.0, 100, null, MONDAY, MONDAY.plusDays(6), null))
+                .thenReturn(List.of(
+                nearby(10L, 8.0), nearby(20L, 1.5)));
+        when(doctorScheduleReadModel.getAllSchedules()).thenReturn(List.of(
+                schedule(1L, 10L, "MONDAY", 8, 9),
+                schedule(2L, 20L, "TUESDAY", 8, 9),
+                schedule(3L, 20L, "MONDAY", 8, 9)));
+
+        List<AvailableSlotDTO> slots = slotSearchService.search(SlotSearchRequest.builder()
+                .specialty("cardiologia")
+                .latitude(-23.5)
+                .longitude(-46.6)
+                .radiusInKm(10.0)
+                .orderBy(SlotSearchRequest.Order.DISTANCE)
+                .days(7)
+                .limit(3)
+                .build(), MONDAY.atStartOfDay());
+
+        assertThat(slots).extracting(AvailableSlotDTO::getDoctorId).containsExactly(2L, 2L, 1L);
+        assertThat(slots).extracting(AvailableSlotDTO::getDistanceInKm).containsExactly(1.5, 1.5, 8.0);
+    }
+
+    @Test
+    void shouldUseCapacityReturnedByNearbySearchInsteadOfCheckingEachFacility() {
+        NearbyFacilityResponse facility = nearby(10L, 2.0);
+        facility.setAvailability(List.of(
+                new DailyCapacityDTO(MONDAY, 5, 5, 0),
+                new DailyCapacityDTO(MONDAY.plusDays(1), 5, 1, 4)));
+        when(facilityClient.findNearbyFacilities(-23.5, -46.6, null, 100, null, MONDAY, MONDAY.plusDays(1), null))
+                .thenReturn(List.of(facility));
+        when(doctorScheduleReadModel.getAllSchedules()).thenReturn(List.of(
+                schedule(1L, 10L, "MONDAY", 8, 9),
+                schedule(1L, 10L, "TUESDAY", 8, 9)));
+
+        List<AvailableSlotDTO> slots = slotSearchService.search(SlotSearchRequest.builder()
+                .latitude(-23.5)
+                .longitude(-46.6)
+                .days(2)
+                .limit(5)
+                .build(), MONDAY.atStartOfDay());
+
+        assertThat(slots).extracting(AvailableSlotDTO::getAppointmentDate).containsOnly(MONDAY.plusDays(1));
+        assertThat(slots).extracting(AvailableSlotDTO::getDistanceInKm).containsOnly(2.0);
+        verify(facilityClient, never()).getAvailabilityCalendar(anyList(), any(), any());
+    }
+
+    @Test
+    void shouldKeepSlotsWhenCalendarQueryFails() {
+        when(doctorScheduleReadModel.getAllSchedules()).thenReturn(List.of(schedule(1L, 10L, "MONDAY", 8, 9)));
+        doThrow(new RuntimeException("facility-service indisponível"))
+                .when(facilityClient).getAvailabilityCalendar(anyList(), any(), any());
+
+        List<AvailableSlotDTO> slots = slotSearchService.search(
+                SlotSearchRequest.builder().days(1).limit(5).build(), MONDAY.atStartOfDay());
+
+        assertThat(slots).hasSize(2);
+    }
+
+    @Test
+    void shouldRejectInvalidSearch() {
+        assertThrows(IllegalArgumentException.class, () -> slotSearchService.search(
+                SlotSearchRequest.builder().days(61).build()));
+        assertThrows(IllegalArgumentException.class, () -> slotSearchService.search(
+                SlotSearchRequest.builder().orderBy(SlotSearchRequest.Order.DISTANCE).build()));
+        assertThrows(IllegalArgumentException.class, () -> slotSearchService.search(
+                SlotSearchRequest.builder().latitude(-23.5).build()));
+    }
+
+    private DoctorScheduleDTO schedule(Long doctorId, Long facilityId, String day, int startHour, int endHour) {
+        DoctorScheduleDTO schedule = new DoctorScheduleDTO();
+        schedule.setDoctorId(doctorId);
+        schedule.setFacilityId(facilityId);
+        schedule.setDayOfWeek(day);
+        schedule.setStartTime(LocalTime.of(startHour, 0));
+        schedule.setEndTime(LocalTime.of(endHour, 0));
+        return schedule;
+    }
+
+    private NearbyFacilityResponse nearby(Long facilityId, double distance) {
+        FacilityResponse facility = new FacilityResponse();
+        facility.setId(facilityId);
+        return new NearbyFacilityResponse(facility, distance);
+    }
+}
@@ -0,0 +1,139 @@
+package br.com.fiap.tech.scheduling.service;
+
+import br.com.fiap.tech.scheduling.domain.Appointment;
+import br.com.fiap.tech.scheduling.domain.AppointmentType;
+import br.com.fiap.tech.scheduling.domain.PriorityLevel;
+import br.com.fiap.tech.scheduling.domain.Referral;
+import br.com.fiap.tech.scheduling.domain.ReferralStatus;
+import br.com.fiap.tech.scheduling.domain.ReferralType;
+import br.com.fiap.tech.scheduling.domain.WaitlistEntry;
+import br.com.fiap.tech.scheduling.dto.AppointmentRequest;
+import br.com.fiap.tech.scheduling.dto.BatchAppointmentResult;
+import br.com.fiap.tech.scheduling.repository.ReferralRepository;
+import br.com.fiap.tech.scheduling.repository.WaitlistEntryRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class WaitlistServiceTest {
+
+    private static final LocalDate DATE = LocalDate.now().plusDays(2);
+
+    private WaitlistEntryRepository waitlistEntryRepository;
+    private ReferralRepository referralRepository;
+    private PriorityService priorityService;
+    private BatchAppointmentService batchAppointmentService;
+    private final List<Runnable> submitted = new ArrayList<>();
+    private WaitlistService waitlistService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        waitlistEntryRepository = mock(WaitlistEntryRepository.class);
+        referralRepository = mock(ReferralRepository.class);
+        priorityService = mock(PriorityService.class);
+        batchAppointmentService = mock(BatchAppointmentService.class);
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        doAnswer(invocation -> {
+            invocation.<Consumer<Object>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        Executor executor = submitted::add;
+        waitlistService = new WaitlistService(waitlistEntryRepository, referralRepository, priorityService,
+                batchAppointmentService, transactionTemplate, executor, new SimpleMeterRegistry(), true, 5);
+    }
+
+    @Test
+    void shouldBookFreedSlotForHighestPriorityCompatibleReferral() {
+        Referral low = referral(1L, 100L);
+        Referral high = referral(2L, 200L);
+        Referral rejected = referral(3L, 300L);
+        Referral cancelledReferral = referral(4L, 400L);
+        Referral alreadyScheduled = referral(5L, 500L);
+        alreadyScheduled.setStatus(ReferralStatus.SCHEDULED);
+        when(waitlistEntryRepository.findByDoctorIdAndAppointmentDate(10L, DATE))
+                .thenReturn(List.of(entry(1L), entry(2L), entry(3L), entry(4L), entry(5L)));
+        when(referralRepository.findAllById(List.of(1L, 2L, 3L, 4L, 5L)))
+                .thenReturn(List.of(low, high, rejected, cancelledReferral, alreadyScheduled));
+        when(priorityService.calculatePriorityScore(any(), any())).thenAnswer(invocation ->
+                switch (invocation.<Referral>getArgument(0).getId().intValue()) {
+                    case 2 -> 120;
+                    case 3 -> 150;
+                    case 4, 5 -> 200;
+                    default -> 60;
+                });
+        when(batchAppointmentService.createAppointments(anyList()))
+                .thenReturn(List.of(BatchAppointmentResult.rejected(0, 409, "Paciente com outro agendamento no horário")))
+                .thenReturn(List.of(BatchAppointmentResult.created(0, new Appointment())));
+
+        Appointment cancelled = Appointment.builder().id(9L).doctorId(10L).appointmentDate(DATE)
+                .startTime(LocalTime.of(9, 0)).endTime(LocalTime.of(9, 30)).healthcareFacilityId(7L).referralId(4L).build();
+        waitlistService.slotFreed(cancelled);
+
+        verifyNoInteractions(batchAppointmentService);
+        assertThat(submitted).hasSize(1);
+        submitted.get(0).run();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<AppointmentRequest>> requests = ArgumentCaptor.forClass(List.class);
+        verify(batchAppointmentService, times(2)).createAppointments(requests.capture());
+        assertThat(requests.getAllValues()).extracting(batch -> batch.get(0).getReferralId()).containsExactly(3L, 2L);
+        AppointmentRequest booked = requests.getAllValues().get(1).get(0);
+        assertThat(booked.getPatientId()).isEqualTo(200L);
+        assertThat(booked.getStartTime()).isEqualTo(LocalTime.of(9, 0));
+        assertThat(booked.getHealthcareFacilityId()).isEqualTo(7L);
+        assertThat(booked.getAppointmentType()).isEqualTo(AppointmentType.CONSULTATION);
+        verify(waitlistEntryRepository).deleteByReferralIds(List.of(2L));
+    }
+
+    @Test
+    void shouldLeaveSlotFreeWhenWaitlistIsEmpty() {
+        when(waitlistEntryRepository.findByDoctorIdAndAppointmentDate(10L, DATE)).thenReturn(List.of());
+
+        Appointment result = waitlistService.backfill(Appointment.builder().id(9L).doctorId(10L).appointmentDate(DATE).build());
+
+        assertThat(result).isNull();
+        verifyNoInteractions(batchAppointmentService);
+    }
+
+    @Test
+    void shouldNotBackfillSlotThatHasAlreadyStarted() {
+        LocalDateTime started = LocalDateTime.now().minusMinutes(5);
+        Appointment cancelled = Appointment.builder().id(9L).doctorId(10L).appointmentDate(started.toLocalDate())
+                .startTime(started.toLocalTime()).endTime(started.toLocalTime().plusMinutes(1)).build();
+
+        waitlistService.slotFreed(cancelled);
+
+        assertThat(submitted).isEmpty();
+        assertThat(waitlistService.backfill(cancelled)).isNull();
+        verifyNoInteractions(waitlistEntryRepository, batchAppointmentService);
+    }
+
+    private WaitlistEntry entry(Long referralId) {
+        return WaitlistEntry.builder().referralId(referralId).doctorId(10L).appointmentDate(DATE).build();
+    }
+
+    private Referral referral(Long id, Long patientId) {
+        return Referral.builder()
+                .id(id)
+                .patientId(patientId)
+                .referralType(ReferralType.SPECIALIST)
+                .priorityLevel(PriorityLevel.HIGH)
+                .status(ReferralStatus.PENDING)
+                .requestedDate(LocalDateTime.now().minusDays(id))
+                .build();
+    }
+}